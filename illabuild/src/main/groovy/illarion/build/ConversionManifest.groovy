@@ -0,0 +1,195 @@
+/*
+ * This file is part of the Illarion project.
+ *
+ * Copyright © 2014 - Illarion e.V.
+ *
+ * Illarion is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Illarion is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ */
+package illarion.build
+
+import groovy.json.JsonOutput
+import groovy.json.JsonSlurper
+
+import javax.annotation.Nonnull
+import javax.annotation.Nullable
+import java.security.MessageDigest
+
+/**
+ * This manifest remembers the content hashes of the resources that were converted in a earlier run of the
+ * {@link ResourceConverter} along with the files that were generated from them. It allows the converter to skip all
+ * resources that did not change since the last run.
+ *
+ * @author Martin Karing &lt;nitram@illarion.org&gt;
+ */
+class ConversionManifest {
+    /**
+     * The version of the manifest format and the conversion. Increasing this value causes all resources to be
+     * converted again.
+     */
+    private static final int VERSION = 1
+
+    /**
+     * The hash of the settings that apply to all converted resources.
+     */
+    @Nullable
+    private String settings
+
+    /**
+     * The converted files. The key is the path of the source file relative to the resource directory. The value
+     * stores the {@code hash} of the source file and the {@code outputs} relative to the output directory.
+     */
+    @Nonnull
+    private final Map<String, Map> files = [:]
+
+    /**
+     * The generated texture atlases. Each entry stores the {@code index} and the {@code file} of the atlas and the
+     * {@code sprites} located on it.
+     */
+    @Nonnull
+    private final List<Map> atlases = []
+
+    /**
+     * Load the manifest that was stored by the last run.
+     *
+     * @param manifestFile the file the manifest is stored in
+     * @return the loaded manifest or a empty one in case there is none or it can't be used
+     */
+    @Nonnull
+    static ConversionManifest load(@Nonnull final File manifestFile) {
+        def manifest = new ConversionManifest()
+        if (!manifestFile.file) {
+            return manifest
+        }
+        try {
+            def data = new JsonSlurper().parse(manifestFile) as Map
+            if (data.version == VERSION) {
+                manifest.settings = data.settings
+                manifest.files.putAll(data.files as Map)
+                manifest.atlases.addAll(data.atlases as List)
+            }
+        } catch (ignored) {
+            // broken manifest, everything is converted again
+        }
+        manifest
+    }
+
+    /**
+     * Store the manifest.
+     *
+     * @param manifestFile the file the manifest is stored in
+     */
+    void save(@Nonnull final File manifestFile) {
+        manifestFile.parentFile.mkdirs()
+        manifestFile.text = JsonOutput.toJson([version: VERSION, settings: settings, files: files, atlases: atlases])
+    }
+
+    /**
+     * Apply the settings hash of the current run. In case the settings changed, all entries are dropped.
+     *
+     * @param settingsHash the hash of the current settings
+     * @return {@code true} in case the settings did not change since the last run
+     */
+    boolean applySettings(@Nonnull final String settingsHash) {
+        if (settingsHash == settings) {
+            return true
+        }
+        settings = settingsHash
+        files.clear()
+        atlases.clear()
+        false
+    }
+
+    /**
+     * Check if a source file was converted already and all files generated from it still exist.
+     *
+     * @param source the path of the source file relative to the resource directory
+     * @param hash the current content hash of the source file
+     * @param outputDirectory the output directory
+     * @return {@code true} in case the source file does not need to be converted again
+     */
+    boolean isUpToDate(@Nonnull final String source, @Nonnull final String hash, @Nonnull final File outputDirectory) {
+        def entry = files[source]
+        if (entry == null || entry.hash != hash) {
+            return false
+        }
+        (entry.outputs as List<String>).every { new File(outputDirectory, it).file }
+    }
+
+    /**
+     * Remember that a source file was converted.
+     *
+     * @param source the path of the source file relative to the resource directory
+     * @param hash the content hash of the source file
+     * @param outputs the paths of the generated files relative to the output directory
+     */
+    void recordFile(@Nonnull final String source, @Nonnull final String hash, @Nonnull final List<String> outputs) {
+        files[source] = [hash: hash, outputs: outputs]
+    }
+
+    /**
+     * Drop all source files that are not part of the resources anymore.
+     *
+     * @param sources the paths of all current source files relative to the resource directory
+     * @return the paths of the files generated from the dropped sources relative to the output directory
+     */
+    @Nonnull
+    List<String> retainFiles(@Nonnull final Set<String> sources) {
+        def removed = files.keySet().findAll { !sources.contains(it) }
+        def outputs = removed.collectMany { files.remove(it).outputs as List<String> }
+        outputs
+    }
+
+    /**
+     * Get the atlases of the last run.
+     *
+     * @return the atlas entries
+     */
+    @Nonnull
+    List<Map> getAtlases() {
+        atlases
+    }
+
+    /**
+     * Replace the stored atlases.
+     *
+     * @param newAtlases the atlases of the current run
+     */
+    void setAtlases(@Nonnull final List<Map> newAtlases) {
+        atlases.clear()
+        atlases.addAll(newAtlases)
+    }
+
+    /**
+     * Calculate the content hash of a file.
+     *
+     * @param file the file
+     * @return the hexadecimal SHA-1 hash of the file contents
+     */
+    @Nonnull
+    static String hash(@Nonnull final File file) {
+        def digest = MessageDigest.getInstance("SHA-1")
+        file.eachByte(65536) { byte[] buffer, int length ->
+            digest.update(buffer, 0, length)
+        }
+        digest.digest().encodeHex().toString()
+    }
+
+    /**
+     * Calculate the hash of a text.
+     *
+     * @param text the text
+     * @return the hexadecimal SHA-1 hash of the text
+     */
+    @Nonnull
+    static String hash(@Nonnull final String text) {
+        MessageDigest.getInstance("SHA-1").digest(text.getBytes("UTF-8")).encodeHex().toString()
+    }
+}
@@ -18,6 +18,8 @@ package illarion.build
 import groovy.xml.MarkupBuilder
 import illarion.build.imagepacker.ImagePacker
 import illarion.common.data.Book
+import illarion.common.util.BinaryTable
+import illarion.common.util.BinaryTableWriter
 import illarion.common.util.Crypto
 import org.gradle.api.DefaultTask
 import org.gradle.api.file.FileCollection
@@ -26,9 +28,14 @@ import org.w3c.dom.Document
 import org.xml.sax.SAXException
 
 import javax.annotation.Nonnull
+import javax.annotation.Nullable
 import javax.imageio.ImageIO
 import javax.xml.parsers.DocumentBuilderFactory
 import javax.xml.parsers.ParserConfigurationException
+import java.util.concurrent.Callable
+import java.util.concurrent.ExecutionException
+import java.util.concurrent.Executors
+import java.util.concurrent.Future
 
 /**
  * This converter mainly converts the PNG image files into a format optimized for OpenGL, in order to improve the speed
@@ -38,6 +45,11 @@ import javax.xml.parsers.ParserConfigurationException
  * @author Martin Karing &lt;nitram@illarion.org&gt;
  */
 public class ResourceConverter extends DefaultTask {
+    /**
+     * The maximal amount of texture atlases that are rendered and encoded at the same time.
+     */
+    private static final int MAX_PARALLEL_ATLASES = 4
+
     /**
      * The file names of the book files that were found but not handled yet.
      */
@@ -60,6 +72,7 @@ public class ResourceConverter extends DefaultTask {
      * The file that contains the private key to use
      */
     @InputFile
+    @org.gradle.api.tasks.Optional
     def File privateKey;
 
     /**
@@ -82,6 +95,18 @@ public class ResourceConverter extends DefaultTask {
     @OutputDirectory
     def File outputDirectory;
 
+    /**
+     * The manifest of the last conversion. It is used to skip the resources that did not change.
+     */
+    @Nullable
+    private ConversionManifest manifest
+
+    /**
+     * The content hashes of the table, book and misc files of the current conversion.
+     */
+    @Nonnull
+    private final Map<String, String> sourceHashes = [:]
+
     /**
      * The file names of texture files that were found in the list and were not handled yet.
      */
@@ -133,9 +158,27 @@ public class ResourceConverter extends DefaultTask {
      */
     @SuppressWarnings("nls")
     def void convert(File rootDir, File targetDirectory) {
-        delete(targetDirectory)
+        manifest = ConversionManifest.load(getManifestFile())
+        if (!manifest.applySettings(getSettingsHash())) {
+            logger.info("Conversion settings changed. Converting all resources.")
+            delete(targetDirectory)
+        }
         targetDirectory.mkdirs()
 
+        sourceHashes.clear()
+        [tableFiles, miscFiles, bookFiles].each { files ->
+            files.each { file -> sourceHashes[getSourcePath(file)] = ConversionManifest.hash(file) }
+        }
+        manifest.retainFiles(sourceHashes.keySet()).each { new File(targetDirectory, it).delete() }
+        [tableFiles, miscFiles, bookFiles].each { files ->
+            files.removeAll { file ->
+                def source = getSourcePath(file)
+                manifest.isUpToDate(source, sourceHashes[source], targetDirectory)
+            }
+        }
+        def changedFiles = tableFiles.size() + miscFiles.size() + bookFiles.size()
+        logger.info("${sourceHashes.size() - changedFiles} resources are unchanged, ${changedFiles} are converted.")
+
         convertTableFiles(targetDirectory)
         logger.info("Table files are done!")
 
@@ -147,6 +190,46 @@ public class ResourceConverter extends DefaultTask {
 
         convertTextureFiles(targetDirectory, rootDir)
         logger.info("Textures done")
+
+        manifest.save(getManifestFile())
+    }
+
+    /**
+     * The file that stores the manifest of the last conversion.
+     */
+    @OutputFile
+    File getManifestFile() {
+        new File(getTemporaryDir(), "conversion-manifest.json")
+    }
+
+    /**
+     * Get the hash of the settings that apply to all converted resources. In case they change, all resources have
+     * to be converted again.
+     */
+    @Nonnull
+    private String getSettingsHash() {
+        def keyFile = getPrivateKey()
+        def keyHash = (keyFile != null && keyFile.file) ? ConversionManifest.hash(keyFile) : ""
+        ConversionManifest.hash("${getAtlasName()}:${keyHash}")
+    }
+
+    /**
+     * Get the path of a resource file relative to the resource directory.
+     */
+    @Nonnull
+    private String getSourcePath(@Nonnull final File sourceFile) {
+        def filePath = sourceFile.absolutePath.replace(getResourceDirectory().absolutePath, "").replace('\\', '/')
+        filePath.startsWith("/") ? filePath.substring(1) : filePath
+    }
+
+    /**
+     * Store in the manifest that a resource file was converted.
+     */
+    private void recordConversion(@Nonnull final File targetDirectory, @Nonnull final File sourceFile,
+                                  @Nonnull final File targetFile) {
+        def source = getSourcePath(sourceFile)
+        def target = targetDirectory.toPath().relativize(targetFile.toPath()).toString().replace('\\', '/')
+        manifest.recordFile(source, sourceHashes[source], [target])
     }
 
     private static void delete(final File file) {
@@ -182,11 +265,13 @@ public class ResourceConverter extends DefaultTask {
 
             logger.info("Book ${file.name} read with ${book.englishBook.pageCount} pages")
 
+            def targetFile = getTargetFile(targetDirectory, file)
             file.withInputStream { is ->
-                getTargetFile(targetDirectory, file).withOutputStream { os ->
+                targetFile.withOutputStream { os ->
                     os << is
                 }
             }
+            recordConversion(targetDirectory, file, targetFile)
         }
         bookFiles.clear()
     }
@@ -218,17 +303,20 @@ public class ResourceConverter extends DefaultTask {
         }
 
         miscFiles.each { file ->
+            def targetFile = getTargetFile(targetDirectory, file, { it.replace("notouch_", "") })
             file.withInputStream { is ->
-                getTargetFile(targetDirectory, file, { it.replace("notouch_", "") }).withOutputStream { os ->
+                targetFile.withOutputStream { os ->
                     os << is
                 }
             }
+            recordConversion(targetDirectory, file, targetFile)
         }
         miscFiles.clear()
     }
 
     /**
-     * Encrypt and write the table files to the new archive.
+     * Precompile, encrypt and write the table files to the new archive. The tables are stored in the column oriented
+     * form that is read by {@link BinaryTable}.
      *
      * @param outJar the target archive the encrypted table files are written to
      * @throws IOException in case there is anything wrong with the input or the output file stream
@@ -254,52 +342,93 @@ public class ResourceConverter extends DefaultTask {
         }
 
         tableFiles.each { file ->
+            def binaryTable = new ByteArrayOutputStream()
             file.withInputStream { is ->
-                getTargetFile(targetDirectory, file, { it.replace(".tbl", ".dat") }).withOutputStream { os ->
-                    crypto.encrypt(is, os)
-                }
+                BinaryTableWriter.convert(is, binaryTable, ",")
+            }
+            def targetFile = getTargetFile(targetDirectory, file, { it.replace(".tbl", BinaryTable.FILE_EXTENSION) })
+            targetFile.withOutputStream { os ->
+                crypto.encrypt(new ByteArrayInputStream(binaryTable.toByteArray()), os)
             }
+            recordConversion(targetDirectory, file, targetFile)
         }
         tableFiles.clear()
     }
 
     private void convertTextureFiles(final File targetDirectory, final File rootDir) {
-        if (textureFiles.empty) {
+        if (textureFiles.empty && manifest.atlases.empty) {
             return
         }
 
-        final ImagePacker packer = new ImagePacker(rootDir, logger)
-        packer.addImages(textureFiles)
-        packer.printTypeCounts()
-        textureFiles.clear()
+        // Atlases that only contain unchanged sprites are kept, the sprites of all other atlases are packed again.
+        def spriteHashes = textureFiles.collectEntries { file -> [getSourcePath(file), ConversionManifest.hash(file)] }
+        def keptAtlases = manifest.atlases.findAll { atlas ->
+            new File(targetDirectory, atlas.file as String).file &&
+                    (atlas.sprites as List<Map>).every { sprite -> spriteHashes[sprite.source] == sprite.hash }
+        }
+        manifest.atlases.findAll { !keptAtlases.contains(it) }.each { atlas ->
+            new File(targetDirectory, atlas.file as String).delete()
+        }
+        def keptSprites = keptAtlases.collectMany { atlas -> atlas.sprites*.source } as Set
+        textureFiles.removeAll { keptSprites.contains(getSourcePath(it)) }
+        logger.info("${keptAtlases.size()} texture atlases with ${keptSprites.size()} images are unchanged.")
 
         def baseName = "${getAtlasName()}-atlas"
-        def atlasFiles = 0
-        def atlasMarkupWriter = new StringWriter()
-        def atlasMarkup = new MarkupBuilder(atlasMarkupWriter)
-        while (!packer.everythingDone) {
-            def fileName = "${baseName}-${atlasFiles++}.png"
-
-            def spriteMarkupWriter = new StringWriter()
-            def spriteMarkup = new MarkupBuilder(spriteMarkupWriter)
-            def resultImage = packer.packImages(spriteMarkup)
-
-            if (resultImage == null) {
-                break
-            }
-
-            ImageIO.write(resultImage, "png", new File(targetDirectory, fileName));
-
-            atlasMarkup.atlas(file: fileName) {
-                mkp.yieldUnescaped(spriteMarkupWriter.toString())
+        def atlases = new ArrayList<Map>(keptAtlases)
+        if (!textureFiles.empty) {
+            def nextIndex = (keptAtlases.collect { it.index as int }.max() ?: -1) + 1
+            final ImagePacker packer = new ImagePacker(rootDir, logger)
+            packer.addImages(textureFiles)
+            packer.printTypeCounts()
+            textureFiles.clear()
+
+            // Every atlas in flight holds its full raster, so the amount of concurrently rendered atlases is limited.
+            def threads = Math.max(1, Math.min(Runtime.runtime.availableProcessors(), MAX_PARALLEL_ATLASES))
+            def renderService = Executors.newFixedThreadPool(threads)
+            def packedAtlases = []
+            def pendingAtlases = []
+            try {
+                while (!packer.everythingDone) {
+                    def atlas = packer.packImages()
+                    if (atlas == null) {
+                        break
+                    }
+                    packedAtlases << atlas
+
+                    def index = nextIndex++
+                    def fileName = "${baseName}-${index}.png"
+                    atlases << [index: index, file: fileName, sprites: atlas.sprites.collect { image ->
+                        def source = getSourcePath(image.file)
+                        [source: source, hash: spriteHashes[source], name: packer.getSpriteName(image),
+                         x: image.x, y: image.y, width: image.width, height: image.height]
+                    }]
+                    pendingAtlases << renderService.submit({
+                        ImageIO.write(packer.renderAtlas(atlas), "png", new File(targetDirectory, fileName))
+                    } as Callable<Boolean>)
+                }
+                pendingAtlases.each { ((Future<?>) it).get() }
+            } catch (ExecutionException e) {
+                throw new IOException("Writing the texture atlas failed.", e.cause)
+            } finally {
+                renderService.shutdownNow()
             }
+            packer.printFillReport(packedAtlases)
         }
+        atlases.sort { it.index as int }
+        manifest.atlases = atlases
 
         def xmlWriter;
         try {
             xmlWriter = new BufferedWriter(new FileWriter(new File(targetDirectory, "${baseName}.xml")))
-            new MarkupBuilder(xmlWriter).atlasList(atlasCount: atlasFiles) {
-                mkp.yieldUnescaped(atlasMarkupWriter.toString())
+            new MarkupBuilder(xmlWriter).atlasList(atlasCount: atlases.size()) {
+                atlases.each { atlas ->
+                    delegate.atlas(file: atlas.file) {
+                        (atlas.sprites as List<Map>).each { sprite ->
+                            delegate.sprite(name: sprite.name, x: sprite.x, y: sprite.y,
+                                    height: sprite.height, width: sprite.width) {}
+                        }
+                    }
+                }
             }
         } finally {
             xmlWriter?.flush()
@@ -15,7 +15,7 @@
  */
 package illarion.build.imagepacker
 
-import groovy.xml.MarkupBuilder
+import groovy.transform.CompileStatic
 import illarion.common.util.FastMath
 import org.gradle.api.logging.Logger
 
@@ -23,7 +23,6 @@ import javax.annotation.Nonnull
 import javax.annotation.Nullable
 import java.awt.color.ColorSpace
 import java.awt.image.*
-import java.lang.ref.SoftReference
 import java.nio.ByteBuffer
 import java.util.concurrent.Callable
 import java.util.concurrent.ExecutorService
@@ -119,32 +118,11 @@ public final class ImagePacker implements Comparator<TextureElement> {
      */
     private final long[] pixelCount = new long[4]
 
-    /**
-     * The list of buffered rasters that were created already and are now
-     * supposed to be reused.
-     */
-    private final List<java.lang.ref.Reference<WritableRaster>> rasterBuffer = []
-
     /**
      * The flag if a list needs to be sorted or not.
      */
     private final boolean[] sortNeeded = new boolean[4]
 
-    /**
-     * The list of spaces that were used to fill up the height of the texture.
-     */
-    private final List<Space> spacesHeight = new ArrayList<Space>()
-
-    /**
-     * The list of spaces that were used to fill up the width of the texture.
-     */
-    private final List<Space> spacesWidth = new ArrayList<Space>()
-
-    /**
-     * The list of images that were used in this texture.
-     */
-    private final List<Sprite> usedImages = new LinkedList<Sprite>()
-
     /**
      * The source directory
      */
@@ -210,18 +188,15 @@ public final class ImagePacker implements Comparator<TextureElement> {
     }
 
     /**
-     * Pack the images provided
+     * Pack the next texture atlas. This only decides the layout of the atlas, the pixel data is generated with
+     * {@link #renderAtlas(PackedAtlas)} afterwards. The layouts have to be created one after another, but rendering
+     * them is safe to be done concurrently.
      *
-     * @param targetDoc the XML document reference that is supposed to store the definition where the images are
-     *                        located
-     * @param spriteDefTarget the node inside the document where the sprite definition are supposed to be stored
-     * @return The generated sprite sheet
-     * @throws IOException Indicates a failure to write out files
+     * @return the layout of the next atlas or {@code null} in case all images are packed
      */
     @Nullable
     @SuppressWarnings("nls")
-    public BufferedImage packImages(@Nonnull final MarkupBuilder defBuilder) throws IOException {
-        logger.info("Packing images")
+    public PackedAtlas packImages() {
         shutdownExecutionService()
 
         int targetType = -1
@@ -238,131 +213,72 @@ public final class ImagePacker implements Comparator<TextureElement> {
             return null;
         }
 
-        def currType = targetType
+        logger.info("Selected Texture Type ${typeToName(targetType)} with ${images[targetType].size()} remaining images.")
 
-        logger.info("Selected Texture Type ${typeToName(currType)} with ${images[currType].size()} remaining images.")
+        final def dimensions = getOptimalDimensions(imageMinWidth[targetType], imageMinHeight[targetType], targetType)
+        def atlas = packAtlas(targetType, dimensions[0], dimensions[1])
+        if (atlas.sprites.empty) {
+            logger.warn("No image fits on a ${dimensions[0]}px x ${dimensions[1]}px atlas. Using the maximal size.")
+            atlas = packAtlas(targetType, MAX_SIZE, MAX_SIZE)
+            if (atlas.sprites.empty) {
+                throw new IllegalStateException("Remaining images of type ${typeToName(targetType)} can't be packed.")
+            }
+        }
 
-        final def dimensions = getOptimalDimensions(imageMinWidth[currType], imageMinHeight[currType], targetType)
-        final def width = dimensions[0]
-        final def height = dimensions[1]
+        logger.info("Texture Map ${atlas.index} of type ${typeToName(targetType)} packed with " +
+                "${atlas.sprites.size()} images. ${String.format('%.1f', atlas.fillRatio * 100.0)}% filled.")
+        return atlas
+    }
 
+    /**
+     * Place as many of the remaining images as possible on a atlas of a specified size. Images of the target type
+     * are placed first, the remaining space is filled with images of types that can be expressed with the target
+     * type.
+     *
+     * @param targetType the type of the atlas
+     * @param width the width of the atlas
+     * @param height the height of the atlas
+     * @return the layout of the atlas
+     */
+    @Nonnull
+    @SuppressWarnings("nls")
+    private PackedAtlas packAtlas(final int targetType, final int width, final int height) {
         logger.info("Selected atlas dimensions are ${width}px width and ${height}px height for " +
-                "${pixelCount[currType]} remaining pixels.")
-
-        spacesWidth.clear()
-        spacesHeight.clear()
-        spacesWidth.add(new Space(0, 0, height, width))
-
-        final def glColorModel = COLOR_MODES[targetType]
-        final def raster = getRaster(width, height, glColorModel.numComponents)
-        final def result = new BufferedImage(glColorModel, raster, false, null)
-
-        final def imageByteData = ((DataBufferByte) result.raster.dataBuffer).data
-
-        Arrays.fill(imageByteData, (byte) 0)
-
-        def minHeight = height
-        def minWidth = width
+                "${pixelCount[targetType]} remaining pixels.")
 
+        final def bin = new MaxRectsBin(width, height)
+        final List<Sprite> atlasImages = []
+        def currType = targetType
         while (true) {
             final def curImages = images[currType]
-
-            logger.info("Processing images of type ${typeToName(currType)} with ${images[currType].size()} remaining images.")
-
-            def imageCnt = 0
-
-            if (curImages != null) {
-                imageCnt = curImages.size()
-
-                if (sortNeeded[currType]) {
-                    Collections.sort(images[currType], this)
-                    sortNeeded[currType] = false
-                }
+            if (sortNeeded[currType]) {
+                Collections.sort(curImages, this)
+                sortNeeded[currType] = false
             }
-            for (int i in 0..<imageCnt) {
-                if (curImages == null) {
-                    break
-                }
-                final def currentImage = curImages.get(i)
-                def imageUnused = true
-                for (spaces in [spacesWidth, spacesHeight]) {
-                    if (spaces.empty) {
-                        continue
-                    }
 
-                    for (int s in 0..<spaces.size()) {
-                        final def currentSpace = spaces.get(s)
-                        if (!currentSpace.isFittingInside(currentImage)) {
-                            continue
-                        }
-
-                        imageUnused = false
-                        currentImage.setPosition(currentSpace.x, currentSpace.y)
-                        usedImages.add(currentImage)
-                        pixelCount[currType] -= currentImage.pixelCount
-                        transferPixel(currentImage.image, currentImage.width, currentImage.height,
-                                currType, imageByteData,
-                                currentImage.x, currentImage.y, width, height, targetType)
-
-                        currentImage.releaseData()
-
-                        if ((currentSpace.width - currentImage.width) > 0) {
-                            final def spaceX = currentSpace.x + currentImage.width
-                            final def spaceY = currentSpace.y
-                            final def spaceHeight = currentImage.height
-                            final def spaceWidth = currentSpace.width - currentImage.width
-
-                            spacesWidth.add(new Space(spaceX, spaceY, spaceHeight, spaceWidth))
-                            reorderSpaces(spacesWidth)
-                        }
-                        if ((currentSpace.height - currentImage.height) > 0) {
-                            final int spaceX = currentSpace.x
-                            final int spaceY = currentSpace.y + currentImage.height
-                            final int spaceHeight = currentSpace.height - currentImage.height
-                            final int spaceWidth = currentSpace.width
-
-                            spacesHeight.add(new Space(spaceX, spaceY, spaceHeight, spaceWidth))
-                            reorderSpaces(spacesHeight)
-                        }
-                        spaces.remove(currentSpace)
-                        break
-                    }
-                    if (!imageUnused) {
-                        break
-                    }
+            final List<Sprite> usedImages = []
+            for (currentImage in curImages) {
+                if (bin.full) {
+                    break
                 }
-
-                if (imageUnused) {
-                    minHeight = Math.min(currentImage.height, minHeight)
-                    minWidth = Math.min(currentImage.width, minWidth)
+                final def position = bin.insert(currentImage.width, currentImage.height)
+                if (position != null) {
+                    currentImage.setPosition(position[0], position[1])
+                    usedImages.add(currentImage)
                 }
             }
 
-            imageMinHeight[currType] = minHeight
-            imageMinWidth[currType] = minWidth
-
-            logger.info("Transferred ${usedImages.size()} of type ${typeToName(currType)} to the texture atlas.")
-
-            images[currType].removeAll(usedImages)
-
-            usedImages.each { image ->
-                String imageName = image.name;
-
-                if (imageName.startsWith(srcDir.absolutePath)) {
-                    imageName = imageName.replace(srcDir.absolutePath, "")
-                }
-                imageName = imageName.replace('\\', '/')
-                if (imageName.startsWith("/")) {
-                    imageName = imageName.substring(1)
-                }
-                defBuilder.sprite(name: imageName,
-                        x: image.x, y: image.y,
-                        height: image.height, width: image.width) {}
+            if (!usedImages.empty) {
+                usedImages.each { image -> pixelCount[currType] -= image.pixelCount }
+                curImages.removeAll(usedImages)
+                imageMinHeight[currType] = curImages.empty ? MAX_SIZE : curImages.min { it.height }.height
+                imageMinWidth[currType] = curImages.empty ? MAX_SIZE : curImages.min { it.width }.width
+                atlasImages.addAll(usedImages)
+                logger.info("Transferred ${usedImages.size()} of type ${typeToName(currType)} to the texture atlas.")
             }
-            usedImages.clear()
 
-            if (![spacesWidth, spacesHeight].any { spaceList -> !spaceList.empty }) {
-                break;
+            if (bin.full) {
+                break
             }
 
             if (targetType == TYPE_RGBA) {
@@ -392,16 +308,79 @@ public final class ImagePacker implements Comparator<TextureElement> {
             }
         }
 
-        result.flush()
+        if (atlasImages.empty) {
+            return new PackedAtlas(-1, targetType, width, height, atlasImages, 0.0)
+        }
+        return new PackedAtlas(imageCountDumb++, targetType, width, height, atlasImages, bin.fillRatio)
+    }
 
-        logger.info("Texture Map ${imageCountDumb++} of type ${typeToName(targetType)} done")
+    /**
+     * Generate the pixel data of a packed atlas. This function is safe to be called concurrently for different
+     * atlases.
+     *
+     * @param atlas the layout of the atlas
+     * @return the texture atlas image
+     */
+    @Nonnull
+    public BufferedImage renderAtlas(@Nonnull final PackedAtlas atlas) {
+        final def glColorModel = COLOR_MODES[atlas.type]
+        final def raster = Raster.createInterleavedRaster(TYPE_BYTE, atlas.width, atlas.height,
+                glColorModel.numComponents, null)
+        final def result = new BufferedImage(glColorModel, raster, false, null)
+        final def imageByteData = ((DataBufferByte) result.raster.dataBuffer).data
 
-        spacesWidth.clear()
-        spacesHeight.clear()
+        for (image in atlas.sprites) {
+            transferPixel(image.image, image.width, image.height, image.type, imageByteData,
+                    image.x, image.y, atlas.width, atlas.height, atlas.type)
+            image.releaseData()
+        }
 
+        result.flush()
         return result
     }
 
+    /**
+     * Get the name of a sprite as it is stored in the sprite definitions.
+     *
+     * @param image the sprite
+     * @return the path of the sprite relative to the source directory without file extension
+     */
+    @Nonnull
+    public String getSpriteName(@Nonnull final Sprite image) {
+        String imageName = image.name;
+
+        if (imageName.startsWith(srcDir.absolutePath)) {
+            imageName = imageName.replace(srcDir.absolutePath, "")
+        }
+        imageName = imageName.replace('\\', '/')
+        if (imageName.startsWith("/")) {
+            imageName = imageName.substring(1)
+        }
+        return imageName
+    }
+
+    /**
+     * Print the fill ratios of all atlases that were packed.
+     *
+     * @param atlases the packed atlases
+     */
+    @SuppressWarnings("nls")
+    public void printFillReport(@Nonnull final Collection<PackedAtlas> atlases) {
+        long usedPixels = 0
+        long totalPixels = 0
+        atlases.each { atlas ->
+            final long atlasPixels = (long) atlas.width * atlas.height
+            usedPixels += (long) (atlas.fillRatio * atlasPixels)
+            totalPixels += atlasPixels
+            logger.info("Atlas ${atlas.index}: ${typeToName(atlas.type)} ${atlas.width}x${atlas.height}, " +
+                    "${atlas.sprites.size()} images, ${String.format('%.1f', atlas.fillRatio * 100.0)}% filled")
+        }
+        if (totalPixels > 0) {
+            logger.info("${atlases.size()} atlases, ${String.format('%.1f', usedPixels * 100.0 / totalPixels)}% " +
+                    "of ${totalPixels} pixels filled")
+        }
+    }
+
     /**
      * Search the optimal base 2 dimensions for the sprite and return them. The
      * dimension will keep within the limit set with {@link #MAX_SIZE}.
@@ -434,34 +413,6 @@ public final class ImagePacker implements Comparator<TextureElement> {
         return [width, height]
     }
 
-    /**
-     * Get a raster with the given specifications. Either create a new one or
-     * get a buffered one.
-     *
-     * @param width the width of the raster
-     * @param height the height of the raster
-     * @param components the samples per pixel of the raster
-     * @return the raster, either a new one or a buffered one
-     */
-    private WritableRaster getRaster(final int width, final int height, final int components) {
-        if (!rasterBuffer.empty) {
-            rasterBuffer.retainAll { it.get() == null }
-            for (rasterRef in rasterBuffer) {
-                def raster = rasterRef.get()
-                if (raster != null) {
-                    if ((raster.height == height) && (raster.width == width) && (raster.numBands == components)) {
-                        return raster
-                    }
-                }
-            }
-        }
-
-        def raster = Raster.createInterleavedRaster(TYPE_BYTE, width, height, components, null)
-        rasterBuffer.add(new SoftReference(raster))
-        logger.info("Created new raster of size ${width} x ${height} with ${components} components.")
-        return raster
-    }
-
     /**
      * Transfer the pixels of one image to the larger image map one by one. This
      * transfers the pixels directly. Even transparent pixels would overwrite
@@ -478,6 +429,7 @@ public final class ImagePacker implements Comparator<TextureElement> {
      * @param targetHeight the height of the target image
      * @param targetType the type of the target image, based on that type the bits per pixel are set up
      */
+    @CompileStatic
     @SuppressWarnings("nls")
     private void transferPixel(@Nonnull final ByteBuffer sourceImage,
                                final int sourceWidth, final int sourceHeight, final int sourceType,
@@ -583,16 +535,6 @@ public final class ImagePacker implements Comparator<TextureElement> {
         }
     }
 
-    /**
-     * Resort the list of spaces after usage, so its always the smallest one
-     * that is used in the next turn.
-     *
-     * @param spaceList the list of spaces
-     */
-    private void reorderSpaces(@Nonnull final List<Space> spaceList) {
-        Collections.sort(spaceList, this)
-    }
-
     /**
      * Convert a type ID to a human readable string.
      *
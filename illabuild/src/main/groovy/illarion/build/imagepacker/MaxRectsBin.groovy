@@ -0,0 +1,302 @@
+/*
+ * This file is part of the Illarion project.
+ *
+ * Copyright © 2015 - Illarion e.V.
+ *
+ * Illarion is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Illarion is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ */
+package illarion.build.imagepacker
+
+import groovy.transform.CompileStatic
+
+import javax.annotation.Nonnull
+import javax.annotation.Nullable
+
+/**
+ * This is the free space bookkeeping of a single texture atlas. It implements the MaxRects algorithm with the best
+ * short side fit heuristic. All maximal free rectangles of the atlas are tracked and every placement splits the free
+ * rectangles it overlaps. To keep the splitting and pruning cheap on atlases with thousands of free rectangles, the
+ * free rectangles are indexed in a uniform grid, so only the rectangles close to a placement are ever touched.
+ *
+ * @author Martin Karing &lt;nitram@illarion.org&gt;
+ */
+@CompileStatic
+final class MaxRectsBin {
+    /**
+     * The edge length of a single cell of the spatial index in pixels as power of two.
+     */
+    private static final int CELL_SHIFT = 6
+
+    /**
+     * A free rectangle on the atlas.
+     */
+    private static final class FreeRect {
+        final int x
+        final int y
+        final int width
+        final int height
+
+        /**
+         * This flag is set once the rectangle was split or pruned and is not part of the free space anymore.
+         */
+        boolean removed
+
+        /**
+         * The ID of the last spatial query that reported this rectangle.
+         */
+        int lastQuery
+
+        FreeRect(final int x, final int y, final int width, final int height) {
+            this.x = x
+            this.y = y
+            this.width = width
+            this.height = height
+        }
+
+        boolean intersects(final int ox, final int oy, final int ow, final int oh) {
+            return (x < (ox + ow)) && (ox < (x + width)) && (y < (oy + oh)) && (oy < (y + height))
+        }
+
+        boolean contains(@Nonnull final FreeRect other) {
+            return (other.x >= x) && (other.y >= y) && ((other.x + other.width) <= (x + width)) &&
+                    ((other.y + other.height) <= (y + height))
+        }
+    }
+
+    /**
+     * The width of the atlas.
+     */
+    final int width
+
+    /**
+     * The height of the atlas.
+     */
+    final int height
+
+    /**
+     * The amount of pixels that are covered by placed rectangles.
+     */
+    long usedPixels
+
+    /**
+     * All free rectangles. Rectangles flagged as removed are dropped from this list from time to time.
+     */
+    @Nonnull
+    private final List<FreeRect> freeRects = new ArrayList<FreeRect>()
+
+    /**
+     * The amount of rectangles in {@link #freeRects} that are flagged as removed.
+     */
+    private int removedRects
+
+    /**
+     * The amount of cells of the spatial index along the x axis.
+     */
+    private final int cellsX
+
+    /**
+     * The amount of cells of the spatial index along the y axis.
+     */
+    private final int cellsY
+
+    /**
+     * The spatial index. Every cell stores the free rectangles that overlap it.
+     */
+    @Nonnull
+    private final List<List<FreeRect>> cells
+
+    /**
+     * The ID of the current spatial query. Used to report every free rectangle only once in a query that covers
+     * multiple cells.
+     */
+    private int queryId
+
+    MaxRectsBin(final int width, final int height) {
+        this.width = width
+        this.height = height
+        cellsX = ((width - 1) >> CELL_SHIFT) + 1
+        cellsY = ((height - 1) >> CELL_SHIFT) + 1
+        cells = new ArrayList<List<FreeRect>>(cellsX * cellsY)
+        for (int i = 0; i < (cellsX * cellsY); i++) {
+            cells.add(new ArrayList<FreeRect>())
+        }
+        addFreeRect(new FreeRect(0, 0, width, height))
+    }
+
+    /**
+     * Check if there is any free space left on the atlas.
+     *
+     * @return {@code true} in case no free space is left
+     */
+    boolean isFull() {
+        return freeRects.size() == removedRects
+    }
+
+    /**
+     * Get the ratio of the atlas area that is covered by placed rectangles.
+     *
+     * @return the fill ratio in the range of 0 to 1
+     */
+    double getFillRatio() {
+        return usedPixels / (double) ((long) width * height)
+    }
+
+    /**
+     * Find a place for a rectangle and occupy it.
+     *
+     * @param rectWidth the width of the rectangle
+     * @param rectHeight the height of the rectangle
+     * @return the x and y coordinate of the placed rectangle or {@code null} in case it does not fit anymore
+     */
+    @Nullable
+    int[] insert(final int rectWidth, final int rectHeight) {
+        FreeRect best = null
+        int bestShortSide = Integer.MAX_VALUE
+        int bestLongSide = Integer.MAX_VALUE
+        for (int i = 0; i < freeRects.size(); i++) {
+            final FreeRect rect = freeRects.get(i)
+            if (rect.removed || (rect.width < rectWidth) || (rect.height < rectHeight)) {
+                continue
+            }
+            final int leftoverX = rect.width - rectWidth
+            final int leftoverY = rect.height - rectHeight
+            final int shortSide = Math.min(leftoverX, leftoverY)
+            final int longSide = Math.max(leftoverX, leftoverY)
+            if ((shortSide < bestShortSide) || ((shortSide == bestShortSide) && (longSide < bestLongSide))) {
+                best = rect
+                bestShortSide = shortSide
+                bestLongSide = longSide
+                if (longSide == 0) {
+                    break
+                }
+            }
+        }
+        if (best == null) {
+            return null
+        }
+
+        final int x = best.x
+        final int y = best.y
+        place(x, y, rectWidth, rectHeight)
+        usedPixels += (long) rectWidth * rectHeight
+        return [x, y] as int[]
+    }
+
+    /**
+     * Occupy a area of the atlas by splitting all free rectangles that overlap with it.
+     */
+    private void place(final int x, final int y, final int rectWidth, final int rectHeight) {
+        final List<FreeRect> created = new ArrayList<FreeRect>()
+        for (FreeRect rect : query(x, y, rectWidth, rectHeight)) {
+            removeFreeRect(rect)
+            if (x > rect.x) {
+                created.add(new FreeRect(rect.x, rect.y, x - rect.x, rect.height))
+            }
+            if ((x + rectWidth) < (rect.x + rect.width)) {
+                created.add(new FreeRect(x + rectWidth, rect.y, (rect.x + rect.width) - (x + rectWidth), rect.height))
+            }
+            if (y > rect.y) {
+                created.add(new FreeRect(rect.x, rect.y, rect.width, y - rect.y))
+            }
+            if ((y + rectHeight) < (rect.y + rect.height)) {
+                created.add(new FreeRect(rect.x, y + rectHeight, rect.width, (rect.y + rect.height) - (y + rectHeight)))
+            }
+        }
+
+        // The new rectangles are slices of rectangles that were maximal before, so only they can be redundant.
+        for (int i = 0; i < created.size(); i++) {
+            final FreeRect rect = created.get(i)
+            for (int j = i + 1; j < created.size(); j++) {
+                final FreeRect other = created.get(j)
+                if (other.removed) {
+                    continue
+                }
+                if (other.contains(rect)) {
+                    rect.removed = true
+                    break
+                }
+                if (rect.contains(other)) {
+                    other.removed = true
+                }
+            }
+        }
+        for (FreeRect rect : created) {
+            if (rect.removed) {
+                continue
+            }
+            boolean contained = false
+            for (FreeRect other : query(rect.x, rect.y, rect.width, rect.height)) {
+                if (other.contains(rect)) {
+                    contained = true
+                    break
+                }
+            }
+            if (!contained) {
+                addFreeRect(rect)
+            }
+        }
+
+        if (removedRects > 64 && (removedRects * 2) > freeRects.size()) {
+            final Iterator<FreeRect> itr = freeRects.iterator()
+            while (itr.hasNext()) {
+                if (itr.next().removed) {
+                    itr.remove()
+                }
+            }
+            removedRects = 0
+        }
+    }
+
+    /**
+     * Get all free rectangles that intersect with a area.
+     */
+    @Nonnull
+    private List<FreeRect> query(final int x, final int y, final int areaWidth, final int areaHeight) {
+        final List<FreeRect> result = new ArrayList<FreeRect>()
+        final int query = ++queryId
+        final int lastCellX = (x + areaWidth - 1) >> CELL_SHIFT
+        final int lastCellY = (y + areaHeight - 1) >> CELL_SHIFT
+        for (int cellY = y >> CELL_SHIFT; cellY <= lastCellY; cellY++) {
+            for (int cellX = x >> CELL_SHIFT; cellX <= lastCellX; cellX++) {
+                for (FreeRect rect : cells.get(cellX + cellY * cellsX)) {
+                    if ((rect.lastQuery != query) && rect.intersects(x, y, areaWidth, areaHeight)) {
+                        rect.lastQuery = query
+                        result.add(rect)
+                    }
+                }
+            }
+        }
+        return result
+    }
+
+    private void addFreeRect(@Nonnull final FreeRect rect) {
+        freeRects.add(rect)
+        final int lastCellX = (rect.x + rect.width - 1) >> CELL_SHIFT
+        final int lastCellY = (rect.y + rect.height - 1) >> CELL_SHIFT
+        for (int cellY = rect.y >> CELL_SHIFT; cellY <= lastCellY; cellY++) {
+            for (int cellX = rect.x >> CELL_SHIFT; cellX <= lastCellX; cellX++) {
+                cells.get(cellX + cellY * cellsX).add(rect)
+            }
+        }
+    }
+
+    private void removeFreeRect(@Nonnull final FreeRect rect) {
+        rect.removed = true
+        removedRects++
+        final int lastCellX = (rect.x + rect.width - 1) >> CELL_SHIFT
+        final int lastCellY = (rect.y + rect.height - 1) >> CELL_SHIFT
+        for (int cellY = rect.y >> CELL_SHIFT; cellY <= lastCellY; cellY++) {
+            for (int cellX = rect.x >> CELL_SHIFT; cellX <= lastCellX; cellX++) {
+                cells.get(cellX + cellY * cellsX).remove(rect)
+            }
+        }
+    }
+}
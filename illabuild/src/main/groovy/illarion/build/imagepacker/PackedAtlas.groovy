@@ -0,0 +1,66 @@
+/*
+ * This file is part of the Illarion project.
+ *
+ * Copyright © 2015 - Illarion e.V.
+ *
+ * Illarion is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Illarion is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ */
+package illarion.build.imagepacker
+
+import javax.annotation.Nonnull
+
+/**
+ * The layout of a single texture atlas as created by the {@link ImagePacker}.
+ *
+ * @author Martin Karing &lt;nitram@illarion.org&gt;
+ */
+final class PackedAtlas {
+    /**
+     * The running index of the atlas.
+     */
+    final int index
+
+    /**
+     * The image type of the atlas.
+     */
+    final int type
+
+    /**
+     * The width of the atlas.
+     */
+    final int width
+
+    /**
+     * The height of the atlas.
+     */
+    final int height
+
+    /**
+     * The sprites placed on this atlas. The positions of the sprites are set already.
+     */
+    @Nonnull
+    final List<Sprite> sprites
+
+    /**
+     * The ratio of the atlas area that is covered by sprites.
+     */
+    final double fillRatio
+
+    PackedAtlas(final int index, final int type, final int width, final int height,
+                @Nonnull final List<Sprite> sprites, final double fillRatio) {
+        this.index = index
+        this.type = type
+        this.width = width
+        this.height = height
+        this.sprites = sprites
+        this.fillRatio = fillRatio
+    }
+}
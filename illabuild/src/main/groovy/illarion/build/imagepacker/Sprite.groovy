@@ -114,6 +114,16 @@ final class Sprite extends TextureElement {
         }
     }
 
+    /**
+     * Get the file this sprite was load from.
+     *
+     * @return the source file of the sprite
+     */
+    @Nonnull
+    public File getFile() {
+        return file
+    }
+
     /**
      * This function is used to strip the file extension of a file name.
      *
@@ -0,0 +1,119 @@
+/*
+ * This file is part of the Illarion project.
+ *
+ * Copyright © 2016 - Illarion e.V.
+ *
+ * Illarion is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Illarion is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ */
+package illarion.build
+
+import org.testng.annotations.AfterMethod
+import org.testng.annotations.BeforeMethod
+import org.testng.annotations.Test
+
+import static org.testng.Assert.*
+
+/**
+ * The test class for the {@link ConversionManifest} class.
+ *
+ * @author Martin Karing &lt;nitram@illarion.org&gt;
+ */
+class ConversionManifestTest {
+    private File directory
+
+    @BeforeMethod
+    void setUp() {
+        directory = File.createTempDir()
+    }
+
+    @AfterMethod
+    void tearDown() {
+        directory.deleteDir()
+    }
+
+    @Test
+    void upToDateTest() {
+        new File(directory, 'items.tbd').text = 'table'
+        def manifest = new ConversionManifest()
+        manifest.recordFile('items.csv', 'abc', ['items.tbd'])
+
+        assertTrue(manifest.isUpToDate('items.csv', 'abc', directory), "Unchanged source is not up to date")
+        assertFalse(manifest.isUpToDate('items.csv', 'abd', directory), "Changed source is up to date")
+        assertFalse(manifest.isUpToDate('tiles.csv', 'abc', directory), "Unknown source is up to date")
+
+        new File(directory, 'items.tbd').delete()
+        assertFalse(manifest.isUpToDate('items.csv', 'abc', directory), "Source with missing output is up to date")
+    }
+
+    @Test
+    void saveLoadTest() {
+        new File(directory, 'items.tbd').text = 'table'
+        def manifestFile = new File(directory, 'manifest/manifest.json')
+        def atlas = [index: 0, file: 'atlas-0.png', sprites: [[name: 'tree', x: 0, y: 0, width: 32, height: 64]]]
+
+        def manifest = new ConversionManifest()
+        manifest.applySettings('settings')
+        manifest.recordFile('items.csv', 'abc', ['items.tbd'])
+        manifest.atlases = [atlas]
+        manifest.save(manifestFile)
+
+        def loaded = ConversionManifest.load(manifestFile)
+        assertTrue(loaded.applySettings('settings'), "Settings got lost")
+        assertTrue(loaded.isUpToDate('items.csv', 'abc', directory), "Converted file got lost")
+        assertEquals(loaded.atlases, [atlas], "Atlases got lost")
+    }
+
+    @Test
+    void brokenManifestTest() {
+        def manifestFile = new File(directory, 'manifest.json')
+        manifestFile.text = '{"version": 1, "files": ['
+
+        def manifest = ConversionManifest.load(manifestFile)
+        assertFalse(manifest.applySettings('settings'), "Broken manifest provided settings")
+        assertTrue(manifest.atlases.empty, "Broken manifest provided atlases")
+
+        def missing = ConversionManifest.load(new File(directory, 'missing.json'))
+        assertFalse(missing.applySettings('settings'), "Missing manifest provided settings")
+    }
+
+    @Test
+    void changedSettingsTest() {
+        new File(directory, 'items.tbd').text = 'table'
+        def manifest = new ConversionManifest()
+        manifest.applySettings('old')
+        manifest.recordFile('items.csv', 'abc', ['items.tbd'])
+        manifest.atlases = [[index: 0, file: 'atlas-0.png', sprites: []]]
+
+        assertFalse(manifest.applySettings('new'), "Changed settings are reported unchanged")
+        assertFalse(manifest.isUpToDate('items.csv', 'abc', directory), "Files survived changed settings")
+        assertTrue(manifest.atlases.empty, "Atlases survived changed settings")
+        assertTrue(manifest.applySettings('new'), "Unchanged settings are reported changed")
+    }
+
+    @Test
+    void retainFilesTest() {
+        def manifest = new ConversionManifest()
+        manifest.recordFile('items.csv', 'abc', ['items.tbd'])
+        manifest.recordFile('books/book.xml', 'def', ['books/book.xml', 'books/book.idx'])
+
+        def removed = manifest.retainFiles(['items.csv'] as Set)
+        assertEquals(removed as Set, ['books/book.xml', 'books/book.idx'] as Set, "Wrong outputs removed")
+        assertTrue(manifest.retainFiles(['items.csv'] as Set).empty, "Outputs removed twice")
+    }
+
+    @Test
+    void hashTest() {
+        def file = new File(directory, 'text.txt')
+        file.text = 'abc'
+        assertEquals(ConversionManifest.hash('abc'), 'a9993e364706816aba3e25717850c26c9cd0d89d', "Wrong text hash")
+        assertEquals(ConversionManifest.hash(file), ConversionManifest.hash('abc'), "File and text hash differ")
+    }
+}
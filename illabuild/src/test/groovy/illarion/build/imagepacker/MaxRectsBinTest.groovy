@@ -0,0 +1,82 @@
+/*
+ * This file is part of the Illarion project.
+ *
+ * Copyright © 2016 - Illarion e.V.
+ *
+ * Illarion is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Illarion is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ */
+package illarion.build.imagepacker
+
+import org.testng.annotations.Test
+
+import static org.testng.Assert.*
+
+/**
+ * The test class for the {@link MaxRectsBin} class.
+ *
+ * @author Martin Karing &lt;nitram@illarion.org&gt;
+ */
+class MaxRectsBinTest {
+    @Test
+    void insertTest() {
+        def bin = new MaxRectsBin(64, 64)
+        def position = bin.insert(16, 32)
+        assertNotNull(position, "Placing a rectangle on a empty bin failed")
+        assertEquals(position[0], 0, "First rectangle is expected in the top left corner")
+        assertEquals(position[1], 0, "First rectangle is expected in the top left corner")
+        assertEquals(bin.usedPixels, 16L * 32L, "Used pixels are not tracked")
+        assertFalse(bin.full, "Bin reported full with free space left")
+    }
+
+    @Test
+    void fullBinTest() {
+        def bin = new MaxRectsBin(32, 32)
+        assertNull(bin.insert(33, 1), "Rectangle wider than the bin was accepted")
+        assertNull(bin.insert(1, 33), "Rectangle higher than the bin was accepted")
+
+        assertNotNull(bin.insert(32, 32), "Rectangle of the size of the bin was rejected")
+        assertTrue(bin.full, "Completely covered bin is not reported as full")
+        assertEquals(bin.fillRatio, 1.0d, 0.0001d, "Completely covered bin has the wrong fill ratio")
+        assertNull(bin.insert(1, 1), "Rectangle was accepted by a full bin")
+    }
+
+    @Test
+    void noOverlapTest() {
+        def random = new Random(42L)
+        def bin = new MaxRectsBin(256, 256)
+        def placed = []
+        for (int i = 0; i < 500; i++) {
+            int width = 1 + random.nextInt(40)
+            int height = 1 + random.nextInt(40)
+            def position = bin.insert(width, height)
+            if (position != null) {
+                assertTrue(position[0] >= 0 && position[1] >= 0, "Rectangle placed outside of the bin")
+                assertTrue(position[0] + width <= 256 && position[1] + height <= 256,
+                        "Rectangle placed outside of the bin")
+                placed << ([position[0], position[1], width, height] as int[])
+            }
+        }
+
+        assertTrue(placed.size() > 50, "Only ${placed.size()} rectangles were placed")
+        long area = 0
+        for (int i = 0; i < placed.size(); i++) {
+            int[] a = placed[i]
+            area += a[2] * a[3]
+            for (int j = i + 1; j < placed.size(); j++) {
+                int[] b = placed[j]
+                boolean overlap = (a[0] < b[0] + b[2]) && (b[0] < a[0] + a[2]) &&
+                        (a[1] < b[1] + b[3]) && (b[1] < a[1] + a[3])
+                assertFalse(overlap, "Rectangles ${a} and ${b} overlap")
+            }
+        }
+        assertEquals(bin.usedPixels, area, "Used pixels do not match the placed rectangles")
+    }
+}
@@ -22,6 +22,8 @@ import illarion.client.input.InputReceiver;
 import illarion.client.states.*;
 import illarion.client.util.ConnectionPerformanceClock;
 import illarion.client.util.Lang;
+import illarion.client.util.pathfinding.PathFindingMonitor;
+import illarion.client.util.pathfinding.PathPlanner;
 import illarion.client.world.World;
 import illarion.common.config.ConfigChangedEvent;
 import org.bushe.swing.event.annotation.AnnotationProcessor;
@@ -138,11 +140,24 @@ public final class Game implements GameListener {
     @Override
     public void create(@Nonnull GameContainer container) {
         TextureManager texManager = container.getEngine().getAssets().getTextureManager();
+        int textureBudget = IllaClient.getCfg().getInteger(IllaClient.CFG_TEXTURE_BUDGET);
+        boolean onDemand = textureBudget > 0;
+        if (onDemand) {
+            texManager.setResidencyBudget(textureBudget * 1024L * 1024L);
+        }
+        int loadingFrameBudget = IllaClient.getCfg().getInteger(IllaClient.CFG_TEXTURE_LOADING_FRAME_BUDGET);
+        if (loadingFrameBudget > 0) {
+            texManager.setLoadingFrameBudget(loadingFrameBudget);
+        }
+        int loadingMemoryBudget = IllaClient.getCfg().getInteger(IllaClient.CFG_TEXTURE_LOADING_MEMORY_BUDGET);
+        if (loadingMemoryBudget > 0) {
+            texManager.setLoadingMemoryBudget(loadingMemoryBudget * 1024L * 1024L);
+        }
         texManager.addTextureDirectory("gui");
-        texManager.addTextureDirectory("chars");
-        texManager.addTextureDirectory("items");
-        texManager.addTextureDirectory("tiles");
-        texManager.addTextureDirectory("effects");
+        texManager.addTextureDirectory("chars", onDemand);
+        texManager.addTextureDirectory("items", onDemand);
+        texManager.addTextureDirectory("tiles", onDemand);
+        texManager.addTextureDirectory("effects", onDemand);
 
         try {
             FontLoader.getInstance().prepareAllFonts(container.getEngine().getAssets());
@@ -354,6 +369,15 @@ public final class Game implements GameListener {
                     String sceneLine = "Scene objects: " + World.getMapDisplay().getGameScene().getElementCount();
                     container.getEngine().getGraphics().drawText(fpsFont, sceneLine, Color.WHITE, 10, renderLine);
                     renderLine += fpsFont.getLineHeight();
+
+                    PathFindingMonitor pathMonitor = PathPlanner.getMonitor();
+                    String pathLine = String.format(
+                            "Path searches: %d, %.2f ms avg, %.2f ms max, %.1f nodes avg, %d partial",
+                            pathMonitor.getTotalSearches(), pathMonitor.getSearchTimePerSearch() / 1e6,
+                            pathMonitor.getMaxSearchTime() / 1e6, pathMonitor.getExpandedNodesPerSearch(),
+                            pathMonitor.getTotalResults(PathFindingMonitor.Result.Partial));
+                    container.getEngine().getGraphics().drawText(fpsFont, pathLine, Color.WHITE, 10, renderLine);
+                    renderLine += fpsFont.getLineHeight();
                 }
 
                 if (showPing) {
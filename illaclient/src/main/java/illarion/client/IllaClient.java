@@ -83,6 +83,24 @@ public final class IllaClient implements EventTopicSubscriber<ConfigChangedEvent
     public static final String CFG_FULLSCREEN = "fullscreen";
     @Nonnull
     public static final String CFG_RESOLUTION = "resolution";
+    /**
+     * The amount of video memory in MiB the character, item, tile and effect graphics may occupy. With {@code 0}
+     * all graphics are loaded at startup.
+     */
+    @Nonnull
+    public static final String CFG_TEXTURE_BUDGET = "textureResidencyBudget";
+    /**
+     * The time in milliseconds each frame may spend on transferring texture atlases to the graphics card while the
+     * graphics are loaded.
+     */
+    @Nonnull
+    public static final String CFG_TEXTURE_LOADING_FRAME_BUDGET = "textureLoadingFrameBudget";
+    /**
+     * The amount of memory in MiB the decoded texture atlases waiting for the transfer to the graphics card may
+     * occupy while the graphics are loaded.
+     */
+    @Nonnull
+    public static final String CFG_TEXTURE_LOADING_MEMORY_BUDGET = "textureLoadingMemoryBudget";
     /**
      * The default server the client connects too. The client will always connect to this server.
      */
@@ -324,6 +342,9 @@ public final class IllaClient implements EventTopicSubscriber<ConfigChangedEvent
         cfg.setDefault("showFps", false);
         cfg.setDefault("showPing", false);
         cfg.setDefault(CrashReporter.CFG_KEY, CrashReporter.MODE_ASK);
+        cfg.setDefault(CFG_TEXTURE_BUDGET, 0);
+        cfg.setDefault(CFG_TEXTURE_LOADING_FRAME_BUDGET, 16);
+        cfg.setDefault(CFG_TEXTURE_LOADING_MEMORY_BUDGET, 256);
 
         Locale locale = Locale.getDefault(Category.DISPLAY);
         // If the system locale is german, set to german. Otherwise, default to English
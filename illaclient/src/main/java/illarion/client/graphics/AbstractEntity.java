@@ -366,6 +366,16 @@ public abstract class AbstractEntity<T extends AbstractEntityTemplate>
         return getDisplayCoordinate().getLayer();
     }
 
+    @Override
+    public final int getSceneX() {
+        return getDisplayCoordinate().getX();
+    }
+
+    @Override
+    public final int getSceneY() {
+        return getDisplayCoordinate().getY();
+    }
+
     /**
      * Hide the entity from the screen by removing it from the display list.
      */
@@ -517,7 +527,7 @@ public abstract class AbstractEntity<T extends AbstractEntityTemplate>
         DisplayCoordinate oldCoordinate = displayCoordinate;
         displayCoordinate = coordinate;
 
-        if (shown && (oldCoordinate != null) && (oldCoordinate.getLayer() != coordinate.getLayer())) {
+        if (shown && (oldCoordinate != null) && !oldCoordinate.equals(coordinate)) {
             updateDisplayPosition();
         }
     }
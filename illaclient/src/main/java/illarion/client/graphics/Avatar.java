@@ -34,6 +34,7 @@ import illarion.client.world.interactive.InteractiveChar;
 import illarion.client.world.movement.TargetMovementHandler;
 import illarion.common.gui.AbstractMultiActionHelper;
 import illarion.common.types.DisplayCoordinate;
+import illarion.common.types.Rectangle;
 import org.illarion.engine.GameContainer;
 import org.illarion.engine.graphic.Color;
 import org.illarion.engine.graphic.Graphics;
@@ -111,6 +112,13 @@ public final class Avatar extends AbstractEntity<AvatarTemplate> implements Reso
 
     private boolean showAttackAvailable;
 
+    /**
+     * The area on the display that was last reported to the people list as area covered by this avatar. It is
+     * empty as long as no area is reported.
+     */
+    @Nonnull
+    private final Rectangle reportedHitArea = new Rectangle();
+
     /**
      * Stores if the name shall be rendered or not. It is checked at every
      * update if this flag is valid or not.
@@ -462,6 +470,8 @@ public final class Avatar extends AbstractEntity<AvatarTemplate> implements Reso
     public void hide() {
         super.hide();
         stopAnimation();
+        World.getPeople().removeCharacterHitArea(parentChar, this);
+        reportedHitArea.reset();
     }
 
     /**
@@ -606,6 +616,12 @@ public final class Avatar extends AbstractEntity<AvatarTemplate> implements Reso
             return;
         }
 
+        Rectangle displayRect = getDisplayRect();
+        if (!reportedHitArea.equals(displayRect)) {
+            World.getPeople().updateCharacterHitArea(parentChar, this, displayRect);
+            reportedHitArea.set(displayRect);
+        }
+
         int usedAlpha = getAlpha();
 
         clothRender.setAlpha(usedAlpha);
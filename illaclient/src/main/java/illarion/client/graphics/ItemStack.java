@@ -218,6 +218,16 @@ public class ItemStack implements DisplayItem, List<Item> {
         return stackLocation.getLayer();
     }
 
+    @Override
+    public int getSceneX() {
+        return stackLocation.getX();
+    }
+
+    @Override
+    public int getSceneY() {
+        return stackLocation.getY();
+    }
+
     @Override
     public void render(@Nonnull Graphics graphics) {
         lock.readLock().lock();
@@ -141,6 +141,7 @@ public final class MapDisplayManager implements AnimatedMove {
         }
 
         Camera.getInstance().setViewport(-offX, -offY, container.getWidth(), container.getHeight());
+        gameScene.setViewport(-offX, -offY, container.getWidth(), container.getHeight());
 
         Input engineInput = container.getEngine().getInput();
         gameScene.publishEvent(new CurrentMouseLocationEvent(engineInput.getMouseX(), engineInput.getMouseY()));
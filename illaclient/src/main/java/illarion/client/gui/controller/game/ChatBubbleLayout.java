@@ -0,0 +1,352 @@
+/*
+ * This file is part of the Illarion project.
+ *
+ * Copyright © 2016 - Illarion e.V.
+ *
+ * Illarion is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Illarion is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ */
+package illarion.client.gui.controller.game;
+
+import de.lessvoid.nifty.elements.Element;
+import de.lessvoid.nifty.tools.SizeValue;
+import illarion.client.graphics.Avatar;
+import illarion.client.graphics.Camera;
+import illarion.client.world.Char;
+import illarion.common.types.Rectangle;
+import illarion.common.util.FastMath;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.NotThreadSafe;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * This class places the chat bubbles above the characters that are talking and removes bubbles that are covered by
+ * newer bubbles. Only bubbles whose character or the camera moved are placed again, the overlaps are only resolved in
+ * case any bubble changed and use a grid index of the screen, so each bubble is only tested against its neighbours.
+ *
+ * @author Martin Karing &lt;nitram@illarion.org&gt;
+ */
+@NotThreadSafe
+final class ChatBubbleLayout {
+    /**
+     * The edge length of the cells of the grid index as power of two.
+     */
+    private static final int CELL_SHIFT = 6;
+
+    /**
+     * A bubble on the screen.
+     */
+    private static final class Bubble {
+        @Nonnull
+        final Element element;
+
+        /**
+         * The location and the size of the bubble as it was placed the last time.
+         */
+        int x;
+        int y;
+        int width;
+        int height;
+
+        /**
+         * The anchor point of the character on the screen the bubble was placed for the last time.
+         */
+        int anchorX = Integer.MIN_VALUE;
+        int anchorY = Integer.MIN_VALUE;
+
+        /**
+         * Set once the constraints of the element were applied.
+         */
+        boolean placed;
+
+        /**
+         * Set in case the bubble is covered by a newer bubble.
+         */
+        boolean covered;
+
+        Bubble(@Nonnull Element element) {
+            this.element = element;
+        }
+
+        boolean intersects(@Nonnull Bubble other) {
+            if ((x > (other.x + other.width)) || ((x + width) < other.x)) {
+                return false;
+            }
+            return !((y > (other.y + other.height)) || ((y + height) < other.y));
+        }
+    }
+
+    /**
+     * The active bubbles in the order they were created.
+     */
+    @Nonnull
+    private final Map<Char, Bubble> bubbles = new LinkedHashMap<>();
+
+    /**
+     * Set in case a bubble was added or moved and the overlaps need to be checked again.
+     */
+    private boolean overlapCheckRequired;
+
+    /**
+     * The cells of the grid index. Each cell stores the bubbles that cover it.
+     */
+    @Nonnull
+    private List<Bubble>[] cells = newCells(0);
+
+    /**
+     * The amount of cells in x direction.
+     */
+    private int cellsX;
+
+    /**
+     * The indices of the cells that contain bubbles and need to be cleared before the next check.
+     */
+    @Nonnull
+    private int[] usedCells = new int[16];
+
+    /**
+     * The amount of valid entries in {@link #usedCells}.
+     */
+    private int usedCellCount;
+
+    /**
+     * The bubbles ordered from the newest to the oldest. Reused for every overlap check.
+     */
+    @Nonnull
+    private final List<Bubble> checkOrder = new ArrayList<>();
+
+    /**
+     * Add the bubble of a character. A older bubble of the same character is replaced.
+     *
+     * @param character the character who is talking
+     * @param element the element of the bubble
+     * @return the element of the replaced bubble or {@code null}
+     */
+    @Nullable
+    Element add(@Nonnull Char character, @Nonnull Element element) {
+        Bubble oldBubble = bubbles.remove(character);
+        bubbles.put(character, new Bubble(element));
+        overlapCheckRequired = true;
+        return (oldBubble == null) ? null : oldBubble.element;
+    }
+
+    /**
+     * Remove the bubble of a character, in case its still the active bubble of the character.
+     *
+     * @param character the character
+     * @param element the element of the bubble
+     */
+    void remove(@Nonnull Char character, @Nonnull Element element) {
+        Bubble bubble = bubbles.get(character);
+        if ((bubble != null) && (bubble.element == element)) {
+            bubbles.remove(character);
+        }
+    }
+
+    /**
+     * Remove all bubbles.
+     *
+     * @return the elements of the removed bubbles
+     */
+    @Nonnull
+    List<Element> clear() {
+        List<Element> elements = new ArrayList<>(bubbles.size());
+        bubbles.values().forEach(bubble -> elements.add(bubble.element));
+        bubbles.clear();
+        return elements;
+    }
+
+    /**
+     * Place the bubbles of the characters that moved and resolve the overlaps. The constraints of all changed bubbles
+     * are applied together, so the layer needs to be laid out only once.
+     *
+     * @param chatLayer the layer the bubbles are displayed on
+     * @param removedElements the list that receives the elements of the bubbles that are covered by newer bubbles
+     * @return {@code true} in case the layout of the layer needs to be updated
+     */
+    boolean update(@Nonnull Element chatLayer, @Nonnull List<Element> removedElements) {
+        if (bubbles.isEmpty()) {
+            return false;
+        }
+
+        int offsetX = Camera.getInstance().getViewportOffsetX();
+        int offsetY = Camera.getInstance().getViewportOffsetY();
+        boolean layoutRequired = false;
+        for (Map.Entry<Char, Bubble> entry : bubbles.entrySet()) {
+            if (placeBubble(entry.getKey(), entry.getValue(), chatLayer, offsetX, offsetY)) {
+                layoutRequired = true;
+                overlapCheckRequired = true;
+            }
+        }
+
+        if (overlapCheckRequired) {
+            overlapCheckRequired = false;
+            if (removeCoveredBubbles(chatLayer, removedElements)) {
+                layoutRequired = true;
+            }
+        }
+        return layoutRequired;
+    }
+
+    /**
+     * Place a bubble above its character.
+     *
+     * @return {@code true} in case the bubble moved
+     */
+    private static boolean placeBubble(@Nonnull Char character, @Nonnull Bubble bubble, @Nonnull Element chatLayer,
+                                       int offsetX, int offsetY) {
+        Avatar charAvatar = character.getAvatar();
+        if (charAvatar == null) {
+            return false;
+        }
+
+        Rectangle charDisplayRect = charAvatar.getDisplayRect();
+        if (charDisplayRect.isEmpty()) {
+            return false;
+        }
+
+        Element element = bubble.element;
+        int anchorX = charDisplayRect.getCenterX() - offsetX;
+        int anchorY = charDisplayRect.getBottom() - offsetY;
+        if ((anchorX == bubble.anchorX) && (anchorY == bubble.anchorY) && (element.getWidth() == bubble.width) &&
+                (element.getHeight() == bubble.height)) {
+            return false;
+        }
+        bubble.anchorX = anchorX;
+        bubble.anchorY = anchorY;
+        bubble.width = element.getWidth();
+        bubble.height = element.getHeight();
+
+        int bubblePosX = FastMath.clamp(anchorX - (bubble.width / 2), 0, chatLayer.getWidth() - bubble.width);
+        int bubblePosY = FastMath.clamp(anchorY - bubble.height - 5, 0, chatLayer.getHeight() - bubble.height);
+        if (bubble.placed && (bubblePosX == bubble.x) && (bubblePosY == bubble.y)) {
+            return false;
+        }
+        bubble.placed = true;
+        bubble.x = bubblePosX;
+        bubble.y = bubblePosY;
+        element.setConstraintX(SizeValue.px(bubblePosX));
+        element.setConstraintY(SizeValue.px(bubblePosY));
+        return true;
+    }
+
+    /**
+     * Remove all bubbles that are covered by newer bubbles.
+     *
+     * @return {@code true} in case any bubble was removed
+     */
+    private boolean removeCoveredBubbles(@Nonnull Element chatLayer, @Nonnull List<Element> removedElements) {
+        if (bubbles.size() <= 1) {
+            return false;
+        }
+        prepareCells(chatLayer.getWidth(), chatLayer.getHeight());
+
+        checkOrder.clear();
+        checkOrder.addAll(bubbles.values());
+        boolean removed = false;
+        for (int i = checkOrder.size() - 1; i >= 0; i--) {
+            Bubble bubble = checkOrder.get(i);
+            if (isCovered(bubble)) {
+                bubble.covered = true;
+                removedElements.add(bubble.element);
+                removed = true;
+            } else {
+                insert(bubble);
+            }
+        }
+        checkOrder.clear();
+
+        if (removed) {
+            Iterator<Bubble> itr = bubbles.values().iterator();
+            while (itr.hasNext()) {
+                if (itr.next().covered) {
+                    itr.remove();
+                }
+            }
+        }
+        clearCells();
+        return removed;
+    }
+
+    private boolean isCovered(@Nonnull Bubble bubble) {
+        int lastCellX = getCellX(bubble.x + bubble.width);
+        int lastCellY = getCellY(bubble.y + bubble.height);
+        for (int cellY = getCellY(bubble.y); cellY <= lastCellY; cellY++) {
+            for (int cellX = getCellX(bubble.x); cellX <= lastCellX; cellX++) {
+                List<Bubble> cell = cells[cellX + (cellY * cellsX)];
+                for (int i = 0; i < cell.size(); i++) {
+                    if (cell.get(i).intersects(bubble)) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    private void insert(@Nonnull Bubble bubble) {
+        int lastCellX = getCellX(bubble.x + bubble.width);
+        int lastCellY = getCellY(bubble.y + bubble.height);
+        for (int cellY = getCellY(bubble.y); cellY <= lastCellY; cellY++) {
+            for (int cellX = getCellX(bubble.x); cellX <= lastCellX; cellX++) {
+                int index = cellX + (cellY * cellsX);
+                if (cells[index].isEmpty()) {
+                    if (usedCellCount == usedCells.length) {
+                        usedCells = Arrays.copyOf(usedCells, usedCellCount * 2);
+                    }
+                    usedCells[usedCellCount++] = index;
+                }
+                cells[index].add(bubble);
+            }
+        }
+    }
+
+    private int getCellX(int x) {
+        return FastMath.clamp(x >> CELL_SHIFT, 0, cellsX - 1);
+    }
+
+    private int getCellY(int y) {
+        return FastMath.clamp(y >> CELL_SHIFT, 0, (cells.length / cellsX) - 1);
+    }
+
+    private void prepareCells(int width, int height) {
+        int newCellsX = (Math.max(1, width) >> CELL_SHIFT) + 1;
+        int newCellsY = (Math.max(1, height) >> CELL_SHIFT) + 1;
+        if ((newCellsX != cellsX) || (cells.length != (newCellsX * newCellsY))) {
+            cellsX = newCellsX;
+            cells = newCells(newCellsX * newCellsY);
+            usedCellCount = 0;
+        }
+    }
+
+    private void clearCells() {
+        for (int i = 0; i < usedCellCount; i++) {
+            cells[usedCells[i]].clear();
+        }
+        usedCellCount = 0;
+    }
+
+    @SuppressWarnings("unchecked")
+    @Nonnull
+    private static List<Bubble>[] newCells(int count) {
+        List<Bubble>[] newCells = new List[count];
+        for (int i = 0; i < count; i++) {
+            newCells[i] = new ArrayList<>(2);
+        }
+        return newCells;
+    }
+}
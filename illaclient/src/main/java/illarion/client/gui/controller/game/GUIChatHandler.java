@@ -18,16 +18,14 @@ package illarion.client.gui.controller.game;
 import de.lessvoid.nifty.Nifty;
 import de.lessvoid.nifty.NiftyEventSubscriber;
 import de.lessvoid.nifty.builder.EffectBuilder;
-import de.lessvoid.nifty.builder.ElementBuilder.Align;
 import de.lessvoid.nifty.controls.ButtonClickedEvent;
-import de.lessvoid.nifty.controls.Label;
 import de.lessvoid.nifty.controls.ScrollPanel;
 import de.lessvoid.nifty.controls.ScrollPanel.AutoScroll;
+import de.lessvoid.nifty.controls.ScrollPanelChangedEvent;
 import de.lessvoid.nifty.controls.TextField;
 import de.lessvoid.nifty.controls.label.builder.LabelBuilder;
 import de.lessvoid.nifty.elements.Element;
 import de.lessvoid.nifty.elements.events.NiftyMousePrimaryMultiClickedEvent;
-import de.lessvoid.nifty.elements.render.TextRenderer;
 import de.lessvoid.nifty.input.NiftyInputEvent;
 import de.lessvoid.nifty.input.NiftyStandardInputEvent;
 import de.lessvoid.nifty.screen.KeyInputHandler;
@@ -36,8 +34,6 @@ import de.lessvoid.nifty.screen.ScreenController;
 import de.lessvoid.nifty.tools.Color;
 import de.lessvoid.nifty.tools.SizeValue;
 import illarion.client.IllaClient;
-import illarion.client.graphics.Avatar;
-import illarion.client.graphics.Camera;
 import illarion.client.graphics.FontLoader;
 import illarion.client.gui.ChatGui;
 import illarion.client.net.client.IntroduceCmd;
@@ -48,8 +44,6 @@ import illarion.client.util.UpdateTask;
 import illarion.client.util.translation.Translator;
 import illarion.client.world.Char;
 import illarion.client.world.World;
-import illarion.common.types.Rectangle;
-import illarion.common.util.FastMath;
 import org.bushe.swing.event.annotation.AnnotationProcessor;
 import org.illarion.engine.GameContainer;
 import org.illarion.engine.graphic.Font;
@@ -57,11 +51,7 @@ import org.illarion.engine.graphic.Font;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import java.util.ArrayList;
-import java.util.Collection;
-import java.util.HashMap;
-import java.util.Map;
-import java.util.Map.Entry;
-import java.util.concurrent.atomic.AtomicLong;
+import java.util.List;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -245,9 +235,15 @@ public final class GUIChatHandler implements ChatGui, KeyInputHandler, ScreenCon
     private Nifty nifty;
 
     /**
-     * This flag shows of the Chat log is dirty and needs to be cleaned up.
+     * The amount of lines kept in the Chat log.
      */
-    private boolean dirty;
+    private static final int CHAT_LOG_CAPACITY = 400;
+
+    /**
+     * The lines of the Chat log. Only the visible lines are displayed with label elements.
+     */
+    @Nonnull
+    private final VirtualChatLog chatLogLines = new VirtualChatLog(CHAT_LOG_CAPACITY);
 
     /**
      * The pattern used to detect the introduce command.
@@ -321,6 +317,12 @@ public final class GUIChatHandler implements ChatGui, KeyInputHandler, ScreenCon
             scrollPanel.setAutoScroll(AutoScroll.BOTTOM);
             scrollPanel.setAutoScroll(AutoScroll.OFF);
         }
+        chatLogLines.markScrolled();
+    }
+
+    @NiftyEventSubscriber(id = "chatPanel")
+    public void onChatLogScrolled(@Nonnull String topic, @Nonnull ScrollPanelChangedEvent event) {
+        chatLogLines.markScrolled();
     }
 
     @Override
@@ -428,6 +430,7 @@ public final class GUIChatHandler implements ChatGui, KeyInputHandler, ScreenCon
 
         clearChatLog();
         clearChatBubbles();
+        translator.saveCache();
     }
 
     @Override
@@ -449,79 +452,37 @@ public final class GUIChatHandler implements ChatGui, KeyInputHandler, ScreenCon
     }
 
     private void clearChatLog() {
-        if (chatLog == null) {
-            return;
-        }
-        Element chatLogElement = chatLog.getElement();
-        if (chatLogElement != null) {
-            Element contentPane = chatLogElement.findElementById("chatLog");
-            if (contentPane != null) {
-                int entryCount = contentPane.getChildren().size();
-                for (int i = 0; i < entryCount; i++) {
-                    contentPane.getChildren().get(i).markForRemoval();
-                }
-            }
-        }
+        chatLogLines.clear();
     }
 
     private void clearChatBubbles() {
-        activeBubbles.values().forEach(Element::markForRemoval);
-        activeBubbles.clear();
+        bubbleLayout.clear().forEach(Element::markForRemoval);
     }
 
     /**
-     * Remove all entries that do not belong in the list anymore from it. Also update the layout and the scrolling
-     * position.
+     * Bind the rows of the Chat log to the visible lines in case the lines or the scrolling position changed.
      */
     private void cleanupChatLog() {
-        if (!dirty || (chatLog == null)) {
+        if ((chatLog == null) || (nifty == null) || (screen == null)) {
             return;
         }
-
-        dirty = false;
-
-        Element contentPane = chatLog.getElement().findElementById("chatLog");
-
-        int entryCount = contentPane.getChildren().size();
-        for (int i = 0; i < (entryCount - 400); i++) {
-            Element elementToRemove = contentPane.getChildren().get(i);
-            if (i == (entryCount - 401)) {
-                elementToRemove.markForRemoval(() -> chatLog.getElement().layoutElements());
-            } else {
-                elementToRemove.markForRemoval();
-            }
-        }
-
-        contentPane.setConstraintHeight(SizeValue.def());
-        chatLog.getElement().layoutElements();
-        chatLog.setAutoScroll(AutoScroll.BOTTOM);
-        chatLog.setAutoScroll(AutoScroll.OFF);
+        chatLogLines.update(nifty, screen, chatLog);
     }
 
     private void updateChatBubbleLocations() {
-        if (chatLayer == null) {
+        if ((chatLayer == null) || (nifty == null) || (screen == null)) {
             return;
         }
 
-        boolean layoutRequired = false;
-        for (Entry<Char, Element> charBubbleEntry : activeBubbles.entrySet()) {
-            if (updateChatBubbleLocation(charBubbleEntry.getKey(), charBubbleEntry.getValue())) {
-                layoutRequired = true;
+        if (bubbleLayout.update(chatLayer, coveredBubbles)) {
+            for (@Nonnull Element bubble : coveredBubbles) {
+                nifty.removeElement(screen, bubble);
             }
-        }
-        if (cleanOverlappingBubbles()) {
-            layoutRequired = true;
-        }
-        if (layoutRequired) {
+            coveredBubbles.clear();
             chatLayer.layoutElements();
         }
     }
 
-    @Nonnull
-    private final AtomicLong chatLineCounter = new AtomicLong(0L);
-
-    private SizeValue emptyLineHeight;
-
     /**
      * Add a entry to the Chat log.
      *
@@ -529,103 +490,45 @@ public final class GUIChatHandler implements ChatGui, KeyInputHandler, ScreenCon
      * @param color the color of the text to add
      */
     private void addChatLogText(@Nonnull String text, @Nonnull Color color) {
-        if (chatLog == null) {
-            return;
-        }
-        Element contentPane = chatLog.getElement().findElementById("chatLog");
-
-        long index = chatLineCounter.getAndIncrement();
-
-        LabelBuilder label = new LabelBuilder();
-        label.id("chatLog#chatLine-" + index);
-        label.font("chatFont");
-        label.text(text);
-        label.color(color);
-        label.textHAlign(Align.Left);
-        label.wrap(true);
-        label.width(contentPane.getConstraintWidth().toString());
-        label.visibleToMouse(true);
-        label.build(nifty, screen, contentPane);
-
-        LabelBuilder translationLabel = new LabelBuilder();
-        translationLabel.id("chatLog#transChatLine-" + index);
-        translationLabel.font("chatFont");
-        translationLabel.text("");
-        translationLabel.color(color);
-        translationLabel.textHAlign(Align.Left);
-        translationLabel.wrap(true);
-        translationLabel.visible(false);
-        if (emptyLineHeight != null) {
-            translationLabel.marginTop(emptyLineHeight.toString());
-        }
-        translationLabel.width(contentPane.getConstraintWidth().toString());
-        Element translationElement = translationLabel.build(nifty, screen, contentPane);
-
-        if (emptyLineHeight == null) {
-            TextRenderer renderer = translationElement.getRenderer(TextRenderer.class);
-            if (renderer != null) {
-                int height = renderer.getTextHeight();
-                emptyLineHeight = SizeValue.px(-height);
-                translationElement.setMarginTop(emptyLineHeight);
-            }
-        }
-
-        dirty = true;
+        chatLogLines.addLine(text, color);
     }
 
     @Nonnull
     private final Translator translator = new Translator();
 
-    @NiftyEventSubscriber(pattern = "chatLog#chatLine-[0-9]+")
+    @NiftyEventSubscriber(pattern = "chatLog#chatRow-[0-9]+")
     public void onChatLineDoubleClick(@Nonnull String id, @Nonnull NiftyMousePrimaryMultiClickedEvent event) {
-        if ((screen == null) || !translator.isServiceEnabled() || (chatLog == null) || (event.getClickCount() != 2)) {
-            return;
-        }
-
-        Element panel = chatLog.getElement().findElementById("chatLog");
-        if (panel == null) {
+        if ((screen == null) || !translator.isServiceEnabled() || (event.getClickCount() != 2)) {
             return;
         }
 
-        String strId = id.substring("chatLog#chatLine-".length());
-        String translateId = "chatLog#transChatLine-" + strId;
-
-        Element sourceElement = panel.findElementById(id);
-        Label sourceLabel = (sourceElement != null) ? sourceElement.getNiftyControl(Label.class) : null;
-
-        Element translationElement = panel.findElementById(translateId);
-        Label translationLabel = (translationElement != null) ? translationElement.getNiftyControl(Label.class) :
-                null;
-
-        if ((sourceLabel == null) || (sourceLabel.getText() == null) || (translationLabel == null)) {
+        long line = chatLogLines.getLineOfRow(id);
+        String text = chatLogLines.getText(line);
+        if ((text == null) || chatLogLines.hasTranslation(line)) {
             return;
         }
 
-        if ((translationLabel.getText() == null) || translationLabel.getText().isEmpty()) {
-            translationElement.setMarginTop(SizeValue.def());
-            translationElement.setConstraintHeight(SizeValue.def());
-            translationLabel.setText(Lang.getMsg("chat.translating"));
-            translationElement.setVisible(true);
-            sourceElement.setVisibleToMouseEvents(false);
-            dirty = true;
-            translator.translate(sourceLabel.getText(),
-                    translation -> World.getUpdateTaskManager().addTask((container, delta) -> {
-                        if (translation == null) {
-                            translationLabel.setText("");
-                            translationElement.setVisible(false);
-                            if (emptyLineHeight != null) {
-                                translationElement.setMarginTop(emptyLineHeight);
-                            }
-                        } else {
-                            translationElement.setMarginTop(SizeValue.def());
-                            translationLabel.setText(Lang.getMsg("chat.translation.header") + ' ' + translation);
-                }
-                        dirty = true;
-                    }));
-        }
+        chatLogLines.setTranslation(line, Lang.getMsg("chat.translating"));
+        translator.translate(text, translation -> World.getUpdateTaskManager().addTask((container, delta) -> {
+            if (translation == null) {
+                chatLogLines.setTranslation(line, null);
+            } else {
+                chatLogLines.setTranslation(line, Lang.getMsg("chat.translation.header") + ' ' + translation);
+            }
+        }));
     }
 
-    private final Map<Char, Element> activeBubbles = new HashMap<>();
+    /**
+     * The layout of the chat bubbles on the chat layer.
+     */
+    @Nonnull
+    private final ChatBubbleLayout bubbleLayout = new ChatBubbleLayout();
+
+    /**
+     * The bubbles that were removed because newer bubbles cover them. Reused for every update.
+     */
+    @Nonnull
+    private final List<Element> coveredBubbles = new ArrayList<>();
 
     /**
      * The the Chat bubble of a character talking on the map.
@@ -639,11 +542,6 @@ public final class GUIChatHandler implements ChatGui, KeyInputHandler, ScreenCon
             return;
         }
 
-        @Nullable Element oldBubble = activeBubbles.remove(character);
-        if (oldBubble != null) {
-            nifty.removeElement(screen, oldBubble);
-        }
-
         LabelBuilder labelBuilder = new LabelBuilder();
         labelBuilder.style("nifty-label");
 
@@ -670,85 +568,15 @@ public final class GUIChatHandler implements ChatGui, KeyInputHandler, ScreenCon
 
         Element bubble = labelBuilder.build(nifty, screen, chatLayer);
 
-        if (updateChatBubbleLocation(character, bubble)) {
-            chatLayer.layoutElements();
+        @Nullable Element oldBubble = bubbleLayout.add(character, bubble);
+        if (oldBubble != null) {
+            nifty.removeElement(screen, oldBubble);
         }
+        updateChatBubbleLocations();
 
         bubble.hide(() -> {
             nifty.removeElement(screen, bubble);
-            activeBubbles.remove(character);
+            bubbleLayout.remove(character, bubble);
         });
-        activeBubbles.put(character, bubble);
-    }
-
-    private boolean updateChatBubbleLocation(@Nonnull Char character, @Nonnull Element bubble) {
-        if (chatLayer == null) {
-            return false;
-        }
-        Avatar charAvatar = character.getAvatar();
-        if (charAvatar == null) {
-            return false;
-        }
-
-        Rectangle charDisplayRect = charAvatar.getDisplayRect();
-        if (charDisplayRect.isEmpty()) {
-            return false;
-        }
-
-        int charDisplayCenterX = charDisplayRect.getCenterX() - Camera.getInstance().getViewportOffsetX();
-        int charDisplayY = charDisplayRect.getBottom() - Camera.getInstance().getViewportOffsetY();
-
-        int bubblePosX = FastMath
-                .clamp(charDisplayCenterX - (bubble.getWidth() / 2), 0, chatLayer.getWidth() - bubble.getWidth());
-        int bubblePosY = FastMath
-                .clamp(charDisplayY - bubble.getHeight() - 5, 0, chatLayer.getHeight() - bubble.getHeight());
-
-        SizeValue newConstraintX = SizeValue.px(bubblePosX);
-        SizeValue newConstraintY = SizeValue.px(bubblePosY);
-        if (!bubble.getConstraintX().equals(newConstraintX) || !bubble.getConstraintY().equals(newConstraintY)) {
-            bubble.setConstraintX(newConstraintX);
-            bubble.setConstraintY(newConstraintY);
-            return true;
-        }
-        return false;
-    }
-
-    private boolean cleanOverlappingBubbles() {
-        if ((chatLayer == null) || (nifty == null) || (screen == null)) {
-            return false;
-        }
-
-        int elementCount = chatLayer.getChildrenCount();
-        if (elementCount <= 1) {
-            return false;
-        }
-
-        Collection<Element> elementsToRemove = new ArrayList<>();
-        Collection<Rectangle> coveredAreas = new ArrayList<>();
-        for (int i = elementCount - 1; i >= 0; i--) {
-            Element child = chatLayer.getChildren().get(i);
-            Rectangle elementArea = new Rectangle(child.getConstraintX().getValueAsInt(1.f),
-                                                  child.getConstraintY().getValueAsInt(1.f), child.getWidth(),
-                                                  child.getHeight());
-
-            boolean childWillBeRemoved = false;
-            for (@Nonnull Rectangle coveredArea : coveredAreas) {
-                if (coveredArea.intersects(elementArea)) {
-                    elementsToRemove.add(child);
-                    childWillBeRemoved = true;
-                    break;
-                }
-            }
-
-            if (!childWillBeRemoved) {
-                coveredAreas.add(elementArea);
-            }
-        }
-
-        for (@Nonnull Element elementToRemove : elementsToRemove) {
-            nifty.removeElement(screen, elementToRemove);
-        }
-
-        return !elementsToRemove.isEmpty();
     }
 }
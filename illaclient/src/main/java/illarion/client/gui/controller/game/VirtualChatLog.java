@@ -0,0 +1,426 @@
+/*
+ * This file is part of the Illarion project.
+ *
+ * Copyright © 2016 - Illarion e.V.
+ *
+ * Illarion is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Illarion is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ */
+package illarion.client.gui.controller.game;
+
+import de.lessvoid.nifty.Nifty;
+import de.lessvoid.nifty.builder.ElementBuilder.Align;
+import de.lessvoid.nifty.controls.Label;
+import de.lessvoid.nifty.controls.ScrollPanel;
+import de.lessvoid.nifty.controls.label.builder.LabelBuilder;
+import de.lessvoid.nifty.elements.Element;
+import de.lessvoid.nifty.screen.Screen;
+import de.lessvoid.nifty.tools.Color;
+import de.lessvoid.nifty.tools.SizeValue;
+import illarion.client.graphics.FontLoader;
+import org.illarion.engine.graphic.Font;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.NotThreadSafe;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * This is the virtualized content of the chat log. The lines of the log are stored in a ring buffer and label
+ * elements are only created for the rows that are visible in the scroll panel. While scrolling the rows are bound to
+ * other lines instead of creating new elements.
+ *
+ * @author Martin Karing &lt;nitram@illarion.org&gt;
+ */
+@NotThreadSafe
+final class VirtualChatLog {
+    /**
+     * The prefix of the IDs of the row elements.
+     */
+    @Nonnull
+    static final String ROW_ID_PREFIX = "chatLog#chatRow-";
+
+    /**
+     * The text of the lines.
+     */
+    @Nonnull
+    private final String[] texts;
+
+    /**
+     * The color of the lines.
+     */
+    @Nonnull
+    private final Color[] colors;
+
+    /**
+     * The translations of the lines. The slot of a line stays {@code null} until a translation was requested.
+     */
+    @Nonnull
+    private final String[] translations;
+
+    /**
+     * The height of the lines in pixels or {@code 0} in case the height was not measured yet.
+     */
+    @Nonnull
+    private final int[] heights;
+
+    /**
+     * The offsets of the lines from the top of the log, stored at the position in the ring buffer.
+     */
+    @Nonnull
+    private final int[] offsets;
+
+    /**
+     * The absolute index of the oldest line stored in the buffer.
+     */
+    private long firstLine;
+
+    /**
+     * The amount of lines stored in the buffer.
+     */
+    private int lineCount;
+
+    /**
+     * The label elements of the rows that were created already.
+     */
+    @Nonnull
+    private final List<Element> rows = new ArrayList<>();
+
+    /**
+     * The absolute index of the line each row displays, {@code -1} for unused rows.
+     */
+    @Nonnull
+    private long[] rowLines = new long[0];
+
+    /**
+     * The combined height of all lines.
+     */
+    private int totalHeight;
+
+    /**
+     * The width the heights of the lines were measured for.
+     */
+    private int measuredWidth;
+
+    /**
+     * Set in case the lines or the scrolling position changed and the rows need to be updated.
+     */
+    private boolean dirty;
+
+    /**
+     * Set in case the log is supposed to scroll to the newest line with the next update.
+     */
+    private boolean scrollToBottom;
+
+    /**
+     * Set in case the text of a line changed and the rows need to be rebound.
+     */
+    private boolean contentChanged;
+
+    /**
+     * Create the log.
+     *
+     * @param capacity the amount of lines that are kept in the log
+     */
+    VirtualChatLog(int capacity) {
+        texts = new String[capacity];
+        colors = new Color[capacity];
+        translations = new String[capacity];
+        heights = new int[capacity];
+        offsets = new int[capacity];
+    }
+
+    /**
+     * Add a line to the log. In case the log is full, the oldest line is dropped.
+     *
+     * @param text the text of the line
+     * @param color the color of the line
+     */
+    void addLine(@Nonnull String text, @Nonnull Color color) {
+        if (lineCount == texts.length) {
+            firstLine++;
+            lineCount--;
+        }
+        int slot = getSlot(firstLine + lineCount);
+        texts[slot] = text;
+        colors[slot] = color;
+        translations[slot] = null;
+        heights[slot] = 0;
+        lineCount++;
+        dirty = true;
+        scrollToBottom = true;
+        contentChanged = true;
+    }
+
+    /**
+     * Get the text of a line.
+     *
+     * @param line the absolute index of the line
+     * @return the text or {@code null} in case the line is not stored anymore
+     */
+    @Nullable
+    String getText(long line) {
+        return isStored(line) ? texts[getSlot(line)] : null;
+    }
+
+    /**
+     * Check if a translation was requested already for a line.
+     *
+     * @param line the absolute index of the line
+     * @return {@code true} in case the line has a translation slot
+     */
+    boolean hasTranslation(long line) {
+        return isStored(line) && (translations[getSlot(line)] != null);
+    }
+
+    /**
+     * Set the translation of a line. The translation is displayed below the text of the line.
+     *
+     * @param line the absolute index of the line
+     * @param translation the translation or {@code null} to remove the translation
+     */
+    void setTranslation(long line, @Nullable String translation) {
+        if (!isStored(line)) {
+            return;
+        }
+        int slot = getSlot(line);
+        translations[slot] = translation;
+        heights[slot] = 0;
+        dirty = true;
+        contentChanged = true;
+    }
+
+    /**
+     * Get the line that is displayed by a row.
+     *
+     * @param rowId the ID of the row element
+     * @return the absolute index of the line or {@code -1} in case the row displays no line
+     */
+    long getLineOfRow(@Nonnull String rowId) {
+        try {
+            int row = Integer.parseInt(rowId.substring(ROW_ID_PREFIX.length()));
+            return (row < rowLines.length) ? rowLines[row] : -1;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Notify the log that the scrolling position or the size of the scroll panel changed.
+     */
+    void markScrolled() {
+        dirty = true;
+    }
+
+    /**
+     * Remove all lines and all row elements.
+     */
+    void clear() {
+        rows.forEach(Element::markForRemoval);
+        rows.clear();
+        rowLines = new long[0];
+        Arrays.fill(texts, null);
+        Arrays.fill(colors, null);
+        Arrays.fill(translations, null);
+        firstLine += lineCount;
+        lineCount = 0;
+        totalHeight = 0;
+        dirty = true;
+    }
+
+    /**
+     * Bind the rows to the lines that are visible in the scroll panel. Nothing is done in case neither the lines nor
+     * the scrolling position changed.
+     *
+     * @param nifty the nifty instance used to create row elements
+     * @param screen the screen the log is displayed on
+     * @param scrollPanel the scroll panel that displays the log
+     */
+    void update(@Nonnull Nifty nifty, @Nonnull Screen screen, @Nonnull ScrollPanel scrollPanel) {
+        if (!dirty) {
+            return;
+        }
+        dirty = false;
+
+        Element scrollElement = scrollPanel.getElement();
+        Element contentPane = (scrollElement == null) ? null : scrollElement.findElementById("chatLog");
+        if (contentPane == null) {
+            return;
+        }
+
+        int oldTotalHeight = totalHeight;
+        measureLines(contentPane.getConstraintWidth().getValueAsInt(contentPane.getWidth()));
+        if (oldTotalHeight != totalHeight) {
+            contentPane.setConstraintHeight(SizeValue.px(totalHeight));
+            scrollElement.layoutElements();
+        }
+
+        int viewportHeight = scrollElement.getHeight();
+        if (scrollToBottom) {
+            scrollToBottom = false;
+            scrollPanel.setVerticalPos(Math.max(0, totalHeight - viewportHeight));
+        }
+        int viewTop = Math.max(0, (int) scrollPanel.getVerticalPos());
+        int first = findLineAt(viewTop);
+        int last = findLineAt(viewTop + viewportHeight);
+
+        int visibleRows = (lineCount == 0) ? 0 : ((last - first) + 1);
+        ensureRows(nifty, screen, contentPane, visibleRows);
+
+        boolean layoutRequired = (oldTotalHeight != totalHeight) || contentChanged;
+        for (int row = 0; row < rows.size(); row++) {
+            if (row < visibleRows) {
+                layoutRequired |= bindRow(row, firstLine + first + row);
+            } else if (rowLines[row] != -1) {
+                rowLines[row] = -1;
+                rows.get(row).setVisible(false);
+            }
+        }
+        contentChanged = false;
+
+        if (layoutRequired) {
+            contentPane.layoutElements();
+        }
+    }
+
+    /**
+     * Display a line in a row.
+     *
+     * @param row the index of the row
+     * @param line the absolute index of the line
+     * @return {@code true} in case the row changed and the layout needs to be updated
+     */
+    private boolean bindRow(int row, long line) {
+        Element rowElement = rows.get(row);
+        if ((rowLines[row] == line) && !contentChanged) {
+            return false;
+        }
+        rowLines[row] = line;
+
+        int slot = getSlot(line);
+        Label label = rowElement.getNiftyControl(Label.class);
+        if (label != null) {
+            label.setText(getDisplayedText(slot));
+            label.setColor(colors[slot]);
+        }
+        rowElement.setConstraintY(SizeValue.px(offsets[slot]));
+        rowElement.setConstraintHeight(SizeValue.px(heights[slot]));
+        rowElement.setVisible(true);
+        return true;
+    }
+
+    /**
+     * Make sure that enough row elements exist to display the visible lines.
+     */
+    private void ensureRows(@Nonnull Nifty nifty, @Nonnull Screen screen, @Nonnull Element contentPane, int count) {
+        if (rows.size() >= count) {
+            return;
+        }
+        int oldCount = rows.size();
+        while (rows.size() < count) {
+            LabelBuilder label = new LabelBuilder();
+            label.id(ROW_ID_PREFIX + rows.size());
+            label.font(FontLoader.CHAT_FONT);
+            label.text("");
+            label.textHAlign(Align.Left);
+            label.wrap(true);
+            label.width(contentPane.getConstraintWidth().toString());
+            label.visibleToMouse(true);
+            label.visible(false);
+            rows.add(label.build(nifty, screen, contentPane));
+        }
+        rowLines = Arrays.copyOf(rowLines, rows.size());
+        Arrays.fill(rowLines, oldCount, rowLines.length, -1);
+    }
+
+    /**
+     * Measure the lines that were not measured yet and update the offsets of all lines.
+     *
+     * @param width the width available for the text
+     */
+    private void measureLines(int width) {
+        boolean remeasure = width != measuredWidth;
+        measuredWidth = width;
+        @Nullable Font font = null;
+        int offset = 0;
+        for (int i = 0; i < lineCount; i++) {
+            int slot = getSlot(firstLine + i);
+            if (remeasure || (heights[slot] == 0)) {
+                if (font == null) {
+                    font = FontLoader.getInstance().getFont(FontLoader.CHAT_FONT);
+                }
+                heights[slot] = countWrappedLines(font, getDisplayedText(slot), width) * font.getLineHeight();
+            }
+            offsets[slot] = offset;
+            offset += heights[slot];
+        }
+        totalHeight = offset;
+    }
+
+    /**
+     * Find the line that covers a vertical position.
+     *
+     * @param y the position from the top of the log
+     * @return the index of the line relative to the oldest line
+     */
+    private int findLineAt(int y) {
+        int low = 0;
+        int high = lineCount - 1;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (offsets[getSlot(firstLine + mid)] <= y) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return Math.max(0, low);
+    }
+
+    /**
+     * Count the lines a text is wrapped to. This follows the word wrapping of the label.
+     */
+    private static int countWrappedLines(@Nonnull Font font, @Nonnull String text, int width) {
+        int spaceWidth = font.getWidth(" ");
+        int lines = 0;
+        for (String paragraph : text.split("\n", -1)) {
+            lines++;
+            int lineWidth = -1;
+            for (String word : paragraph.split(" ")) {
+                int wordWidth = font.getWidth(word);
+                if (lineWidth < 0) {
+                    lineWidth = wordWidth;
+                } else if ((lineWidth + spaceWidth + wordWidth) <= width) {
+                    lineWidth += spaceWidth + wordWidth;
+                } else {
+                    lines++;
+                    lineWidth = wordWidth;
+                }
+            }
+        }
+        return lines;
+    }
+
+    @Nonnull
+    private String getDisplayedText(int slot) {
+        String translation = translations[slot];
+        return (translation == null) ? texts[slot] : (texts[slot] + '\n' + translation);
+    }
+
+    private boolean isStored(long line) {
+        return (line >= firstLine) && (line < (firstLine + lineCount));
+    }
+
+    private int getSlot(long line) {
+        return (int) (line % texts.length);
+    }
+}
@@ -1,7 +1,7 @@
 /*
  * This file is part of the Illarion project.
  *
- * Copyright © 2015 - Illarion e.V.
+ * Copyright © 2016 - Illarion e.V.
  *
  * Illarion is free software: you can redistribute it and/or modify
  * it under the terms of the GNU Affero General Public License as published by
@@ -15,23 +15,48 @@
  */
 package illarion.client.loading;
 
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import illarion.client.resources.*;
 import illarion.client.resources.loaders.*;
 import illarion.common.util.ProgressMonitor;
 import org.illarion.engine.Engine;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import javax.annotation.concurrent.NotThreadSafe;
+import javax.annotation.concurrent.ThreadSafe;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.*;
 
 /**
  * This class is used to allow the loading sequence of the client to load the resource tables.
+ * <p>
+ * The tables are parsed concurrently on a worker pool. Each table only starts once all the tables it depends on
+ * are completely stored. The parsed resources are handed to their factories on the thread calling {@link #load()},
+ * because the factories are not thread safe and the resources may touch the graphic context. Textures that are not
+ * loaded yet are created by the texture manager on the rendering thread.
  *
  * @author Martin Karing &lt;nitram@illarion.org&gt;
  */
 @NotThreadSafe
 final class ResourceTableLoading implements LoadingTask {
+    /**
+     * The logger that is used for the output of this class.
+     */
+    @Nonnull
+    private static final Logger log = LoggerFactory.getLogger(ResourceTableLoading.class);
+
+    /**
+     * The time in nanoseconds a single call of {@link #load()} may spend storing resources in the factories.
+     */
+    private static final long STORE_TIME_BUDGET = TimeUnit.MILLISECONDS.toNanos(20);
+
     /**
      * The progress monitor that tracks the loading activity of this task.
      */
@@ -39,10 +64,22 @@ final class ResourceTableLoading implements LoadingTask {
     private final ProgressMonitor progressMonitor;
 
     /**
-     * The list of tasks that need to be finished during the resource table loading.
+     * The list of tables that need to be loaded during the resource table loading.
      */
     @Nonnull
-    private final List<AbstractResourceLoader<? extends Resource>> taskList;
+    private final List<TableNode<? extends Resource>> nodes;
+
+    /**
+     * The worker pool that parses the tables. It is created with the first call of {@link #load()} and shut down
+     * once all tables are stored.
+     */
+    @Nullable
+    private ExecutorService executor;
+
+    /**
+     * The time stamp in nanoseconds when the loading started.
+     */
+    private long loadingStart;
 
     /**
      * Create a new resource table loading task and enlist all the sub-tasks.
@@ -50,49 +87,92 @@ final class ResourceTableLoading implements LoadingTask {
      * @param gameEngine the engine of the game
      */
     ResourceTableLoading(@Nonnull Engine gameEngine) {
-        taskList = new ArrayList<>();
+        nodes = new ArrayList<>();
         progressMonitor = new ProgressMonitor();
 
-        addTask(new TileLoader(gameEngine.getAssets()), TileFactory.getInstance());
-        addTask(new OverlayLoader(gameEngine.getAssets()), OverlayFactory.getInstance());
-        addTask(new ItemLoader(gameEngine.getAssets()), ItemFactory.getInstance());
-        addTask(new CharacterLoader(gameEngine.getAssets()), CharacterFactory.getInstance());
-        addTask(new ClothLoader(gameEngine.getAssets()), new ClothFactoryRelay());
-        addTask(new EffectLoader(gameEngine.getAssets()), EffectFactory.getInstance());
-        addTask(new MiscImageLoader(gameEngine.getAssets()), MiscImageFactory.getInstance());
-        addTask(new BookLoader(), BookFactory.getInstance());
+        addTask("tiles", new TileLoader(gameEngine.getAssets()), TileFactory.getInstance());
+        addTask("overlays", new OverlayLoader(gameEngine.getAssets()), OverlayFactory.getInstance());
+        addTask("items", new ItemLoader(gameEngine.getAssets()), ItemFactory.getInstance());
+        TableNode<?> characters = addTask("characters", new CharacterLoader(gameEngine.getAssets()),
+                CharacterFactory.getInstance());
+        addTask("clothes", new ClothLoader(gameEngine.getAssets()), new ClothFactoryRelay(), characters);
+        addTask("effects", new EffectLoader(gameEngine.getAssets()), EffectFactory.getInstance());
+        addTask("misc images", new MiscImageLoader(gameEngine.getAssets()), MiscImageFactory.getInstance());
+        addTask("books", new BookLoader(), BookFactory.getInstance());
     }
 
     /**
      * Add a task to the list of tasks and to the progress monitor.
      *
+     * @param name the name of the table used in the log output
      * @param loader the loader of this task
      * @param factory the factory that is supposed to be filled
+     * @param dependencies the tables that need to be stored completely before this table is load
      * @param <T> the resource type that is load in this case
+     * @return the node of the table that was added
      */
-    private <T extends Resource> void addTask(
-            @Nonnull AbstractResourceLoader<T> loader, @Nonnull ResourceFactory<T> factory) {
-        loader.setTarget(factory);
+    @Nonnull
+    private <T extends Resource> TableNode<T> addTask(
+            @Nonnull String name,
+            @Nonnull AbstractResourceLoader<T> loader,
+            @Nonnull ResourceFactory<T> factory,
+            @Nonnull TableNode<?>... dependencies) {
+        TableNode<T> node = new TableNode<>(name, loader, factory, dependencies);
+        loader.setTarget(node.deferredFactory);
         progressMonitor.addChild(loader.getProgressMonitor());
-        taskList.add(loader);
+        nodes.add(node);
+        return node;
     }
 
     @Override
     public void load() {
-        if (!taskList.isEmpty()) {
-            AbstractResourceLoader<? extends Resource> loader = taskList.remove(0);
-            try {
-                loader.call();
-            } catch (Exception e) {
-                e.printStackTrace(System.err);
+        if (isLoadingDone()) {
+            return;
+        }
+        if (executor == null) {
+            loadingStart = System.nanoTime();
+            int threads = Math.max(1, Math.min(nodes.size(), Runtime.getRuntime().availableProcessors()));
+            executor = Executors.newFixedThreadPool(threads, new ThreadFactoryBuilder()
+                    .setNameFormat("Resource Table Loading %d").setDaemon(true).build());
+        }
+
+        for (TableNode<? extends Resource> node : nodes) {
+            if (!node.isSubmitted() && node.isReady()) {
+                node.submit(executor);
+            }
+        }
+
+        long deadline = System.nanoTime() + STORE_TIME_BUDGET;
+        for (TableNode<? extends Resource> node : nodes) {
+            if (node.isSubmitted() && !node.isStored()) {
+                node.store(deadline);
             }
         }
+
+        if (isLoadingDone()) {
+            executor.shutdown();
+            reportTimings();
+        }
+    }
+
+    /**
+     * Write the time spend on each table to the log.
+     */
+    private void reportTimings() {
+        for (TableNode<? extends Resource> node : nodes) {
+            log.info("Resource table {} load in {} ms (parsing: {} ms, storing: {} ms)", node.name,
+                    TimeUnit.NANOSECONDS.toMillis(node.storedTime - node.submitTime),
+                    TimeUnit.NANOSECONDS.toMillis(node.deferredFactory.parseTime),
+                    TimeUnit.NANOSECONDS.toMillis(node.storeTime));
+        }
+        log.info("All resource tables load in {} ms",
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - loadingStart));
     }
 
     @Override
     public boolean isLoadingDone() {
-        for (AbstractResourceLoader<? extends Resource> loader : taskList) {
-            if (!loader.isLoadingDone()) {
+        for (TableNode<? extends Resource> node : nodes) {
+            if (!node.isStored()) {
                 return false;
             }
         }
@@ -105,4 +185,191 @@ final class ResourceTableLoading implements LoadingTask {
     public ProgressMonitor getProgressMonitor() {
         return progressMonitor;
     }
+
+    /**
+     * A single table in the dependency graph of the resource table loading.
+     *
+     * @param <T> the resource type that is load by this table
+     */
+    @NotThreadSafe
+    private static final class TableNode<T extends Resource> {
+        /**
+         * The name of the table.
+         */
+        @Nonnull
+        private final String name;
+
+        /**
+         * The loader that parses the table.
+         */
+        @Nonnull
+        private final AbstractResourceLoader<T> loader;
+
+        /**
+         * The factory that queues the operations of the loader until they are executed on the loading thread.
+         */
+        @Nonnull
+        private final DeferredFactory<T> deferredFactory;
+
+        /**
+         * The tables that need to be stored before this table can be load.
+         */
+        @Nonnull
+        private final Collection<TableNode<?>> dependencies;
+
+        /**
+         * The result of the parsing task or {@code null} in case it was not submitted yet.
+         */
+        @Nullable
+        private Future<?> future;
+
+        /**
+         * This flag is set {@code true} once the loader is done and all resources are stored.
+         */
+        private boolean stored;
+
+        /**
+         * The time stamp in nanoseconds when the table was submitted to the worker pool.
+         */
+        private long submitTime;
+
+        /**
+         * The time stamp in nanoseconds when the last resource of the table was stored.
+         */
+        private long storedTime;
+
+        /**
+         * The time in nanoseconds spend on storing the resources.
+         */
+        private long storeTime;
+
+        TableNode(
+                @Nonnull String name,
+                @Nonnull AbstractResourceLoader<T> loader,
+                @Nonnull ResourceFactory<T> factory,
+                @Nonnull TableNode<?>... dependencies) {
+            this.name = name;
+            this.loader = loader;
+            deferredFactory = new DeferredFactory<>(factory);
+            this.dependencies = new ArrayList<>();
+            Collections.addAll(this.dependencies, dependencies);
+        }
+
+        boolean isSubmitted() {
+            return future != null;
+        }
+
+        boolean isStored() {
+            return stored;
+        }
+
+        /**
+         * Check if all the tables this table depends on are stored.
+         *
+         * @return {@code true} in case the table can be load now
+         */
+        boolean isReady() {
+            for (TableNode<?> dependency : dependencies) {
+                if (!dependency.isStored()) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        void submit(@Nonnull ExecutorService executor) {
+            submitTime = System.nanoTime();
+            future = executor.submit(() -> {
+                long start = System.nanoTime();
+                try {
+                    return loader.call();
+                } finally {
+                    deferredFactory.parseTime = System.nanoTime() - start;
+                }
+            });
+        }
+
+        /**
+         * Execute the queued operations of the factory until the deadline is reached.
+         *
+         * @param deadline the time stamp in nanoseconds when the storing has to stop
+         */
+        void store(long deadline) {
+            assert future != null;
+            boolean parsingDone = future.isDone();
+            long start = System.nanoTime();
+            Runnable operation = deferredFactory.operations.poll();
+            while (operation != null) {
+                try {
+                    operation.run();
+                } catch (@Nonnull RuntimeException e) {
+                    log.error("Failed to store a resource of the table {}", name, e);
+                }
+                if (System.nanoTime() >= deadline) {
+                    break;
+                }
+                operation = deferredFactory.operations.poll();
+            }
+            long end = System.nanoTime();
+            storeTime += end - start;
+
+            if (parsingDone && deferredFactory.operations.isEmpty()) {
+                try {
+                    future.get();
+                } catch (@Nonnull ExecutionException e) {
+                    log.error("Failed to load the resource table {}", name, e.getCause());
+                } catch (@Nonnull InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                storedTime = end;
+                stored = true;
+            }
+        }
+    }
+
+    /**
+     * This factory is handed to the loaders instead of the real factory. It queues all operations so they can be
+     * executed on the loading thread while the loader keeps parsing on the worker thread.
+     *
+     * @param <T> the resource type that is stored in the factory
+     */
+    @ThreadSafe
+    private static final class DeferredFactory<T extends Resource> implements ResourceFactory<T> {
+        /**
+         * The factory that receives the resources.
+         */
+        @Nonnull
+        private final ResourceFactory<T> target;
+
+        /**
+         * The operations that are waiting to be executed on the factory.
+         */
+        @Nonnull
+        private final Queue<Runnable> operations;
+
+        /**
+         * The time in nanoseconds the loader spend parsing the table.
+         */
+        private volatile long parseTime;
+
+        DeferredFactory(@Nonnull ResourceFactory<T> target) {
+            this.target = target;
+            operations = new ConcurrentLinkedQueue<>();
+        }
+
+        @Override
+        public void init() {
+            operations.offer(target::init);
+        }
+
+        @Override
+        public void loadingFinished() {
+            operations.offer(target::loadingFinished);
+        }
+
+        @Override
+        public void storeResource(@Nonnull T resource) {
+            operations.offer(() -> target.storeResource(resource));
+        }
+    }
 }
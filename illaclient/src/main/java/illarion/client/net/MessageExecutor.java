@@ -1,7 +1,7 @@
 /*
  * This file is part of the Illarion project.
  *
- * Copyright © 2015 - Illarion e.V.
+ * Copyright © 2016 - Illarion e.V.
  *
  * Illarion is free software: you can redistribute it and/or modify
  * it under the terms of the GNU Affero General Public License as published by
@@ -15,6 +15,7 @@
  */
 package illarion.client.net;
 
+import illarion.client.net.server.ReplyPriority;
 import illarion.client.net.server.ServerReply;
 import illarion.client.net.server.ServerReplyResult;
 import org.jetbrains.annotations.Contract;
@@ -24,10 +25,21 @@ import org.slf4j.Marker;
 import org.slf4j.MarkerFactory;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.*;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
 
 /**
  * This class will take care that the messages received from the server are executes properly.
+ * <p>
+ * The replies are collected in bursts from the receiver. Within each burst the replies are executed ordered by their
+ * {@link ReplyPriority} and within each priority class in the order they were received. Replies that are made
+ * obsolete by a later reply with the same {@link ServerReply#getCoalescingKey() coalescing key} are dropped. Replies
+ * that are {@link ServerReply#isOrderBarrier() order barriers} are held back until all replies received before them
+ * are executed. Replies that request to be rescheduled are retried with an increasing delay.
+ * </p>
  *
  * @author Martin Karing &lt;nitram@illarion.org&gt;
  */
@@ -37,25 +49,402 @@ final class MessageExecutor {
     @Nonnull
     private static final Logger log = LoggerFactory.getLogger(MessageExecutor.class);
 
+    /**
+     * The maximal amount of replies that are executed before the executor checks for newly received replies.
+     */
+    private static final int BATCH_SIZE = 64;
+
+    /**
+     * The time in milliseconds the executor waits for new replies before checking again if its supposed to shut down.
+     */
+    private static final long IDLE_WAIT_TIME = 100;
+
+    /**
+     * The first delay in milliseconds applied to replies that requested to be rescheduled.
+     */
+    private static final long MIN_RESCHEDULE_DELAY = 5;
+
+    /**
+     * The longest delay in milliseconds applied to replies that requested to be rescheduled.
+     */
+    private static final long MAX_RESCHEDULE_DELAY = 200;
+
+    /**
+     * The interval in milliseconds the statistics are written to the log.
+     */
+    private static final long STATISTICS_INTERVAL = 10000;
+
+    /**
+     * One reply waiting for its execution.
+     */
+    private static final class ScheduledReply {
+        @Nonnull
+        private final ServerReply reply;
+        private final long scheduledTime;
+        @Nullable
+        private Object coalescingKey;
+        private boolean superseded;
+
+        ScheduledReply(@Nonnull ServerReply reply) {
+            this.reply = reply;
+            scheduledTime = System.nanoTime();
+        }
+    }
+
+    /**
+     * The execution times recorded for one type of replies.
+     */
+    private static final class LatencyRecord {
+        private long count;
+        private long totalTime;
+        private long maxTime;
+
+        void record(long time) {
+            count++;
+            totalTime += time;
+            maxTime = Math.max(maxTime, time);
+        }
+
+        @Nonnull
+        @Override
+        public String toString() {
+            return count + " executed, avg " + TimeUnit.NANOSECONDS.toMicros(totalTime / Math.max(1, count)) +
+                    "µs, max " + TimeUnit.NANOSECONDS.toMicros(maxTime) + "µs";
+        }
+    }
+
     @Nonnull
     private final ExecutorService executorService;
 
+    /**
+     * The function that is used to execute the replies.
+     */
+    @Nonnull
+    private final Function<ServerReply, ServerReplyResult> replyHandler;
+
+    /**
+     * The latencies of all executed replies. Each slot counts the replies with a latency in nanoseconds that has the
+     * bit length of the slot index.
+     */
+    @Nonnull
+    private final long[] latencyHistogram = new long[Long.SIZE];
+
+    /**
+     * The replies that were handed over by the receiver and are not yet sorted into the queues.
+     */
+    @Nonnull
+    private final BlockingQueue<ScheduledReply> incomingReplies;
+
+    /**
+     * The replies that were taken from the receiver, but are not yet sorted into the queues, because they were
+     * received after a barrier reply that is still waiting for the earlier replies to be executed.
+     */
+    @Nonnull
+    private final Queue<ScheduledReply> heldReplies;
+
+    /**
+     * The queues of the replies waiting for the execution, one for each priority class.
+     */
+    @Nonnull
+    private final Queue<ScheduledReply>[] replyQueues;
+
+    /**
+     * The replies that requested to be executed again later.
+     */
+    @Nonnull
+    private final Queue<ScheduledReply> delayedReplies;
+
+    /**
+     * The latest queued reply for each coalescing key, separated by the type of the reply.
+     */
+    @Nonnull
+    private final Map<Class<? extends ServerReply>, Map<Object, ScheduledReply>> coalescingReplies;
+
+    /**
+     * The time latency from receiving to finishing the execution of the replies, separated by the type.
+     */
+    @Nonnull
+    private final Map<Class<? extends ServerReply>, LatencyRecord> latencies;
+
+    /**
+     * The amount of replies that were received, but not yet executed or dropped.
+     */
+    @Nonnull
+    private final AtomicInteger queueDepth;
+
+    /**
+     * The total amount of replies that were dropped because a later reply replaced them.
+     */
+    private volatile long coalescedReplies;
+
+    /**
+     * The time the delayed replies are executed again.
+     */
+    private long delayedExecutionTime;
+
+    /**
+     * The current delay applied to the replies that requested to be rescheduled.
+     */
+    private long rescheduleDelay = MIN_RESCHEDULE_DELAY;
+
+    /**
+     * The time the statistics are written to the log the next time.
+     */
+    private long nextStatisticsTime;
+
+    /**
+     * This flag is set {@code false} once the executor is supposed to shut down.
+     */
+    private volatile boolean running;
+
     /**
      * Default constructor for a message executor.
      */
     MessageExecutor() {
+        this(ServerReply::execute);
+    }
+
+    /**
+     * Create a message executor that uses a custom function to execute the replies.
+     *
+     * @param replyHandler the function that executes the replies
+     */
+    @SuppressWarnings("unchecked")
+    MessageExecutor(@Nonnull Function<ServerReply, ServerReplyResult> replyHandler) {
+        this.replyHandler = replyHandler;
+        incomingReplies = new LinkedBlockingQueue<>();
+        heldReplies = new ArrayDeque<>();
+        replyQueues = new Queue[ReplyPriority.values().length];
+        for (int i = 0; i < replyQueues.length; i++) {
+            replyQueues[i] = new ArrayDeque<>();
+        }
+        delayedReplies = new ArrayDeque<>();
+        coalescingReplies = new HashMap<>();
+        latencies = new HashMap<>();
+        queueDepth = new AtomicInteger();
+
+        running = true;
         executorService = Executors.newSingleThreadExecutor();
+        executorService.submit(this::processReplies);
     }
 
     void scheduleReplyExecution(@Nonnull ServerReply reply) {
         log.debug(NET, "scheduled {}", reply);
-        executorService.submit(() -> executeReply(reply));
+        queueDepth.incrementAndGet();
+        incomingReplies.offer(new ScheduledReply(reply));
+    }
+
+    /**
+     * Get the amount of replies that were received but are not yet executed.
+     *
+     * @return the amount of replies waiting for their execution
+     */
+    int getQueueDepth() {
+        return queueDepth.get();
+    }
+
+    /**
+     * Get the amount of replies that were dropped because a later reply made them obsolete.
+     *
+     * @return the amount of dropped replies
+     */
+    long getCoalescedReplies() {
+        return coalescedReplies;
+    }
+
+    /**
+     * Get the latency from receiving a reply to finishing its execution that was not exceeded by the given share of
+     * all executed replies. The value is only valid once the executor is shut down.
+     *
+     * @param percentile the share of the replies, between {@code 0} and {@code 1}
+     * @return the upper bound of the latency in nanoseconds
+     */
+    long getLatencyPercentile(double percentile) {
+        long total = 0;
+        for (long count : latencyHistogram) {
+            total += count;
+        }
+        long limit = (long) Math.ceil(total * percentile);
+        long current = 0;
+        for (int i = 0; i < latencyHistogram.length; i++) {
+            current += latencyHistogram[i];
+            if ((current >= limit) && (current > 0)) {
+                return (i == 0) ? 0L : ((1L << i) - 1);
+            }
+        }
+        return 0L;
+    }
+
+    /**
+     * The main loop of the executor thread.
+     */
+    private void processReplies() {
+        nextStatisticsTime = System.currentTimeMillis() + STATISTICS_INTERVAL;
+        while (running) {
+            try {
+                if (!hasQueuedReplies()) {
+                    ScheduledReply next = incomingReplies.poll(getIdleWaitTime(), TimeUnit.MILLISECONDS);
+                    if (next != null) {
+                        heldReplies.offer(next);
+                    }
+                }
+                incomingReplies.drainTo(heldReplies);
+                releaseHeldReplies();
+
+                long currentTime = System.currentTimeMillis();
+                if (!delayedReplies.isEmpty() && (currentTime >= delayedExecutionTime)) {
+                    executeDelayedReplies();
+                }
+
+                for (int i = 0; i < BATCH_SIZE; i++) {
+                    ScheduledReply scheduledReply = pollNextReply();
+                    if (scheduledReply == null) {
+                        break;
+                    }
+                    executeReply(scheduledReply);
+                }
+                releaseHeldReplies();
+
+                if (log.isDebugEnabled() && (currentTime >= nextStatisticsTime)) {
+                    logStatistics();
+                    nextStatisticsTime = currentTime + STATISTICS_INTERVAL;
+                }
+            } catch (InterruptedException e) {
+                if (running) {
+                    log.warn(NET, "Executor got interrupted while waiting for replies.");
+                }
+            } catch (RuntimeException e) {
+                log.error(NET, "Error while processing the server replies.", e);
+            }
+        }
+    }
+
+    private boolean hasQueuedReplies() {
+        for (Queue<ScheduledReply> queue : replyQueues) {
+            if (!queue.isEmpty()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Sort the held replies into the queues in the order they were received. This stops at the first barrier reply
+     * as long as replies received before it are still waiting for their execution.
+     */
+    private void releaseHeldReplies() {
+        while (true) {
+            ScheduledReply next = heldReplies.peek();
+            if ((next == null) || (next.reply.isOrderBarrier() && hasQueuedReplies())) {
+                return;
+            }
+            heldReplies.poll();
+            enqueueReply(next);
+        }
+    }
+
+    private long getIdleWaitTime() {
+        if (delayedReplies.isEmpty()) {
+            return IDLE_WAIT_TIME;
+        }
+        return Math.max(0L, Math.min(IDLE_WAIT_TIME, delayedExecutionTime - System.currentTimeMillis()));
+    }
+
+    /**
+     * Put a reply into the queue of its priority class and mark older replies with the same coalescing key as
+     * superseded.
+     *
+     * @param scheduledReply the reply
+     */
+    private void enqueueReply(@Nonnull ScheduledReply scheduledReply) {
+        ServerReply reply = scheduledReply.reply;
+        Object key;
+        try {
+            key = reply.getCoalescingKey();
+        } catch (RuntimeException e) {
+            log.error(NET, "Failed to get the coalescing key of {}", reply, e);
+            key = null;
+        }
+        if (key != null) {
+            scheduledReply.coalescingKey = key;
+            Map<Object, ScheduledReply> replies =
+                    coalescingReplies.computeIfAbsent(reply.getClass(), clazz -> new HashMap<>());
+            ScheduledReply oldReply = replies.put(key, scheduledReply);
+            if (oldReply != null) {
+                oldReply.superseded = true;
+            }
+        }
+        replyQueues[reply.getPriority().ordinal()].offer(scheduledReply);
+    }
+
+    /**
+     * Get the next reply that needs to be executed. Replies that got superseded are dropped on the way.
+     *
+     * @return the next reply or {@code null} in case there is none
+     */
+    @Nullable
+    private ScheduledReply pollNextReply() {
+        for (Queue<ScheduledReply> queue : replyQueues) {
+            while (true) {
+                ScheduledReply scheduledReply = queue.poll();
+                if (scheduledReply == null) {
+                    break;
+                }
+                if (scheduledReply.superseded) {
+                    log.debug(NET, "dropped superseded {}", scheduledReply.reply);
+                    coalescedReplies++;
+                    queueDepth.decrementAndGet();
+                    ReplyFactory.getInstance().releaseReply(scheduledReply.reply);
+                    continue;
+                }
+                if (scheduledReply.coalescingKey != null) {
+                    Map<Object, ScheduledReply> replies = coalescingReplies.get(scheduledReply.reply.getClass());
+                    if (replies != null) {
+                        replies.remove(scheduledReply.coalescingKey);
+                    }
+                }
+                return scheduledReply;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Execute all replies that were delayed once more. The replies that still can't be executed will be delayed
+     * again with a longer delay.
+     */
+    private void executeDelayedReplies() {
+        int delayedCount = delayedReplies.size();
+        int executedCount = 0;
+        for (int i = 0; i < delayedCount; i++) {
+            ScheduledReply scheduledReply = delayedReplies.poll();
+            if (scheduledReply == null) {
+                break;
+            }
+            if (executeReply(scheduledReply)) {
+                executedCount++;
+            }
+        }
+
+        if (executedCount > 0) {
+            rescheduleDelay = MIN_RESCHEDULE_DELAY;
+        } else {
+            rescheduleDelay = Math.min(MAX_RESCHEDULE_DELAY, rescheduleDelay * 2);
+        }
+        delayedExecutionTime = System.currentTimeMillis() + rescheduleDelay;
     }
 
-    private void executeReply(@Nonnull ServerReply reply) {
+    /**
+     * Execute a single reply.
+     *
+     * @param scheduledReply the reply to execute
+     * @return {@code true} in case the reply is done, {@code false} in case it got delayed
+     */
+    private boolean executeReply(@Nonnull ScheduledReply scheduledReply) {
+        ServerReply reply = scheduledReply.reply;
         log.debug(NET, "executing {}", reply);
         try {
-            ServerReplyResult result = reply.execute();
+            ServerReplyResult result = replyHandler.apply(reply);
             switch (result) {
                 case Success:
                     log.debug(NET, "finished with success {}", reply);
@@ -65,11 +454,30 @@ final class MessageExecutor {
                     break;
                 case Reschedule:
                     log.debug(NET, "delaying {}", reply);
-                    scheduleReplyExecution(reply);
+                    if (delayedReplies.isEmpty()) {
+                        delayedExecutionTime = System.currentTimeMillis() + rescheduleDelay;
+                    }
+                    delayedReplies.offer(scheduledReply);
+                    return false;
             }
         } catch (Exception e) {
             log.error(NET, "Error while executing server replay.", e);
         }
+
+        queueDepth.decrementAndGet();
+        long latency = System.nanoTime() - scheduledReply.scheduledTime;
+        latencies.computeIfAbsent(reply.getClass(), clazz -> new LatencyRecord()).record(latency);
+        latencyHistogram[Long.SIZE - Long.numberOfLeadingZeros(Math.max(0L, latency))]++;
+        ReplyFactory.getInstance().releaseReply(reply);
+        return true;
+    }
+
+    private void logStatistics() {
+        log.debug(NET, "Queue depth: {}, coalesced replies: {}, delayed replies: {}", queueDepth.get(), coalescedReplies,
+                delayedReplies.size());
+        for (Map.Entry<Class<? extends ServerReply>, LatencyRecord> entry : latencies.entrySet()) {
+            log.debug(NET, "{}: {}", entry.getKey().getSimpleName(), entry.getValue());
+        }
     }
 
     /**
@@ -77,7 +485,8 @@ final class MessageExecutor {
      */
     @Nonnull
     public Future<Boolean> saveShutdown() {
-        executorService.shutdown();
+        running = false;
+        executorService.shutdownNow();
 
         return new Future<Boolean>() {
             @Override
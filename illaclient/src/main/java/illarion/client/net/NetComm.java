@@ -20,6 +20,7 @@ import illarion.client.Servers;
 import illarion.client.crash.NetCommCrashHandler;
 import illarion.client.net.client.AbstractCommand;
 import illarion.client.net.client.KeepAliveCmd;
+import illarion.client.net.replay.SessionRecorder;
 import illarion.client.util.ConnectionPerformanceClock;
 import javolution.text.TextBuilder;
 import org.slf4j.Logger;
@@ -33,6 +34,7 @@ import java.nio.ByteBuffer;
 import java.nio.channels.SocketChannel;
 import java.nio.channels.spi.SelectorProvider;
 import java.nio.charset.Charset;
+import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.concurrent.*;
@@ -73,6 +75,11 @@ public final class NetComm {
     @Nonnull
     private static final Logger log = LoggerFactory.getLogger(NetComm.class);
 
+    /**
+     * The system property that contains the path of the file the data received from the server is recorded to.
+     */
+    private static final String RECORD_PROPERTY = "illarion.net.record";
+
     /**
      * General time to wait in case its needed that other threads need to react on some input.
      */
@@ -81,6 +88,18 @@ public final class NetComm {
     @Nonnull
     private final ScheduledExecutorService keepAliveExecutor;
 
+    /**
+     * The monitor that keeps track of the data received from the server.
+     */
+    @Nonnull
+    private final ThroughputMonitor receiveMonitor;
+
+    /**
+     * The monitor that keeps track of the data send to the server.
+     */
+    @Nonnull
+    private final ThroughputMonitor sendMonitor;
+
     /**
      * The receiver that accepts and decodes data that was received from the server.
      */
@@ -113,6 +132,8 @@ public final class NetComm {
         ReplyFactory.getInstance();
 
         keepAliveExecutor = new ScheduledThreadPoolExecutor(1);
+        receiveMonitor = new ThroughputMonitor("Receiver");
+        sendMonitor = new ThroughputMonitor("Sender");
     }
 
     /**
@@ -219,9 +240,9 @@ public final class NetComm {
                 }
             }
 
-            sender = new Sender(socket);
+            sender = new Sender(socket, sendMonitor);
             messageHandler = new MessageExecutor();
-            inputThread = new Receiver(messageHandler, socket);
+            inputThread = new Receiver(messageHandler, socket, receiveMonitor, createRecorder());
             inputThread.setUncaughtExceptionHandler(NetCommCrashHandler.getInstance());
             inputThread.start();
 
@@ -238,6 +259,26 @@ public final class NetComm {
         return true;
     }
 
+    /**
+     * Create the recorder for the session in case recording the session is requested.
+     *
+     * @return the recorder or {@code null} in case the session is not recorded
+     */
+    @Nullable
+    private static SessionRecorder createRecorder() {
+        String recordFile = System.getProperty(RECORD_PROPERTY);
+        if (recordFile == null) {
+            return null;
+        }
+        try {
+            log.info("Recording the session to {}", recordFile);
+            return new SessionRecorder(Paths.get(recordFile));
+        } catch (IOException e) {
+            log.error("Failed to create the session recording {}", recordFile, e);
+            return null;
+        }
+    }
+
     /**
      * Disconnect the client-server connection and shut the socket along with all threads for sending and receiving
      * down.
@@ -307,6 +348,36 @@ public final class NetComm {
         return loginDone;
     }
 
+    /**
+     * Get the monitor that keeps track of the data received from the server.
+     *
+     * @return the monitor of the receiver
+     */
+    @Nonnull
+    public ThroughputMonitor getReceiveMonitor() {
+        return receiveMonitor;
+    }
+
+    /**
+     * Get the monitor that keeps track of the data send to the server.
+     *
+     * @return the monitor of the sender
+     */
+    @Nonnull
+    public ThroughputMonitor getSendMonitor() {
+        return sendMonitor;
+    }
+
+    /**
+     * Get the amount of replies received from the server that are not yet executed.
+     *
+     * @return the amount of replies waiting for the execution
+     */
+    public int getReplyQueueDepth() {
+        MessageExecutor executor = messageHandler;
+        return (executor == null) ? 0 : executor.getQueueDepth();
+    }
+
     public void sendCommand(@Nonnull AbstractCommand cmd) {
         if (sender != null) {
             sender.sendCommand(cmd);
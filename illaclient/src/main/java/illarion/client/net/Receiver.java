@@ -16,6 +16,7 @@
 package illarion.client.net;
 
 import illarion.client.IllaClient;
+import illarion.client.net.replay.SessionRecorder;
 import illarion.client.net.server.ServerReply;
 import illarion.client.util.Lang;
 import illarion.common.net.NetCommReader;
@@ -25,7 +26,9 @@ import org.slf4j.LoggerFactory;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import javax.annotation.concurrent.NotThreadSafe;
+import java.io.EOFException;
 import java.io.IOException;
+import java.nio.BufferUnderflowException;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.nio.CharBuffer;
@@ -42,9 +45,15 @@ import java.nio.charset.CharsetDecoder;
 @NotThreadSafe
 final class Receiver extends Thread implements NetCommReader {
     /**
-     * Length of the byte buffer used to store the data from the server.
+     * The largest frame the server is able to send. That is the header and the maximal length of the payload.
      */
-    private static final int INITIAL_BUFFER_SIZE = 1000;
+    private static final int MAX_FRAME_SIZE = CommandList.HEADER_SIZE + 0xFFFF;
+
+    /**
+     * Length of the byte buffer used to store the data from the server. The buffer is large enough to hold multiple
+     * complete frames, so the unparsed rest of the data only has to be moved back to the start of the buffer rarely.
+     */
+    private static final int BUFFER_SIZE = 4 * MAX_FRAME_SIZE;
 
     /**
      * The XOR mask the command ID is masked with to decode the checking ID and ensure that the start of a command
@@ -83,10 +92,22 @@ final class Receiver extends Thread implements NetCommReader {
     @Nonnull
     private final MessageExecutor executor;
     /**
-     * The buffer that stores the byte that we received from the server for decoding.
+     * The monitor that keeps track of the received data.
+     */
+    @Nonnull
+    private final ThroughputMonitor monitor;
+    /**
+     * The recorder that stores the received data in a file or {@code null} in case the session is not recorded.
      */
     @Nullable
-    private ByteBuffer buffer = null;
+    private final SessionRecorder recorder;
+    /**
+     * The buffer that stores the byte that we received from the server for decoding. The data that is not yet
+     * parsed is located between the position and the limit of this buffer. The frames are decoded right where they
+     * were received.
+     */
+    @Nonnull
+    private final ByteBuffer buffer;
     /**
      * Indicator if the Receiver is currently running.
      */
@@ -103,40 +124,24 @@ final class Receiver extends Thread implements NetCommReader {
      * @param executor the executor that takes care to send the messages to the rest of the client
      * @param in the input stream of the socket connection to the server that contains the data that needs to
      * be decoded
+     * @param monitor the monitor that is used to report the received data to
+     * @param recorder the recorder that stores the received data or {@code null}
      */
-    Receiver(@Nonnull MessageExecutor executor, @Nonnull ReadableByteChannel in) {
+    Receiver(@Nonnull MessageExecutor executor, @Nonnull ReadableByteChannel in, @Nonnull ThroughputMonitor monitor,
+             @Nullable SessionRecorder recorder) {
         super("Illarion input thread");
 
         this.executor = executor;
+        this.monitor = monitor;
+        this.recorder = recorder;
         inChannel = in;
 
-        decoder = NetComm.SERVER_STRING_ENCODING.newDecoder();
-        setDaemon(true);
-    }
-
-    @Nonnull
-    private ByteBuffer getBuffer() {
-        return getBuffer(0);
-    }
-
-    @Nonnull
-    private ByteBuffer getBuffer(int bufferSize) {
-        ByteBuffer oldBuffer = buffer;
-        if ((oldBuffer != null) && (oldBuffer.capacity() >= bufferSize)) {
-            return oldBuffer;
-        }
-
-        buffer = ByteBuffer.allocateDirect(
-                ((bufferSize / INITIAL_BUFFER_SIZE) * INITIAL_BUFFER_SIZE) + INITIAL_BUFFER_SIZE);
+        buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
         buffer.order(ByteOrder.BIG_ENDIAN);
+        buffer.limit(0);
 
-        if (oldBuffer != null) {
-            buffer.put(oldBuffer);
-            buffer.flip();
-        } else {
-            buffer.limit(0);
-        }
-        return buffer;
+        decoder = NetComm.SERVER_STRING_ENCODING.newDecoder();
+        setDaemon(true);
     }
 
     /**
@@ -148,7 +153,7 @@ final class Receiver extends Thread implements NetCommReader {
      */
     @Override
     public byte readByte() throws IOException {
-        return getBuffer().get();
+        return buffer.get();
     }
 
     /**
@@ -160,7 +165,7 @@ final class Receiver extends Thread implements NetCommReader {
      */
     @Override
     public int readInt() throws IOException {
-        return getBuffer().getInt();
+        return buffer.getInt();
     }
 
     /**
@@ -172,7 +177,7 @@ final class Receiver extends Thread implements NetCommReader {
      */
     @Override
     public short readShort() throws IOException {
-        return getBuffer().getShort();
+        return buffer.getShort();
     }
 
     /**
@@ -191,7 +196,6 @@ final class Receiver extends Thread implements NetCommReader {
             return "";
         }
 
-        ByteBuffer buffer = getBuffer();
         if (len > buffer.remaining()) {
             throw new IndexOutOfBoundsException("reading beyond receive buffer " + (buffer.remaining() + len));
         }
@@ -259,91 +263,44 @@ final class Receiver extends Thread implements NetCommReader {
      * The main loop the the receiver thread. Decodes the data of the input
      * stream and places the server messages in the queue.
      * <p>
-     * The decoding of the data happens as instantly as soon as a command is
-     * completely read from the input stream. Searching the start of a command
-     * is done by looking for a valid ID with a valid XOR id right behind.
+     * Every time data arrives all complete commands in the buffer are decoded
+     * right away. The data stays where it was received. Only the incomplete
+     * remains of the data are moved to the start of the buffer in case the
+     * space at the end of the buffer is not sufficient anymore to receive a
+     * full command. Searching the start of a command is done by looking for a
+     * valid ID with a valid XOR id right behind.
      * </p>
      */
     @Override
     public void run() {
         running = true;
-        int minRequiredData = CommandList.HEADER_SIZE;
 
+        try {
+            receiveLoop();
+        } finally {
+            if (recorder != null) {
+                try {
+                    recorder.close();
+                } catch (IOException e) {
+                    log.warn("Failed to close the session recording.", e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Receive and decode the data until the receiver is shut down or the connection fails.
+     */
+    private void receiveLoop() {
         while (running) {
             try {
-                while (running && receiveData(minRequiredData)) {
-                    while (true) {
-                        ByteBuffer buffer = getBuffer();
-                        // wait for a complete message header
-                        if (buffer.remaining() < CommandList.HEADER_SIZE) {
-                            break;
-                        }
-
-                        // identify command
-                        int id = readUByte();
-                        int xor = readUByte();
-
-                        // valid command id
-                        if (id != (xor ^ COMMAND_XOR_MASK)) {
-                            // delete only first byte from buffer, scanning for valid command
-                            buffer.position(1);
-                            buffer.compact();
-
-                            log.warn("Skipping invalid data [{}]", id);
-
-                            continue;
-                        }
-
-                        // read length and CRC
-                        int len = readUShort();
-                        int crc = readUShort();
-
-                        // wait for complete data
-                        if (!isDataComplete(len)) {
-                            // scroll the cursor back and wait for more.
-                            buffer.position(0);
-                            minRequiredData = len + CommandList.HEADER_SIZE;
-                            break;
-                        }
-
-                        minRequiredData = CommandList.HEADER_SIZE;
-
-                        // check CRC
-                        if (crc != NetComm.getCRC(buffer, len)) {
-                            int oldLimit = buffer.limit();
-                            buffer.limit(len + CommandList.HEADER_SIZE);
-                            buffer.position(CommandList.HEADER_SIZE);
-                            NetComm.dump("Invalid CRC ", buffer);
-
-                            buffer.position(1);
-                            buffer.limit(oldLimit);
-                            buffer.compact();
-                            buffer.flip();
-                            continue;
-                        }
-
-                        // decode
-                        try {
-                            ServerReply rpl = ReplyFactory.getInstance().getReply(id);
-                            if (rpl != null) {
-                                rpl.decode(this);
-                                if (id != CommandList.MSG_KEEP_ALIVE) {
-                                    log.debug("REC: {}", rpl);
-                                }
-
-                                // put decoded command in input queue
-                                executor.scheduleReplyExecution(rpl);
-                            } else {
-                                // throw away the command that was incorrectly decoded
-                                buffer.position(len + CommandList.HEADER_SIZE);
-                            }
-                        } catch (@Nonnull IllegalArgumentException ex) {
-                            log.error("Invalid command id received {}", Integer.toHexString(id));
-                        }
-
-                        buffer.compact();
-                        buffer.flip();
-                    }
+                receiveData();
+                int frames = 0;
+                while (running && decodeFrame()) {
+                    frames++;
+                }
+                if (frames > 0) {
+                    monitor.recordFrames(frames);
                 }
             } catch (@Nonnull IOException e) {
                 if (running) {
@@ -363,6 +320,83 @@ final class Receiver extends Thread implements NetCommReader {
         }
     }
 
+    /**
+     * Decode the next frame in the buffer. In case the data in the buffer does not start with a valid frame header,
+     * one byte is skipped.
+     *
+     * @return {@code true} in case data was consumed from the buffer, {@code false} in case more data needs to be
+     * received
+     * @throws IOException in case decoding the frame fails
+     */
+    private boolean decodeFrame() throws IOException {
+        // wait for a complete message header
+        if (buffer.remaining() < CommandList.HEADER_SIZE) {
+            return false;
+        }
+
+        int frameStart = buffer.position();
+
+        // identify command
+        int id = buffer.get(frameStart) & 0xFF;
+        int xor = buffer.get(frameStart + 1) & 0xFF;
+
+        // valid command id
+        if (id != (xor ^ COMMAND_XOR_MASK)) {
+            // skip only the first byte, scanning for valid command
+            buffer.position(frameStart + 1);
+            monitor.recordError();
+            log.warn("Skipping invalid data [{}]", id);
+            return true;
+        }
+
+        // read length and CRC
+        int len = buffer.getShort(frameStart + 2) & 0xFFFF;
+        int crc = buffer.getShort(frameStart + 4) & 0xFFFF;
+
+        // wait for complete data
+        if (!isDataComplete(CommandList.HEADER_SIZE + len)) {
+            return false;
+        }
+
+        int frameEnd = frameStart + CommandList.HEADER_SIZE + len;
+        int oldLimit = buffer.limit();
+        buffer.position(frameStart + CommandList.HEADER_SIZE);
+        buffer.limit(frameEnd);
+
+        // check CRC
+        if (crc != NetComm.getCRC(buffer, len)) {
+            NetComm.dump("Invalid CRC ", buffer);
+
+            buffer.limit(oldLimit);
+            buffer.position(frameStart + 1);
+            monitor.recordError();
+            return true;
+        }
+
+        // decode
+        try {
+            ServerReply rpl = ReplyFactory.getInstance().getReply(id);
+            if (rpl != null) {
+                rpl.decode(this);
+                if (id != CommandList.MSG_KEEP_ALIVE) {
+                    log.debug("REC: {}", rpl);
+                }
+
+                // put decoded command in input queue
+                executor.scheduleReplyExecution(rpl);
+            }
+        } catch (@Nonnull IllegalArgumentException ex) {
+            log.error("Invalid command id received {}", Integer.toHexString(id));
+        } catch (@Nonnull BufferUnderflowException | IndexOutOfBoundsException ex) {
+            log.error("Decoding the command {} read beyond the end of the command.", Integer.toHexString(id));
+        }
+
+        // continue with the next frame, no matter how much data the decoder consumed
+        buffer.limit(oldLimit);
+        buffer.position(frameEnd);
+        return true;
+    }
+
     /**
      * Shutdown the receiver.
      */
@@ -375,12 +409,11 @@ final class Receiver extends Thread implements NetCommReader {
     /**
      * This function checks of the received data contains a complete command.
      *
-     * @param len the amount of bytes that were received for that command
+     * @param frameLength the amount of bytes the command requires including the header
      * @return true in case the command is complete, false if not
      */
-    private boolean isDataComplete(int len) {
-        ByteBuffer buffer = getBuffer();
-        if (len <= buffer.remaining()) {
+    private boolean isDataComplete(int frameLength) {
+        if (frameLength <= buffer.remaining()) {
             timeOut = 0;
             return true;
         }
@@ -395,48 +428,53 @@ final class Receiver extends Thread implements NetCommReader {
             NetComm.dump("Receiver timeout. Skipping ", buffer);
             buffer.clear();
             buffer.limit(0);
-        } else { // still waiting
-            buffer.position(0);
+            timeOut = 0;
         }
 
         return false;
     }
 
     /**
-     * Read data from the input stream of the socket and store it in the buffer.
+     * Read data from the input stream of the socket and store it in the buffer. This function blocks until at least
+     * one byte was read. The data is appended to the data that is already in the buffer. The data remaining in the
+     * buffer is only moved to the start of the buffer, in case the free space at the end of the buffer is not
+     * sufficient to hold a complete frame.
      *
-     * @param neededDataInBuffer The data that is needed at least before the method has to return in order to parse
-     * the values correctly
-     * @return true in case there is any data to be decoded in the buffer
      * @throws IOException In case there is something wrong with the input stream
      */
-    private boolean receiveData(int neededDataInBuffer) throws IOException {
-        ByteBuffer buffer = getBuffer(neededDataInBuffer);
-        int data = buffer.remaining();
+    private void receiveData() throws IOException {
+        if (!buffer.hasRemaining()) {
+            buffer.clear();
+            buffer.limit(0);
+        } else if ((buffer.capacity() - buffer.limit()) < MAX_FRAME_SIZE) {
+            buffer.compact();
+            buffer.flip();
+        }
 
+        int dataStart = buffer.position();
         int appPos = buffer.limit();
-        buffer.clear();
+        buffer.limit(buffer.capacity());
         buffer.position(appPos);
 
-        int newData = 0;
-        while (true) {
-            if (inChannel.isOpen()) {
-                newData = inChannel.read(buffer);
-            }
-            data += newData;
-            if (data >= neededDataInBuffer) {
-                break;
-            }
+        int newData;
+        try {
+            newData = inChannel.read(buffer);
+        } finally {
+            buffer.limit(buffer.position());
+            buffer.position(dataStart);
+        }
+        if (newData < 0) {
+            throw new EOFException("The server closed the connection.");
+        }
+        monitor.recordTransfer(newData);
+        if ((recorder != null) && (newData > 0)) {
+            recorder.record(buffer, appPos, newData);
         }
-
-        buffer.flip();
 
         if ((newData > 0) && NetComm.isDumpingActive()) {
             buffer.position(appPos);
             NetComm.dump("rcv <= ", buffer);
-            buffer.position(0);
+            buffer.position(dataStart);
         }
-
-        return buffer.hasRemaining();
     }
 }
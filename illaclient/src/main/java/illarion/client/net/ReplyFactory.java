@@ -23,13 +23,13 @@ import org.slf4j.LoggerFactory;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
-import java.lang.reflect.InvocationTargetException;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.function.Supplier;
 
 /**
  * The Factory for commands the server sends to the client. This factory creates the required message objects on
- * demand.
+ * demand. Replies that are flagged as {@link ReplyMessage#pooled()} are recycled once they are released.
  *
  * @author Martin Karing &lt;nitram@illarion.org&gt;
  */
@@ -48,79 +48,99 @@ public final class ReplyFactory {
     private static final Logger log = LoggerFactory.getLogger(ReplyFactory.class);
 
     /**
-     * This map stores the message classes along with the IDs of the command encoded in them.
+     * The amount of different reply IDs. The ID of a reply is transferred as single unsigned byte.
+     */
+    private static final int REPLY_ID_COUNT = 1 << Byte.SIZE;
+
+    /**
+     * The suppliers that create the replies, indexed by the ID of the reply.
+     */
+    @Nonnull
+    private final Supplier<?>[] replySuppliers;
+
+    /**
+     * The pools of the recycled replies, indexed by the ID of the reply.
+     */
+    @Nonnull
+    private final ReplyPool[] replyPools;
+
+    /**
+     * The pools of the recycled replies, indexed by the class of the reply.
      */
     @Nonnull
-    private final Map<Integer, Class<? extends ServerReply>> replyMap;
+    private final Map<Class<? extends ServerReply>, ReplyPool> classPools;
 
     /**
      * The default constructor of the factory. This registers all commands.
      */
     @SuppressWarnings({"OverlyLongMethod", "OverlyCoupledMethod"})
     private ReplyFactory() {
-        replyMap = new HashMap<>();
-
-        register(AppearanceMsg.class);
-        register(AttackMsg.class);
-        register(AttributeMsg.class);
-        register(BookMsg.class);
-        register(CarryLoadMsg.class);
-        register(ChangeItemMsg.class);
-        register(CharacterAnimationMsg.class);
-        register(CloseShowcaseMsg.class);
-        register(CloseDialogMsg.class);
-        register(DateTimeMsg.class);
-        register(DialogCraftingMsg.class);
-        register(DialogCraftingUpdateMsg.class);
-        register(DialogInputMsg.class);
-        register(DialogMerchantMsg.class);
-        register(DialogMessageMsg.class);
-        register(DialogSelectionMsg.class);
-        register(DisconnectMsg.class);
-        register(GraphicEffectMsg.class);
-        register(InformMsg.class);
-        register(IntroduceMsg.class);
-        register(InventoryMsg.class);
-        register(ItemUpdateMsg.class);
-        register(KeepAliveMsg.class);
-        register(LocationMsg.class);
-        register(LookAtCharMsg.class);
-        register(LookAtDialogItemMsg.class);
-        register(LookAtInvMsg.class);
-        register(LookAtMapItemMsg.class);
-        register(LookAtShowcaseMsg.class);
-        register(LookAtTileMsg.class);
-        register(MagicFlagMsg.class);
-        register(MapCompleteMsg.class);
-        register(MapStripeMsg.class);
-        register(MoveMsg.class);
-        register(MusicMsg.class);
-        register(PlayerIdMsg.class);
-        register(PutItemMsg.class);
-        register(QuestMsg.class);
-        register(QuestDeleteMsg.class);
-        register(QuestAvailabilityMsg.class);
-        register(RemoveCharMsg.class);
-        register(RemoveItemMsg.class);
-        register(SayMsg.class);
-        register(ShoutMsg.class);
-        register(WhisperMsg.class);
-        register(ShowcaseMsg.class);
-        register(ShowcaseSingleMsg.class);
-        register(SkillMsg.class);
-        register(SoundEffectMsg.class);
-        register(TargetLostMsg.class);
-        register(TurnCharMsg.class);
-        register(WeatherMsg.class);
+        replySuppliers = new Supplier<?>[REPLY_ID_COUNT];
+        replyPools = new ReplyPool[REPLY_ID_COUNT];
+        classPools = new HashMap<>();
+
+        register(AppearanceMsg::new);
+        register(AttackMsg::new);
+        register(AttributeMsg::new);
+        register(BookMsg::new);
+        register(CarryLoadMsg::new);
+        register(ChangeItemMsg::new);
+        register(CharacterAnimationMsg::new);
+        register(CloseShowcaseMsg::new);
+        register(CloseDialogMsg::new);
+        register(DateTimeMsg::new);
+        register(DialogCraftingMsg::new);
+        register(DialogCraftingUpdateMsg::new);
+        register(DialogInputMsg::new);
+        register(DialogMerchantMsg::new);
+        register(DialogMessageMsg::new);
+        register(DialogSelectionMsg::new);
+        register(DisconnectMsg::new);
+        register(GraphicEffectMsg::new);
+        register(InformMsg::new);
+        register(IntroduceMsg::new);
+        register(InventoryMsg::new);
+        register(ItemUpdateMsg::new);
+        register(KeepAliveMsg::new);
+        register(LocationMsg::new);
+        register(LookAtCharMsg::new);
+        register(LookAtDialogItemMsg::new);
+        register(LookAtInvMsg::new);
+        register(LookAtMapItemMsg::new);
+        register(LookAtShowcaseMsg::new);
+        register(LookAtTileMsg::new);
+        register(MagicFlagMsg::new);
+        register(MapCompleteMsg::new);
+        register(MapStripeMsg::new);
+        register(MoveMsg::new);
+        register(MusicMsg::new);
+        register(PlayerIdMsg::new);
+        register(PutItemMsg::new);
+        register(QuestMsg::new);
+        register(QuestDeleteMsg::new);
+        register(QuestAvailabilityMsg::new);
+        register(RemoveCharMsg::new);
+        register(RemoveItemMsg::new);
+        register(SayMsg::new);
+        register(ShoutMsg::new);
+        register(WhisperMsg::new);
+        register(ShowcaseMsg::new);
+        register(ShowcaseSingleMsg::new);
+        register(SkillMsg::new);
+        register(SoundEffectMsg::new);
+        register(TargetLostMsg::new);
+        register(TurnCharMsg::new);
+        register(WeatherMsg::new);
     }
 
     /**
-     * Register a class as replay message class. Those classes need to implement the {@link ServerReply} interface
-     * and they require the contain the {@link ReplyMessage} annotation.
+     * Register a reply message. The replies need to implement the {@link ServerReply} interface and they require to
+     * contain the {@link ReplyMessage} annotation.
      *
-     * @param clazz the class to register as reply.
+     * @param supplier the supplier that creates new instances of the reply
      */
-    private void register(@Nonnull Class<? extends ServerReply> clazz) {
+    private void register(@Nonnull Supplier<? extends ServerReply> supplier) {
+        Class<? extends ServerReply> clazz = supplier.get().getClass();
         ReplyMessage messageData = clazz.getAnnotation(ReplyMessage.class);
 
         if (messageData == null) {
@@ -128,43 +148,57 @@ public final class ReplyFactory {
             return;
         }
 
-        if (replyMap.containsKey(messageData.replyId())) {
+        int replyId = messageData.replyId();
+        if ((replyId < 0) || (replyId >= REPLY_ID_COUNT)) {
+            log.error("Class with invalid key: {}", clazz.getName());
+            return;
+        }
+
+        if (replySuppliers[replyId] != null) {
             log.error("Class with duplicated key: {}", clazz.getName());
             return;
         }
 
-        replyMap.put(messageData.replyId(), clazz);
+        replySuppliers[replyId] = supplier;
+        if (messageData.pooled()) {
+            ReplyPool pool = new ReplyPool(supplier);
+            replyPools[replyId] = pool;
+            classPools.put(clazz, pool);
+        }
     }
 
     /**
      * Get a replay instance. This class will check if there is any reply fitting the ID registered and create a new
-     * instance of it.
+     * instance of it or fetch a recycled one.
      *
      * @param id the ID of the reply
-     * @return the newly created reply instance
+     * @return the reply instance
      */
     @Nullable
-    @Contract(pure = true)
     public ServerReply getReply(int id) {
-        Class<? extends ServerReply> replyClass = replyMap.get(id);
-
-        if (replyClass == null) {
+        if ((id < 0) || (id >= REPLY_ID_COUNT) || (replySuppliers[id] == null)) {
             log.error("Illegal reply requested. ID: 0x{}", Integer.toHexString(id));
             return null;
         }
 
-        try {
-            return replyClass.getConstructor().newInstance();
-        } catch (InstantiationException e) {
-            log.error("Failed to create instance of reply class!", e);
-        } catch (IllegalAccessException e) {
-            log.error("Access to reply class constructor was denied.", e);
-        } catch (NoSuchMethodException e) {
-            log.error("Failed to locate required constructor.", e);
-        } catch (InvocationTargetException e) {
-            log.error("Problem while executing the constructor.", e);
+        ReplyPool pool = replyPools[id];
+        if (pool != null) {
+            return pool.acquire();
+        }
+        return (ServerReply) replySuppliers[id].get();
+    }
+
+    /**
+     * Release a reply once its execution is done. Replies that are pooled will be recycled, for all others this
+     * function does nothing.
+     *
+     * @param reply the reply that is not used anymore
+     */
+    public void releaseReply(@Nonnull ServerReply reply) {
+        ReplyPool pool = classPools.get(reply.getClass());
+        if (pool != null) {
+            pool.release(reply);
         }
-        return null;
     }
 
     /**
@@ -0,0 +1,80 @@
+/*
+ * This file is part of the Illarion project.
+ *
+ * Copyright © 2016 - Illarion e.V.
+ *
+ * Illarion is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Illarion is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ */
+package illarion.client.net;
+
+import illarion.client.net.server.ServerReply;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.function.Supplier;
+
+/**
+ * This is a bounded pool of reply instances of one type. The instances are fetched by the receiver thread and
+ * returned by the message executor once the execution is done.
+ *
+ * @author Martin Karing &lt;nitram@illarion.org&gt;
+ */
+@ThreadSafe
+final class ReplyPool {
+    /**
+     * The maximal amount of idle instances stored in each pool.
+     */
+    private static final int POOL_SIZE = 64;
+
+    /**
+     * The idle instances.
+     */
+    @Nonnull
+    private final BlockingQueue<ServerReply> idleReplies;
+
+    /**
+     * The supplier that is used to create new instances in case the pool is empty.
+     */
+    @Nonnull
+    private final Supplier<? extends ServerReply> supplier;
+
+    /**
+     * Create a new pool.
+     *
+     * @param supplier the supplier that creates new instances of the reply
+     */
+    ReplyPool(@Nonnull Supplier<? extends ServerReply> supplier) {
+        this.supplier = supplier;
+        idleReplies = new ArrayBlockingQueue<>(POOL_SIZE);
+    }
+
+    /**
+     * Get a instance from the pool or create a new one in case the pool is empty.
+     *
+     * @return the reply instance
+     */
+    @Nonnull
+    ServerReply acquire() {
+        ServerReply reply = idleReplies.poll();
+        return (reply == null) ? supplier.get() : reply;
+    }
+
+    /**
+     * Return a instance to the pool. In case the pool is full, the instance is dropped.
+     *
+     * @param reply the reply that is not used anymore
+     */
+    void release(@Nonnull ServerReply reply) {
+        idleReplies.offer(reply);
+    }
+}
@@ -24,16 +24,22 @@ import javax.annotation.Nonnull;
 import javax.annotation.concurrent.NotThreadSafe;
 import java.io.IOException;
 import java.nio.ByteBuffer;
-import java.nio.CharBuffer;
-import java.nio.channels.WritableByteChannel;
+import java.nio.channels.GatheringByteChannel;
 import java.nio.charset.CharacterCodingException;
-import java.nio.charset.CharsetEncoder;
-import java.nio.charset.CoderResult;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.*;
 
 /**
  * The Sender class handles all data that is send from the client, encodes the
  * commands and prepares them for sending.
+ * <p>
+ * Once a command is queued the sender waits a short moment for further
+ * commands. All commands collected this way are encoded into separated buffers
+ * and handed over to the network channel with a single gathering write. The
+ * commands that are still queued once the sender is shut down are send before
+ * the sender thread ends.
+ * </p>
  *
  * @author Martin Karing &lt;nitram@illarion.org&gt;
  * @author Nop
@@ -58,60 +64,223 @@ final class Sender implements NetCommWriter {
     private static final int MAX_COMMAND_SIZE = 1000;
 
     /**
-     * Length of the byte buffer used to store the data before its send to the
-     * server.
+     * The maximal amount of commands that are send with one write operation.
      */
-    @Nonnull
-    private final ByteBuffer buffer = ByteBuffer.allocateDirect(MAX_COMMAND_SIZE);
+    private static final int MAX_BATCH_SIZE = 32;
+
+    /**
+     * The highest character value that can be encoded with the encoding used to
+     * transfer strings.
+     */
+    private static final char MAX_ENCODED_CHAR = 0xFF;
+
+    /**
+     * The time in milliseconds the sender waits for new commands before checking
+     * again if its supposed to shut down.
+     */
+    private static final long IDLE_WAIT_TIME = 100;
+
+    /**
+     * The time in nanoseconds the sender waits for further commands after the
+     * first command of a batch was queued.
+     */
+    private static final long BATCH_WINDOW = TimeUnit.MILLISECONDS.toNanos(1);
 
     /**
-     * The string encoder that is used to encode the strings before they are
-     * send to the server.
+     * The buffers that store the encoded commands before they are send to the
+     * server. Each command is encoded into one of those buffers.
      */
     @Nonnull
-    private final CharsetEncoder encoder;
+    private final ByteBuffer[] buffers;
 
     /**
-     * The buffer that is used to temporary store the decoded characters that
-     * were send to the player.
+     * The buffer the command that is currently encoded is written to.
      */
     @Nonnull
-    private final CharBuffer encodingBuffer = CharBuffer.allocate(65535);
+    private ByteBuffer buffer;
 
     /**
      * The output stream of the socket connection to the server. The encoded
      * data is written on this stream to be send to the server.
      */
     @Nonnull
-    private final WritableByteChannel outChannel;
+    private final GatheringByteChannel outChannel;
+
+    /**
+     * The commands waiting to be send.
+     */
+    @Nonnull
+    private final BlockingQueue<AbstractCommand> queuedCommands;
+
+    /**
+     * The commands that are encoded and send with the current write operation.
+     */
+    @Nonnull
+    private final List<AbstractCommand> commandBatch;
+
+    /**
+     * The monitor that keeps track of the send data.
+     */
+    @Nonnull
+    private final ThroughputMonitor monitor;
 
     @Nonnull
     private final ExecutorService commandExecutor;
 
+    /**
+     * This flag is set {@code false} once the sender is supposed to shut down.
+     */
+    private volatile boolean running;
+
     /**
      * The basic constructor for the sender that sets up all needed data.
      *
      * @param out the output channel of the socket connection used to send the
      * data to the server
+     * @param monitor the monitor that is used to report the send data to
      */
-    Sender(@Nonnull WritableByteChannel out) {
-        commandExecutor = Executors.newSingleThreadExecutor();
+    Sender(@Nonnull GatheringByteChannel out, @Nonnull ThroughputMonitor monitor) {
         outChannel = out;
+        this.monitor = monitor;
+
+        buffers = new ByteBuffer[MAX_BATCH_SIZE];
+        ByteBuffer batchBuffer = ByteBuffer.allocateDirect(MAX_BATCH_SIZE * MAX_COMMAND_SIZE);
+        for (int i = 0; i < MAX_BATCH_SIZE; i++) {
+            batchBuffer.limit((i + 1) * MAX_COMMAND_SIZE);
+            batchBuffer.position(i * MAX_COMMAND_SIZE);
+            buffers[i] = batchBuffer.slice();
+        }
+        buffer = buffers[0];
+
+        queuedCommands = new LinkedBlockingQueue<>();
+        commandBatch = new ArrayList<>(MAX_BATCH_SIZE);
 
-        encoder = NetComm.SERVER_STRING_ENCODING.newEncoder();
+        running = true;
+        commandExecutor = Executors.newSingleThreadExecutor();
+        commandExecutor.submit(this::processCommands);
     }
 
     void sendCommand(@Nonnull AbstractCommand cmd) {
-        commandExecutor.submit(() -> {
+        queuedCommands.offer(cmd);
+    }
+
+    /**
+     * The main loop of the sender thread.
+     */
+    private void processCommands() {
+        while (running) {
             try {
-                encodeCommand(cmd);
+                AbstractCommand firstCommand = queuedCommands.poll(IDLE_WAIT_TIME, TimeUnit.MILLISECONDS);
+                if (firstCommand == null) {
+                    continue;
+                }
+                commandBatch.add(firstCommand);
+                collectBatch();
+                sendCommands(commandBatch);
+            } catch (InterruptedException e) {
+                if (running) {
+                    log.warn("Sender got interrupted while waiting for commands.");
+                }
             } catch (Exception e) {
                 log.error("Error while sending command.", e);
+            } finally {
+                commandBatch.clear();
+            }
+        }
+        flushCommands();
+    }
+
+    /**
+     * Add the commands that are queued within the batch window to the current
+     * batch.
+     *
+     * @throws InterruptedException in case the thread is interrupted while
+     * waiting for commands
+     */
+    private void collectBatch() throws InterruptedException {
+        long deadline = System.nanoTime() + BATCH_WINDOW;
+        while (commandBatch.size() < MAX_BATCH_SIZE) {
+            queuedCommands.drainTo(commandBatch, MAX_BATCH_SIZE - commandBatch.size());
+            long remainingTime = deadline - System.nanoTime();
+            if ((commandBatch.size() >= MAX_BATCH_SIZE) || (remainingTime <= 0)) {
+                return;
+            }
+            AbstractCommand nextCommand = queuedCommands.poll(remainingTime, TimeUnit.NANOSECONDS);
+            if (nextCommand == null) {
+                return;
+            }
+            commandBatch.add(nextCommand);
+        }
+    }
+
+    /**
+     * Send all commands that are still queued. This is done once the sender is
+     * shut down, so commands like the logout are not lost.
+     */
+    private void flushCommands() {
+        while (!queuedCommands.isEmpty()) {
+            try {
+                queuedCommands.drainTo(commandBatch, MAX_BATCH_SIZE);
+                sendCommands(commandBatch);
+            } catch (Exception e) {
+                log.error("Error while sending the remaining commands.", e);
+                queuedCommands.clear();
+            } finally {
+                commandBatch.clear();
             }
-            return null;
-        });
+        }
     }
 
+    /**
+     * Encode a batch of commands and send them all with one write operation.
+     *
+     * @param commands the commands to send
+     * @throws IOException in case writing the commands to the channel fails
+     */
+    private void sendCommands(@Nonnull List<AbstractCommand> commands) throws IOException {
+        int encodedCommands = 0;
+        for (AbstractCommand cmd : commands) {
+            buffer = buffers[encodedCommands];
+            try {
+                encodeCommand(cmd);
+                encodedCommands++;
+            } catch (Exception e) {
+                log.error("Error while encoding command {}.", cmd, e);
+            }
+        }
+
+        if (encodedCommands == 0) {
+            return;
+        }
+
+        long totalBytes = 0;
+        for (int i = 0; i < encodedCommands; i++) {
+            totalBytes += buffers[i].remaining();
+        }
+
+        int offset = 0;
+        long writtenBytes = 0;
+        while (writtenBytes < totalBytes) {
+            long written = outChannel.write(buffers, offset, encodedCommands - offset);
+            if (written < 0) {
+                throw new IOException("Writing to the server failed.");
+            }
+            monitor.recordTransfer((int) written);
+            writtenBytes += written;
+            while ((offset < encodedCommands) && !buffers[offset].hasRemaining()) {
+                offset++;
+            }
+        }
+        monitor.recordFrames(encodedCommands);
+    }
+
+    /**
+     * Encode a command into the current buffer. Once this function is done, the
+     * buffer is prepared to be written to the channel.
+     *
+     * @param cmd the command to encode
+     * @throws IOException in case the command fails to encode
+     */
     private void encodeCommand(@Nonnull AbstractCommand cmd) throws IOException {
         if (cmd.getId() != CommandList.CMD_KEEPALIVE) {
             log.debug("SND: {}", cmd);
@@ -141,16 +310,15 @@ final class Sender implements NetCommWriter {
 
         if (NetComm.isDumpingActive()) {
             NetComm.dump("snd => ", buffer);
-            buffer.flip();
+            buffer.position(0);
         }
-
-        outChannel.write(buffer);
     }
 
     /**
      * Shutdown the sender.
      */
     public Future<Boolean> saveShutdown() {
+        running = false;
         commandExecutor.shutdown();
 
         return new Future<Boolean>() {
@@ -221,6 +389,11 @@ final class Sender implements NetCommWriter {
     /**
      * Write a string to the network. The length header of the string is written
      * automatically and its encoded to the correct CharSet automatically.
+     * <p>
+     * The strings are transferred ISO-8859-1 encoded. So each character is
+     * written as single byte directly to the buffer. Characters that can't be
+     * encoded are skipped.
+     * </p>
      *
      * @param value the string that shall be send to the server
      */
@@ -229,22 +402,16 @@ final class Sender implements NetCommWriter {
         int startIndex = buffer.position();
         buffer.putShort((short) 0);
 
-        encodingBuffer.clear();
-        encodingBuffer.put(value, 0, Math.min(encodingBuffer.capacity(), value.length()));
-        encodingBuffer.flip();
-
-        do {
-            CoderResult encodingResult = encoder.encode(encodingBuffer, buffer, true);
-            if (!encodingResult.isError()) {
-                break;
-            }
-            if (encodingResult.isUnmappable()) {
+        int length = Math.min(value.length(), buffer.remaining());
+        for (int i = 0; i < length; i++) {
+            char character = value.charAt(i);
+            if (character > MAX_ENCODED_CHAR) {
                 log.warn("Found a character that failed to encode for the transfer to the server: {} - SKIP",
-                        encodingBuffer.get());
-            } else {
-                encodingResult.throwException();
+                        character);
+                continue;
             }
-        } while (encodingBuffer.hasRemaining());
+            buffer.put((byte) character);
+        }
 
         int lastIndex = buffer.position();
         buffer.position(startIndex);
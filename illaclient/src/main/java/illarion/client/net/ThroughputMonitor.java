@@ -0,0 +1,211 @@
+/*
+ * This file is part of the Illarion project.
+ *
+ * Copyright © 2016 - Illarion e.V.
+ *
+ * Illarion is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Illarion is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ */
+package illarion.client.net;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nonnull;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This class keeps track of the amount of data that passes one direction of the network interface. It counts the
+ * bytes and the frames (messages or commands) that were transferred and calculates the rates for the last full
+ * second.
+ * <p>
+ * The recording functions are only allowed to be called by one thread. The values can be read from any thread.
+ * </p>
+ *
+ * @author Martin Karing &lt;nitram@illarion.org&gt;
+ */
+public final class ThroughputMonitor {
+    /**
+     * The logger that is used to report the rates.
+     */
+    @Nonnull
+    private static final Logger log = LoggerFactory.getLogger(ThroughputMonitor.class);
+
+    /**
+     * The length of the time window the rates are calculated for.
+     */
+    private static final long WINDOW_LENGTH = TimeUnit.SECONDS.toNanos(1);
+
+    /**
+     * The name of this monitor that is used for the log output.
+     */
+    @Nonnull
+    private final String name;
+
+    /**
+     * The total amount of bytes transferred.
+     */
+    private volatile long totalBytes;
+
+    /**
+     * The total amount of frames transferred.
+     */
+    private volatile long totalFrames;
+
+    /**
+     * The total amount of calls to the network channel.
+     */
+    private volatile long totalTransfers;
+
+    /**
+     * The total amount of invalid data sequences encountered.
+     */
+    private volatile long totalErrors;
+
+    /**
+     * The amount of bytes transferred during the last complete time window.
+     */
+    private volatile long bytesPerSecond;
+
+    /**
+     * The amount of frames transferred during the last complete time window.
+     */
+    private volatile long framesPerSecond;
+
+    /**
+     * The time the current window started.
+     */
+    private long windowStart;
+
+    /**
+     * The amount of bytes transferred in the current window.
+     */
+    private long windowBytes;
+
+    /**
+     * The amount of frames transferred in the current window.
+     */
+    private long windowFrames;
+
+    /**
+     * Create a new monitor.
+     *
+     * @param name the name of the monitor used in the log output
+     */
+    public ThroughputMonitor(@Nonnull String name) {
+        this.name = name;
+        windowStart = System.nanoTime();
+    }
+
+    /**
+     * Record one transfer on the network channel.
+     *
+     * @param bytes the amount of bytes that were transferred
+     */
+    void recordTransfer(int bytes) {
+        totalTransfers++;
+        totalBytes += bytes;
+        windowBytes += bytes;
+        updateWindow();
+    }
+
+    /**
+     * Record that frames were completely transferred.
+     *
+     * @param frames the amount of frames
+     */
+    void recordFrames(int frames) {
+        totalFrames += frames;
+        windowFrames += frames;
+        updateWindow();
+    }
+
+    /**
+     * Record that invalid data was found and had to be skipped.
+     */
+    void recordError() {
+        totalErrors++;
+    }
+
+    private void updateWindow() {
+        long now = System.nanoTime();
+        long elapsed = now - windowStart;
+        if (elapsed < WINDOW_LENGTH) {
+            return;
+        }
+
+        bytesPerSecond = (windowBytes * WINDOW_LENGTH) / elapsed;
+        framesPerSecond = (windowFrames * WINDOW_LENGTH) / elapsed;
+        if (log.isDebugEnabled() && (windowBytes > 0)) {
+            log.debug("{}: {} byte/s, {} frames/s, {} byte/transfer, {} frames/transfer, {} invalid sequences total",
+                    name, bytesPerSecond, framesPerSecond, String.format("%.1f", getBytesPerTransfer()),
+                    String.format("%.2f", getFramesPerTransfer()), totalErrors);
+        }
+        windowBytes = 0;
+        windowFrames = 0;
+        windowStart = now;
+    }
+
+    @Nonnull
+    public String getName() {
+        return name;
+    }
+
+    public long getTotalBytes() {
+        return totalBytes;
+    }
+
+    public long getTotalFrames() {
+        return totalFrames;
+    }
+
+    public long getTotalTransfers() {
+        return totalTransfers;
+    }
+
+    public long getTotalErrors() {
+        return totalErrors;
+    }
+
+    /**
+     * Get the average amount of bytes transferred with each call to the network channel.
+     *
+     * @return the average amount of bytes per transfer
+     */
+    public double getBytesPerTransfer() {
+        long transfers = totalTransfers;
+        return (transfers == 0) ? 0.0 : ((double) totalBytes / transfers);
+    }
+
+    /**
+     * Get the average amount of frames transferred with each call to the network channel.
+     *
+     * @return the average amount of frames per transfer
+     */
+    public double getFramesPerTransfer() {
+        long transfers = totalTransfers;
+        return (transfers == 0) ? 0.0 : ((double) totalFrames / transfers);
+    }
+
+    public long getBytesPerSecond() {
+        return bytesPerSecond;
+    }
+
+    public long getFramesPerSecond() {
+        return framesPerSecond;
+    }
+
+    @Override
+    @Nonnull
+    public String toString() {
+        return name + ": " + bytesPerSecond + " byte/s, " + framesPerSecond + " frames/s, " +
+                totalBytes + " byte total, " + totalFrames + " frames total, " + totalErrors + " errors";
+    }
+}
@@ -34,4 +34,13 @@ public @interface ReplyMessage {
      * @return the ID of the reply
      */
     int replyId();
+
+    /**
+     * In case this flag is set, the instances of this reply are recycled once their execution is done. Replies that
+     * set this flag must not leak references to their own mutable state and need to reset all their state while
+     * decoding.
+     *
+     * @return {@code true} in case the reply instances are recycled
+     */
+    boolean pooled() default false;
 }
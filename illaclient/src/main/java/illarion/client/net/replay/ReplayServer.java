@@ -0,0 +1,200 @@
+/*
+ * This file is part of the Illarion project.
+ *
+ * Copyright © 2016 - Illarion e.V.
+ *
+ * Illarion is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Illarion is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ */
+package illarion.client.net.replay;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Paths;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * This is a minimal server that plays a {@link SessionRecording} back to every client that connects to it. The data
+ * the clients send is ignored.
+ * <p>
+ * The recording is either replayed with the timing it was recorded with, scaled by a speed factor, or as fast as
+ * possible.
+ * </p>
+ *
+ * @author Martin Karing &lt;nitram@illarion.org&gt;
+ */
+public final class ReplayServer implements Closeable {
+    /**
+     * The speed value that causes the recording to be replayed as fast as possible.
+     */
+    public static final double MAX_SPEED = 0.0;
+
+    @Nonnull
+    private static final Logger log = LoggerFactory.getLogger(ReplayServer.class);
+
+    /**
+     * The recording that is replayed.
+     */
+    @Nonnull
+    private final SessionRecording recording;
+
+    /**
+     * The speed factor applied to the timing of the recording or {@link #MAX_SPEED}.
+     */
+    private final double speed;
+
+    /**
+     * The channel that accepts the connections.
+     */
+    @Nullable
+    private ServerSocketChannel serverChannel;
+
+    /**
+     * The thread that accepts the connections and replays the recording.
+     */
+    @Nullable
+    private Thread serverThread;
+
+    /**
+     * Create a new replay server.
+     *
+     * @param recording the recording to replay
+     * @param speed the speed factor, {@code 1.0} replays the recording with the original timing, {@link #MAX_SPEED}
+     * replays it as fast as possible
+     */
+    public ReplayServer(@Nonnull SessionRecording recording, double speed) {
+        if (speed < 0.0) {
+            throw new IllegalArgumentException("The speed must not be negative.");
+        }
+        this.recording = recording;
+        this.speed = speed;
+    }
+
+    /**
+     * Start the server.
+     *
+     * @param address the address the server binds to, a port of {@code 0} selects a free port
+     * @return the address the server is bound to
+     * @throws IOException in case binding the server fails
+     */
+    @Nonnull
+    public InetSocketAddress start(@Nonnull InetSocketAddress address) throws IOException {
+        if (serverChannel != null) {
+            throw new IllegalStateException("The server is already running.");
+        }
+        ServerSocketChannel channel = ServerSocketChannel.open();
+        channel.bind(address);
+        serverChannel = channel;
+
+        Thread thread = new Thread(() -> acceptClients(channel), "Illarion replay server");
+        thread.setDaemon(true);
+        thread.start();
+        serverThread = thread;
+
+        return (InetSocketAddress) channel.getLocalAddress();
+    }
+
+    private void acceptClients(@Nonnull ServerSocketChannel channel) {
+        while (channel.isOpen()) {
+            try (SocketChannel client = channel.accept()) {
+                log.info("Replaying {} bytes to {}", recording.getTotalBytes(), client.getRemoteAddress());
+                replay(client);
+                waitForClose(client);
+            } catch (IOException e) {
+                if (channel.isOpen()) {
+                    log.error("Replaying the session failed.", e);
+                }
+            }
+        }
+    }
+
+    private void replay(@Nonnull SocketChannel client) throws IOException {
+        long startTime = System.nanoTime();
+        for (SessionRecording.Chunk chunk : recording.getChunks()) {
+            if (speed > MAX_SPEED) {
+                long sendTime = startTime + (long) (chunk.getTime() / speed);
+                long waitTime;
+                while ((waitTime = sendTime - System.nanoTime()) > 0) {
+                    LockSupport.parkNanos(waitTime);
+                }
+            }
+            ByteBuffer data = chunk.getData();
+            while (data.hasRemaining()) {
+                client.write(data);
+            }
+        }
+        log.info("Replay finished after {} ms", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime));
+    }
+
+    /**
+     * Keep the connection open until the client closes it, so the client does not assume a connection error.
+     */
+    private static void waitForClose(@Nonnull SocketChannel client) throws IOException {
+        ByteBuffer discard = ByteBuffer.allocate(1024);
+        while (client.read(discard) >= 0) {
+            discard.clear();
+        }
+    }
+
+    /**
+     * Stop the server and drop all connections.
+     *
+     * @throws IOException in case closing the server fails
+     */
+    @Override
+    public void close() throws IOException {
+        ServerSocketChannel channel = serverChannel;
+        serverChannel = null;
+        if (channel != null) {
+            channel.close();
+        }
+        Thread thread = serverThread;
+        serverThread = null;
+        if (thread != null) {
+            thread.interrupt();
+        }
+    }
+
+    /**
+     * Start a replay server on the local machine. The client can connect to it using the custom server setting.
+     *
+     * @param args the path of the recording, the port and optional the speed factor ({@code 0} for maximal speed)
+     * @throws IOException in case loading the recording or starting the server fails
+     * @throws InterruptedException in case waiting for the server thread got interrupted
+     */
+    public static void main(@Nonnull String[] args) throws IOException, InterruptedException {
+        if (args.length < 2) {
+            System.out.println("Usage: ReplayServer <recording> <port> [speed]");
+            return;
+        }
+        SessionRecording recording = SessionRecording.load(Paths.get(args[0]));
+        int port = Integer.parseInt(args[1]);
+        double speed = (args.length > 2) ? Double.parseDouble(args[2]) : 1.0;
+
+        ReplayServer server = new ReplayServer(recording, speed);
+        InetSocketAddress address = server.start(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+        log.info("Replay server listening on {}", address);
+        Thread serverThread = server.serverThread;
+        if (serverThread != null) {
+            serverThread.join();
+        }
+    }
+}
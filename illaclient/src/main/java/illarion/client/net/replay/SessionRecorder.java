@@ -0,0 +1,104 @@
+/*
+ * This file is part of the Illarion project.
+ *
+ * Copyright © 2016 - Illarion e.V.
+ *
+ * Illarion is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Illarion is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ */
+package illarion.client.net.replay;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.NotThreadSafe;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * This class writes the data received from the server to a file that can later be loaded as
+ * {@link SessionRecording}.
+ *
+ * @author Martin Karing &lt;nitram@illarion.org&gt;
+ */
+@NotThreadSafe
+public final class SessionRecorder implements Closeable {
+    /**
+     * The channel the recording is written to.
+     */
+    @Nonnull
+    private final FileChannel channel;
+
+    /**
+     * The buffer used to write the headers.
+     */
+    @Nonnull
+    private final ByteBuffer headerBuffer;
+
+    /**
+     * The time the recording started.
+     */
+    private final long startTime;
+
+    /**
+     * Create a new recorder. An existing file is replaced.
+     *
+     * @param file the file to write the recording to
+     * @throws IOException in case creating the file fails
+     */
+    public SessionRecorder(@Nonnull Path file) throws IOException {
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        headerBuffer = ByteBuffer.allocate(SessionRecording.CHUNK_HEADER_SIZE);
+        headerBuffer.order(ByteOrder.BIG_ENDIAN);
+
+        headerBuffer.putInt(SessionRecording.MAGIC);
+        headerBuffer.putShort(SessionRecording.VERSION);
+        headerBuffer.flip();
+        writeFully(headerBuffer);
+
+        startTime = System.nanoTime();
+    }
+
+    /**
+     * Record a chunk of received data. The position of the buffer is not changed.
+     *
+     * @param data the buffer containing the data
+     * @param offset the index of the first byte of the chunk in the buffer
+     * @param length the amount of bytes in the chunk
+     * @throws IOException in case writing the file fails
+     */
+    public void record(@Nonnull ByteBuffer data, int offset, int length) throws IOException {
+        headerBuffer.clear();
+        headerBuffer.putLong(System.nanoTime() - startTime);
+        headerBuffer.putInt(length);
+        headerBuffer.flip();
+        writeFully(headerBuffer);
+
+        ByteBuffer chunk = data.duplicate();
+        chunk.limit(offset + length);
+        chunk.position(offset);
+        writeFully(chunk);
+    }
+
+    private void writeFully(@Nonnull ByteBuffer data) throws IOException {
+        while (data.hasRemaining()) {
+            channel.write(data);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
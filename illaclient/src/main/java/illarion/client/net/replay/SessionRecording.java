@@ -0,0 +1,188 @@
+/*
+ * This file is part of the Illarion project.
+ *
+ * Copyright © 2016 - Illarion e.V.
+ *
+ * Illarion is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Illarion is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ */
+package illarion.client.net.replay;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.Immutable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A session recording that was loaded from a file. The recording contains the data received from the server in the
+ * chunks it was received along with the time each chunk arrived.
+ * <p>
+ * The file starts with the {@link #MAGIC} value and the {@link #VERSION}. After that each chunk is stored as the
+ * time in nanoseconds since the start of the recording, the length of the chunk and the received bytes.
+ * </p>
+ *
+ * @author Martin Karing &lt;nitram@illarion.org&gt;
+ */
+@Immutable
+public final class SessionRecording {
+    /**
+     * The value the recording files start with.
+     */
+    static final int MAGIC = 0x494C5245;
+
+    /**
+     * The version of the recording format.
+     */
+    static final short VERSION = 1;
+
+    /**
+     * The size of the header in front of each chunk.
+     */
+    static final int CHUNK_HEADER_SIZE = (Long.SIZE + Integer.SIZE) / Byte.SIZE;
+
+    /**
+     * The size of the header at the start of the file.
+     */
+    static final int FILE_HEADER_SIZE = (Integer.SIZE + Short.SIZE) / Byte.SIZE;
+
+    /**
+     * One chunk of data that was received from the server.
+     */
+    @Immutable
+    public static final class Chunk {
+        private final long time;
+        @Nonnull
+        private final byte[] data;
+
+        Chunk(long time, @Nonnull byte[] data) {
+            this.time = time;
+            this.data = data;
+        }
+
+        /**
+         * Get the time the chunk was received.
+         *
+         * @return the time in nanoseconds since the start of the recording
+         */
+        public long getTime() {
+            return time;
+        }
+
+        /**
+         * Get the data of this chunk. The returned buffer is a read only view of the data.
+         *
+         * @return the buffer containing the data
+         */
+        @Nonnull
+        public ByteBuffer getData() {
+            return ByteBuffer.wrap(data).asReadOnlyBuffer();
+        }
+
+        /**
+         * Get the amount of bytes in this chunk.
+         *
+         * @return the size of the chunk
+         */
+        public int getSize() {
+            return data.length;
+        }
+    }
+
+    /**
+     * The chunks of this recording.
+     */
+    @Nonnull
+    private final List<Chunk> chunks;
+
+    /**
+     * The total amount of bytes in the recording.
+     */
+    private final long totalBytes;
+
+    private SessionRecording(@Nonnull List<Chunk> chunks) {
+        this.chunks = Collections.unmodifiableList(chunks);
+        long bytes = 0;
+        for (Chunk chunk : chunks) {
+            bytes += chunk.getSize();
+        }
+        totalBytes = bytes;
+    }
+
+    /**
+     * Load a recording from a file.
+     *
+     * @param file the file that contains the recording
+     * @return the loaded recording
+     * @throws IOException in case reading the file fails or the file is not a valid recording
+     */
+    @Nonnull
+    public static SessionRecording load(@Nonnull Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer content = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            content.order(ByteOrder.BIG_ENDIAN);
+
+            if ((content.remaining() < FILE_HEADER_SIZE) || (content.getInt() != MAGIC)) {
+                throw new IOException("The file " + file + " is not a session recording.");
+            }
+            short version = content.getShort();
+            if (version != VERSION) {
+                throw new IOException("The session recording version " + version + " is not supported.");
+            }
+
+            List<Chunk> chunks = new ArrayList<>();
+            while (content.remaining() >= CHUNK_HEADER_SIZE) {
+                long time = content.getLong();
+                int length = content.getInt();
+                if ((length < 0) || (length > content.remaining())) {
+                    throw new IOException("The session recording " + file + " is truncated.");
+                }
+                byte[] data = new byte[length];
+                content.get(data);
+                chunks.add(new Chunk(time, data));
+            }
+            return new SessionRecording(chunks);
+        }
+    }
+
+    /**
+     * Get the chunks of this recording.
+     *
+     * @return the chunks in the order they were received
+     */
+    @Nonnull
+    public List<Chunk> getChunks() {
+        return chunks;
+    }
+
+    /**
+     * Get the total amount of bytes in this recording.
+     *
+     * @return the amount of bytes
+     */
+    public long getTotalBytes() {
+        return totalBytes;
+    }
+
+    /**
+     * Get the length of this recording.
+     *
+     * @return the time in nanoseconds from the start of the recording to the arrival of the last chunk
+     */
+    public long getDuration() {
+        return chunks.isEmpty() ? 0L : chunks.get(chunks.size() - 1).getTime();
+    }
+}
@@ -0,0 +1,22 @@
+/*
+ * This file is part of the Illarion project.
+ *
+ * Copyright © 2016 - Illarion e.V.
+ *
+ * Illarion is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Illarion is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ */
+/**
+ * This package contains the tools to record the data received from the server and to replay those recordings over
+ * a local connection. This allows testing and measuring the network interface without a live server.
+ *
+ * @author Martin Karing &lt;nitram@illarion.org&gt;
+ */
+package illarion.client.net.replay;
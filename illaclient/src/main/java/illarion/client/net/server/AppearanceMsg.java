@@ -286,6 +286,13 @@ public final class AppearanceMsg implements ServerReply {
         }
     }
 
+    @Nonnull
+    @Override
+    @Contract(pure = true)
+    public ReplyPriority getPriority() {
+        return ReplyPriority.High;
+    }
+
     @Nonnull
     @Override
     @Contract(pure = true)
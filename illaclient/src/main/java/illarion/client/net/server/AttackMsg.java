@@ -44,6 +44,13 @@ public final class AttackMsg implements ServerReply {
         return ServerReplyResult.Success;
     }
 
+    @Nonnull
+    @Override
+    @Contract(pure = true)
+    public ReplyPriority getPriority() {
+        return ReplyPriority.High;
+    }
+
     /**
      * Get the data of this simple message as string.
      *
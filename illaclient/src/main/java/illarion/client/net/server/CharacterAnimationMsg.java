@@ -78,6 +78,13 @@ public final class CharacterAnimationMsg implements ServerReply, UpdateTask {
         character.startAnimation(animationId, Char.DEFAULT_ANIMATION_SPEED);
     }
 
+    @Nonnull
+    @Override
+    @Contract(pure = true)
+    public ReplyPriority getPriority() {
+        return ReplyPriority.High;
+    }
+
     @Nonnull
     @Override
     @Contract(pure = true)
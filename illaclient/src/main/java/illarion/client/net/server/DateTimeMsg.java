@@ -73,6 +73,13 @@ public final class DateTimeMsg implements ServerReply {
         return ServerReplyResult.Success;
     }
 
+    @Nonnull
+    @Override
+    @Contract(pure = true)
+    public ReplyPriority getPriority() {
+        return ReplyPriority.Low;
+    }
+
     @Nonnull
     @Override
     @Contract(pure = true)
@@ -71,6 +71,13 @@ public final class GraphicEffectMsg implements ServerReply {
         return ServerReplyResult.Failed;
     }
 
+    @Nonnull
+    @Override
+    @Contract(pure = true)
+    public ReplyPriority getPriority() {
+        return ReplyPriority.Low;
+    }
+
     @Nonnull
     @Override
     @Contract(pure = true)
@@ -28,7 +28,7 @@ import org.jetbrains.annotations.Contract;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import java.io.IOException;
-import java.util.Arrays;
+import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -37,7 +37,7 @@ import java.util.List;
  * @author Martin Karing &lt;nitram@illarion.org&gt;
  * @author Nop
  */
-@ReplyMessage(replyId = CommandList.MSG_UPDATE_ITEMS)
+@ReplyMessage(replyId = CommandList.MSG_UPDATE_ITEMS, pooled = true)
 public final class ItemUpdateMsg implements ServerReply {
     /**
      * The value for {@link #newTileMovePoints} to indicate that the field is blocked.
@@ -76,11 +76,17 @@ public final class ItemUpdateMsg implements ServerReply {
         location = new ServerCoordinate(reader);
 
         itemNumber = reader.readUByte();
-        itemId = Arrays.asList(new ItemId[itemNumber]);
-        itemCount = Arrays.asList(new ItemCount[itemNumber]);
+        // the instances of this message are recycled, so the lists are reused as well
+        if ((itemId == null) || (itemCount == null)) {
+            itemId = new ArrayList<>(itemNumber);
+            itemCount = new ArrayList<>(itemNumber);
+        } else {
+            itemId.clear();
+            itemCount.clear();
+        }
         for (int i = 0; i < itemNumber; ++i) {
-            itemId.set(i, new ItemId(reader));
-            itemCount.set(i, ItemCount.getInstance(reader));
+            itemId.add(new ItemId(reader));
+            itemCount.add(ItemCount.getInstance(reader));
         }
         newTileMovePoints = reader.readUByte();
     }
@@ -104,6 +110,13 @@ public final class ItemUpdateMsg implements ServerReply {
         return ServerReplyResult.Success;
     }
 
+    @Nullable
+    @Override
+    @Contract(pure = true)
+    public Object getCoalescingKey() {
+        return location;
+    }
+
     @Nonnull
     @Override
     @Contract(pure = true)
@@ -29,7 +29,7 @@ import java.io.IOException;
  *
  * @author Martin Karing &lt;nitram@illarion.org&gt;
  */
-@ReplyMessage(replyId = CommandList.MSG_KEEP_ALIVE)
+@ReplyMessage(replyId = CommandList.MSG_KEEP_ALIVE, pooled = true)
 public final class KeepAliveMsg implements ServerReply {
     @Override
     public void decode(@Nonnull NetCommReader reader) throws IOException {
@@ -43,6 +43,13 @@ public final class KeepAliveMsg implements ServerReply {
         return ServerReplyResult.Success;
     }
 
+    @Nonnull
+    @Override
+    @Contract(pure = true)
+    public ReplyPriority getPriority() {
+        return ReplyPriority.High;
+    }
+
     @Nonnull
     @Override
     @Contract(pure = true)
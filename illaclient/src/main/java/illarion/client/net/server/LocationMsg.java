@@ -55,6 +55,19 @@ public final class LocationMsg implements ServerReply {
         return ServerReplyResult.Success;
     }
 
+    @Nonnull
+    @Override
+    @Contract(pure = true)
+    public ReplyPriority getPriority() {
+        return ReplyPriority.High;
+    }
+
+    @Override
+    @Contract(pure = true)
+    public boolean isOrderBarrier() {
+        return true;
+    }
+
     @Nonnull
     @Override
     @Contract(pure = true)
@@ -27,7 +27,7 @@ import org.jetbrains.annotations.Contract;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import java.io.IOException;
-import java.util.Arrays;
+import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -36,7 +36,7 @@ import java.util.List;
  * @author Martin Karing &lt;nitram@illarion.org&gt;
  * @author Nop
  */
-@ReplyMessage(replyId = CommandList.MSG_MAP_STRIPE)
+@ReplyMessage(replyId = CommandList.MSG_MAP_STRIPE, pooled = true)
 public final class MapStripeMsg implements ServerReply {
     /**
      * Constant if the map stripe goes from top to bottom.
@@ -60,9 +60,14 @@ public final class MapStripeMsg implements ServerReply {
 
         int dir = reader.readUByte();
         int count = reader.readUByte();
-        tiles = Arrays.asList(new TileUpdate[count]);
+        // the instances of this message are recycled, so the list is reused as well
+        if (tiles == null) {
+            tiles = new ArrayList<>(count);
+        } else {
+            tiles.clear();
+        }
         for (int i = 0; i < count; ++i) {
-            tiles.set(i, new TileUpdate(loc, reader));
+            tiles.add(new TileUpdate(loc, reader));
             if (dir == DIR_DOWN) {
                 loc = new ServerCoordinate(loc, Direction.SouthWest);
             } else if (dir == DIR_RIGHT) {
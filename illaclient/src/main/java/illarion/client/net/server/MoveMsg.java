@@ -37,7 +37,7 @@ import java.io.IOException;
  * @author Martin Karing &lt;nitram@illarion.org&gt;
  * @author Nop
  */
-@ReplyMessage(replyId = CommandList.MSG_MOVE)
+@ReplyMessage(replyId = CommandList.MSG_MOVE, pooled = true)
 public final class MoveMsg implements ServerReply {
     @Nonnull
     private static final Logger log = LoggerFactory.getLogger(MoveMsg.class);
@@ -183,6 +183,27 @@ public final class MoveMsg implements ServerReply {
         return ServerReplyResult.Success;
     }
 
+    @Nonnull
+    @Override
+    @Contract(pure = true)
+    public ReplyPriority getPriority() {
+        return ReplyPriority.High;
+    }
+
+    /**
+     * Moves of other characters are coalesced, as only the last location matters. The moves of the player character
+     * are never dropped, as each of them answers a move request of the client. This does not require the world to be
+     * initialized.
+     */
+    @Nullable
+    @Override
+    public Object getCoalescingKey() {
+        if ((charId == null) || (mode == MODE_TOO_EARLY) || World.isPlayer(charId)) {
+            return null;
+        }
+        return charId;
+    }
+
     @Nonnull
     @Override
     @Contract(pure = true)
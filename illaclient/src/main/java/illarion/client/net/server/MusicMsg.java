@@ -54,6 +54,13 @@ public final class MusicMsg implements ServerReply {
         return ServerReplyResult.Success;
     }
 
+    @Nonnull
+    @Override
+    @Contract(pure = true)
+    public ReplyPriority getPriority() {
+        return ReplyPriority.Low;
+    }
+
     @Nonnull
     @Override
     @Contract(pure = true)
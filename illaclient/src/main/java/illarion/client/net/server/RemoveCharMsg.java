@@ -56,6 +56,13 @@ public final class RemoveCharMsg implements ServerReply {
         return ServerReplyResult.Success;
     }
 
+    @Nonnull
+    @Override
+    @Contract(pure = true)
+    public ReplyPriority getPriority() {
+        return ReplyPriority.High;
+    }
+
     @Nonnull
     @Override
     @Contract(pure = true)
@@ -0,0 +1,40 @@
+/*
+ * This file is part of the Illarion project.
+ *
+ * Copyright © 2015 - Illarion e.V.
+ *
+ * Illarion is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Illarion is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ */
+package illarion.client.net.server;
+
+/**
+ * This enumeration contains the priority classes of the server replies. Replies of a higher priority class are
+ * executed before the replies of a lower class. Within one class the replies are executed in the order they were
+ * received.
+ *
+ * @author Martin Karing &lt;nitram@illarion.org&gt;
+ */
+public enum ReplyPriority {
+    /**
+     * Replies related to the characters, their movement and combat and the chat.
+     */
+    High,
+
+    /**
+     * Replies related to the map, the inventory, the dialogs and the look at information.
+     */
+    Normal,
+
+    /**
+     * Replies that only have a cosmetic effect, like sound and graphical effects.
+     */
+    Low
+}
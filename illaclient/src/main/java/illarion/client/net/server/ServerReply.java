@@ -18,6 +18,7 @@ package illarion.client.net.server;
 import illarion.common.net.NetCommReader;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import java.io.IOException;
 
 /**
@@ -41,4 +42,40 @@ public interface ServerReply {
      */
     @Nonnull
     ServerReplyResult execute();
+
+    /**
+     * Get the priority class of this reply.
+     *
+     * @return the priority class
+     */
+    @Nonnull
+    default ReplyPriority getPriority() {
+        return ReplyPriority.Normal;
+    }
+
+    /**
+     * Get the key used to coalesce replies of the same type. In case a reply of the same type with an equal key is
+     * received before this reply is executed, this reply is dropped. This is only valid for replies that transfer
+     * the complete state of something, so the later reply makes this one obsolete.
+     * <p>
+     * This function is called by the thread that executes the replies.
+     * </p>
+     *
+     * @return the key or {@code null} in case this reply must not be coalesced
+     */
+    @Nullable
+    default Object getCoalescingKey() {
+        return null;
+    }
+
+    /**
+     * Check if this reply is a barrier for the execution order. All replies received before a barrier are executed
+     * before it and all replies received after it are executed after it, regardless of their priority. This is
+     * required for replies that change the state the earlier replies refer to.
+     *
+     * @return {@code true} in case this reply must not be reordered with any other reply
+     */
+    default boolean isOrderBarrier() {
+        return false;
+    }
 }
@@ -88,6 +88,13 @@ public final class SoundEffectMsg implements UpdateTask, ServerReply {
         sounds.playSound(sound, sounds.getSoundVolume(), dX, dY, dZ);
     }
 
+    @Nonnull
+    @Override
+    @Contract(pure = true)
+    public ReplyPriority getPriority() {
+        return ReplyPriority.Low;
+    }
+
     @Nonnull
     @Override
     @Contract(pure = true)
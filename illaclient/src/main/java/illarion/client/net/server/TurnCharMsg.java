@@ -85,6 +85,22 @@ public final class TurnCharMsg implements ServerReply {
         }
     }
 
+    @Nonnull
+    @Override
+    @Contract(pure = true)
+    public ReplyPriority getPriority() {
+        return ReplyPriority.High;
+    }
+
+    @Nullable
+    @Override
+    public Object getCoalescingKey() {
+        if ((charId == null) || World.getPlayer().isPlayer(charId)) {
+            return null;
+        }
+        return charId;
+    }
+
     @Nonnull
     @Override
     @Contract(pure = true)
@@ -97,6 +97,13 @@ public final class WeatherMsg implements ServerReply {
         return ServerReplyResult.Success;
     }
 
+    @Nonnull
+    @Override
+    @Contract(pure = true)
+    public ReplyPriority getPriority() {
+        return ReplyPriority.Low;
+    }
+
     @Nonnull
     @Override
     @Contract(pure = true)
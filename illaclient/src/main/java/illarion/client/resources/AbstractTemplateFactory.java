@@ -21,6 +21,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import javax.annotation.concurrent.NotThreadSafe;
 import java.util.HashMap;
 import java.util.Map;
@@ -28,6 +29,10 @@ import java.util.Map;
 /**
  * The purpose of this class is to store and retrieve the templates that were load from the resources. Those
  * templates are later on used to create the actual objects.
+ * <p/>
+ * Once the loading is finished the templates are frozen into a lookup table indexed by the template ID. Dense ID
+ * ranges are stored in a plain array, sparse ranges in a open addressing hash table. Looking up a template in
+ * the frozen table does not box the ID.
  *
  * @author Martin Karing &lt;nitram@illarion.org&gt;
  */
@@ -36,6 +41,17 @@ public abstract class AbstractTemplateFactory<T extends ResourceTemplate> implem
     @Nonnull
     private static final Logger log = LoggerFactory.getLogger(AbstractTemplateFactory.class);
 
+    /**
+     * The maximal ratio between the size of the ID range and the amount of templates that is still stored in a
+     * dense array.
+     */
+    private static final int MAX_DENSE_RATIO = 4;
+
+    /**
+     * The minimal size of the ID range that is always stored in a dense array.
+     */
+    private static final int MIN_DENSE_RANGE = 256;
+
     /**
      * The map that is used to store the resources.
      */
@@ -47,6 +63,31 @@ public abstract class AbstractTemplateFactory<T extends ResourceTemplate> implem
      */
     private final int defaultId;
 
+    /**
+     * The templates of the frozen lookup table. In dense mode the index is the template ID minus
+     * {@link #frozenOffset}, in sparse mode it is the slot of the hash table. {@code null} as long as the templates
+     * are not frozen.
+     */
+    @Nullable
+    private ResourceTemplate[] frozenTemplates;
+
+    /**
+     * The IDs stored in the slots of the hash table in sparse mode or {@code null} in dense mode.
+     */
+    @Nullable
+    private int[] frozenIds;
+
+    /**
+     * The lowest template ID in dense mode.
+     */
+    private int frozenOffset;
+
+    /**
+     * The template that is returned for unknown IDs or {@code null} in case there is none.
+     */
+    @Nullable
+    private T defaultTemplate;
+
     /**
      * The default constructor.
      */
@@ -68,10 +109,105 @@ public abstract class AbstractTemplateFactory<T extends ResourceTemplate> implem
             log.warn("Located duplicated resource template: {}", resource);
         }
         storage.put(resource.getTemplateId(), resource);
+        frozenTemplates = null;
+        frozenIds = null;
     }
 
     @Override
     public void loadingFinished() {
+        freeze();
+    }
+
+    /**
+     * Build the lookup table from the stored templates. Resources that are stored after this function was called
+     * are still found, but only by the slower lookup in the map until the table is frozen again.
+     */
+    private void freeze() {
+        frozenTemplates = null;
+        frozenIds = null;
+        defaultTemplate = storage.get(defaultId);
+        if (storage.isEmpty()) {
+            return;
+        }
+
+        int minId = Integer.MAX_VALUE;
+        int maxId = Integer.MIN_VALUE;
+        for (int id : storage.keySet()) {
+            minId = Math.min(minId, id);
+            maxId = Math.max(maxId, id);
+        }
+
+        long range = ((long) maxId - minId) + 1;
+        if ((range <= MIN_DENSE_RANGE) || (range <= ((long) storage.size() * MAX_DENSE_RATIO))) {
+            ResourceTemplate[] templates = new ResourceTemplate[(int) range];
+            for (T template : storage.values()) {
+                templates[template.getTemplateId() - minId] = template;
+            }
+            frozenOffset = minId;
+            frozenTemplates = templates;
+        } else {
+            int capacity = Integer.highestOneBit(storage.size() * 2 - 1) << 1;
+            ResourceTemplate[] templates = new ResourceTemplate[capacity];
+            int[] ids = new int[capacity];
+            for (T template : storage.values()) {
+                int slot = getSlot(template.getTemplateId(), capacity - 1);
+                while (templates[slot] != null) {
+                    slot = (slot + 1) & (capacity - 1);
+                }
+                templates[slot] = template;
+                ids[slot] = template.getTemplateId();
+            }
+            frozenIds = ids;
+            frozenTemplates = templates;
+        }
+        log.debug("{} froze {} templates into a {} table with {} slots.", getClass().getSimpleName(),
+                storage.size(), (frozenIds == null) ? "dense" : "sparse", frozenTemplates.length);
+    }
+
+    /**
+     * Get the first slot in the hash table of the sparse lookup that is checked for a template ID.
+     *
+     * @param templateId the template ID
+     * @param mask the capacity of the hash table minus one
+     * @return the first slot
+     */
+    @Contract(pure = true)
+    private static int getSlot(int templateId, int mask) {
+        int hash = templateId * 0x9E3779B9;
+        return (hash ^ (hash >>> 16)) & mask;
+    }
+
+    /**
+     * Find a template.
+     *
+     * @param templateId the ID of the template
+     * @return the template or {@code null} in case there is no template with this ID
+     */
+    @Nullable
+    @Contract(pure = true)
+    @SuppressWarnings("unchecked")
+    private T findTemplate(int templateId) {
+        ResourceTemplate[] templates = frozenTemplates;
+        if (templates == null) {
+            return storage.get(templateId);
+        }
+        int[] ids = frozenIds;
+        if (ids == null) {
+            int index = templateId - frozenOffset;
+            if ((index < 0) || (index >= templates.length)) {
+                return null;
+            }
+            return (T) templates[index];
+        }
+        int mask = templates.length - 1;
+        int slot = getSlot(templateId, mask);
+        while (templates[slot] != null) {
+            if (ids[slot] == templateId) {
+                return (T) templates[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+        return null;
     }
 
     @Override
@@ -80,15 +216,15 @@ public abstract class AbstractTemplateFactory<T extends ResourceTemplate> implem
 
     @Contract(pure = true)
     public boolean hasTemplate(int templateId) {
-        return storage.containsKey(templateId);
+        return findTemplate(templateId) != null;
     }
 
     @Nonnull
     @Contract(pure = true)
     public T getTemplate(int templateId) {
-        T object = storage.get(templateId);
+        T object = findTemplate(templateId);
         if ((object == null) && (defaultId > -1)) {
-            T defaultObject = storage.get(defaultId);
+            T defaultObject = (frozenTemplates == null) ? storage.get(defaultId) : defaultTemplate;
             if (defaultObject == null) {
                 throw new IllegalStateException("Requested template " + templateId + " and the default template " +
                                                         defaultId + " were not found.");
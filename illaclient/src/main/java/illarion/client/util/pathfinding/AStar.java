@@ -24,10 +24,18 @@ import org.slf4j.LoggerFactory;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
-import java.util.*;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.LinkedList;
 
 /**
  * This class implements the A* path finding algorithm.
+ * <p>
+ * The search works on the primitive node storage of a {@link NodeArena} that is reused by all searches of a thread.
+ * The amount of nodes the search is allowed to expand is limited. In case the target is not reached within this
+ * limit, the path towards the expanded node closest to the target is reported as a partial path. In case the search
+ * runs out of nodes before it hits the limit, the target is not reachable and no path is reported.
+ * </p>
  *
  * @author Martin Karing &lt;nitram@illarion.org&gt;
  */
@@ -35,6 +43,63 @@ public class AStar implements PathFindingAlgorithm {
     @Nonnull
     private static final Logger log = LoggerFactory.getLogger(AStar.class);
 
+    /**
+     * The amount of nodes a search is allowed to expand by default.
+     */
+    public static final int DEFAULT_MAX_EXPANSIONS = 4000;
+
+    /**
+     * The arena of the nodes used by the searches of each thread.
+     */
+    @Nonnull
+    private static final ThreadLocal<NodeArena> ARENA = ThreadLocal.withInitial(NodeArena::new);
+
+    /**
+     * The amount of expanded nodes after that the search checks if the thread was interrupted.
+     */
+    private static final int INTERRUPT_CHECK_INTERVAL = 64;
+
+    /**
+     * The amount of nodes a search is allowed to expand before it stops.
+     */
+    private final int maxExpansions;
+
+    /**
+     * The monitor that records the searches.
+     */
+    @Nullable
+    private final PathFindingMonitor monitor;
+
+    /**
+     * Create a path finder with the default limit of expanded nodes.
+     */
+    public AStar() {
+        this(DEFAULT_MAX_EXPANSIONS);
+    }
+
+    /**
+     * Create a path finder.
+     *
+     * @param maxExpansions the amount of nodes a search is allowed to expand before it stops
+     */
+    public AStar(int maxExpansions) {
+        this(maxExpansions, null);
+    }
+
+    /**
+     * Create a path finder that reports its searches.
+     *
+     * @param maxExpansions the amount of nodes a search is allowed to expand before it stops
+     * @param monitor the monitor that records the searches or {@code null}
+     */
+    public AStar(int maxExpansions, @Nullable PathFindingMonitor monitor) {
+        if (maxExpansions < 1) {
+            throw new IllegalArgumentException("The search has to be allowed to expand at least one node.");
+        }
+        this.maxExpansions = maxExpansions;
+        this.monitor = monitor;
+    }
+
     @Nullable
     @Override
     public Path findPath(
@@ -60,99 +125,207 @@ public class AStar implements PathFindingAlgorithm {
             return null;
         }
         log.debug("Searching path from {} to {} getting as close as {} tiles", start, end, approachDistance);
-        /* Setting up the data structures. */
-        /* Nodes that are in this set were yet not fully processed. */
-        NavigableSet<AStarPathNode> openNodes = new TreeSet<>();
-        /* The list of nodes and their corresponding locations. */
-        Map<ServerCoordinate, AStarPathNode> knownNodes = new HashMap<>();
+
         /* The methods of movement that apply. */
         EnumSet<CharMovementMode> movementMethodSettings = EnumSet.of(movementMethod, movementMethods);
+        boolean walking = movementMethodSettings.contains(CharMovementMode.Walk);
+        boolean running = movementMethodSettings.contains(CharMovementMode.Run);
+        if (!walking && !running) {
+            throw new IllegalArgumentException("No movement methods selected. This is not valid.");
+        }
 
-        expandNode(costProvider, end, null, start, allowedDirections, movementMethodSettings, openNodes);
-
-        while (!openNodes.isEmpty()) {
-            /* Take the unchecked node closest to the target. */
-            AStarPathNode currentNode = openNodes.pollFirst();
-            if (currentNode.getLocation().getStepDistance(end) <= approachDistance) {
-                Path createdPath = buildPath(currentNode);
-                log.debug("Current node is within range. Building path: {}", createdPath);
-                return createdPath;
+        long startTime = System.nanoTime();
+        Search search = new Search(costProvider, start, end, allowedDirections, walking, running);
+        NodeArena arena = ARENA.get();
+        arena.reset();
+        int expansions = 0;
+        try {
+            int startNode = arena.addNode(0, 0, NodeArena.NO_NODE, CharMovementMode.None.ordinal(), 0,
+                                          search.getHeuristic(0, 0));
+            int bestNode = startNode;
+            arena.push(startNode);
+            while (true) {
+                if (arena.isHeapEmpty()) {
+                    /* Every reachable location was checked, the target can't be reached. */
+                    record(startTime, expansions, PathFindingMonitor.Result.Failed);
+                    return null;
+                }
+                /* Take the unchecked node closest to the target. */
+                int currentNode = arena.poll();
+                int stepDistance = search.getStepDistanceToEnd(arena.getX(currentNode), arena.getY(currentNode));
+                if (stepDistance <= approachDistance) {
+                    Path createdPath = buildPath(arena, search, currentNode, true);
+                    log.debug("Current node is within range. Building path: {}", createdPath);
+                    record(startTime, expansions, PathFindingMonitor.Result.Complete);
+                    return createdPath;
+                }
+                if (isCloser(arena, currentNode, bestNode)) {
+                    bestNode = currentNode;
+                }
+                if (expansions >= maxExpansions) {
+                    break;
+                }
+                if (((expansions % INTERRUPT_CHECK_INTERVAL) == 0) && Thread.currentThread().isInterrupted()) {
+                    log.debug("Search from {} to {} was canceled.", start, end);
+                    record(startTime, expansions, PathFindingMonitor.Result.Cancelled);
+                    return null;
+                }
+                expansions++;
+                search.expandNode(arena, currentNode);
             }
-            AStarPathNode alternative = knownNodes.get(currentNode.getLocation());
-            if ((alternative == null) || (alternative.getCost() > currentNode.getCost())) {
-                knownNodes.put(currentNode.getLocation(), currentNode);
-                expandNode(costProvider, end, currentNode, currentNode.getLocation(), allowedDirections, movementMethodSettings,
-                           openNodes);
+
+            if (bestNode == startNode) {
+                record(startTime, expansions, PathFindingMonitor.Result.Failed);
+                return null;
             }
+            Path partialPath = buildPath(arena, search, bestNode, false);
+            log.debug("Search stopped after {} expanded nodes. Building partial path: {}", expansions, partialPath);
+            record(startTime, expansions, PathFindingMonitor.Result.Partial);
+            return partialPath;
+        } finally {
+            arena.reset();
         }
+    }
 
-        return null;
+    private void record(long startTime, int expansions, @Nonnull PathFindingMonitor.Result result) {
+        if (monitor != null) {
+            monitor.recordSearch(System.nanoTime() - startTime, expansions, result);
+        }
+    }
+
+    private static boolean isCloser(@Nonnull NodeArena arena, int node, int other) {
+        int heuristic = arena.getHeuristic(node);
+        int otherHeuristic = arena.getHeuristic(other);
+        if (heuristic != otherHeuristic) {
+            return heuristic < otherHeuristic;
+        }
+        return arena.getCost(node) < arena.getCost(other);
     }
 
     @Nonnull
-    private static Path buildPath(@Nonnull AStarPathNode lastNode) {
+    private static Path buildPath(@Nonnull NodeArena arena, @Nonnull Search search, int lastNode, boolean complete) {
         LinkedList<PathNode> path = new LinkedList<>();
-        @Nullable AStarPathNode nextNode = lastNode;
-        while (nextNode != null) {
-            path.addFirst(nextNode);
-            nextNode = nextNode.getParentNode();
+        CharMovementMode[] modes = CharMovementMode.values();
+        int nextNode = lastNode;
+        while (arena.getParent(nextNode) != NodeArena.NO_NODE) {
+            ServerCoordinate location = new ServerCoordinate(search.start, arena.getX(nextNode), arena.getY(nextNode),
+                                                             0);
+            path.addFirst(new AStarPathNode(location, modes[arena.getMode(nextNode)], arena.getCost(nextNode)));
+            nextNode = arena.getParent(nextNode);
         }
-        return new Path(path);
+        return new Path(path, complete);
     }
 
-    private static void expandNode(
-            @Nonnull MoveCostProvider costProvider,
-            @Nonnull ServerCoordinate end,
-            @Nullable AStarPathNode nodeToExpand,
-            @Nonnull ServerCoordinate origin, @Nonnull Iterable<Direction> allowedDirections,
-            @Nonnull Collection<CharMovementMode> movementMethods,
-            @Nonnull Collection<AStarPathNode> storage) {
-        if (movementMethods.isEmpty()) {
-            throw new IllegalArgumentException("No movement methods selected. This is not valid.");
+    /**
+     * The parameters of a single search.
+     */
+    private static final class Search {
+        /**
+         * The additional cost of a walking step, the diagonal steps are more expensive.
+         */
+        private static final int WALK_COST = 150;
+
+        /**
+         * The additional cost of a running step, the diagonal steps are more expensive.
+         */
+        private static final int RUN_COST = 300;
+
+        @Nonnull
+        private final MoveCostProvider costProvider;
+        @Nonnull
+        private final ServerCoordinate start;
+        @Nonnull
+        private final Direction[] directions;
+        private final int endX;
+        private final int endY;
+        private final boolean walking;
+        private final boolean running;
+
+        /**
+         * The additional cost for every step caused by the current ping.
+         */
+        private final int pingCost;
+
+        Search(@Nonnull MoveCostProvider costProvider, @Nonnull ServerCoordinate start,
+               @Nonnull ServerCoordinate end, @Nonnull Collection<Direction> allowedDirections, boolean walking,
+               boolean running) {
+            this.costProvider = costProvider;
+            this.start = start;
+            directions = allowedDirections.toArray(new Direction[allowedDirections.size()]);
+            endX = end.getX() - start.getX();
+            endY = end.getY() - start.getY();
+            this.walking = walking;
+            this.running = running;
+            pingCost = (int) ConnectionPerformanceClock.getMaxServerPing();
         }
-        for (Direction dir : allowedDirections) {
-            ServerCoordinate walkingCoordinates = new ServerCoordinate(origin, dir);
-            if (movementMethods.contains(CharMovementMode.Walk)) {
-                int moveCost = costProvider.getMovementCost(origin, CharMovementMode.Walk, dir);
-                if (moveCost == MoveCostProvider.BLOCKED) {
-                    continue;
-                } else {
+
+        void expandNode(@Nonnull NodeArena arena, int node) {
+            int originX = arena.getX(node);
+            int originY = arena.getY(node);
+            ServerCoordinate origin = new ServerCoordinate(start, originX, originY, 0);
+            for (Direction dir : directions) {
+                int walkX = originX + dir.getDirectionVectorX();
+                int walkY = originY + dir.getDirectionVectorY();
+                if (walking) {
+                    int moveCost = costProvider.getMovementCost(origin, CharMovementMode.Walk, dir);
+                    if (moveCost == MoveCostProvider.BLOCKED) {
+                        continue;
+                    }
                     /* Additional cost for distance. */
-                    moveCost += (int) (150 * (dir.isDiagonal() ? 1.4142135623730951 : 1.0));
+                    moveCost += (int) (WALK_COST * (dir.isDiagonal() ? 1.4142135623730951 : 1.0));
                     /* Additional cost for current ping. */
-                    moveCost += (int) ConnectionPerformanceClock.getMaxServerPing();
+                    moveCost += pingCost;
 
-                    storage.add(new AStarPathNode(nodeToExpand, walkingCoordinates, CharMovementMode.Walk, moveCost,
-                            getHeuristic(walkingCoordinates, end)));
+                    relax(arena, node, walkX, walkY, CharMovementMode.Walk, moveCost);
+                }
+                if ((walkX == endX) && (walkY == endY)) {
+                    continue;
+                }
+                if (running) {
+                    int moveCost = costProvider.getMovementCost(origin, CharMovementMode.Run, dir);
+                    if (moveCost != MoveCostProvider.BLOCKED) {
+                        /* Additional cost for distance. */
+                        moveCost += (int) (RUN_COST * (dir.isDiagonal() ? 1.4142135623730951 : 1.0));
+                        /* Additional cost for current ping. */
+                        moveCost += pingCost;
+
+                        relax(arena, node, walkX + dir.getDirectionVectorX(), walkY + dir.getDirectionVectorY(),
+                              CharMovementMode.Run, moveCost);
+                    }
                 }
             }
-            if (walkingCoordinates.equals(end)) {
-                continue;
-            }
-            if (movementMethods.contains(CharMovementMode.Run)) {
-                ServerCoordinate runningCoordinates = new ServerCoordinate(walkingCoordinates, dir);
-                int moveCost = costProvider.getMovementCost(origin, CharMovementMode.Run, dir);
-                if (moveCost != MoveCostProvider.BLOCKED) {
-                    /* Additional cost for distance. */
-                    moveCost += (int) (300 * (dir.isDiagonal() ? 1.4142135623730951 : 1.0));
-                    /* Additional cost for current ping. */
-                    moveCost += (int) ConnectionPerformanceClock.getMaxServerPing();
+        }
 
-                    storage.add(new AStarPathNode(nodeToExpand, runningCoordinates, CharMovementMode.Run, moveCost,
-                            getHeuristic(runningCoordinates, end)));
+        private void relax(@Nonnull NodeArena arena, int parent, int x, int y, @Nonnull CharMovementMode mode,
+                           int moveCost) {
+            if ((Math.abs(x) > NodeArena.MAX_OFFSET) || (Math.abs(y) > NodeArena.MAX_OFFSET)) {
+                return;
+            }
+            int cost = arena.getCost(parent) + moveCost;
+            int node = arena.findNode(x, y);
+            if (node == NodeArena.NO_NODE) {
+                arena.push(arena.addNode(x, y, parent, mode.ordinal(), cost, getHeuristic(x, y)));
+            } else if (cost < arena.getCost(node)) {
+                /* A cheaper way to a known node. Closed nodes are opened again, as the heuristic overestimates. */
+                arena.updateNode(node, parent, mode.ordinal(), cost);
+                if (!arena.isOpen(node)) {
+                    arena.push(node);
                 }
             }
         }
-    }
 
-    private static int getHeuristic(@Nonnull ServerCoordinate currentLocation,
-                                    @Nonnull ServerCoordinate targetLocation) {
-        int dX = Math.abs(currentLocation.getX() - targetLocation.getX());
-        int dY = Math.abs(currentLocation.getY() - targetLocation.getY());
+        int getStepDistanceToEnd(int x, int y) {
+            return Math.max(Math.abs(x - endX), Math.abs(y - endY));
+        }
+
+        int getHeuristic(int x, int y) {
+            int dX = Math.abs(x - endX);
+            int dY = Math.abs(y - endY);
 
-        int dMax = Math.max(dX, dY);
-        int dMin = Math.min(dX, dY);
+            int dMax = Math.max(dX, dY);
+            int dMin = Math.min(dX, dY);
 
-        return (int) (((dMax - dMin) + (dMin * 1.4142135623730951)) * 300);
+            return (int) (((dMax - dMin) + (dMin * 1.4142135623730951)) * 300);
+        }
     }
 }
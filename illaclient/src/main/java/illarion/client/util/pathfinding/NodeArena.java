@@ -0,0 +1,352 @@
+/*
+ * This file is part of the Illarion project.
+ *
+ * Copyright © 2016 - Illarion e.V.
+ *
+ * Illarion is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Illarion is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ */
+package illarion.client.util.pathfinding;
+
+import org.jetbrains.annotations.Contract;
+
+import javax.annotation.concurrent.NotThreadSafe;
+import java.util.Arrays;
+
+/**
+ * This class stores the nodes of one path search in primitive arrays. The nodes are addressed by their index and
+ * their location is stored relative to the start of the search packed into a single integer. The arena contains a
+ * hash table from the packed location to the node and a binary heap of the open nodes ordered by the predicted cost.
+ * <p>
+ * One arena is supposed to be reused by all searches of a thread, so the arrays are allocated only once they need to
+ * grow.
+ * </p>
+ *
+ * @author Martin Karing &lt;nitram@illarion.org&gt;
+ */
+@NotThreadSafe
+final class NodeArena {
+    /**
+     * The value that marks a node that is not part of the heap.
+     */
+    static final int NOT_IN_HEAP = -1;
+
+    /**
+     * The value that marks that there is no node.
+     */
+    static final int NO_NODE = -1;
+
+    /**
+     * The largest offset from the start location that can be stored in the packed location.
+     */
+    static final int MAX_OFFSET = Short.MAX_VALUE;
+
+    /**
+     * The initial amount of nodes the arena is able to store.
+     */
+    private static final int INITIAL_CAPACITY = 256;
+
+    private int[] nodeX;
+    private int[] nodeY;
+    private int[] nodeCost;
+    private int[] nodeHeuristic;
+    private int[] nodeParent;
+    private byte[] nodeMode;
+    private int[] nodeHeapIndex;
+    private int nodeCount;
+
+    /**
+     * The binary heap of the open nodes.
+     */
+    private int[] heap;
+    private int heapSize;
+
+    /**
+     * The keys of the hash table that maps the packed locations to the nodes.
+     */
+    private int[] tableKeys;
+
+    /**
+     * The nodes of the hash table, {@link #NO_NODE} marks empty slots.
+     */
+    private int[] tableNodes;
+
+    NodeArena() {
+        nodeX = new int[INITIAL_CAPACITY];
+        nodeY = new int[INITIAL_CAPACITY];
+        nodeCost = new int[INITIAL_CAPACITY];
+        nodeHeuristic = new int[INITIAL_CAPACITY];
+        nodeParent = new int[INITIAL_CAPACITY];
+        nodeMode = new byte[INITIAL_CAPACITY];
+        nodeHeapIndex = new int[INITIAL_CAPACITY];
+        heap = new int[INITIAL_CAPACITY];
+        tableKeys = new int[INITIAL_CAPACITY * 2];
+        tableNodes = new int[INITIAL_CAPACITY * 2];
+        Arrays.fill(tableNodes, NO_NODE);
+    }
+
+    /**
+     * Remove all nodes from the arena.
+     */
+    void reset() {
+        if (nodeCount > 0) {
+            Arrays.fill(tableNodes, NO_NODE);
+        }
+        nodeCount = 0;
+        heapSize = 0;
+    }
+
+    /**
+     * Get the amount of nodes stored in the arena.
+     *
+     * @return the amount of nodes
+     */
+    @Contract(pure = true)
+    int getNodeCount() {
+        return nodeCount;
+    }
+
+    /**
+     * Add a new node to the arena. The node is not part of the heap.
+     *
+     * @param x the X offset of the node from the start location
+     * @param y the Y offset of the node from the start location
+     * @param parent the node that precedes this node or {@link #NO_NODE}
+     * @param mode the ordinal of the movement mode to reach this node
+     * @param cost the cost to reach this node
+     * @param heuristic the predicted cost to reach the target from this node
+     * @return the index of the new node
+     */
+    int addNode(int x, int y, int parent, int mode, int cost, int heuristic) {
+        if (nodeCount == nodeX.length) {
+            growNodes();
+        }
+        int node = nodeCount++;
+        nodeX[node] = x;
+        nodeY[node] = y;
+        nodeParent[node] = parent;
+        nodeMode[node] = (byte) mode;
+        nodeCost[node] = cost;
+        nodeHeuristic[node] = heuristic;
+        nodeHeapIndex[node] = NOT_IN_HEAP;
+
+        if ((nodeCount * 2) > tableKeys.length) {
+            growTable();
+        }
+        insertIntoTable(packLocation(x, y), node);
+        return node;
+    }
+
+    /**
+     * Find the node at a location.
+     *
+     * @param x the X offset of the location from the start location
+     * @param y the Y offset of the location from the start location
+     * @return the index of the node or {@link #NO_NODE} in case there is none
+     */
+    int findNode(int x, int y) {
+        int key = packLocation(x, y);
+        int mask = tableKeys.length - 1;
+        int slot = mix(key) & mask;
+        while (true) {
+            int node = tableNodes[slot];
+            if ((node == NO_NODE) || (tableKeys[slot] == key)) {
+                return node;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    /**
+     * Change the way a node is reached.
+     *
+     * @param node the node
+     * @param parent the new parent of the node
+     * @param mode the ordinal of the new movement mode to reach this node
+     * @param cost the new cost to reach this node
+     */
+    void updateNode(int node, int parent, int mode, int cost) {
+        nodeParent[node] = parent;
+        nodeMode[node] = (byte) mode;
+        nodeCost[node] = cost;
+        if (nodeHeapIndex[node] != NOT_IN_HEAP) {
+            siftUp(nodeHeapIndex[node]);
+        }
+    }
+
+    @Contract(pure = true)
+    int getX(int node) {
+        return nodeX[node];
+    }
+
+    @Contract(pure = true)
+    int getY(int node) {
+        return nodeY[node];
+    }
+
+    @Contract(pure = true)
+    int getCost(int node) {
+        return nodeCost[node];
+    }
+
+    @Contract(pure = true)
+    int getHeuristic(int node) {
+        return nodeHeuristic[node];
+    }
+
+    @Contract(pure = true)
+    int getParent(int node) {
+        return nodeParent[node];
+    }
+
+    @Contract(pure = true)
+    int getMode(int node) {
+        return nodeMode[node];
+    }
+
+    @Contract(pure = true)
+    boolean isOpen(int node) {
+        return nodeHeapIndex[node] != NOT_IN_HEAP;
+    }
+
+    @Contract(pure = true)
+    boolean isHeapEmpty() {
+        return heapSize == 0;
+    }
+
+    /**
+     * Add a node to the heap of the open nodes.
+     *
+     * @param node the node
+     */
+    void push(int node) {
+        if (heapSize == heap.length) {
+            heap = Arrays.copyOf(heap, heap.length * 2);
+        }
+        heap[heapSize] = node;
+        nodeHeapIndex[node] = heapSize;
+        heapSize++;
+        siftUp(heapSize - 1);
+    }
+
+    /**
+     * Remove the open node with the lowest predicted cost from the heap.
+     *
+     * @return the removed node
+     */
+    int poll() {
+        int result = heap[0];
+        nodeHeapIndex[result] = NOT_IN_HEAP;
+        heapSize--;
+        if (heapSize > 0) {
+            heap[0] = heap[heapSize];
+            nodeHeapIndex[heap[0]] = 0;
+            siftDown(0);
+        }
+        return result;
+    }
+
+    private void siftUp(int index) {
+        int node = heap[index];
+        int current = index;
+        while (current > 0) {
+            int parentIndex = (current - 1) >>> 1;
+            int parent = heap[parentIndex];
+            if (!isBefore(node, parent)) {
+                break;
+            }
+            heap[current] = parent;
+            nodeHeapIndex[parent] = current;
+            current = parentIndex;
+        }
+        heap[current] = node;
+        nodeHeapIndex[node] = current;
+    }
+
+    private void siftDown(int index) {
+        int node = heap[index];
+        int current = index;
+        int half = heapSize >>> 1;
+        while (current < half) {
+            int child = (current << 1) + 1;
+            int right = child + 1;
+            if ((right < heapSize) && isBefore(heap[right], heap[child])) {
+                child = right;
+            }
+            if (!isBefore(heap[child], node)) {
+                break;
+            }
+            heap[current] = heap[child];
+            nodeHeapIndex[heap[current]] = current;
+            current = child;
+        }
+        heap[current] = node;
+        nodeHeapIndex[node] = current;
+    }
+
+    /**
+     * Check if a node has to be expanded before another node. Nodes with a lower predicted cost come first, in case
+     * of a tie the node closer to the target is preferred.
+     */
+    @Contract(pure = true)
+    private boolean isBefore(int node, int other) {
+        int predicted = nodeCost[node] + nodeHeuristic[node];
+        int otherPredicted = nodeCost[other] + nodeHeuristic[other];
+        if (predicted != otherPredicted) {
+            return predicted < otherPredicted;
+        }
+        return nodeHeuristic[node] < nodeHeuristic[other];
+    }
+
+    private void growNodes() {
+        int capacity = nodeX.length * 2;
+        nodeX = Arrays.copyOf(nodeX, capacity);
+        nodeY = Arrays.copyOf(nodeY, capacity);
+        nodeCost = Arrays.copyOf(nodeCost, capacity);
+        nodeHeuristic = Arrays.copyOf(nodeHeuristic, capacity);
+        nodeParent = Arrays.copyOf(nodeParent, capacity);
+        nodeMode = Arrays.copyOf(nodeMode, capacity);
+        nodeHeapIndex = Arrays.copyOf(nodeHeapIndex, capacity);
+    }
+
+    private void growTable() {
+        tableKeys = new int[tableKeys.length * 2];
+        tableNodes = new int[tableNodes.length * 2];
+        Arrays.fill(tableNodes, NO_NODE);
+        for (int node = 0; node < nodeCount; node++) {
+            insertIntoTable(packLocation(nodeX[node], nodeY[node]), node);
+        }
+    }
+
+    private void insertIntoTable(int key, int node) {
+        int mask = tableKeys.length - 1;
+        int slot = mix(key) & mask;
+        while (tableNodes[slot] != NO_NODE) {
+            if (tableKeys[slot] == key) {
+                tableNodes[slot] = node;
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+        tableKeys[slot] = key;
+        tableNodes[slot] = node;
+    }
+
+    @Contract(pure = true)
+    private static int packLocation(int x, int y) {
+        return (x << 16) | (y & 0xFFFF);
+    }
+
+    @Contract(pure = true)
+    private static int mix(int key) {
+        int hash = key * 0x9E3779B9;
+        return hash ^ (hash >>> 16);
+    }
+}
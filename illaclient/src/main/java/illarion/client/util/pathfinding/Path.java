@@ -20,6 +20,8 @@ import org.jetbrains.annotations.Contract;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.LinkedList;
 
 /**
@@ -36,10 +38,26 @@ public final class Path {
     @Nullable
     private final ServerCoordinate destination;
 
+    /**
+     * This flag is {@code false} in case the path finder was not able to reach the target within its limits and this
+     * path only leads as close to the target as possible.
+     */
+    private final boolean complete;
+
     /**
      * Default constructor for a new path.
      */
     public Path(@Nonnull Iterable<PathNode> nodes) {
+        this(nodes, true);
+    }
+
+    /**
+     * Constructor for a new path that may end before the target.
+     *
+     * @param nodes the nodes of the path
+     * @param complete {@code true} in case the path reaches the target
+     */
+    public Path(@Nonnull Iterable<PathNode> nodes, boolean complete) {
         for (PathNode node : nodes) {
             path.addLast(node);
         }
@@ -48,6 +66,51 @@ public final class Path {
         } else {
             destination = path.getLast().getLocation();
         }
+        this.complete = complete;
+    }
+
+    /**
+     * Create a new path that follows the remaining steps of this path and continues with the steps of another path.
+     *
+     * @param continuation the path that continues from the destination of this path
+     * @return the combined path
+     */
+    @Nonnull
+    public Path append(@Nonnull Path continuation) {
+        Collection<PathNode> nodes = new ArrayList<>(path.size() + continuation.path.size());
+        nodes.addAll(path);
+        nodes.addAll(continuation.path);
+        return new Path(nodes, continuation.complete);
+    }
+
+    /**
+     * Remove the steps of this path up to a location. This is used to continue a path from a location that is
+     * already part of it.
+     *
+     * @param location the location
+     * @return {@code true} in case the location is part of the path and the steps up to this location were removed,
+     * {@code false} in case the location is not part of the path and the path was not changed
+     */
+    public boolean skipTo(@Nonnull ServerCoordinate location) {
+        int index = 0;
+        for (PathNode node : path) {
+            index++;
+            if (location.equals(node.getLocation())) {
+                path.subList(0, index).clear();
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Check if this path reaches the target it was searched for.
+     *
+     * @return {@code true} in case the path reaches the target, {@code false} in case it only leads towards it
+     */
+    @Contract(pure = true)
+    public boolean isComplete() {
+        return complete;
     }
 
     /**
@@ -100,6 +163,6 @@ public final class Path {
             return "Empty path.";
         }
         return "Path from " + path.getFirst().getLocation() + " to " + path.getLast().getLocation() +
-                " with " + path.size() + " steps";
+                " with " + path.size() + " steps" + (complete ? "" : " (partial)");
     }
 }
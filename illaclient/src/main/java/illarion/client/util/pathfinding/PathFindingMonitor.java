@@ -0,0 +1,234 @@
+/*
+ * This file is part of the Illarion project.
+ *
+ * Copyright © 2016 - Illarion e.V.
+ *
+ * Illarion is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Illarion is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ */
+package illarion.client.util.pathfinding;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nonnull;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This class keeps track of the searches done by a path finder. It counts the searches, the expanded nodes and the
+ * time spent searching and reports the values of the last full second to the log.
+ * <p>
+ * The recording function is only allowed to be called by one thread. The values can be read from any thread.
+ * </p>
+ *
+ * @author Martin Karing &lt;nitram@illarion.org&gt;
+ */
+public final class PathFindingMonitor {
+    /**
+     * The possible results of one search.
+     */
+    public enum Result {
+        /**
+         * A path to the target was found.
+         */
+        Complete,
+
+        /**
+         * The search hit its limit and found a path that leads towards the target.
+         */
+        Partial,
+
+        /**
+         * There is no path to the target.
+         */
+        Failed,
+
+        /**
+         * The search was canceled before it finished.
+         */
+        Cancelled
+    }
+
+    /**
+     * The logger that is used to report the values.
+     */
+    @Nonnull
+    private static final Logger log = LoggerFactory.getLogger(PathFindingMonitor.class);
+
+    /**
+     * The length of the time window the values are reported for.
+     */
+    private static final long WINDOW_LENGTH = TimeUnit.SECONDS.toNanos(1);
+
+    /**
+     * The total amount of searches.
+     */
+    private volatile long totalSearches;
+
+    /**
+     * The total amount of nodes expanded by all searches.
+     */
+    private volatile long totalExpandedNodes;
+
+    /**
+     * The total time spent searching in nanoseconds.
+     */
+    private volatile long totalSearchTime;
+
+    /**
+     * The longest time a single search took in nanoseconds.
+     */
+    private volatile long maxSearchTime;
+
+    /**
+     * The amount of searches for each result.
+     */
+    @Nonnull
+    private final long[] totalResults = new long[Result.values().length];
+
+    /**
+     * The time the current window started.
+     */
+    private long windowStart;
+
+    /**
+     * The amount of searches in the current window.
+     */
+    private long windowSearches;
+
+    /**
+     * The amount of expanded nodes in the current window.
+     */
+    private long windowExpandedNodes;
+
+    /**
+     * The time spent searching in the current window.
+     */
+    private long windowSearchTime;
+
+    /**
+     * The longest search in the current window.
+     */
+    private long windowMaxSearchTime;
+
+    public PathFindingMonitor() {
+        windowStart = System.nanoTime();
+    }
+
+    /**
+     * Record a finished search.
+     *
+     * @param searchTime the time the search took in nanoseconds
+     * @param expandedNodes the amount of nodes the search expanded
+     * @param result the result of the search
+     */
+    void recordSearch(long searchTime, int expandedNodes, @Nonnull Result result) {
+        totalSearches++;
+        totalExpandedNodes += expandedNodes;
+        totalSearchTime += searchTime;
+        if (searchTime > maxSearchTime) {
+            maxSearchTime = searchTime;
+        }
+        synchronized (totalResults) {
+            totalResults[result.ordinal()]++;
+        }
+
+        windowSearches++;
+        windowExpandedNodes += expandedNodes;
+        windowSearchTime += searchTime;
+        windowMaxSearchTime = Math.max(windowMaxSearchTime, searchTime);
+        updateWindow();
+    }
+
+    private void updateWindow() {
+        long now = System.nanoTime();
+        if ((now - windowStart) < WINDOW_LENGTH) {
+            return;
+        }
+
+        if (log.isDebugEnabled() && (windowSearches > 0)) {
+            log.debug("Path finding: {} searches, {} µs/search, {} µs longest search, {} nodes/search",
+                    windowSearches, TimeUnit.NANOSECONDS.toMicros(windowSearchTime / windowSearches),
+                    TimeUnit.NANOSECONDS.toMicros(windowMaxSearchTime), windowExpandedNodes / windowSearches);
+        }
+        windowSearches = 0;
+        windowExpandedNodes = 0;
+        windowSearchTime = 0;
+        windowMaxSearchTime = 0;
+        windowStart = now;
+    }
+
+    public long getTotalSearches() {
+        return totalSearches;
+    }
+
+    public long getTotalExpandedNodes() {
+        return totalExpandedNodes;
+    }
+
+    /**
+     * Get the total time spent searching.
+     *
+     * @return the time in nanoseconds
+     */
+    public long getTotalSearchTime() {
+        return totalSearchTime;
+    }
+
+    /**
+     * Get the longest time a single search took.
+     *
+     * @return the time in nanoseconds
+     */
+    public long getMaxSearchTime() {
+        return maxSearchTime;
+    }
+
+    /**
+     * Get the amount of searches that ended with a specific result.
+     *
+     * @param result the result
+     * @return the amount of searches
+     */
+    public long getTotalResults(@Nonnull Result result) {
+        synchronized (totalResults) {
+            return totalResults[result.ordinal()];
+        }
+    }
+
+    /**
+     * Get the average amount of nodes expanded by one search.
+     *
+     * @return the average amount of expanded nodes
+     */
+    public double getExpandedNodesPerSearch() {
+        long searches = totalSearches;
+        return (searches == 0) ? 0.0 : ((double) totalExpandedNodes / searches);
+    }
+
+    /**
+     * Get the average time one search took.
+     *
+     * @return the average time in nanoseconds
+     */
+    public long getSearchTimePerSearch() {
+        long searches = totalSearches;
+        return (searches == 0) ? 0 : (totalSearchTime / searches);
+    }
+
+    @Override
+    @Nonnull
+    public String toString() {
+        return "Path finding: " + totalSearches + " searches, " + getSearchTimePerSearch() + " ns/search, " +
+                String.format("%.1f", getExpandedNodesPerSearch()) + " nodes/search, " +
+                getTotalResults(Result.Partial) + " partial, " + getTotalResults(Result.Failed) + " failed, " +
+                getTotalResults(Result.Cancelled) + " cancelled";
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ * This file is part of the Illarion project.
+ *
+ * Copyright © 2016 - Illarion e.V.
+ *
+ * Illarion is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Illarion is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ */
+package illarion.client.util.pathfinding;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.GuardedBy;
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.concurrent.*;
+
+/**
+ * The path planner executes path searches in the background. All planners share one thread that is dedicated to path
+ * finding, so expensive searches do not delay the movement or the rendering.
+ * <p>
+ * Each planner handles one search at a time. Planning a new path cancels the search that was requested before, as
+ * its result is not required anymore.
+ * </p>
+ *
+ * @author Martin Karing &lt;nitram@illarion.org&gt;
+ */
+@ThreadSafe
+public final class PathPlanner {
+    /**
+     * The executor that runs the searches.
+     */
+    @Nonnull
+    private static final ExecutorService EXECUTOR = Executors.newSingleThreadExecutor(
+            new ThreadFactoryBuilder()
+                    .setNameFormat("Path Planner %d")
+                    .setDaemon(true)
+                    .build());
+
+    /**
+     * The monitor that records the searches done by the path finders of the planners.
+     */
+    @Nonnull
+    private static final PathFindingMonitor MONITOR = new PathFindingMonitor();
+
+    /**
+     * The search that was requested last.
+     */
+    @Nullable
+    @GuardedBy("this")
+    private Future<Path> currentSearch;
+
+    /**
+     * Get the monitor that records the searches of all path finders created by {@link #createPathFinder(int)}.
+     *
+     * @return the monitor
+     */
+    @Nonnull
+    public static PathFindingMonitor getMonitor() {
+        return MONITOR;
+    }
+
+    /**
+     * Create a path finder that is supposed to be used in the searches of the planners. The searches of this path
+     * finder are recorded by the monitor of the planners.
+     *
+     * @param maxExpansions the amount of nodes a search is allowed to expand
+     * @return the path finder
+     */
+    @Nonnull
+    public static PathFindingAlgorithm createPathFinder(int maxExpansions) {
+        return new AStar(maxExpansions, MONITOR);
+    }
+
+    /**
+     * Plan a path in the background. The search that was planned before by this planner is canceled.
+     *
+     * @param search the search that calculates the path
+     * @param callback the callback that is executed once the search is done, it is not executed in case the search
+     * got canceled
+     * @return the future that receives the calculated path
+     */
+    @Nonnull
+    public synchronized Future<Path> plan(@Nonnull Callable<Path> search, @Nullable Runnable callback) {
+        cancel();
+        FutureTask<Path> task = new FutureTask<Path>(search) {
+            @Override
+            protected void done() {
+                if ((callback != null) && !isCancelled()) {
+                    callback.run();
+                }
+            }
+        };
+        currentSearch = task;
+        EXECUTOR.execute(task);
+        return task;
+    }
+
+    /**
+     * Cancel the search that was planned last.
+     */
+    public synchronized void cancel() {
+        if (currentSearch != null) {
+            currentSearch.cancel(true);
+            currentSearch = null;
+        }
+    }
+}
@@ -21,41 +21,43 @@ import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import java.text.BreakIterator;
 import java.util.ArrayList;
-import java.util.Collection;
-import java.util.concurrent.Callable;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Future;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 /**
  * @author Martin Karing &lt;nitram@illarion.org&gt;
  */
-class TranslateTask implements Callable<String> {
+class TranslateTask implements Runnable {
     @Nonnull
-    private final ExecutorService executorService;
-    @Nonnull
-    private final TranslationProvider provider;
-    @Nonnull
-    private final TranslationDirection direction;
+    private final Function<String, CompletableFuture<String>> sentenceTranslator;
     @Nonnull
     private final String original;
     @Nonnull
     private final TranslatorCallback callback;
 
-    TranslateTask(@Nonnull ExecutorService executorService, @Nonnull TranslationProvider provider,
-                  @Nonnull TranslationDirection direction, @Nonnull String original,
-                  @Nonnull TranslatorCallback callback) {
-        this.executorService = executorService;
-        this.provider = provider;
-        this.direction = direction;
+    /**
+     * Create a new task to translate a line of the chat.
+     *
+     * @param sentenceTranslator the function that requests the translation of a single sentence
+     * @param original the line that is supposed to be translated
+     * @param callback the callback that receives the translated line
+     */
+    TranslateTask(@Nonnull Function<String, CompletableFuture<String>> sentenceTranslator,
+                  @Nonnull String original, @Nonnull TranslatorCallback callback) {
+        this.sentenceTranslator = sentenceTranslator;
         this.original = original;
         this.callback = callback;
     }
 
+    /**
+     * Split the line into sentences and request their translations. The callback is notified once all sentences
+     * are translated. This function does not block.
+     */
     @Override
-    @Nullable
-    public String call() throws Exception {
+    public void run() {
         String header = findHeader(original);
         String usedText = (header == null) ? original : original.substring(header.length());
         boolean foundOocMarkers = false;
@@ -67,42 +69,54 @@ class TranslateTask implements Callable<String> {
         BreakIterator iterator = BreakIterator.getSentenceInstance(Lang.getInstance().getLocale());
         iterator.setText(usedText);
 
-        Collection<Future<String>> translationTasks = new ArrayList<>();
+        List<CompletableFuture<String>> translations = new ArrayList<>();
         int start = iterator.first();
         for (int end = iterator.next(); end != BreakIterator.DONE; start = end, end = iterator.next()) {
             String line = usedText.substring(start, end).trim();
-            translationTasks.add(executorService.submit(new TranslateSentenceTask(provider, direction, line)));
+            if (!line.isEmpty()) {
+                translations.add(sentenceTranslator.apply(line));
+            }
+        }
+
+        if (translations.isEmpty()) {
+            callback.sendTranslation(null);
+            return;
         }
 
+        boolean oocMarkers = foundOocMarkers;
+        CompletableFuture.allOf(translations.toArray(new CompletableFuture<?>[translations.size()]))
+                .whenComplete((ignored, error) ->
+                        callback.sendTranslation(buildResult(header, oocMarkers, translations)));
+    }
+
+    @Nullable
+    private static String buildResult(@Nullable String header, boolean oocMarkers,
+                                      @Nonnull List<CompletableFuture<String>> translations) {
         StringBuilder resultBuilder = new StringBuilder();
         if (header != null) {
             resultBuilder.append(header);
         }
-        if (foundOocMarkers) {
+        if (oocMarkers) {
             resultBuilder.append("((");
         }
 
-        for (Future<String> task : translationTasks) {
-            String translated = task.get();
+        for (CompletableFuture<String> translation : translations) {
+            if (translation.isCompletedExceptionally()) {
+                return null;
+            }
+            String translated = translation.getNow(null);
             if (translated == null) {
-                callback.sendTranslation(null);
                 return null;
             }
-            resultBuilder.append(task.get());
+            resultBuilder.append(translated);
             resultBuilder.append(' ');
         }
 
-        if (resultBuilder.length() == 0) {
-            callback.sendTranslation(null);
-            return null;
-        }
         resultBuilder.setLength(resultBuilder.length() - 1);
-        if (foundOocMarkers) {
+        if (oocMarkers) {
             resultBuilder.append("))");
         }
-        String result = resultBuilder.toString();
-        callback.sendTranslation(result);
-        return result;
+        return resultBuilder.toString();
     }
 
     @Nonnull
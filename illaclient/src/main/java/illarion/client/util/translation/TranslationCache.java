@@ -0,0 +1,247 @@
+/*
+ * This file is part of the Illarion project.
+ *
+ * Copyright © 2016 - Illarion e.V.
+ *
+ * Illarion is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Illarion is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ */
+package illarion.client.util.translation;
+
+import org.jetbrains.annotations.Contract;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * This cache stores the translations of single sentences. The least recently used translations are dropped once the
+ * cache is full. The cache can be stored in a file, so the translations survive a restart of the client.
+ *
+ * @author Martin Karing &lt;nitram@illarion.org&gt;
+ */
+@ThreadSafe
+final class TranslationCache {
+    /**
+     * The logger that is used for the log output of this class.
+     */
+    @Nonnull
+    private static final Logger log = LoggerFactory.getLogger(TranslationCache.class);
+
+    /**
+     * The version of the file format. Files of other versions are ignored.
+     */
+    private static final int FILE_VERSION = 1;
+
+    /**
+     * The maximal length of a sentence or a translation that is stored in the cache. Longer texts are rare and not
+     * worth caching.
+     */
+    private static final int MAX_TEXT_LENGTH = 1000;
+
+    /**
+     * The pattern that matches any sequence of white spaces in a sentence.
+     */
+    @Nonnull
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    /**
+     * The cached translations, ordered from the least to the most recently used one.
+     */
+    @Nonnull
+    private final Map<String, String> translations;
+
+    /**
+     * The file the cache is stored in or {@code null} in case the cache is not persistent.
+     */
+    @Nullable
+    private final Path file;
+
+    /**
+     * This flag is set in case the cache was changed since it was loaded or stored the last time.
+     */
+    private boolean dirty;
+
+    /**
+     * Create a new cache.
+     *
+     * @param capacity the maximal amount of translations stored in the cache
+     * @param file the file the cache is stored in or {@code null} in case the cache is not supposed to be persistent
+     */
+    TranslationCache(int capacity, @Nullable Path file) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("The capacity of the cache has to be at least 1.");
+        }
+        this.file = file;
+        translations = new LinkedHashMap<String, String>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Entry<String, String> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    /**
+     * Normalize a sentence. This removes white spaces at the start and the end of the sentence and collapses any
+     * sequence of white spaces to a single space.
+     *
+     * @param sentence the sentence
+     * @return the normalized sentence
+     */
+    @Nonnull
+    @Contract(pure = true)
+    static String normalize(@Nonnull String sentence) {
+        return WHITESPACE.matcher(sentence.trim()).replaceAll(" ");
+    }
+
+    /**
+     * Get the key a translation is stored with.
+     *
+     * @param provider the provider that does the translation
+     * @param direction the direction of the translation
+     * @param sentence the normalized sentence
+     * @return the key of the translation
+     */
+    @Nonnull
+    @Contract(pure = true)
+    static String getKey(@Nonnull TranslationProvider provider, @Nonnull TranslationDirection direction,
+                         @Nonnull String sentence) {
+        return provider.getClass().getName() + '\u0000' + direction.name() + '\u0000' + sentence;
+    }
+
+    /**
+     * Get a translation from the cache.
+     *
+     * @param key the key of the translation
+     * @return the translation or {@code null} in case it is not cached
+     */
+    @Nullable
+    synchronized String get(@Nonnull String key) {
+        return translations.get(key);
+    }
+
+    /**
+     * Store a translation in the cache.
+     *
+     * @param key the key of the translation
+     * @param translation the translation
+     */
+    synchronized void put(@Nonnull String key, @Nonnull String translation) {
+        if ((key.length() > MAX_TEXT_LENGTH) || (translation.length() > MAX_TEXT_LENGTH)) {
+            return;
+        }
+        if (!translation.equals(translations.put(key, translation))) {
+            dirty = true;
+        }
+    }
+
+    /**
+     * Get the amount of translations in the cache.
+     *
+     * @return the amount of cached translations
+     */
+    synchronized int size() {
+        return translations.size();
+    }
+
+    /**
+     * Load the translations from the file of the cache. Translations that were added to the cache already are kept.
+     */
+    void load() {
+        if ((file == null) || !Files.isRegularFile(file)) {
+            return;
+        }
+        List<String[]> loaded = new ArrayList<>();
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(new GZIPInputStream(Files.newInputStream(file))))) {
+            if (in.readInt() != FILE_VERSION) {
+                log.info("Translation cache {} has a outdated format and is ignored.", file);
+                return;
+            }
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                loaded.add(new String[]{in.readUTF(), in.readUTF()});
+            }
+        } catch (IOException e) {
+            log.warn("Failed to read the translation cache {}.", file, e);
+            return;
+        }
+        synchronized (this) {
+            // The loaded entries are older than anything added in the meantime, so they have to go first.
+            Map<String, String> added = new LinkedHashMap<>(translations);
+            translations.clear();
+            for (String[] entry : loaded) {
+                translations.put(entry[0], entry[1]);
+            }
+            translations.putAll(added);
+        }
+        log.debug("Loaded {} translations from {}.", loaded.size(), file);
+    }
+
+    /**
+     * Store the translations in the file of the cache. Nothing is done in case the cache did not change since it was
+     * loaded or stored the last time.
+     */
+    void save() {
+        if (file == null) {
+            return;
+        }
+        List<Entry<String, String>> entries;
+        synchronized (this) {
+            if (!dirty) {
+                return;
+            }
+            dirty = false;
+            entries = new ArrayList<>(translations.entrySet());
+        }
+
+        Path tempFile = file.resolveSibling(file.getFileName() + ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(new GZIPOutputStream(Files.newOutputStream(tempFile))))) {
+                out.writeInt(FILE_VERSION);
+                out.writeInt(entries.size());
+                for (Entry<String, String> entry : entries) {
+                    out.writeUTF(entry.getKey());
+                    out.writeUTF(entry.getValue());
+                }
+            }
+            try {
+                Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            log.warn("Failed to store the translation cache {}.", file, e);
+            synchronized (this) {
+                dirty = true;
+            }
+        }
+    }
+}
@@ -0,0 +1,259 @@
+/*
+ * This file is part of the Illarion project.
+ *
+ * Copyright © 2016 - Illarion e.V.
+ *
+ * Illarion is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Illarion is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ */
+package illarion.client.util.translation;
+
+import illarion.common.util.PoolThreadFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The pipeline that translates single sentences. Translations are served from a cache whenever possible. Requests
+ * for a sentence that is already being translated share the pending translation, and the remaining sentences are
+ * queued and sent to the provider in batches by a small, fixed number of worker threads.
+ *
+ * @author Martin Karing &lt;nitram@illarion.org&gt;
+ */
+@ThreadSafe
+final class TranslationPipeline {
+    /**
+     * The logger that is used for the log output of this class.
+     */
+    @Nonnull
+    private static final Logger log = LoggerFactory.getLogger(TranslationPipeline.class);
+
+    /**
+     * The maximal amount of threads that send requests to the provider at the same time.
+     */
+    private static final int MAX_WORKERS = 2;
+
+    /**
+     * The maximal amount of sentences waiting for a worker. Requests beyond this limit fail right away.
+     */
+    private static final int MAX_PENDING_SENTENCES = 64;
+
+    /**
+     * The cache of the translated sentences.
+     */
+    @Nonnull
+    private final TranslationCache cache;
+
+    /**
+     * The sentences waiting to be sent to the provider.
+     */
+    @Nonnull
+    private final BlockingQueue<PendingSentence> pendingSentences;
+
+    /**
+     * The pending translations of the sentences that are queued or being translated by the provider right now.
+     */
+    @Nonnull
+    private final ConcurrentMap<String, CompletableFuture<String>> inFlight;
+
+    /**
+     * The executor the workers are running in.
+     */
+    @Nonnull
+    private final ExecutorService executorService;
+
+    /**
+     * The amount of workers that are currently running.
+     */
+    @Nonnull
+    private final AtomicInteger activeWorkers = new AtomicInteger();
+
+    /**
+     * Create a new pipeline.
+     *
+     * @param cache the cache of the translated sentences
+     */
+    TranslationPipeline(@Nonnull TranslationCache cache) {
+        this.cache = cache;
+        pendingSentences = new ArrayBlockingQueue<>(MAX_PENDING_SENTENCES);
+        inFlight = new ConcurrentHashMap<>();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(MAX_WORKERS, MAX_WORKERS, 30, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), new PoolThreadFactory("Translator", true));
+        executor.allowCoreThreadTimeOut(true);
+        executorService = executor;
+        executorService.execute(cache::load);
+    }
+
+    /**
+     * Request the translation of a sentence.
+     *
+     * @param provider the provider that does the translation
+     * @param direction the direction of the translation
+     * @param sentence the sentence
+     * @return the future that is completed with the translation or with {@code null} in case the translation failed
+     */
+    @Nonnull
+    CompletableFuture<String> translate(@Nonnull TranslationProvider provider,
+                                        @Nonnull TranslationDirection direction, @Nonnull String sentence) {
+        String normalized = TranslationCache.normalize(sentence);
+        String key = TranslationCache.getKey(provider, direction, normalized);
+        String cached = cache.get(key);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(cached);
+        }
+
+        CompletableFuture<String> translation = new CompletableFuture<>();
+        CompletableFuture<String> running = inFlight.putIfAbsent(key, translation);
+        if (running != null) {
+            return running;
+        }
+        if (!pendingSentences.offer(new PendingSentence(provider, direction, normalized, key, translation))) {
+            log.warn("Too many sentences are waiting for a translation. Dropping: {}", normalized);
+            inFlight.remove(key, translation);
+            translation.complete(null);
+            return translation;
+        }
+        startWorker();
+        return translation;
+    }
+
+    /**
+     * Store the cache of the pipeline in the background.
+     */
+    void saveCache() {
+        executorService.execute(cache::save);
+    }
+
+    /**
+     * Start another worker in case there are sentences waiting and not all workers are running.
+     */
+    private void startWorker() {
+        while (!pendingSentences.isEmpty()) {
+            int workers = activeWorkers.get();
+            if (workers >= MAX_WORKERS) {
+                return;
+            }
+            if (activeWorkers.compareAndSet(workers, workers + 1)) {
+                executorService.execute(this::processPendingSentences);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Send the pending sentences to the provider until the queue is empty.
+     */
+    private void processPendingSentences() {
+        try {
+            while (true) {
+                List<PendingSentence> batch = takeBatch();
+                if (batch.isEmpty()) {
+                    return;
+                }
+                translateBatch(batch);
+            }
+        } finally {
+            activeWorkers.decrementAndGet();
+            // A sentence may have been queued while this worker was about to stop.
+            startWorker();
+        }
+    }
+
+    /**
+     * Take the next batch of sentences from the queue. All sentences in one batch are translated by the same
+     * provider in the same direction.
+     *
+     * @return the sentences of the batch or a empty list in case no sentence is waiting
+     */
+    @Nonnull
+    private List<PendingSentence> takeBatch() {
+        List<PendingSentence> batch = new ArrayList<>();
+        synchronized (pendingSentences) {
+            PendingSentence first = pendingSentences.poll();
+            if (first == null) {
+                return batch;
+            }
+            batch.add(first);
+            int maxBatchSize = first.provider.getMaxBatchSize();
+            while (batch.size() < maxBatchSize) {
+                PendingSentence next = pendingSentences.peek();
+                if ((next == null) || (next.provider != first.provider) || (next.direction != first.direction)) {
+                    break;
+                }
+                batch.add(pendingSentences.poll());
+            }
+        }
+        return batch;
+    }
+
+    /**
+     * Translate a batch of sentences and complete their pending translations.
+     *
+     * @param batch the sentences
+     */
+    private void translateBatch(@Nonnull List<PendingSentence> batch) {
+        PendingSentence first = batch.get(0);
+        List<String> sentences = new ArrayList<>(batch.size());
+        for (PendingSentence pending : batch) {
+            sentences.add(pending.sentence);
+        }
+
+        List<String> results = null;
+        if (first.provider.isProviderWorking()) {
+            try {
+                results = first.provider.getTranslations(sentences, first.direction);
+            } catch (RuntimeException e) {
+                log.error("Translation provider failed to translate {} sentences.", sentences.size(), e);
+            }
+        }
+
+        for (int i = 0; i < batch.size(); i++) {
+            PendingSentence pending = batch.get(i);
+            String result = ((results != null) && (i < results.size())) ? results.get(i) : null;
+            if (result != null) {
+                cache.put(pending.key, result);
+            }
+            inFlight.remove(pending.key, pending.translation);
+            pending.translation.complete(result);
+        }
+    }
+
+    /**
+     * A sentence that is waiting to be sent to the provider.
+     */
+    private static final class PendingSentence {
+        @Nonnull
+        private final TranslationProvider provider;
+        @Nonnull
+        private final TranslationDirection direction;
+        @Nonnull
+        private final String sentence;
+        @Nonnull
+        private final String key;
+        @Nonnull
+        private final CompletableFuture<String> translation;
+
+        PendingSentence(@Nonnull TranslationProvider provider, @Nonnull TranslationDirection direction,
+                        @Nonnull String sentence, @Nonnull String key,
+                        @Nonnull CompletableFuture<String> translation) {
+            this.provider = provider;
+            this.direction = direction;
+            this.sentence = sentence;
+            this.key = key;
+            this.translation = translation;
+        }
+    }
+}
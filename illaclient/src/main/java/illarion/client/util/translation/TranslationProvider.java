@@ -17,6 +17,8 @@ package illarion.client.util.translation;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * This interface is the common definition for the translation providers. It allows the common class to query the
@@ -35,6 +37,34 @@ public interface TranslationProvider {
     @Nullable
     String getTranslation(@Nonnull String original, @Nonnull TranslationDirection direction);
 
+    /**
+     * Get the translated versions of multiple texts. Providers that are able to translate multiple texts with a
+     * single request to their service should override this function along with {@link #getMaxBatchSize()}. The
+     * default implementation translates the texts one by one.
+     *
+     * @param originals the original texts that are supposed to be translated, at most {@link #getMaxBatchSize()}
+     * @param direction The translation direction
+     * @return the translated texts in the order of the original texts, the entries of texts that failed to translate
+     * are {@code null}
+     */
+    @Nonnull
+    default List<String> getTranslations(@Nonnull List<String> originals, @Nonnull TranslationDirection direction) {
+        List<String> result = new ArrayList<>(originals.size());
+        for (String original : originals) {
+            result.add(getTranslation(original, direction));
+        }
+        return result;
+    }
+
+    /**
+     * Get the maximal amount of texts that are passed to {@link #getTranslations(List, TranslationDirection)} at once.
+     *
+     * @return the maximal amount of texts in one request
+     */
+    default int getMaxBatchSize() {
+        return 1;
+    }
+
     /**
      * Check if the provider is working correctly.
      *
@@ -20,6 +20,8 @@ import illarion.client.util.Lang;
 import illarion.client.util.translation.mymemory.MyMemoryProvider;
 import illarion.common.config.Config;
 import illarion.common.config.ConfigChangedEvent;
+import illarion.common.util.DirectoryManager;
+import illarion.common.util.DirectoryManager.Directory;
 import org.bushe.swing.event.annotation.AnnotationProcessor;
 import org.bushe.swing.event.annotation.EventTopicSubscriber;
 import org.jetbrains.annotations.Contract;
@@ -28,8 +30,7 @@ import org.slf4j.LoggerFactory;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.nio.file.Path;
 
 /**
  * This class handles the translations that are queried from a server.
@@ -48,20 +49,45 @@ public class Translator {
     public static final int CFG_VALUE_DIRECTION_DE_EN = 2;
     @Nonnull
     private static final Logger log = LoggerFactory.getLogger(Translator.class);
+
+    /**
+     * The maximal amount of translated sentences that are kept in the cache.
+     */
+    private static final int CACHE_CAPACITY = 2000;
+
+    /**
+     * The name of the file in the user directory that stores the cache of translated sentences.
+     */
+    @Nonnull
+    private static final String CACHE_FILE = "translations.cache";
+
     @Nonnull
-    private final ExecutorService executorService;
+    private final TranslationPipeline pipeline;
     @Nullable
     private TranslationProvider provider;
     @Nonnull
     private TranslationDirection direction;
 
     public Translator() {
-        provider = getCfgProvider(IllaClient.getCfg());
-        direction = getCfgDirection(IllaClient.getCfg());
-        executorService = Executors.newCachedThreadPool();
+        this(getCfgProvider(IllaClient.getCfg()), getCfgDirection(IllaClient.getCfg()),
+                DirectoryManager.getInstance().getDirectory(Directory.User).resolve(CACHE_FILE));
         AnnotationProcessor.process(this);
     }
 
+    /**
+     * Create a translator that is not bound to the configuration.
+     *
+     * @param provider the provider used for the translations
+     * @param direction the direction of the translations
+     * @param cacheFile the file the translated sentences are stored in or {@code null} to keep them in memory only
+     */
+    Translator(@Nullable TranslationProvider provider, @Nonnull TranslationDirection direction,
+               @Nullable Path cacheFile) {
+        this.provider = provider;
+        this.direction = direction;
+        pipeline = new TranslationPipeline(new TranslationCache(CACHE_CAPACITY, cacheFile));
+    }
+
     @Nullable
     private static TranslationProvider getCfgProvider(@Nonnull Config cfg) {
         int value = cfg.getInteger(CFG_KEY_PROVIDER);
@@ -106,8 +132,11 @@ public class Translator {
 
     public void translate(@Nonnull String original, @Nonnull TranslatorCallback callback) {
         if (isServiceEnabled()) {
-            assert provider != null; // ensured by: isServiceEnabled()
-            executorService.submit(new TranslateTask(executorService, provider, direction, original, callback));
+            TranslationProvider usedProvider = provider;
+            TranslationDirection usedDirection = direction;
+            assert usedProvider != null; // ensured by: isServiceEnabled()
+            new TranslateTask(sentence -> pipeline.translate(usedProvider, usedDirection, sentence), original,
+                    callback).run();
         } else {
             callback.sendTranslation(null);
         }
@@ -116,4 +145,11 @@ public class Translator {
     public boolean isServiceEnabled() {
         return (provider != null) && provider.isProviderWorking();
     }
+
+    /**
+     * Store the translated sentences, so they are available again after a restart of the client.
+     */
+    public void saveCache() {
+        pipeline.saveCache();
+    }
 }
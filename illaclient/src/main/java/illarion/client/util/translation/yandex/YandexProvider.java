@@ -37,6 +37,7 @@ import java.net.URLConnection;
 import java.net.URLEncoder;
 import java.nio.charset.Charset;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Random;
 
@@ -49,6 +50,11 @@ public class YandexProvider implements TranslationProvider {
     @Nonnull
     private static final Logger log = LoggerFactory.getLogger(YandexProvider.class);
 
+    /**
+     * The maximal amount of texts that are sent to the service with one request.
+     */
+    private static final int MAX_BATCH_SIZE = 10;
+
     @Nullable
     private final URL serviceUrl;
 
@@ -99,6 +105,55 @@ public class YandexProvider implements TranslationProvider {
     @Nullable
     @Override
     public String getTranslation(@Nonnull String original, @Nonnull TranslationDirection direction) {
+        List<String> result = requestTranslations(Collections.singletonList(original), direction);
+        if (result == null) {
+            return null;
+        }
+        if (result.size() == 1) {
+            return result.get(0);
+        }
+        StringBuilder resultBuilder = new StringBuilder();
+        for (String text : result) {
+            resultBuilder.append(text).append(' ');
+        }
+        return resultBuilder.toString().trim();
+    }
+
+    @Nonnull
+    @Override
+    public List<String> getTranslations(@Nonnull List<String> originals, @Nonnull TranslationDirection direction) {
+        List<String> result = requestTranslations(originals, direction);
+        if ((result != null) && (result.size() == originals.size())) {
+            return result;
+        }
+        if (result == null) {
+            return Collections.nCopies(originals.size(), null);
+        }
+        /* The service split or merged some of the texts, so there is no way to tell which translation belongs to
+         * which text. Translating the texts one by one keeps them apart. */
+        log.warn("Yandex returned {} translations for {} texts.", result.size(), originals.size());
+        List<String> translations = new ArrayList<>(originals.size());
+        for (String original : originals) {
+            translations.add(getTranslation(original, direction));
+        }
+        return translations;
+    }
+
+    @Override
+    public int getMaxBatchSize() {
+        return MAX_BATCH_SIZE;
+    }
+
+    /**
+     * Send a request to translate one or more texts to the service.
+     *
+     * @param originals the texts that are supposed to be translated
+     * @param direction the translation direction
+     * @return the texts returned by the service or {@code null} in case the request failed
+     */
+    @Nullable
+    private List<String> requestTranslations(@Nonnull List<String> originals,
+                                             @Nonnull TranslationDirection direction) {
         if (!isProviderWorking()) {
             return null;
         }
@@ -106,8 +161,10 @@ public class YandexProvider implements TranslationProvider {
         StringBuilder queryBuilder = new StringBuilder();
         queryBuilder.append(serviceUrl).append('?');
         try {
-            queryBuilder.append("text=").append(URLEncoder.encode(original, "UTF-8"));
-            queryBuilder.append('&').append("lang=").append(getLang(direction));
+            for (String original : originals) {
+                queryBuilder.append("text=").append(URLEncoder.encode(original, "UTF-8")).append('&');
+            }
+            queryBuilder.append("lang=").append(getLang(direction));
             queryBuilder.append("&srv=tr-text");
 
             URL queryUrl = new URL(queryBuilder.toString());
@@ -119,17 +176,8 @@ public class YandexProvider implements TranslationProvider {
                         .setDateFormat("yyyy-MM-dd HH:mm:ss")
                         .create();
                 Response response = gson.fromJson(rd, Response.class);
-                if (response != null) {
-                    List<String> result = response.getTexts();
-                    if (result.size() == 1) {
-                        return result.get(0);
-                    } else if (result.size() > 1) {
-                        StringBuilder resultBuilder = new StringBuilder();
-                        for (String text : result) {
-                            resultBuilder.append(text).append(' ');
-                        }
-                        return resultBuilder.toString().trim();
-                    }
+                if ((response != null) && !response.getTexts().isEmpty()) {
+                    return response.getTexts();
                 }
             } catch (IOException e) {
                 log.error("Error while reading from the service.", e);
@@ -1146,6 +1146,7 @@ public final class Char implements AnimatedMove {
         }
         ServerCoordinate oldCoordinates = location;
         location = newLocation;
+        World.getPeople().updateCharacterLocation(this);
 
         if (oldCoordinates == null) {
             updateAvatar();
@@ -0,0 +1,259 @@
+/*
+ * This file is part of the Illarion project.
+ *
+ * Copyright © 2016 - Illarion e.V.
+ *
+ * Illarion is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Illarion is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ */
+package illarion.client.world;
+
+import illarion.client.graphics.Avatar;
+import illarion.common.types.Rectangle;
+import illarion.common.types.ServerCoordinate;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.NotThreadSafe;
+import java.util.*;
+
+/**
+ * This index stores the characters by their location on the map and by the area their avatars cover on the display.
+ * It allows to find the characters at a location or display point without checking every character known to the
+ * client.
+ * <p>
+ * The area on the display is organized in a grid of square buckets. Each avatar is registered in every bucket its
+ * display area touches.
+ *
+ * @author Martin Karing &lt;nitram@illarion.org&gt;
+ */
+@NotThreadSafe
+final class CharacterIndex {
+    /**
+     * The amount of bits a display coordinate is shifted to get the coordinate of the bucket.
+     */
+    private static final int BUCKET_BITS = 6;
+
+    /**
+     * The characters stored by their location on the map.
+     */
+    @Nonnull
+    private final Map<ServerCoordinate, List<Char>> locations;
+
+    /**
+     * The location every character is currently registered at.
+     */
+    @Nonnull
+    private final Map<Char, ServerCoordinate> registeredLocations;
+
+    /**
+     * The display area buckets of the characters.
+     */
+    @Nonnull
+    private final Map<Long, List<HitArea>> hitBuckets;
+
+    /**
+     * The display area every character is currently registered with.
+     */
+    @Nonnull
+    private final Map<Char, HitArea> hitAreas;
+
+    /**
+     * The display area of one avatar of a character.
+     */
+    private static final class HitArea {
+        /**
+         * The character the area belongs to.
+         */
+        @Nonnull
+        private final Char character;
+
+        /**
+         * The avatar that reported the area.
+         */
+        @Nonnull
+        private final Avatar avatar;
+
+        /**
+         * The area on the display.
+         */
+        @Nonnull
+        private final Rectangle area;
+
+        HitArea(@Nonnull Char character, @Nonnull Avatar avatar, @Nonnull Rectangle area) {
+            this.character = character;
+            this.avatar = avatar;
+            this.area = new Rectangle(area);
+        }
+    }
+
+    CharacterIndex() {
+        locations = new HashMap<>();
+        registeredLocations = new IdentityHashMap<>();
+        hitBuckets = new HashMap<>();
+        hitAreas = new IdentityHashMap<>();
+    }
+
+    /**
+     * Update the location of a character in the index.
+     *
+     * @param character the character
+     * @param location the new location of the character or {@code null} to remove it from the location index
+     */
+    void setLocation(@Nonnull Char character, @Nullable ServerCoordinate location) {
+        ServerCoordinate oldLocation = registeredLocations.get(character);
+        if (Objects.equals(oldLocation, location)) {
+            return;
+        }
+        if (oldLocation != null) {
+            List<Char> charsAtOldLocation = locations.get(oldLocation);
+            if (charsAtOldLocation != null) {
+                charsAtOldLocation.remove(character);
+                if (charsAtOldLocation.isEmpty()) {
+                    locations.remove(oldLocation);
+                }
+            }
+        }
+        if (location == null) {
+            registeredLocations.remove(character);
+        } else {
+            registeredLocations.put(character, location);
+            locations.computeIfAbsent(location, key -> new ArrayList<>(1)).add(character);
+        }
+    }
+
+    /**
+     * Get a character at a location on the map.
+     *
+     * @param location the location
+     * @return the character at this location or {@code null} in case there is none
+     */
+    @Nullable
+    Char getCharacterAt(@Nonnull ServerCoordinate location) {
+        List<Char> charsAtLocation = locations.get(location);
+        if ((charsAtLocation == null) || charsAtLocation.isEmpty()) {
+            return null;
+        }
+        return charsAtLocation.get(0);
+    }
+
+    /**
+     * Update the area on the display a character covers.
+     *
+     * @param character the character
+     * @param avatar the avatar of the character that reports the area
+     * @param area the area on the display
+     */
+    void setHitArea(@Nonnull Char character, @Nonnull Avatar avatar, @Nonnull Rectangle area) {
+        HitArea oldArea = hitAreas.get(character);
+        if ((oldArea != null) && (oldArea.avatar == avatar) && oldArea.area.equals(area)) {
+            return;
+        }
+        if (oldArea != null) {
+            removeFromBuckets(oldArea);
+        }
+        if (area.isEmpty()) {
+            hitAreas.remove(character);
+            return;
+        }
+        HitArea newArea = new HitArea(character, avatar, area);
+        hitAreas.put(character, newArea);
+        int lastBucketX = newArea.area.getRight() >> BUCKET_BITS;
+        int lastBucketY = newArea.area.getTop() >> BUCKET_BITS;
+        for (int bucketX = newArea.area.getLeft() >> BUCKET_BITS; bucketX <= lastBucketX; bucketX++) {
+            for (int bucketY = newArea.area.getBottom() >> BUCKET_BITS; bucketY <= lastBucketY; bucketY++) {
+                hitBuckets.computeIfAbsent(getBucketKey(bucketX, bucketY), key -> new ArrayList<>(4)).add(newArea);
+            }
+        }
+    }
+
+    /**
+     * Remove the display area of a character from the index.
+     *
+     * @param character the character
+     * @param avatar the avatar that registered the area, the area is only removed if it was reported by this avatar
+     */
+    void removeHitArea(@Nonnull Char character, @Nonnull Avatar avatar) {
+        HitArea oldArea = hitAreas.get(character);
+        if ((oldArea != null) && (oldArea.avatar == avatar)) {
+            hitAreas.remove(character);
+            removeFromBuckets(oldArea);
+        }
+    }
+
+    /**
+     * Get the character at a point on the display. In case multiple characters cover this point, the one with the
+     * avatar that is rendered on top is selected.
+     *
+     * @param displayX the X coordinate on the display
+     * @param displayY the Y coordinate on the display
+     * @return the character at this point or {@code null} in case there is none
+     */
+    @Nullable
+    Char getCharacterOnDisplayLoc(int displayX, int displayY) {
+        List<HitArea> bucket = hitBuckets.get(getBucketKey(displayX >> BUCKET_BITS, displayY >> BUCKET_BITS));
+        if (bucket == null) {
+            return null;
+        }
+        @Nullable HitArea result = null;
+        for (HitArea hitArea : bucket) {
+            if ((hitArea.character.getAvatar() == hitArea.avatar) && hitArea.area.isInside(displayX, displayY)) {
+                if ((result == null) || (hitArea.avatar.getOrder() < result.avatar.getOrder())) {
+                    result = hitArea;
+                }
+            }
+        }
+        return (result == null) ? null : result.character;
+    }
+
+    /**
+     * Remove a character entirely from the index.
+     *
+     * @param character the character
+     */
+    void remove(@Nonnull Char character) {
+        setLocation(character, null);
+        HitArea oldArea = hitAreas.remove(character);
+        if (oldArea != null) {
+            removeFromBuckets(oldArea);
+        }
+    }
+
+    /**
+     * Remove all characters from the index.
+     */
+    void clear() {
+        locations.clear();
+        registeredLocations.clear();
+        hitBuckets.clear();
+        hitAreas.clear();
+    }
+
+    private void removeFromBuckets(@Nonnull HitArea hitArea) {
+        int lastBucketX = hitArea.area.getRight() >> BUCKET_BITS;
+        int lastBucketY = hitArea.area.getTop() >> BUCKET_BITS;
+        for (int bucketX = hitArea.area.getLeft() >> BUCKET_BITS; bucketX <= lastBucketX; bucketX++) {
+            for (int bucketY = hitArea.area.getBottom() >> BUCKET_BITS; bucketY <= lastBucketY; bucketY++) {
+                long key = getBucketKey(bucketX, bucketY);
+                List<HitArea> bucket = hitBuckets.get(key);
+                if (bucket != null) {
+                    bucket.remove(hitArea);
+                    if (bucket.isEmpty()) {
+                        hitBuckets.remove(key);
+                    }
+                }
+            }
+        }
+    }
+
+    private static long getBucketKey(int bucketX, int bucketY) {
+        return ((long) bucketX << 32) | (bucketY & 0xFFFFFFFFL);
+    }
+}
@@ -33,21 +33,17 @@ import org.bushe.swing.event.annotation.EventTopicPatternSubscriber;
 import org.illarion.engine.Engine;
 import org.illarion.engine.EngineException;
 import org.illarion.engine.graphic.Color;
+import org.illarion.engine.graphic.LightBuffer;
 import org.illarion.engine.graphic.LightingMap;
 import org.jetbrains.annotations.Contract;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
-import javax.annotation.concurrent.GuardedBy;
 import javax.annotation.concurrent.ThreadSafe;
-import java.util.Collection;
-import java.util.HashMap;
-import java.util.HashSet;
-import java.util.Map;
+import java.util.*;
 import java.util.Map.Entry;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
-import java.util.stream.Collectors;
 
 /**
  * This handler stores all map data and ensures the updates of the map. This
@@ -110,7 +106,8 @@ public final class GameMap implements LightingMap, Stoppable {
     private final InteractiveMap interactive;
 
     /**
-     * The lock that secures the map tiles.
+     * The lock that secures the compound modifications of the map tiles. Reading single tiles does not require this
+     * lock.
      */
     @Nonnull
     private final ReadWriteLock mapLock;
@@ -122,11 +119,10 @@ public final class GameMap implements LightingMap, Stoppable {
     private final GameMiniMap miniMap;
 
     /**
-     * The tiles of the map. The key of the hash map is the location key of the tiles location.
+     * The tiles of the map.
      */
     @Nonnull
-    @GuardedBy("mapLock")
-    private final Map<ServerCoordinate, MapTile> tiles;
+    private final MapTileStore tiles;
 
     /**
      * This is the list of active quest markers that show where a quest starts.
@@ -160,7 +156,7 @@ public final class GameMap implements LightingMap, Stoppable {
      * Default constructor of the map handler.
      */
     public GameMap(@Nonnull Engine engine) throws EngineException {
-        tiles = new HashMap<>();
+        tiles = new MapTileStore();
         interactive = new InteractiveMap(this);
 
         activeQuestStartMarkers = new HashMap<>();
@@ -334,14 +330,16 @@ public final class GameMap implements LightingMap, Stoppable {
     /**
      * Determines whether a map location accepts the light from a specific direction.
      *
-     * @param coordinate the location of the tile
+     * @param x the x coordinate of the tile
+     * @param y the y coordinate of the tile
+     * @param z the z coordinate of the tile
      * @param dx the X-Delta of the light ray direction
      * @param dy the Y-Delta of the light ray direction
      * @return {@code true} if the position accepts the light, false if not
      */
     @Override
-    public boolean acceptsLight(@Nonnull ServerCoordinate coordinate, int dx, int dy) {
-        MapTile tile = getMapAt(coordinate);
+    public boolean acceptsLight(int x, int y, int z, int dx, int dy) {
+        MapTile tile = getMapAt(x, y, z);
         if (tile != null) {
             switch (tile.getFace()) {
                 case ItemInfo.FACE_ALL:
@@ -367,13 +365,15 @@ public final class GameMap implements LightingMap, Stoppable {
     /**
      * Determines how much the tile blocks the view.
      *
-     * @param coordinate the location of the tile
+     * @param x the x coordinate of the tile
+     * @param y the y coordinate of the tile
+     * @param z the z coordinate of the tile
      * @return obscurity of the tile, 0 for clear view {@link LightingMap#BLOCKED_VIEW} for fully blocked
      */
     @Override
     @Contract(pure = true)
-    public int blocksView(@Nonnull ServerCoordinate coordinate) {
-        MapTile tile = getMapAt(coordinate);
+    public int blocksView(int x, int y, int z) {
+        MapTile tile = getMapAt(x, y, z);
         if (tile == null) {
             return 0;
         }
@@ -392,12 +392,11 @@ public final class GameMap implements LightingMap, Stoppable {
      * Clear the entire map. This will cause all the tiles and items to be removed. It does not touch the characters.
      */
     public void clear() {
-        MapTile[] oldTiles = null;
+        List<MapTile> oldTiles;
 
         mapLock.writeLock().lock();
         try {
-            oldTiles = tiles.values().toArray(new MapTile[tiles.size()]);
-            tiles.clear();
+            oldTiles = tiles.clear();
         } finally {
             mapLock.writeLock().unlock();
         }
@@ -477,12 +476,22 @@ public final class GameMap implements LightingMap, Stoppable {
     @Nullable
     @Contract(pure = true)
     public MapTile getMapAt(@Nonnull ServerCoordinate coordinate) {
-        mapLock.readLock().lock();
-        try {
-            return tiles.get(coordinate);
-        } finally {
-            mapLock.readLock().unlock();
-        }
+        return tiles.get(coordinate.getX(), coordinate.getY(), coordinate.getZ());
+    }
+
+    /**
+     * Get a map tile at a specified location. This function does not allocate any objects and does not block
+     * unless the map is modified at the same time.
+     *
+     * @param x the x coordinate of the location
+     * @param y the y coordinate of the location
+     * @param z the z coordinate of the location
+     * @return the map tile at the location or {@code null}
+     */
+    @Nullable
+    @Contract(pure = true)
+    public MapTile getMapAt(int x, int y, int z) {
+        return tiles.get(x, y, z);
     }
 
     /**
@@ -505,7 +514,7 @@ public final class GameMap implements LightingMap, Stoppable {
         @Nullable MapTile removedTile = null;
         mapLock.writeLock().lock();
         try {
-            removedTile = tiles.remove(coordinate);
+            removedTile = tiles.remove(coordinate.getX(), coordinate.getY(), coordinate.getZ());
         } finally {
             mapLock.writeLock().unlock();
         }
@@ -539,16 +548,16 @@ public final class GameMap implements LightingMap, Stoppable {
      * Render lights based on the tile light and the ambient light generated by the current IG time and the weather.
      */
     @Override
-    public void renderLights() {
-        mapLock.writeLock().lock();
+    public void renderLights(@Nonnull LightBuffer lights) {
+        mapLock.readLock().lock();
         try {
             Color ambientLight = World.getWeather().getAmbientLight();
-            for (MapTile tile : tiles.values()) {
-                tile.renderLight();
+            tiles.forEach(tile -> {
+                tile.renderLight(lights);
                 tile.applyAmbientLight(ambientLight);
-            }
+            });
         } finally {
-            mapLock.writeLock().unlock();
+            mapLock.readLock().unlock();
         }
 
         World.getPeople().updateLight();
@@ -558,9 +567,7 @@ public final class GameMap implements LightingMap, Stoppable {
         mapLock.writeLock().lock();
         try {
             Color ambientLight = World.getWeather().getAmbientLight();
-            for (MapTile tile : tiles.values()) {
-                tile.applyAmbientLight(ambientLight);
-            }
+            tiles.forEach(tile -> tile.applyAmbientLight(ambientLight));
         } finally {
             mapLock.writeLock().unlock();
         }
@@ -574,20 +581,6 @@ public final class GameMap implements LightingMap, Stoppable {
         miniMap.saveShutdown();
     }
 
-    /**
-     * Set a light color on a tile.
-     *
-     * @param coordinate the location of the map tile on the server map
-     * @param color the color that shall be set for this tile
-     */
-    @Override
-    public void setLight(@Nonnull ServerCoordinate coordinate, @Nonnull Color color) {
-        MapTile tile = getMapAt(coordinate);
-        if (tile != null) {
-            tile.addLight(color);
-        }
-    }
-
     /**
      * This function sends all tiles to the map processor and causes it to check the tiles again.
      */
@@ -595,7 +588,11 @@ public final class GameMap implements LightingMap, Stoppable {
         Collection<ServerCoordinate> tilesToDelete = new HashSet<>();
         mapLock.readLock().lock();
         try {
-            tilesToDelete.addAll(tiles.values().stream().filter(GameMapProcessor2::isOutsideOfClipping).map(MapTile::getCoordinates).collect(Collectors.toList()));
+            tiles.forEach(tile -> {
+                if (GameMapProcessor2.isOutsideOfClipping(tile)) {
+                    tilesToDelete.add(tile.getCoordinates());
+                }
+            });
         } finally {
             mapLock.readLock().unlock();
         }
@@ -609,12 +606,27 @@ public final class GameMap implements LightingMap, Stoppable {
         }
     }
 
+    /**
+     * Perform the updates of a entire set of tiles, like a map stripe. The tiles that are newly added to the map are
+     * processed by the map processor all at once before they are added to the map.
+     *
+     * @param updateDataList the updates to apply
+     */
     public void updateTiles(@Nonnull Iterable<TileUpdate> updateDataList) {
+        List<MapTile> newTiles = new ArrayList<>();
+        List<TileUpdate> changedUpdates = new ArrayList<>();
         mapLock.writeLock().lock();
         try {
             for (@Nonnull TileUpdate updateData : updateDataList) {
-                updateTile(updateData);
+                if (applyUpdate(updateData, newTiles)) {
+                    changedUpdates.add(updateData);
+                }
             }
+            if (!newTiles.isEmpty()) {
+                GameMapProcessor2.processTiles(newTiles);
+                newTiles.forEach(this::insertTile);
+            }
+            changedUpdates.forEach(this::notifyTileChanged);
         } finally {
             mapLock.writeLock().unlock();
         }
@@ -627,69 +639,103 @@ public final class GameMap implements LightingMap, Stoppable {
      * @param updateData the data of the update
      */
     public void updateTile(@Nonnull TileUpdate updateData) {
-        boolean changedSomething = false;
+        if (applyUpdate(updateData, null)) {
+            notifyTileChanged(updateData);
+        }
+    }
+
+    /**
+     * Apply the update information to the map.
+     *
+     * @param updateData the data of the update
+     * @param newTiles the list that receives newly created tiles or {@code null} in case new tiles are supposed to
+     * be processed and added to the map right away
+     * @return {@code true} in case anything on the map changed
+     */
+    private boolean applyUpdate(@Nonnull TileUpdate updateData, @Nullable List<MapTile> newTiles) {
         ServerCoordinate coordinate = updateData.getLocation();
 
         if (updateData.getTileId() == MapTile.ID_NONE) {
-            changedSomething = removeTile(coordinate);
-        } else {
-            MapTile tile = getMapAt(coordinate);
-            boolean newTile = tile == null;
-
-            // create a tile for this location if none was found
-            if (newTile) {
-                tile = new MapTile(updateData.getLocation());
-            }
+            return removeTile(coordinate);
+        }
 
-            // update tile from update info
-            if (tile.update(updateData)) {
-                changedSomething = true;
-            }
+        boolean changedSomething = false;
+        MapTile tile = getMapAt(coordinate);
+        boolean newTile = tile == null;
+
+        // create a tile for this location if none was found
+        if (newTile) {
+            tile = new MapTile(updateData.getLocation());
+        }
+
+        // update tile from update info
+        if (tile.update(updateData)) {
+            changedSomething = true;
+        }
 
-            if (newTile) {
-                tile.applyAmbientLight(World.getWeather().getAmbientLight());
-                setColorLinks(tile);
+        if (newTile) {
+            tile.renderLight(World.getLights().getCurrentLights());
+            tile.applyAmbientLight(World.getWeather().getAmbientLight());
+            setColorLinks(tile);
+            if (newTiles == null) {
                 GameMapProcessor2.processTile(tile);
+                insertTile(tile);
+            } else {
+                newTiles.add(tile);
+            }
+            changedSomething = true;
+        }
+        return changedSomething;
+    }
 
-                mapLock.writeLock().lock();
-                try {
-                    tiles.put(coordinate, tile);
-                } finally {
-                    mapLock.writeLock().unlock();
-                }
+    /**
+     * Add a new tile that was already processed to the map.
+     *
+     * @param tile the tile to add
+     */
+    private void insertTile(@Nonnull MapTile tile) {
+        ServerCoordinate coordinate = tile.getCoordinates();
+        mapLock.writeLock().lock();
+        try {
+            tiles.put(coordinate.getX(), coordinate.getY(), coordinate.getZ(), tile);
+        } finally {
+            mapLock.writeLock().unlock();
+        }
 
-                QuestMarkerCarrier inactiveMarker = inactiveQuestTargetLocations.remove(updateData.getLocation());
-                if (inactiveMarker != null) {
-                    Pointer pointer = inactiveMarker.getGuiMarker();
+        QuestMarkerCarrier inactiveMarker = inactiveQuestTargetLocations.remove(coordinate);
+        if (inactiveMarker != null) {
+            Pointer pointer = inactiveMarker.getGuiMarker();
 
-                    QuestMarker newMarker = new QuestMarker(QuestMarkerType.Target, tile);
-                    newMarker.setAvailability(QuestMarkerAvailability.Available);
-                    activeQuestTargetMarkers
-                            .put(updateData.getLocation(), new QuestMarkerCarrier(newMarker, pointer));
-                    newMarker.show();
-                }
-                changedSomething = true;
-            }
+            QuestMarker newMarker = new QuestMarker(QuestMarkerType.Target, tile);
+            newMarker.setAvailability(QuestMarkerAvailability.Available);
+            activeQuestTargetMarkers.put(coordinate, new QuestMarkerCarrier(newMarker, pointer));
+            newMarker.show();
+        }
+    }
 
-            if (changedSomething) {
-                if (World.getMapDisplay().isActive()) {
-                    World.getLights().notifyChange(updateData.getLocation());
-                }
+    /**
+     * Notify the other parts of the client that a tile was changed.
+     *
+     * @param updateData the update that changed the tile
+     */
+    private void notifyTileChanged(@Nonnull TileUpdate updateData) {
+        if (updateData.getTileId() != MapTile.ID_NONE) {
+            if (World.getMapDisplay().isActive()) {
+                World.getLights().notifyChange(updateData.getLocation());
+            }
 
-                if (World.getPlayer().getLocation().equals(updateData.getLocation())) {
-                    World.getMusicBox().updatePlayerLocation();
-                }
+            if (World.getPlayer().getLocation().equals(updateData.getLocation())) {
+                World.getMusicBox().updatePlayerLocation();
             }
         }
-        if (changedSomething) {
-            miniMap.update(updateData);
-        }
+        miniMap.update(updateData);
     }
 
     @Nullable
     @Contract(pure = true)
     private MapTile getMapAt(@Nonnull ServerCoordinate origin, @Nonnull Direction direction) {
-        return getMapAt(new ServerCoordinate(origin, direction));
+        return getMapAt(origin.getX() + direction.getDirectionVectorX(),
+                origin.getY() + direction.getDirectionVectorY(), origin.getZ());
     }
 
     /**
@@ -22,8 +22,10 @@ import illarion.common.types.ServerCoordinate;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
-import java.util.Objects;
+import java.util.Map;
 
 /**
  * This utility class is used to process the map tiles and ensure that they are properly linked and assigned to each
@@ -45,10 +47,45 @@ public final class GameMapProcessor2 {
      */
     @SuppressWarnings("StaticMethodOnlyUsedInOneClass")
     public static void processTile(@Nonnull MapTile tile) {
-        ServerCoordinate playerLocation = World.getPlayer().getLocation();
+        processTile(tile, World.getPlayer().getLocation().getZ(), null, new ArrayList<>());
+    }
 
-        MapTile tileAbove = getFirstTileAbove(tile.getCoordinates(), playerLocation.getZ() + 2, true);
-        MapTile tileBelow = getFirstTileBelow(tile.getCoordinates(), playerLocation.getZ() - 2, true);
+    /**
+     * Process a set of new tiles at once. This is used to process all new tiles of a map stripe. The tiles are not
+     * yet required to be added to the map. Tiles of the set that are not yet processed are treated as missing. Once
+     * they are processed they are linked to the tiles processed earlier.
+     *
+     * @param tiles the tiles to process
+     */
+    @SuppressWarnings("StaticMethodOnlyUsedInOneClass")
+    public static void processTiles(@Nonnull Collection<MapTile> tiles) {
+        int playerLevel = World.getPlayer().getLocation().getZ();
+        Map<ServerCoordinate, MapTile> pendingTiles = new HashMap<>(tiles.size() * 2);
+        for (MapTile tile : tiles) {
+            pendingTiles.put(tile.getCoordinates(), tile);
+        }
+
+        List<MapGroup> groupBuffer = new ArrayList<>();
+        for (MapTile tile : tiles) {
+            processTile(tile, playerLevel, pendingTiles, groupBuffer);
+        }
+    }
+
+    /**
+     * Process a single new tile.
+     *
+     * @param tile the tile to process
+     * @param playerLevel the level the player is located on
+     * @param pendingTiles the tiles that are processed along with this tile, but are not added to the map yet
+     * @param groupBuffer the list used to collect the surrounding groups
+     */
+    private static void processTile(
+            @Nonnull MapTile tile,
+            int playerLevel,
+            @Nullable Map<ServerCoordinate, MapTile> pendingTiles,
+            @Nonnull List<MapGroup> groupBuffer) {
+        MapTile tileAbove = getFirstTileAbove(tile.getCoordinates(), playerLevel + 2, true, pendingTiles);
+        MapTile tileBelow = getFirstTileBelow(tile.getCoordinates(), playerLevel - 2, true, pendingTiles);
 
         if (tileAbove != null) {
             tile.setObstructingTile(tileAbove);
@@ -57,32 +94,30 @@ public final class GameMapProcessor2 {
             tileBelow.setObstructingTile(tile);
         }
 
-        List<MapGroup> groups = getSurroundingMapGroups(tile.getCoordinates());
+        getSurroundingMapGroups(tile.getCoordinates(), pendingTiles, groupBuffer);
         MapGroup tileGroup;
-        if (groups.isEmpty()) {
+        if (groupBuffer.isEmpty()) {
             tileGroup = new MapGroup();
-            tile.setMapGroup(tileGroup);
         } else {
-            tileGroup = groups.get(0);
+            tileGroup = groupBuffer.get(0);
             assert tileGroup != null;
-            tile.setMapGroup(tileGroup);
-            for (int i = 1; i < groups.size(); i++) {
+            for (int i = 1; i < groupBuffer.size(); i++) {
                 //noinspection ConstantConditions
-                groups.get(i).setParent(tileGroup);
+                tileGroup = tileGroup.union(groupBuffer.get(i));
             }
         }
+        tile.setMapGroup(tileGroup);
+
         if (tileAbove != null) {
             MapGroup tileAboveGroup = tileAbove.getMapGroup();
-            MapGroup tileAboveGroupRoot = (tileAboveGroup == null) ? null : tileAboveGroup.getRootGroup();
-            if (tileAboveGroupRoot != null) {
-                tileAboveGroupRoot.addOverwritingGroup(tileGroup);
+            if (tileAboveGroup != null) {
+                tileAboveGroup.getRootGroup().addOverwritingGroup(tileGroup);
             }
         }
         if (tileBelow != null) {
             MapGroup tileBelowGroup = tileBelow.getMapGroup();
-            MapGroup tileBelowGroupRoot = (tileBelowGroup == null) ? null : tileBelowGroup.getRootGroup();
-            if (tileBelowGroupRoot != null) {
-                tileGroup.addOverwritingGroup(tileBelowGroupRoot);
+            if (tileBelowGroup != null) {
+                tileGroup.addOverwritingGroup(tileBelowGroup);
             }
         }
     }
@@ -129,7 +164,7 @@ public final class GameMapProcessor2 {
     public static void checkInside() {
         ServerCoordinate playerLocation = World.getPlayer().getLocation();
 
-        MapTile tileAbove = getFirstTileAbove(playerLocation, playerLocation.getZ() + 2, false);
+        MapTile tileAbove = getFirstTileAbove(playerLocation, playerLocation.getZ() + 2, false, null);
         MapGroup realTileAboveGroup = (tileAbove == null) ? null : tileAbove.getMapGroup();
         MapGroup tileAboveGroup = (realTileAboveGroup == null) ? null : realTileAboveGroup.getRootGroup();
 
@@ -141,7 +176,7 @@ public final class GameMapProcessor2 {
             World.getWeather().setOutside(true);
         } else {
             if (lastInsideGroup != null) {
-                if (Objects.equals(lastInsideGroup, tileAboveGroup)) {
+                if (lastInsideGroup.getRootGroup() == tileAboveGroup) {
                     return;
                 }
                 lastInsideGroup.setHidden(false);
@@ -154,7 +189,10 @@ public final class GameMapProcessor2 {
 
     @Nullable
     private static MapTile getFirstTileBelow(
-            @Nonnull ServerCoordinate startLocation, int zLimit, boolean perceptiveOffset) {
+            @Nonnull ServerCoordinate startLocation,
+            int zLimit,
+            boolean perceptiveOffset,
+            @Nullable Map<ServerCoordinate, MapTile> pendingTiles) {
         if (startLocation.getZ() <= zLimit) {
             return null;
         }
@@ -169,7 +207,7 @@ public final class GameMapProcessor2 {
             }
             currentZ--;
 
-            MapTile tile = World.getMap().getMapAt(new ServerCoordinate(currentX, currentY, currentZ));
+            MapTile tile = getTileAt(currentX, currentY, currentZ, pendingTiles);
             if (tile != null) {
                 return tile;
             }
@@ -179,7 +217,10 @@ public final class GameMapProcessor2 {
 
     @Nullable
     private static MapTile getFirstTileAbove(
-            @Nonnull ServerCoordinate startLocation, int zLimit, boolean perceptiveOffset) {
+            @Nonnull ServerCoordinate startLocation,
+            int zLimit,
+            boolean perceptiveOffset,
+            @Nullable Map<ServerCoordinate, MapTile> pendingTiles) {
         if (startLocation.getZ() >= zLimit) {
             return null;
         }
@@ -194,7 +235,7 @@ public final class GameMapProcessor2 {
             }
             currentZ++;
 
-            MapTile tile = World.getMap().getMapAt(new ServerCoordinate(currentX, currentY, currentZ));
+            MapTile tile = getTileAt(currentX, currentY, currentZ, pendingTiles);
             if (tile != null) {
                 return tile;
             }
@@ -202,25 +243,41 @@ public final class GameMapProcessor2 {
         return null;
     }
 
-    @Nonnull
-    private static List<MapGroup> getSurroundingMapGroups(@Nonnull ServerCoordinate startLocation) {
-        List<MapGroup> groupList = new ArrayList<>();
+    /**
+     * Collect the root groups of the tiles surrounding a location.
+     *
+     * @param startLocation the location
+     * @param pendingTiles the tiles that are processed but not yet added to the map
+     * @param groupList the list that receives the groups, its cleared before the groups are added
+     */
+    private static void getSurroundingMapGroups(
+            @Nonnull ServerCoordinate startLocation,
+            @Nullable Map<ServerCoordinate, MapTile> pendingTiles,
+            @Nonnull List<MapGroup> groupList) {
+        groupList.clear();
 
-        GameMap map = World.getMap();
         //noinspection ConstantConditions
         for (Direction dir : Direction.values()) {
-            ServerCoordinate newLoc = new ServerCoordinate(startLocation, dir);
-            MapTile tile = map.getMapAt(newLoc);
+            MapTile tile = getTileAt(startLocation.getX() + dir.getDirectionVectorX(),
+                    startLocation.getY() + dir.getDirectionVectorY(), startLocation.getZ(), pendingTiles);
             if (tile != null) {
                 MapGroup group = tile.getMapGroup();
                 if (group != null) {
                     group = group.getRootGroup();
-                }
-                if ((group != null) && !groupList.contains(group)) {
-                    groupList.add(group);
+                    if (!groupList.contains(group)) {
+                        groupList.add(group);
+                    }
                 }
             }
         }
-        return groupList;
+    }
+
+    @Nullable
+    private static MapTile getTileAt(int x, int y, int z, @Nullable Map<ServerCoordinate, MapTile> pendingTiles) {
+        MapTile tile = World.getMap().getMapAt(x, y, z);
+        if ((tile == null) && (pendingTiles != null) && !pendingTiles.isEmpty()) {
+            tile = pendingTiles.get(new ServerCoordinate(x, y, z));
+        }
+        return tile;
     }
 }
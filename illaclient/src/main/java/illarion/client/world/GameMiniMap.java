@@ -20,6 +20,7 @@ import illarion.client.resources.TileFactory;
 import illarion.client.util.GlobalExecutorService;
 import illarion.common.graphics.TileInfo;
 import illarion.common.types.ServerCoordinate;
+import illarion.common.util.PoolThreadFactory;
 import illarion.common.util.Stoppable;
 import org.illarion.engine.Engine;
 import org.illarion.engine.EngineException;
@@ -29,27 +30,17 @@ import org.illarion.engine.graphic.WorldMapDataProvider;
 import org.illarion.engine.graphic.WorldMapDataProviderCallback;
 import org.illarion.engine.nifty.IgeMiniMapRenderImage;
 import org.illarion.engine.nifty.IgeRenderImage;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import javax.annotation.concurrent.NotThreadSafe;
-import java.io.FileNotFoundException;
-import java.io.IOException;
-import java.lang.ref.Reference;
-import java.lang.ref.SoftReference;
 import java.nio.ByteBuffer;
-import java.nio.ByteOrder;
-import java.nio.channels.Channels;
-import java.nio.channels.ReadableByteChannel;
-import java.nio.channels.WritableByteChannel;
-import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.*;
-import java.util.concurrent.Callable;
-import java.util.zip.GZIPInputStream;
-import java.util.zip.GZIPOutputStream;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 /**
  * This class stores a reduced version of the full map the character knows. The map data is packed to a minimized and
@@ -74,12 +65,6 @@ public final class GameMiniMap implements WorldMapDataProvider, Stoppable {
      */
     private static final int BYTES_PER_TILE = 2;
 
-    /**
-     * The log file handler that takes care for the logging output of this class.
-     */
-    @Nonnull
-    private static final Logger LOGGER = LoggerFactory.getLogger(GameMiniMap.class);
-
     /**
      * Indicated how many bits the blocked bit is shifted.
      */
@@ -96,19 +81,46 @@ public final class GameMiniMap implements WorldMapDataProvider, Stoppable {
     private static final int MINI_RADIUS = 81;
 
     /**
-     * This map contains all mini map data that is load. All map data is stored as soft references to allow them to
-     * be cleaned up as needed.
+     * The file extension of the memory mapped map files.
+     */
+    @Nonnull
+    private static final String MAP_FILE_EXTENSION = ".map";
+
+    /**
+     * The file extension of the map files in the old compressed format.
+     */
+    @Nonnull
+    private static final String LEGACY_MAP_FILE_EXTENSION = ".dat";
+
+    /**
+     * The amount of regions that are kept loaded. Once this limit is exceeded the least recently used region that is
+     * not active is flushed and dropped. Its file mapping is only released once the buffer is garbage collected.
+     */
+    private static final int MAX_MAPPED_REGIONS = 15;
+
+    /**
+     * The time in milliseconds changes to the map data are collected before they are written to the disk.
+     */
+    private static final long FLUSH_DELAY = 2000;
+
+    /**
+     * This map contains all mini map regions that are load, ordered by their last access. Access to this map has to
+     * be synchronized on the map.
      */
     @Nonnull
-    private final Map<ServerCoordinate, Reference<ByteBuffer>> mapDataStorage;
+    private final Map<ServerCoordinate, MiniMapRegion> mapDataStorage;
 
     /**
-     * This list is used to keep strong references to the map data that is currently active used in order to avoid
-     * that this map data is cleared too soon.
+     * The origins of the regions that are currently active. These regions are never dropped from the storage.
      */
-    @SuppressWarnings("MismatchedQueryAndUpdateOfCollection")
     @Nonnull
-    private final List<ByteBuffer> strongMapDataStorage;
+    private List<ServerCoordinate> activeOrigins = Collections.emptyList();
+
+    /**
+     * The executor that writes the changed map data to the disk.
+     */
+    @Nonnull
+    private final ScheduledExecutorService flushExecutor;
 
     /**
      * The origin location of the map.
@@ -135,16 +147,30 @@ public final class GameMiniMap implements WorldMapDataProvider, Stoppable {
         worldMap = engine.getAssets().createWorldMap(this);
         miniMapImage = new IgeMiniMapRenderImage(engine, worldMap, MINI_RADIUS);
 
-        mapDataStorage = new HashMap<>();
-        strongMapDataStorage = new ArrayList<>(5);
-    }
-
-    @Nonnull
-    private static ByteBuffer createMapBuffer() {
-        int size = WorldMap.WORLD_MAP_WIDTH * WorldMap.WORLD_MAP_HEIGHT * BYTES_PER_TILE;
-        ByteBuffer buffer = ByteBuffer.allocate(size);
-        buffer.order(ByteOrder.nativeOrder());
-        return buffer;
+        mapDataStorage = new LinkedHashMap<ServerCoordinate, MiniMapRegion>(MAX_MAPPED_REGIONS, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<ServerCoordinate, MiniMapRegion> eldest) {
+                if (size() <= MAX_MAPPED_REGIONS) {
+                    return false;
+                }
+                if (!activeOrigins.contains(eldest.getKey())) {
+                    scheduleFlush(eldest.getValue(), 0);
+                    return true;
+                }
+                /* The eldest region is still in use, so the least recently used inactive region is dropped instead. */
+                Iterator<Map.Entry<ServerCoordinate, MiniMapRegion>> itr = entrySet().iterator();
+                while (itr.hasNext()) {
+                    Map.Entry<ServerCoordinate, MiniMapRegion> entry = itr.next();
+                    if (!activeOrigins.contains(entry.getKey())) {
+                        itr.remove();
+                        scheduleFlush(entry.getValue(), 0);
+                        break;
+                    }
+                }
+                return false;
+            }
+        };
+        flushExecutor = Executors.newSingleThreadScheduledExecutor(new PoolThreadFactory("MiniMapFlush", true));
     }
 
     /**
@@ -247,34 +273,42 @@ public final class GameMiniMap implements WorldMapDataProvider, Stoppable {
     }
 
     /**
-     * This function causes the byte buffer that holds the mini map data in the storage to be stored only with a soft
-     * reference. After this was called its possible that the data is cleared at some point in future.
+     * Fetch the map data from the storage.
      *
-     * @param origin the origin location of the map.
+     * @param mapOrigin the origin of the map
+     * @return the map data or {@code null} in case the data for this map is not load
      */
-    private void weakenMapDataStorage(@Nonnull ServerCoordinate origin) {
-        ByteBuffer mapData = getMapDataStorage(origin);
-        if (mapData == null) {
-            mapDataStorage.remove(origin);
-        } else {
-            strongMapDataStorage.remove(mapData);
-        }
+    @Nullable
+    private ByteBuffer getMapDataStorage(@Nonnull ServerCoordinate mapOrigin) {
+        MiniMapRegion region = getRegion(mapOrigin);
+        return (region == null) ? null : region.getData();
     }
 
     /**
-     * Fetch the map data from the storage.
+     * Fetch a region from the storage.
      *
-     * @param mapOrigin the origin of the map
-     * @return the map data or {@code null} in case the data for this map is not load
+     * @param mapOrigin the origin of the region
+     * @return the region or {@code null} in case the region is not load
      */
     @Nullable
-    private ByteBuffer getMapDataStorage(@Nonnull ServerCoordinate mapOrigin) {
-        @Nullable Reference<ByteBuffer> mapDataRef = mapDataStorage.get(mapOrigin);
-        if (mapDataRef == null) {
-            return null;
+    private MiniMapRegion getRegion(@Nonnull ServerCoordinate mapOrigin) {
+        synchronized (mapDataStorage) {
+            return mapDataStorage.get(mapOrigin);
+        }
+    }
+
+    /**
+     * Schedule writing the changes of a region to the disk.
+     *
+     * @param region the region
+     * @param delay the delay in milliseconds until the changes are written
+     */
+    private void scheduleFlush(@Nonnull MiniMapRegion region, long delay) {
+        try {
+            flushExecutor.schedule(region::flush, delay, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            region.flush();
         }
-        @Nullable ByteBuffer mapData = mapDataRef.get();
-        return mapData;
     }
 
     /**
@@ -306,60 +340,25 @@ public final class GameMiniMap implements WorldMapDataProvider, Stoppable {
         mapOrigin = newOrigin;
 
         if (oldOrigin == null) {
-            List<ServerCoordinate> loadList = getOriginsList(newOrigin);
-            loadList.forEach(this::strengthenOrLoadMap);
+            activeOrigins = getOriginsList(newOrigin);
+            activeOrigins.forEach(this::strengthenOrLoadMap);
             return;
         }
 
-        /* Find out what origins turn in active and what new ones get active. */
-        List<ServerCoordinate> oldActive = getOriginsList(oldOrigin);
+        /* Write the changes of the regions that turn inactive, they stay mapped until they are displaced. */
         List<ServerCoordinate> newActive = getOriginsList(newOrigin);
-
-        @Nonnull Iterator<ServerCoordinate> oldActiveItr = oldActive.iterator();
-        while (oldActiveItr.hasNext()) {
-            ServerCoordinate checkedOrigin = oldActiveItr.next();
-            if (newActive.contains(checkedOrigin)) {
-                newActive.remove(checkedOrigin);
-                oldActiveItr.remove();
-            }
-        }
-
-        Collection<Callable<Void>> updateList = new ArrayList<>();
-
-        /* Save all the old data to the file system and weaken the storage of each map. */
-        for (@Nonnull ServerCoordinate loc : oldActive) {
-            updateList.add(new Callable<Void>() {
-                @Nullable
-                @Override
-                public Void call() {
-                    saveMap(loc);
-                    weakenMapDataStorage(loc);
-                    return null;
-                }
-            });
-        }
-
-        /* Reactivate or load all the maps that are newly inside the player range. */
-        for (@Nonnull ServerCoordinate loc : newActive) {
-            updateList.add(new Callable<Void>() {
-                @Nullable
-                @Override
-                public Void call() {
-                    strengthenOrLoadMap(loc);
-                    return null;
+        for (@Nonnull ServerCoordinate loc : getOriginsList(oldOrigin)) {
+            if (!newActive.contains(loc)) {
+                MiniMapRegion region = getRegion(loc);
+                if (region != null) {
+                    scheduleFlush(region, 0);
                 }
-            });
-        }
-
-        boolean executionInProgress = true;
-        while (executionInProgress) {
-            executionInProgress = false;
-            try {
-                GlobalExecutorService.getService().invokeAll(updateList);
-            } catch (@Nonnull InterruptedException ignored) {
-                executionInProgress = true;
             }
         }
+
+        /* Mapping the regions does not read anything, the data is paged in as its accessed. */
+        activeOrigins = newActive;
+        newActive.forEach(this::strengthenOrLoadMap);
     }
 
     /**
@@ -419,6 +418,91 @@ public final class GameMiniMap implements WorldMapDataProvider, Stoppable {
         }
     }
 
+    @Override
+    public void requestTiles(@Nonnull ServerCoordinate origin, int width, int height, @Nonnull int[] data) {
+        if (mapOrigin == null) {
+            throw new IllegalStateException("Requesting a new tile is illegal while the origin of the map is not set.");
+        }
+
+        int count = width * height;
+        if (data.length < count) {
+            throw new IllegalArgumentException("The data array is too small for the requested area.");
+        }
+        Arrays.fill(data, 0, count, WorldMap.NO_TILE);
+
+        if (origin.getZ() != mapOrigin.getZ()) {
+            return;
+        }
+        ByteBuffer mapData = getMapDataStorage(mapOrigin);
+        if (mapData == null) {
+            return;
+        }
+
+        int[] packedLookup = buildPackedLookup();
+
+        int mapOriginX = mapOrigin.getX();
+        int mapOriginY = mapOrigin.getY();
+        int firstX = Math.max(origin.getX(), mapOriginX);
+        int lastX = Math.min(origin.getX() + width, mapOriginX + WORLDMAP_WIDTH);
+        int firstY = Math.max(origin.getY(), mapOriginY);
+        int lastY = Math.min(origin.getY() + height, mapOriginY + WORLDMAP_HEIGHT);
+        if ((firstX >= lastX) || (firstY >= lastY)) {
+            return;
+        }
+
+        synchronized (mapData) {
+            for (int y = firstY; y < lastY; y++) {
+                int dataIndex = ((y - origin.getY()) * width) + (firstX - origin.getX());
+                int bufferIndex = ((y - mapOriginY) * WORLDMAP_WIDTH * BYTES_PER_TILE) +
+                        ((firstX - mapOriginX) * BYTES_PER_TILE);
+                for (int x = firstX; x < lastX; x++) {
+                    int tileData = mapData.getShort(bufferIndex) & MASK_PACKED_LOOKUP;
+                    data[dataIndex] = packedLookup[tileData];
+                    dataIndex++;
+                    bufferIndex += BYTES_PER_TILE;
+                }
+            }
+        }
+    }
+
+    /**
+     * The mask of the bits of the stored tile data that are relevant for the world map.
+     */
+    private static final int MASK_PACKED_LOOKUP = MASK_TILE_ID | MASK_OVERLAY_ID | MASK_BLOCKED;
+
+    /**
+     * Build the table that translates the stored tile data to the packed tile data of the world map. The table is
+     * build every time the data is requested in bulk, because the tile templates may change while the client is
+     * loading.
+     *
+     * @return the lookup table, indexed with the stored tile data
+     */
+    @Nonnull
+    private static int[] buildPackedLookup() {
+        TileFactory factory = TileFactory.getInstance();
+        int[] lookup = new int[MASK_PACKED_LOOKUP + 1];
+        for (int tileData = 1; tileData < lookup.length; tileData++) {
+            int tileId = tileData & MASK_TILE_ID;
+            int overlayId = tileData & MASK_OVERLAY_ID;
+            if (!factory.hasTemplate(tileId)) {
+                continue;
+            }
+            int packed = factory.getTemplate(tileId).getTileInfo().getMapColor() & PACKED_ID_MASK;
+            if (packed == WorldMap.NO_TILE) {
+                continue;
+            }
+            if (factory.hasTemplate(overlayId)) {
+                int overlayMapColor = factory.getTemplate(overlayId).getTileInfo().getMapColor();
+                packed |= (overlayMapColor & PACKED_ID_MASK) << PACKED_OVERLAY_SHIFT;
+            }
+            if ((tileData & MASK_BLOCKED) > 0) {
+                packed |= PACKED_BLOCKED;
+            }
+            lookup[tileData] = packed;
+        }
+        return lookup;
+    }
+
     @Nonnull
     private static ServerCoordinate getOriginLocation(@Nonnull ServerCoordinate playerLoc) {
         int newMapLevel = playerLoc.getZ();
@@ -455,45 +539,14 @@ public final class GameMiniMap implements WorldMapDataProvider, Stoppable {
     }
 
     /**
-     * Save all maps that are currently load to the hard disk.
+     * Write all changes of the maps that are currently load to the hard disk.
      */
     public void saveAllMaps() {
-        if (mapOrigin != null) {
-            List<ServerCoordinate> origins = getOriginsList(mapOrigin);
-            origins.forEach(this::saveMap);
-        }
-    }
-
-    /**
-     * Save the current map to its file.
-     */
-    private void saveMap(@Nonnull ServerCoordinate origin) {
-        @Nullable ByteBuffer mapData = getMapDataStorage(origin);
-        if (mapData == null) {
-            return;
-        }
-
-        Path mapFile = getMapFilename(origin);
-        if (Files.exists(mapFile) && !Files.isWritable(mapFile)) {
-            LOGGER.error("The map file is not accessible. Can't write anything.");
-            return;
-        }
-
-        try (WritableByteChannel outChannel = Channels
-                .newChannel(new GZIPOutputStream(Files.newOutputStream(mapFile)))) {
-            //noinspection SynchronizationOnLocalVariableOrMethodParameter
-            synchronized (mapData) {
-                mapData.rewind();
-                int toWrite = mapData.remaining();
-                while (toWrite > 0) {
-                    toWrite -= outChannel.write(mapData);
-                }
-            }
-        } catch (@Nonnull FileNotFoundException e) {
-            LOGGER.error("Target file not found", e);
-        } catch (@Nonnull IOException e) {
-            LOGGER.error("Error while writing minimap file", e);
+        List<MiniMapRegion> regions;
+        synchronized (mapDataStorage) {
+            regions = new ArrayList<>(mapDataStorage.values());
         }
+        regions.forEach(MiniMapRegion::flush);
     }
 
     /**
@@ -501,66 +554,42 @@ public final class GameMiniMap implements WorldMapDataProvider, Stoppable {
      * load
      * the map data.
      *
+     * @param extension the file extension of the map file
      * @return the path and the filename of the map file
      */
     @Nonnull
-    private static Path getMapFilename(@Nonnull ServerCoordinate mapOrigin) {
+    private static Path getMapFilename(@Nonnull ServerCoordinate mapOrigin, @Nonnull String extension) {
         StringBuilder builder = new StringBuilder();
         builder.setLength(0);
         builder.append("map");
         builder.append(mapOrigin.getX() / WORLDMAP_WIDTH);
         builder.append(mapOrigin.getY() / WORLDMAP_HEIGHT);
         builder.append(mapOrigin.getZ());
-        builder.append(".dat");
+        builder.append(extension);
         return World.getPlayer().getPath().resolve(builder.toString());
     }
 
     /**
-     * This function either creates a strong storage entry of the map data or loads the map data from the file system
-     * and create the strong storage after.
+     * This function makes sure that the region of a map is load. Regions that are not load are mapped from their
+     * file.
      *
      * @param mapOrigin the origin of the map
      */
     private void strengthenOrLoadMap(@Nonnull ServerCoordinate mapOrigin) {
         /* First check if the map is still around. */
-        ByteBuffer existingMapData = getMapDataStorage(mapOrigin);
-        if (existingMapData != null) {
-            strongMapDataStorage.add(existingMapData);
+        if (getRegion(mapOrigin) != null) {
             return;
         }
 
-        @Nonnull ByteBuffer mapData = createMapBuffer();
-        Path mapFile = getMapFilename(mapOrigin);
-
-        mapDataStorage.put(mapOrigin, new SoftReference<>(mapData));
-        strongMapDataStorage.add(mapData);
-
-        if (!Files.isRegularFile(mapFile)) {
-            return;
+        int size = WORLDMAP_WIDTH * WORLDMAP_HEIGHT * BYTES_PER_TILE;
+        MiniMapRegion region = MiniMapRegion.open(getMapFilename(mapOrigin, MAP_FILE_EXTENSION),
+                                                  getMapFilename(mapOrigin, LEGACY_MAP_FILE_EXTENSION), size);
+        synchronized (mapDataStorage) {
+            mapDataStorage.put(mapOrigin, region);
         }
 
-        try (ReadableByteChannel inChannel = Channels.newChannel(new GZIPInputStream(Files.newInputStream(mapFile)))) {
-            //noinspection SynchronizationOnLocalVariableOrMethodParameter
-            synchronized (mapData) {
-                mapData.rewind();
-
-                int read = 1;
-                while (read > 0) {
-                    read = inChannel.read(mapData);
-                }
-                inChannel.close();
-            }
-
+        if (region.isExisting()) {
             performFullUpdate();
-        } catch (@Nonnull IOException e) {
-            LOGGER.error("Failed loading the map data from its file.", e);
-            //noinspection SynchronizationOnLocalVariableOrMethodParameter
-            synchronized (mapData) {
-                mapData.rewind();
-                while (mapData.hasRemaining()) {
-                    mapData.put((byte) 0);
-                }
-            }
         }
     }
 
@@ -600,10 +629,11 @@ public final class GameMiniMap implements WorldMapDataProvider, Stoppable {
         int index = encodeLocation(loc);
 
         ServerCoordinate origin = getOriginLocation(loc);
-        ByteBuffer mapData = getMapDataStorage(origin);
-        if (mapData == null) {
+        MiniMapRegion region = getRegion(origin);
+        if (region == null) {
             return false;
         }
+        ByteBuffer mapData = region.getData();
 
         if (tileID == MapTile.ID_NONE) {
             //noinspection SynchronizationOnLocalVariableOrMethodParameter
@@ -613,6 +643,7 @@ public final class GameMiniMap implements WorldMapDataProvider, Stoppable {
                 }
                 mapData.putShort(index, (short) 0);
             }
+            markChanged(region);
             return true;
         }
 
@@ -629,9 +660,21 @@ public final class GameMiniMap implements WorldMapDataProvider, Stoppable {
             }
             mapData.putShort(index, encodedTileValue);
         }
+        markChanged(region);
         return true;
     }
 
+    /**
+     * Mark a region as changed, so the changes are written to the disk soon.
+     *
+     * @param region the changed region
+     */
+    private void markChanged(@Nonnull MiniMapRegion region) {
+        if (region.markDirty()) {
+            scheduleFlush(region, FLUSH_DELAY);
+        }
+    }
+
     /**
      * Encode a server location to the index in the map data buffer.
      *
@@ -644,6 +687,8 @@ public final class GameMiniMap implements WorldMapDataProvider, Stoppable {
 
     @Override
     public void saveShutdown() {
+        flushExecutor.shutdown();
+        saveAllMaps();
         worldMap.dispose();
     }
 }
@@ -1,7 +1,7 @@
 /*
  * This file is part of the Illarion project.
  *
- * Copyright © 2015 - Illarion e.V.
+ * Copyright © 2016 - Illarion e.V.
  *
  * Illarion is free software: you can redistribute it and/or modify
  * it under the terms of the GNU Affero General Public License as published by
@@ -19,42 +19,83 @@ import org.jetbrains.annotations.Contract;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
-import java.util.ArrayList;
+import javax.annotation.concurrent.ThreadSafe;
 import java.util.Collection;
-import java.util.List;
 import java.util.Set;
 import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * This class is used to organise the maps into groups. This is done to show and hide whole groups of maps.
+ * <p>
+ * The groups form a disjoint set forest. Connecting groups is done using union by rank and the lookup of the root
+ * group compresses the path to the root. Only the root group of each set stores the hidden state and the groups that
+ * overwrite it. The resulting hidden state is cached for every root. Every change that may alter the hidden state of
+ * any group invalidates all cached values at once by increasing a global generation counter.
+ * </p>
+ * <p>
+ * Changes to the groups are expected to be done by one thread only. Querying the hidden state is allowed from any
+ * thread.
+ * </p>
  *
  * @author Martin Karing &lt;nitram@illarion.org&gt;
  */
+@ThreadSafe
 public final class MapGroup {
+    /**
+     * The value of the hidden cache that marks the cache as invalid.
+     */
+    private static final int INVALID_CACHE = -1;
+
+    /**
+     * The mask applied to the generation before its stored in the cache.
+     */
+    private static final int GENERATION_MASK = 0x3FFFFFFF;
+
+    /**
+     * The maximal depth of overwriting groups that is followed. This prevents endless recursion in case the
+     * overwriting groups form a cycle.
+     */
+    private static final int MAX_OVERWRITE_DEPTH = 16;
+
+    /**
+     * The current generation of the hidden state. Any change of a hidden flag or the group structure increases this
+     * value and with that invalidates the cached hidden states of all groups.
+     */
+    @Nonnull
+    private static final AtomicInteger hiddenGeneration = new AtomicInteger();
+
     /**
      * In case this flag is turned {@code true} the entire map group is hidden. This value has no effect at all in
      * case the {@link #parent} is not set to {@code null}.
      */
-    private boolean hidden;
+    private volatile boolean hidden;
 
     /**
-     * The parent group that will overwrite the local hidden value. This is used to connect multiple map groups.
+     * The parent group of this group. Only root groups have no parent.
      */
     @Nullable
-    private MapGroup parent;
+    private volatile MapGroup parent;
 
     /**
-     * This list contains a list of groups that will overwrite the hidden state of the group. In case one of the
-     * groups in this list is hidden, this group will be assumed hidden as well.
+     * The rank of this group. It is the upper bound of the height of the tree below this group and used to keep
+     * the trees flat when groups are merged.
      */
-    @Nullable
-    private Set<MapGroup> overwritingGroups;
+    private int rank;
 
     /**
-     * This list stores the children of this map group.
+     * This set contains the groups that will overwrite the hidden state of the group. In case one of the groups in
+     * this list is hidden, this group will be assumed hidden as well. This value has no effect at all in case the
+     * {@link #parent} is not set to {@code null}.
      */
     @Nullable
-    private List<MapGroup> children;
+    private volatile Set<MapGroup> overwritingGroups;
+
+    /**
+     * The cached hidden state of this root group. The lowest bit stores the hidden state, the remaining bits the
+     * generation the state was calculated for.
+     */
+    private volatile int hiddenCache = INVALID_CACHE;
 
     /**
      * Get the root group. This could either be this group or a parent group that has not further parent.
@@ -62,16 +103,29 @@ public final class MapGroup {
      * @return the root group
      */
     @Nonnull
-    @Contract(pure = true)
     public MapGroup getRootGroup() {
-        MapGroup currentGroup = this;
+        MapGroup root = this;
         while (true) {
+            MapGroup parentGroup = root.parent;
+            if (parentGroup == null) {
+                break;
+            }
+            root = parentGroup;
+        }
+
+        /* Path compression: Every group on the way now points directly to the root. */
+        MapGroup currentGroup = this;
+        while (currentGroup != root) {
             MapGroup parentGroup = currentGroup.parent;
             if (parentGroup == null) {
-                return currentGroup;
+                break;
+            }
+            if (parentGroup != root) {
+                currentGroup.parent = root;
             }
             currentGroup = parentGroup;
         }
+        return root;
     }
 
     /**
@@ -80,25 +134,45 @@ public final class MapGroup {
      * @return {@code in case the map group is hidden}
      */
     public boolean isHidden() {
-        if (getRootGroup().isOverwritingGroupHidden()) {
-            return true;
+        return getRootGroup().isRootHidden(hiddenGeneration.get(), 0);
+    }
+
+    /**
+     * Get the hidden state of this root group. The cached value is used in case it is valid for the generation.
+     *
+     * @param generation the current generation of the hidden states
+     * @param depth the current depth in the overwriting groups
+     * @return {@code true} in case this group is hidden
+     */
+    private boolean isRootHidden(int generation, int depth) {
+        int cachedGeneration = generation & GENERATION_MASK;
+        int cache = hiddenCache;
+        if ((cache != INVALID_CACHE) && ((cache >>> 1) == cachedGeneration)) {
+            return (cache & 1) != 0;
         }
-        return hidden;
+
+        boolean result = hidden || isOverwritingGroupHidden(generation, depth);
+        hiddenCache = (cachedGeneration << 1) | (result ? 1 : 0);
+        return result;
     }
 
     /**
      * Check if one of the overwriting groups of this map group is flagged as hidden.
      *
+     * @param generation the current generation of the hidden states
+     * @param depth the current depth in the overwriting groups
      * @return {@code true} in case one of the overwriting groups is hidden
      */
-    private boolean isOverwritingGroupHidden() {
+    private boolean isOverwritingGroupHidden(int generation, int depth) {
         @Nullable Set<MapGroup> lclList = overwritingGroups;
-        if (lclList != null) {
-            for (MapGroup group : lclList) {
-                assert group != null;
-                if (group.isHidden()) {
-                    return true;
-                }
+        if ((lclList == null) || (depth >= MAX_OVERWRITE_DEPTH)) {
+            return false;
+        }
+        for (MapGroup group : lclList) {
+            assert group != null;
+            MapGroup groupRoot = group.getRootGroup();
+            if ((groupRoot != this) && groupRoot.isRootHidden(generation, depth + 1)) {
+                return true;
             }
         }
         return false;
@@ -110,74 +184,58 @@ public final class MapGroup {
     }
 
     /**
-     * Set the hidden flag of this map group.
+     * Set the hidden flag of this map group. This applies to the entire set of connected groups.
      *
      * @param hidden the hidden flag
      */
     public void setHidden(boolean hidden) {
-        MapGroup other = this;
-        while (true) {
-            if (other.parent == null) {
-                other.hidden = hidden;
-                other.sendHiddenToChildren();
-                return;
-            }
-            other = other.parent;
+        MapGroup root = getRootGroup();
+        if (root.hidden != hidden) {
+            root.hidden = hidden;
+            invalidateHiddenCache();
         }
     }
 
     /**
-     * Send the hidden flag to all children.
-     */
-    private void sendHiddenToChildren() {
-        if (children == null) {
-            return;
-        }
-
-        for (MapGroup aChildren : children) {
-            aChildren.hidden = hidden;
-        }
-    }
-
-    /**
-     * Apply a parent to this map group.
+     * Connect this group with another group. Both groups and all groups connected to them share the hidden state
+     * afterwards. In case one of the two sets of groups was hidden, the resulting set is hidden as well.
      *
-     * @param parent the parent of this group
+     * @param other the group to connect this group with
+     * @return the root group of the resulting set
      */
-    public void setParent(@Nonnull MapGroup parent) {
-        if (parent.parent != null) {
-            throw new IllegalArgumentException("Set a parent group that is not a root group is not allowed.");
-        }
-        if (this.parent != null) {
-            throw new IllegalArgumentException("Setting a parent to a group that already has a parent is not allows");
-        }
-        this.parent = parent;
-        parent.addChild(this);
-
-        if (children != null) {
-            children.forEach(parent::addChild);
-            children = null;
+    @Nonnull
+    public MapGroup union(@Nonnull MapGroup other) {
+        MapGroup thisRoot = getRootGroup();
+        MapGroup otherRoot = other.getRootGroup();
+        if (thisRoot == otherRoot) {
+            return thisRoot;
         }
 
-        Set<MapGroup> overwriting = overwritingGroups;
-        overwritingGroups = null;
-        if (overwriting != null) {
-            parent.addOverwritingGroups(overwriting);
+        MapGroup newRoot;
+        MapGroup newChild;
+        if (thisRoot.rank < otherRoot.rank) {
+            newRoot = otherRoot;
+            newChild = thisRoot;
+        } else {
+            newRoot = thisRoot;
+            newChild = otherRoot;
+            if (thisRoot.rank == otherRoot.rank) {
+                thisRoot.rank++;
+            }
         }
-    }
 
-    /**
-     * Add a child to the list of children of this map group.
-     *
-     * @param child the child to add
-     */
-    private void addChild(@Nonnull MapGroup child) {
-        if (children == null) {
-            children = new ArrayList<>();
+        Set<MapGroup> childOverwriting = newChild.overwritingGroups;
+        newChild.overwritingGroups = null;
+        if (childOverwriting != null) {
+            newRoot.addOverwritingGroups(childOverwriting);
         }
-        if (!children.contains(child)) {
-            children.add(child);
+        if (newChild.hidden) {
+            newRoot.hidden = true;
         }
+        newRoot.hiddenCache = INVALID_CACHE;
+        newChild.parent = newRoot;
+        invalidateHiddenCache();
+        return newRoot;
     }
 
     /**
@@ -189,11 +247,17 @@ public final class MapGroup {
         if (parent != null) {
             throw new IllegalStateException("Adding overwriting groups no non-root groups is not allowed.");
         }
-        if (overwritingGroups == null) {
-            overwritingGroups = new CopyOnWriteArraySet<>();
+        MapGroup groupRoot = group.getRootGroup();
+        if (groupRoot == this) {
+            return;
+        }
+        Set<MapGroup> groups = overwritingGroups;
+        if (groups == null) {
+            groups = new CopyOnWriteArraySet<>();
+            overwritingGroups = groups;
         }
-        if (!overwritingGroups.contains(group)) {
-            overwritingGroups.add(group);
+        if (groups.add(groupRoot)) {
+            invalidateHiddenCache();
         }
     }
 
@@ -201,9 +265,13 @@ public final class MapGroup {
         if (parent != null) {
             throw new IllegalStateException("Adding overwriting groups no non-root groups is not allowed.");
         }
-        if (overwritingGroups == null) {
-            overwritingGroups = new CopyOnWriteArraySet<>();
-        }
-        overwritingGroups.addAll(groups);
+        groups.forEach(this::addOverwritingGroup);
+    }
+
+    /**
+     * Invalidate the cached hidden states of all groups.
+     */
+    private static void invalidateHiddenCache() {
+        hiddenGeneration.incrementAndGet();
     }
 }
@@ -24,6 +24,7 @@ import illarion.common.types.ItemCount;
 import illarion.common.types.ItemId;
 import illarion.common.types.ServerCoordinate;
 import org.illarion.engine.graphic.Color;
+import org.illarion.engine.graphic.LightBuffer;
 import org.illarion.engine.graphic.LightSource;
 import org.illarion.engine.graphic.Sprite;
 import org.slf4j.Logger;
@@ -144,12 +145,6 @@ public final class MapTile {
      */
     private int movementCost;
 
-    /**
-     * The temporary light instance that is used for the calculations before its applied to the actual light.
-     */
-    @Nonnull
-    private final Color tmpLight = new Color(Color.WHITE);
-
     /**
      * The reference to the tile that is obstructing this tile.
      */
@@ -521,19 +516,6 @@ public final class MapTile {
         lightValue = newLightValue;
     }
 
-    /**
-     * Add some light influence to this tile. This is added to the already existing light on this tile
-     *
-     * @param color the light that shall be added
-     */
-    public void addLight(@Nonnull Color color) {
-        if (removedTile) {
-            LOGGER.warn("Adding light to a removed tile.");
-            return;
-        }
-        tmpLight.add(color);
-    }
-
     /**
      * Check if the player can move the top item on this tile.
      *
@@ -738,18 +720,17 @@ public final class MapTile {
     }
 
     /**
-     * Render the light on this tile, using the ambient light of the weather and a factor how much the tile light
-     * modifies the ambient light.
+     * Fetch the light of the light sources on this tile from the light buffer. The light is applied to the tile
+     * along with the ambient light by {@link #applyAmbientLight(Color)}.
      *
-     * This also resets the value of the temporary light to zero to ready it for the next calculation.
+     * @param lights the buffer that contains the light of all light sources
      */
-    public void renderLight() {
+    public void renderLight(@Nonnull LightBuffer lights) {
         if (removedTile) {
             LOGGER.debug("Render light of a removed tile.");
             return;
         }
-        tracerColor.setColor(tmpLight);
-        tmpLight.setColor(Color.BLACK);
+        lights.getLight(tileCoordinate.getX(), tileCoordinate.getY(), tileCoordinate.getZ(), tracerColor);
     }
 
     public void applyAmbientLight(@Nonnull Color ambientLight) {
@@ -825,7 +806,6 @@ public final class MapTile {
             return;
         }
         losDirty = true;
-        resetLight();
 
         // no replacement necessary
         if ((tileId == id) && (tile != null)) {
@@ -856,16 +836,6 @@ public final class MapTile {
         return tile;
     }
 
-    /**
-     * Reset the light value back to 0.
-     */
-    public void resetLight() {
-        if (removedTile) {
-            LOGGER.debug("Resetting the light of a removed tile.");
-        }
-        tmpLight.setColor(Color.BLACK);
-    }
-
     /**
      * Update all items on the stack of this tile at once.
      *
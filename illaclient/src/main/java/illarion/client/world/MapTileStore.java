@@ -0,0 +1,374 @@
+/*
+ * This file is part of the Illarion project.
+ *
+ * Copyright © 2015 - Illarion e.V.
+ *
+ * Illarion is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Illarion is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ */
+package illarion.client.world;
+
+import org.jetbrains.annotations.Contract;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.GuardedBy;
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Consumer;
+
+/**
+ * This is the storage of the map tiles. The tiles are stored in chunks of 16 by 16 tiles on one level. The chunks
+ * are located using a open addressing hash table that is keyed by the packed coordinates of the chunk.
+ * <p>
+ * Reading the tiles is done without locking as long as no write operation is done at the same time. In that case
+ * the read is repeated while holding the read lock.
+ * </p>
+ * <p>
+ * The supported coordinate range is {@code -2^27} to {@code 2^27 - 1} on the X and Y axis and {@code -2^15} to
+ * {@code 2^15 - 1} on the Z axis.
+ * </p>
+ *
+ * @author Martin Karing &lt;nitram@illarion.org&gt;
+ */
+@ThreadSafe
+final class MapTileStore {
+    /**
+     * The bit count of the chunk size.
+     */
+    private static final int CHUNK_SHIFT = 4;
+
+    /**
+     * The edge length of the chunks.
+     */
+    private static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+
+    /**
+     * The mask to fetch the location of a tile inside the chunk.
+     */
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+    /**
+     * The initial amount of slots in the chunk table.
+     */
+    private static final int INITIAL_TABLE_SIZE = 64;
+
+    /**
+     * One chunk of tiles.
+     */
+    private static final class Chunk {
+        /**
+         * The packed coordinates of the chunk.
+         */
+        private final long key;
+
+        /**
+         * The tiles of the chunk, indexed by {@code x + (y * CHUNK_SIZE)} relative to the origin of the chunk.
+         */
+        @Nonnull
+        private final MapTile[] tiles = new MapTile[CHUNK_SIZE * CHUNK_SIZE];
+
+        /**
+         * The amount of tiles stored in this chunk.
+         */
+        private int count;
+
+        Chunk(long key) {
+            this.key = key;
+        }
+    }
+
+    /**
+     * The lock that secures the chunks.
+     */
+    @Nonnull
+    private final StampedLock lock = new StampedLock();
+
+    /**
+     * The hash table of the chunks. Its length is always a power of two and at most half of the slots are used.
+     */
+    @Nonnull
+    @GuardedBy("lock")
+    private Chunk[] table = new Chunk[INITIAL_TABLE_SIZE];
+
+    /**
+     * The amount of chunks stored in the table.
+     */
+    @GuardedBy("lock")
+    private int chunkCount;
+
+    /**
+     * The amount of tiles stored.
+     */
+    private volatile int tileCount;
+
+    @Contract(pure = true)
+    private static long getChunkKey(int x, int y, int z) {
+        long chunkX = (x >> CHUNK_SHIFT) & 0xFFFFFFL;
+        long chunkY = (y >> CHUNK_SHIFT) & 0xFFFFFFL;
+        long level = z & 0xFFFFL;
+        return (chunkX << 40) | (chunkY << 16) | level;
+    }
+
+    @Contract(pure = true)
+    private static int getTileIndex(int x, int y) {
+        return (x & CHUNK_MASK) | ((y & CHUNK_MASK) << CHUNK_SHIFT);
+    }
+
+    @Contract(pure = true)
+    private static int getSlot(long key, int mask) {
+        long hash = key * 0x9E3779B97F4A7C15L;
+        return (int) (hash >>> 32) & mask;
+    }
+
+    /**
+     * Locate a chunk in the table. This function has to work with tables that are modified at the same time. In
+     * that case the result is wrong, but the function returns in any case.
+     */
+    @Nullable
+    private static Chunk findChunk(@Nonnull Chunk[] chunks, long key) {
+        int mask = chunks.length - 1;
+        int slot = getSlot(key, mask);
+        for (int i = 0; i < chunks.length; i++) {
+            Chunk chunk = chunks[slot];
+            if (chunk == null) {
+                return null;
+            }
+            if (chunk.key == key) {
+                return chunk;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return null;
+    }
+
+    @Nullable
+    private MapTile find(int x, int y, int z) {
+        Chunk chunk = findChunk(table, getChunkKey(x, y, z));
+        return (chunk == null) ? null : chunk.tiles[getTileIndex(x, y)];
+    }
+
+    /**
+     * Get the tile at a location.
+     *
+     * @param x the x coordinate of the location
+     * @param y the y coordinate of the location
+     * @param z the z coordinate of the location
+     * @return the tile or {@code null} in case there is none
+     */
+    @Nullable
+    MapTile get(int x, int y, int z) {
+        long stamp = lock.tryOptimisticRead();
+        if (stamp != 0L) {
+            MapTile tile = find(x, y, z);
+            if (lock.validate(stamp)) {
+                return tile;
+            }
+        }
+        stamp = lock.readLock();
+        try {
+            return find(x, y, z);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Store a tile at a location.
+     *
+     * @param x the x coordinate of the location
+     * @param y the y coordinate of the location
+     * @param z the z coordinate of the location
+     * @param tile the tile to store
+     * @return the tile that was stored at this location before or {@code null}
+     */
+    @Nullable
+    MapTile put(int x, int y, int z, @Nonnull MapTile tile) {
+        long key = getChunkKey(x, y, z);
+        long stamp = lock.writeLock();
+        try {
+            Chunk chunk = findChunk(table, key);
+            if (chunk == null) {
+                chunk = new Chunk(key);
+                insertChunk(chunk);
+            }
+            int index = getTileIndex(x, y);
+            MapTile oldTile = chunk.tiles[index];
+            chunk.tiles[index] = tile;
+            if (oldTile == null) {
+                chunk.count++;
+                tileCount++;
+            }
+            return oldTile;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Remove the tile from a location.
+     *
+     * @param x the x coordinate of the location
+     * @param y the y coordinate of the location
+     * @param z the z coordinate of the location
+     * @return the tile that was removed or {@code null} in case there was none
+     */
+    @Nullable
+    MapTile remove(int x, int y, int z) {
+        long key = getChunkKey(x, y, z);
+        long stamp = lock.writeLock();
+        try {
+            Chunk chunk = findChunk(table, key);
+            if (chunk == null) {
+                return null;
+            }
+            int index = getTileIndex(x, y);
+            MapTile oldTile = chunk.tiles[index];
+            if (oldTile != null) {
+                chunk.tiles[index] = null;
+                chunk.count--;
+                tileCount--;
+                if (chunk.count == 0) {
+                    removeChunk(key);
+                }
+            }
+            return oldTile;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Remove all tiles.
+     *
+     * @return the tiles that were removed
+     */
+    @Nonnull
+    List<MapTile> clear() {
+        long stamp = lock.writeLock();
+        try {
+            List<MapTile> oldTiles = new ArrayList<>(tileCount);
+            collectTiles(oldTiles::add);
+            table = new Chunk[INITIAL_TABLE_SIZE];
+            chunkCount = 0;
+            tileCount = 0;
+            return oldTiles;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Execute a action for every tile that is stored. The action must not modify this storage.
+     *
+     * @param action the action
+     */
+    void forEach(@Nonnull Consumer<? super MapTile> action) {
+        long stamp = lock.readLock();
+        try {
+            collectTiles(action);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Get the amount of tiles stored.
+     *
+     * @return the amount of tiles
+     */
+    @Contract(pure = true)
+    int size() {
+        return tileCount;
+    }
+
+    @Contract(pure = true)
+    boolean isEmpty() {
+        return tileCount == 0;
+    }
+
+    @GuardedBy("lock")
+    private void collectTiles(@Nonnull Consumer<? super MapTile> action) {
+        for (Chunk chunk : table) {
+            if (chunk != null) {
+                for (MapTile tile : chunk.tiles) {
+                    if (tile != null) {
+                        action.accept(tile);
+                    }
+                }
+            }
+        }
+    }
+
+    @GuardedBy("lock")
+    private void insertChunk(@Nonnull Chunk chunk) {
+        if (((chunkCount + 1) * 2) > table.length) {
+            Chunk[] newTable = new Chunk[table.length * 2];
+            for (Chunk oldChunk : table) {
+                if (oldChunk != null) {
+                    insertChunk(newTable, oldChunk);
+                }
+            }
+            table = newTable;
+        }
+        insertChunk(table, chunk);
+        chunkCount++;
+    }
+
+    private static void insertChunk(@Nonnull Chunk[] chunks, @Nonnull Chunk chunk) {
+        int mask = chunks.length - 1;
+        int slot = getSlot(chunk.key, mask);
+        while (chunks[slot] != null) {
+            slot = (slot + 1) & mask;
+        }
+        chunks[slot] = chunk;
+    }
+
+    /**
+     * Remove a chunk from the table. The following entries of the probing sequence are moved back, so the lookup
+     * of the remaining chunks keeps working without tombstones.
+     */
+    @GuardedBy("lock")
+    private void removeChunk(long key) {
+        Chunk[] chunks = table;
+        int mask = chunks.length - 1;
+        int slot = getSlot(key, mask);
+        while (chunks[slot] != null) {
+            if (chunks[slot].key == key) {
+                break;
+            }
+            slot = (slot + 1) & mask;
+        }
+        if (chunks[slot] == null) {
+            return;
+        }
+
+        chunks[slot] = null;
+        chunkCount--;
+        int freeSlot = slot;
+        int nextSlot = (slot + 1) & mask;
+        while (chunks[nextSlot] != null) {
+            Chunk movedChunk = chunks[nextSlot];
+            int idealSlot = getSlot(movedChunk.key, mask);
+            // check if the ideal slot is cyclically outside of (freeSlot, nextSlot]
+            boolean canMove = (freeSlot <= nextSlot) ?
+                    ((idealSlot <= freeSlot) || (idealSlot > nextSlot)) :
+                    ((idealSlot <= freeSlot) && (idealSlot > nextSlot));
+            if (canMove) {
+                chunks[freeSlot] = movedChunk;
+                chunks[nextSlot] = null;
+                freeSlot = nextSlot;
+            }
+            nextSlot = (nextSlot + 1) & mask;
+        }
+    }
+}
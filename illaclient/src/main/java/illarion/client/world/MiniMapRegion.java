@@ -0,0 +1,167 @@
+/*
+ * This file is part of the Illarion project.
+ *
+ * Copyright © 2016 - Illarion e.V.
+ *
+ * Illarion is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Illarion is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ */
+package illarion.client.world;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.ThreadSafe;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * The data of one region of the mini map. The data is memory mapped from its file, so changes to the tiles are stored
+ * directly in the mapping and only need to be flushed to the disk from time to time. In case mapping the file fails,
+ * the data is kept on the heap and is lost once the client is closed.
+ *
+ * @author Martin Karing &lt;nitram@illarion.org&gt;
+ */
+@ThreadSafe
+final class MiniMapRegion {
+    /**
+     * The logger that is used for the log output of this class.
+     */
+    @Nonnull
+    private static final Logger log = LoggerFactory.getLogger(MiniMapRegion.class);
+
+    /**
+     * The data of the region. Access to the data has to be synchronized on the buffer.
+     */
+    @Nonnull
+    private final ByteBuffer data;
+
+    /**
+     * This flag is set in case the data was changed since the last flush.
+     */
+    @Nonnull
+    private final AtomicBoolean dirty = new AtomicBoolean();
+
+    /**
+     * This flag is set in case the region contained data when it was opened.
+     */
+    private final boolean existing;
+
+    private MiniMapRegion(@Nonnull ByteBuffer data, boolean existing) {
+        this.data = data;
+        this.existing = existing;
+    }
+
+    /**
+     * Open the data of a region. The file is created in case it does not exist yet. In case there is no file but a
+     * file in the old compressed format, the old data is imported.
+     *
+     * @param file the file that stores the mapped data
+     * @param legacyFile the file that stores the data in the old compressed format
+     * @param size the size of the region data in bytes
+     * @return the region
+     */
+    @Nonnull
+    static MiniMapRegion open(@Nonnull Path file, @Nonnull Path legacyFile, int size) {
+        boolean fileExists = Files.isRegularFile(file);
+        boolean importLegacy = !fileExists && Files.isRegularFile(legacyFile);
+        ByteBuffer data;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                                                    StandardOpenOption.WRITE)) {
+            // the mapping stays valid after the channel is closed
+            data = channel.map(MapMode.READ_WRITE, 0, size);
+        } catch (IOException e) {
+            log.error("Failed to map the mini map file {}. Changes to this part of the map are not stored.", file, e);
+            data = ByteBuffer.allocate(size);
+        }
+        data.order(ByteOrder.nativeOrder());
+
+        MiniMapRegion region = new MiniMapRegion(data, fileExists || importLegacy);
+        if (importLegacy) {
+            region.importLegacy(legacyFile);
+        }
+        return region;
+    }
+
+    /**
+     * Read the data of a region file in the old compressed format. The old file is removed once its data is stored
+     * in the new file.
+     *
+     * @param legacyFile the file in the old format
+     */
+    private void importLegacy(@Nonnull Path legacyFile) {
+        try (ReadableByteChannel inChannel = Channels
+                .newChannel(new GZIPInputStream(Files.newInputStream(legacyFile)))) {
+            synchronized (data) {
+                ByteBuffer target = data.duplicate();
+                int read = 1;
+                while ((read > 0) && target.hasRemaining()) {
+                    read = inChannel.read(target);
+                }
+            }
+            if (data instanceof MappedByteBuffer) {
+                dirty.set(true);
+                flush();
+                Files.delete(legacyFile);
+            }
+        } catch (IOException e) {
+            log.error("Failed to import the old mini map file {}", legacyFile, e);
+        }
+    }
+
+    /**
+     * Get the data of the region. Access to the data has to be synchronized on the returned buffer.
+     *
+     * @return the data of the region
+     */
+    @Nonnull
+    ByteBuffer getData() {
+        return data;
+    }
+
+    /**
+     * Check if the region contained data when it was opened.
+     *
+     * @return {@code true} in case data was load from a file
+     */
+    boolean isExisting() {
+        return existing;
+    }
+
+    /**
+     * Mark the data of the region as changed.
+     *
+     * @return {@code true} in case the region was not marked as changed before and a flush needs to be scheduled
+     */
+    boolean markDirty() {
+        return dirty.compareAndSet(false, true);
+    }
+
+    /**
+     * Write the changed data of the region to the disk. Only the pages of the mapping that were changed are written.
+     */
+    void flush() {
+        if (dirty.getAndSet(false) && (data instanceof MappedByteBuffer)) {
+            ((MappedByteBuffer) data).force();
+        }
+    }
+}
@@ -17,10 +17,12 @@ package illarion.client.world;
 
 import illarion.client.IllaClient;
 import illarion.client.graphics.Avatar;
+import illarion.client.graphics.MapDisplayManager;
 import illarion.client.net.client.RequestAppearanceCmd;
 import illarion.client.world.events.CharRemovedEvent;
 import illarion.common.config.ConfigChangedEvent;
 import illarion.common.types.CharacterId;
+import illarion.common.types.Rectangle;
 import illarion.common.types.ServerCoordinate;
 import javolution.util.FastTable;
 import org.bushe.swing.event.EventBus;
@@ -66,6 +68,13 @@ public final class People {
     @GuardedBy("charsLock")
     private final Map<CharacterId, Char> chars;
 
+    /**
+     * The index of the characters by their location on the map and their area on the display.
+     */
+    @Nonnull
+    @GuardedBy("charsLock")
+    private final CharacterIndex charsIndex;
+
     /**
      * The lock that is used to secure the chars table properly.
      */
@@ -86,6 +95,7 @@ public final class People {
     public People() {
         removalList = new FastTable<>();
         chars = new HashMap<>();
+        charsIndex = new CharacterIndex();
         charsLock = new ReentrantReadWriteLock();
 
         permanentAvatarTagState = IllaClient.getCfg().getInteger("showAvatarTagPermanently");
@@ -138,24 +148,13 @@ public final class People {
 
     @Nullable
     public Char getCharOnScreenLoc(int x, int y) {
+        MapDisplayManager displayManager = World.getMapDisplay();
+        int displayX = displayManager.getWorldX(x);
+        int displayY = displayManager.getWorldY(y);
+
         charsLock.readLock().lock();
         try {
-            @Nullable Char characterOnScreenLocation = null;
-            for (Char character : chars.values()) {
-                Avatar avatar = character.getAvatar();
-                if ((avatar != null) && character.getInteractive().isCharOnScreenLoc(x, y)) {
-                    if (characterOnScreenLocation == null) {
-                        characterOnScreenLocation = character;
-                    } else {
-                        Avatar otherAvatar = characterOnScreenLocation.getAvatar();
-                        assert otherAvatar != null; /* characterOnScreenLocation can't store a char without avatar */
-                        if (avatar.getOrder() < otherAvatar.getOrder()) {
-                            characterOnScreenLocation = character;
-                        }
-                    }
-                }
-            }
-            return characterOnScreenLocation;
+            return charsIndex.getCharacterOnDisplayLoc(displayX, displayY);
         } finally {
             charsLock.readLock().unlock();
         }
@@ -177,6 +176,7 @@ public final class People {
         charsLock.writeLock().lock();
         try {
             chars.put(chara.getCharId(), chara);
+            charsIndex.setLocation(chara, chara.getLocation());
         } finally {
             charsLock.writeLock().unlock();
         }
@@ -233,6 +233,7 @@ public final class People {
             cleanRemovalList();
             chars.values().forEach(Char::markAsRemoved);
             chars.clear();
+            charsIndex.clear();
         } finally {
             charsLock.writeLock().unlock();
         }
@@ -315,16 +316,69 @@ public final class People {
 
         charsLock.readLock().lock();
         try {
-            for (Char character : chars.values()) {
-                if (coordinate.equals(character.getLocation())) {
-                    return character;
-                }
-            }
+            return charsIndex.getCharacterAt(coordinate);
         } finally {
             charsLock.readLock().unlock();
         }
+    }
 
-        return null;
+    /**
+     * Update the location of a character in the index of the characters. This is called by the character every time
+     * its location changes.
+     *
+     * @param character the character that moved
+     */
+    void updateCharacterLocation(@Nonnull Char character) {
+        charsLock.writeLock().lock();
+        try {
+            if (isKnownCharacter(character)) {
+                charsIndex.setLocation(character, character.getLocation());
+            }
+        } finally {
+            charsLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Update the area on the display that is covered by the avatar of a character. This is called by the avatar
+     * every time it calculated its area on the display.
+     *
+     * @param character the character the avatar belongs to
+     * @param avatar the avatar
+     * @param displayRect the area the avatar covers on the display
+     */
+    public void updateCharacterHitArea(@Nonnull Char character, @Nonnull Avatar avatar,
+                                       @Nonnull Rectangle displayRect) {
+        charsLock.writeLock().lock();
+        try {
+            if (isKnownCharacter(character)) {
+                charsIndex.setHitArea(character, avatar, displayRect);
+            }
+        } finally {
+            charsLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Remove the area on the display that is covered by the avatar of a character. This is called once the avatar is
+     * hidden.
+     *
+     * @param character the character the avatar belongs to
+     * @param avatar the avatar
+     */
+    public void removeCharacterHitArea(@Nonnull Char character, @Nonnull Avatar avatar) {
+        charsLock.writeLock().lock();
+        try {
+            charsIndex.removeHitArea(character, avatar);
+        } finally {
+            charsLock.writeLock().unlock();
+        }
+    }
+
+    @GuardedBy("charsLock")
+    private boolean isKnownCharacter(@Nonnull Char character) {
+        CharacterId id = character.getCharId();
+        return (id != null) && (chars.get(id) == character);
     }
 
     /**
@@ -348,6 +402,7 @@ public final class People {
                     World.getPlayer().getCombatHandler().standDown();
                 }
                 chars.remove(id);
+                charsIndex.remove(chara);
                 chara.markAsRemoved();
             }
         } finally {
@@ -23,6 +23,7 @@ import illarion.client.net.NetComm;
 import illarion.client.util.ChatHandler;
 import illarion.client.util.UpdateTaskManager;
 import illarion.client.world.interactive.InteractionManager;
+import illarion.common.types.CharacterId;
 import org.illarion.engine.Engine;
 import org.illarion.engine.EngineException;
 import org.illarion.engine.graphic.LightTracer;
@@ -187,6 +188,18 @@ public final class World {
         return instance;
     }
 
+    /**
+     * Check if a character is the player character. Other than {@link #getPlayer()} this works at any time and
+     * reports {@code false} as long as the world is not initialized.
+     *
+     * @param checkId the ID of the character
+     * @return {@code true} in case the character is the player character
+     */
+    public static boolean isPlayer(@Nullable CharacterId checkId) {
+        Player instance = INSTANCE.player;
+        return (instance != null) && instance.isPlayer(checkId);
+    }
+
     @Nonnull
     public static Weather getWeather() {
         Weather instance = INSTANCE.weather;
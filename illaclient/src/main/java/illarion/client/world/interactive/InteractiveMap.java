@@ -20,7 +20,6 @@ import illarion.client.world.GameMap;
 import illarion.client.world.MapTile;
 import illarion.client.world.World;
 import illarion.common.types.DisplayCoordinate;
-import illarion.common.types.ServerCoordinate;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
@@ -75,8 +74,7 @@ public final class InteractiveMap {
             int tilePosY = lowY + levelOffset;
             int tilePosZ = base + i;
 
-            @Nullable MapTile foundElevatedTile = parentMap.getMapAt(
-                    new ServerCoordinate(tilePosX - 1, tilePosY + 1, tilePosZ));
+            @Nullable MapTile foundElevatedTile = parentMap.getMapAt(tilePosX - 1, tilePosY + 1, tilePosZ);
             if ((foundElevatedTile != null) && (foundElevatedTile.getElevation() > 0)) {
 
                 int x = DisplayCoordinate.toServerX(displayX, displayY - foundElevatedTile.getElevation());
@@ -90,7 +88,7 @@ public final class InteractiveMap {
                 }
             }
 
-            @Nullable MapTile foundTile = parentMap.getMapAt(new ServerCoordinate(tilePosX, tilePosY, tilePosZ));
+            @Nullable MapTile foundTile = parentMap.getMapAt(tilePosX, tilePosY, tilePosZ);
             if ((foundTile != null) && !foundTile.isHidden()) {
                 return foundTile;
             }
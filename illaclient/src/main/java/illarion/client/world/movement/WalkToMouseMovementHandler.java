@@ -152,15 +152,18 @@ class WalkToMouseMovementHandler extends WalkToMovementHandler implements MouseT
 
     @Override
     @Nullable
-    protected Path calculateNewPath(@Nonnull ServerCoordinate currentLocation) {
-        int maxDistance = currentLocation.getStepDistance(getTargetLocation());
+    protected Path calculateNewPath(@Nonnull ServerCoordinate currentLocation, @Nonnull ServerCoordinate target,
+                                    int distance, @Nonnull CharMovementMode mode) {
+        int maxDistance = currentLocation.getStepDistance(target);
 
-        while (getTargetDistance() < maxDistance) {
-            Path result = super.calculateNewPath(currentLocation);
+        for (int testedDistance = distance; testedDistance < maxDistance; testedDistance++) {
+            if (Thread.currentThread().isInterrupted()) {
+                return null;
+            }
+            Path result = super.calculateNewPath(currentLocation, target, testedDistance, mode);
             if (result != null) {
                 return result;
             }
-            increaseTargetDistance();
         }
         return null;
     }
@@ -31,6 +31,9 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.EnumSet;
 import java.util.Objects;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
 import static illarion.client.world.CharMovementMode.Run;
 import static illarion.client.world.CharMovementMode.Walk;
@@ -46,12 +49,23 @@ class WalkToMovementHandler extends AbstractMovementHandler implements TargetMov
     @Nonnull
     private static final Marker marker = MarkerFactory.getMarker("Movement");
 
+    /**
+     * The amount of nodes the path finder is allowed to expand while extending the current path to a moved target.
+     */
+    private static final int REPAIR_MAX_EXPANSIONS = 64;
+
     /**
      * The path finder used to calculate the paths towards the target location.
      */
     @Nonnull
     private final PathFindingAlgorithm pathFindingAlgorithm;
 
+    /**
+     * The path finder used to extend the current path in case the target location moved by one tile.
+     */
+    @Nonnull
+    private final PathFindingAlgorithm pathRepairAlgorithm;
+
     @Nullable
     private ServerCoordinate targetLocation;
     private int targetDistance;
@@ -62,13 +76,50 @@ class WalkToMovementHandler extends AbstractMovementHandler implements TargetMov
     @Nullable
     private Path currentPath;
 
+    /**
+     * The target location the current path was calculated for.
+     */
+    @Nullable
+    private ServerCoordinate currentPathTarget;
+
+    /**
+     * The planner that calculates the new paths in the background.
+     */
+    @Nonnull
+    private final PathPlanner pathPlanner;
+
+    /**
+     * The path that is currently calculated by the path planner.
+     */
+    @Nullable
+    private Future<Path> plannedPath;
+
+    /**
+     * The location the planned path starts at.
+     */
+    @Nullable
+    private ServerCoordinate plannedPathOrigin;
+
+    /**
+     * The target location of the planned path.
+     */
+    @Nullable
+    private ServerCoordinate plannedPathTarget;
+
+    /**
+     * The distance to the target location the planned path is allowed to keep.
+     */
+    private int plannedPathDistance;
+
     @Nonnull
     private final Collection<Direction> allowedDirections;
 
     WalkToMovementHandler(@Nonnull Movement movement) {
         super(movement);
         allowedDirections = EnumSet.allOf(Direction.class);
-        pathFindingAlgorithm = new AStar();
+        pathFindingAlgorithm = PathPlanner.createPathFinder(AStar.DEFAULT_MAX_EXPANSIONS);
+        pathRepairAlgorithm = new AStar(REPAIR_MAX_EXPANSIONS);
+        pathPlanner = new PathPlanner();
     }
 
     @Nullable
@@ -85,11 +136,19 @@ class WalkToMovementHandler extends AbstractMovementHandler implements TargetMov
             return new DefaultStepData(CharMovementMode.None, finishMove(currentLocation), fetchTargetAction());
         }
         Path activePath;
+        boolean plannedPathUsed = false;
         if (isCurrentPathValid()) {
             activePath = currentPath;
         } else {
-            activePath = calculateNewPath(currentLocation);
-            currentPath = activePath;
+            activePath = repairCurrentPath();
+            if (activePath == null) {
+                if (!isPlannedPathReady(currentLocation)) {
+                    return getInterimStep(currentLocation, target);
+                }
+                activePath = takePlannedPath(target);
+                plannedPathUsed = true;
+            }
+            setCurrentPath(activePath);
         }
         if ((activePath == null) || activePath.isEmpty()) {
             return new DefaultStepData(CharMovementMode.None, finishMove(currentLocation), fetchTargetAction());
@@ -100,30 +159,138 @@ class WalkToMovementHandler extends AbstractMovementHandler implements TargetMov
             return new DefaultStepData(CharMovementMode.None, finishMove(currentLocation), fetchTargetAction());
         }
         if (!isPathNodeValid(currentLocation, node)) {
-            activePath = calculateNewPath(currentLocation);
-            currentPath = activePath;
-            if (activePath == null) {
-                return new DefaultStepData(CharMovementMode.None, finishMove(currentLocation), fetchTargetAction());
-            }
-            node = activePath.nextStep();
-            if (node == null) {
-                return new DefaultStepData(CharMovementMode.None, finishMove(currentLocation), fetchTargetAction());
-            }
-            if (!isPathNodeValid(currentLocation, node)) {
+            if (plannedPathUsed) {
                 Direction lastDirection = currentLocation.getDirection(target);
                 targetLocation = null;
                 targetAction = null;
                 return new DefaultStepData(CharMovementMode.None, lastDirection);
             }
+            setCurrentPath(null);
+            startPlanning(currentLocation);
+            return getInterimStep(currentLocation, target);
         }
         log.debug(marker, "Performing step to: {}", node.getLocation());
         Direction moveDir = currentLocation.getDirection(node.getLocation());
-        if (activePath.isEmpty() && (targetDistance == 0) && !target.equals(node.getLocation())) {
+        if (activePath.isEmpty() && activePath.isComplete() && (targetDistance == 0) &&
+                !target.equals(node.getLocation())) {
             targetDistance = 1;
         }
         return new DefaultStepData(node.getMovementMethod(), moveDir);
     }
 
+    /**
+     * Get the step that is performed while the path planner is still calculating the new path. The character follows
+     * the remaining steps of the previous path. In case there are none, the character steps straight towards the
+     * target location or waits in case this step is blocked.
+     *
+     * @param currentLocation the current location of the character
+     * @param target the target location
+     * @return the step or {@code null} to wait for the path planner
+     */
+    @Nullable
+    private StepData getInterimStep(@Nonnull ServerCoordinate currentLocation, @Nonnull ServerCoordinate target) {
+        Path path = currentPath;
+        if ((path != null) && !path.isEmpty()) {
+            PathNode node = path.nextStep();
+            if ((node != null) && isPathNodeValid(currentLocation, node)) {
+                log.debug(marker, "Following the previous path while planning: {}", node.getLocation());
+                return new DefaultStepData(node.getMovementMethod(), currentLocation.getDirection(node.getLocation()));
+            }
+        }
+        Direction direction = currentLocation.getDirection(target);
+        if ((direction != null) && (getMovementCost(currentLocation, Walk, direction) != MoveCostProvider.BLOCKED)) {
+            log.debug(marker, "Stepping towards the target while planning: {}", direction);
+            return new DefaultStepData(Walk, direction);
+        }
+        log.debug(marker, "Waiting for the path planner.");
+        return null;
+    }
+
+    /**
+     * Check if the path planner finished the path from the current location to the target location. In case there
+     * is no suitable search running, a new one is started.
+     *
+     * @param currentLocation the current location of the character
+     * @return {@code true} in case the planned path is ready to be used
+     */
+    private boolean isPlannedPathReady(@Nonnull ServerCoordinate currentLocation) {
+        Future<Path> plan = plannedPath;
+        if ((plan == null) || !Objects.equals(plannedPathTarget, targetLocation) ||
+                (plannedPathDistance != targetDistance)) {
+            startPlanning(currentLocation);
+            return false;
+        }
+        if (!plan.isDone()) {
+            return false;
+        }
+        if (!currentLocation.equals(plannedPathOrigin)) {
+            /* The character moved while the path was calculated. */
+            Path result = getPlannedResult(plan);
+            if ((result == null) || !result.skipTo(currentLocation)) {
+                startPlanning(currentLocation);
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Fetch the path calculated by the path planner.
+     *
+     * @param target the target location
+     * @return the calculated path or {@code null} in case there is none
+     */
+    @Nullable
+    private Path takePlannedPath(@Nonnull ServerCoordinate target) {
+        Future<Path> plan = plannedPath;
+        plannedPath = null;
+        plannedPathOrigin = null;
+        plannedPathTarget = null;
+        if (plan == null) {
+            return null;
+        }
+        Path result = getPlannedResult(plan);
+        if ((result != null) && result.isComplete()) {
+            /* The path finder may have been forced to stay further away from the target. */
+            ServerCoordinate destination = result.getDestination();
+            if (destination != null) {
+                targetDistance = Math.max(targetDistance, destination.getStepDistance(target));
+            }
+        }
+        return result;
+    }
+
+    @Nullable
+    private static Path getPlannedResult(@Nonnull Future<Path> plan) {
+        try {
+            return plan.get();
+        } catch (@Nonnull InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (@Nonnull CancellationException ignored) {
+        } catch (@Nonnull ExecutionException e) {
+            log.error(marker, "Calculating a path failed.", e.getCause());
+        }
+        return null;
+    }
+
+    /**
+     * Start the calculation of a path from the current location to the target location. The calculation that was
+     * running before is canceled.
+     *
+     * @param currentLocation the current location of the character
+     */
+    private void startPlanning(@Nonnull ServerCoordinate currentLocation) {
+        ServerCoordinate target = getTargetLocation();
+        int distance = targetDistance;
+        CharMovementMode mode = getMovementMode();
+
+        plannedPathOrigin = currentLocation;
+        plannedPathTarget = target;
+        plannedPathDistance = distance;
+        plannedPath = pathPlanner.plan(() -> calculateNewPath(currentLocation, target, distance, mode),
+                                       getMovement()::update);
+    }
+
     @Nullable
     private Direction finishMove(@Nonnull ServerCoordinate currentLocation) {
         if (targetLocation == null) {
@@ -166,25 +333,32 @@ class WalkToMovementHandler extends AbstractMovementHandler implements TargetMov
         return false;
     }
 
-    protected int getTargetDistance() {
-        return targetDistance;
-    }
-
-    protected void increaseTargetDistance() {
-        targetDistance++;
-    }
-
     private boolean isCurrentPathValid() {
         Path path = currentPath;
         if (path == null) {
             log.debug(marker, "Path is not valid: Current path is NULL");
             return false;
         }
+        if (!path.isComplete()) {
+            if (path.isEmpty()) {
+                log.debug(marker, "Path is not valid: Partial path is used up");
+                return false;
+            }
+            if (!Objects.equals(currentPathTarget, targetLocation)) {
+                log.debug(marker, "Path is not valid: Partial path leads to a different target location.");
+                return false;
+            }
+            return true;
+        }
         ServerCoordinate destination = path.getDestination();
         if (destination == null) {
             log.debug(marker, "Path is not valid: Path destination is NULL");
             return false;
         }
+        if (!path.isEmpty() && Objects.equals(currentPathTarget, targetLocation)) {
+            /* The path was calculated for this target, but it was allowed to end before the target. */
+            return true;
+        }
         if (!destination.equals(targetLocation)) {
             log.debug(marker, "Path is not valid: Destination ({}) does not equal the current target location ({}).",
                       destination, targetLocation);
@@ -193,20 +367,64 @@ class WalkToMovementHandler extends AbstractMovementHandler implements TargetMov
         return true;
     }
 
+    private void setCurrentPath(@Nullable Path path) {
+        currentPath = path;
+        currentPathTarget = (path == null) ? null : targetLocation;
+    }
+
+    /**
+     * Try to extend the current path in case the target location moved by only one tile since the path was
+     * calculated. The path is extended by a short search from the old destination to the new target location.
+     *
+     * @return the extended path or {@code null} in case the current path can't be reused
+     */
     @Nullable
-    protected Path calculateNewPath(@Nonnull ServerCoordinate currentLocation) {
-        ServerCoordinate target = getTargetLocation();
+    private Path repairCurrentPath() {
+        Path path = currentPath;
+        ServerCoordinate target = targetLocation;
+        if ((path == null) || (target == null) || !path.isComplete() || path.isEmpty() || (targetDistance != 0)) {
+            return null;
+        }
+        ServerCoordinate destination = path.getDestination();
+        if ((destination == null) || (destination.getStepDistance(target) != 1)) {
+            return null;
+        }
+
+        Path continuation = findPath(pathRepairAlgorithm, destination, target, targetDistance, getMovementMode());
+        if ((continuation == null) || !continuation.isComplete() || continuation.isEmpty()) {
+            return null;
+        }
+        Path repairedPath = path.append(continuation);
+        log.debug(marker, "Extended the current path to the moved target location: {}", repairedPath);
+        return repairedPath;
+    }
 
+    /**
+     * Calculate a new path. This function is executed by the path planner in the background.
+     *
+     * @param currentLocation the location the path starts at
+     * @param target the target location of the path
+     * @param distance the distance to the target location the path is allowed to keep
+     * @param mode the movement mode that was selected once the calculation was requested
+     * @return the path or {@code null} in case there is none
+     */
+    @Nullable
+    protected Path calculateNewPath(@Nonnull ServerCoordinate currentLocation, @Nonnull ServerCoordinate target,
+                                    int distance, @Nonnull CharMovementMode mode) {
         log.info(marker, "Calculating a new path from {} to {}", currentLocation, target);
-        PathFindingAlgorithm algorithm = pathFindingAlgorithm;
+        return findPath(pathFindingAlgorithm, currentLocation, target, distance, mode);
+    }
 
-        switch (getMovementMode()) {
+    @Nullable
+    private Path findPath(@Nonnull PathFindingAlgorithm algorithm, @Nonnull ServerCoordinate origin,
+                          @Nonnull ServerCoordinate target, int distance, @Nonnull CharMovementMode mode) {
+        switch (mode) {
             case Walk:
-                return algorithm.findPath(this, currentLocation, target, targetDistance,
-                        getAllowedDirections(currentLocation, target), Walk);
+                return algorithm.findPath(this, origin, target, distance,
+                        getAllowedDirections(origin, target), Walk);
             case Run:
-                return algorithm.findPath(this, currentLocation, target, targetDistance,
-                        getAllowedDirections(currentLocation, target), Walk, Run);
+                return algorithm.findPath(this, origin, target, distance,
+                        getAllowedDirections(origin, target), Walk, Run);
             default:
                 return null;
         }
@@ -227,6 +445,8 @@ class WalkToMovementHandler extends AbstractMovementHandler implements TargetMov
     @Override
     public void disengage(boolean transferAllowed) {
         super.disengage(transferAllowed);
+        pathPlanner.cancel();
+        plannedPath = null;
         targetLocation = null;
         setTargetReachedAction(null);
     }
@@ -239,6 +459,10 @@ class WalkToMovementHandler extends AbstractMovementHandler implements TargetMov
 
     @Override
     public void walkTo(@Nonnull ServerCoordinate target, int distance) {
+        if (!target.equals(plannedPathTarget)) {
+            /* The search for the old target is not needed anymore. */
+            pathPlanner.cancel();
+        }
         setTargetReachedAction(null);
         targetLocation = target;
         targetDistance = distance;
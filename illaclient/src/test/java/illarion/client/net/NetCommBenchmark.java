@@ -0,0 +1,151 @@
+/*
+ * This file is part of the Illarion project.
+ *
+ * Copyright © 2016 - Illarion e.V.
+ *
+ * Illarion is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Illarion is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ */
+package illarion.client.net;
+
+import illarion.client.net.replay.ReplayServer;
+import illarion.client.net.replay.SessionRecording;
+import illarion.client.net.server.ServerReplyResult;
+
+import javax.annotation.Nonnull;
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Paths;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * This benchmark replays a session recording over a local connection into the receiver and the message executor of
+ * the client and reports the throughput, the execution latency and the garbage collection activity. The replies are
+ * decoded and scheduled, but not executed, so the benchmark runs without the rest of the client.
+ * <p>
+ * Recordings are created by starting the client with the system property {@code illarion.net.record} set to the
+ * target file.
+ * </p>
+ *
+ * @author Martin Karing &lt;nitram@illarion.org&gt;
+ */
+public final class NetCommBenchmark {
+    /**
+     * The amount of runs that are done before the measured runs start.
+     */
+    private static final int WARM_UP_RUNS = 3;
+
+    /**
+     * The time one run is allowed to take at most.
+     */
+    private static final long RUN_TIMEOUT = TimeUnit.MINUTES.toNanos(5);
+
+    private NetCommBenchmark() {
+    }
+
+    /**
+     * Execute the benchmark.
+     *
+     * @param args the path of the recording and optional the amount of measured runs
+     * @throws Exception in case anything goes wrong
+     */
+    public static void main(@Nonnull String[] args) throws Exception {
+        if (args.length < 1) {
+            System.out.println("Usage: NetCommBenchmark <recording> [runs]");
+            return;
+        }
+        SessionRecording recording = SessionRecording.load(Paths.get(args[0]));
+        int runs = (args.length > 1) ? Integer.parseInt(args[1]) : 10;
+
+        System.out.printf("Recording: %d chunks, %d bytes%n", recording.getChunks().size(),
+                recording.getTotalBytes());
+        for (int i = 0; i < WARM_UP_RUNS; i++) {
+            runOnce(recording);
+        }
+        for (int i = 0; i < runs; i++) {
+            System.out.println(runOnce(recording));
+        }
+    }
+
+    @Nonnull
+    private static String runOnce(@Nonnull SessionRecording recording)
+            throws IOException, InterruptedException, ExecutionException, TimeoutException {
+        ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+        long gcCountStart = getGcCount();
+        long gcTimeStart = getGcTime();
+
+        try (ReplayServer server = new ReplayServer(recording, ReplayServer.MAX_SPEED)) {
+            InetSocketAddress address = server.start(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+            try (SocketChannel socket = SocketChannel.open(address)) {
+                ThroughputMonitor monitor = new ThroughputMonitor("Benchmark");
+                MessageExecutor executor = new MessageExecutor(reply -> ServerReplyResult.Success);
+                Receiver receiver = new Receiver(executor, socket, monitor, null);
+
+                long startTime = System.nanoTime();
+                receiver.start();
+                while ((monitor.getTotalBytes() < recording.getTotalBytes()) || (executor.getQueueDepth() > 0)) {
+                    if ((System.nanoTime() - startTime) > RUN_TIMEOUT) {
+                        throw new TimeoutException("The replay did not finish in time.");
+                    }
+                    Thread.sleep(1);
+                }
+                long duration = System.nanoTime() - startTime;
+                long allocatedBytes = getAllocatedBytes(threadBean, receiver.getId());
+
+                receiver.saveShutdown();
+                executor.saveShutdown().get();
+
+                double seconds = duration / (double) TimeUnit.SECONDS.toNanos(1);
+                long frames = monitor.getTotalFrames();
+                return String.format("%.1f MB/s, %.0f frames/s, %.2f frames/read, latency p50 %d µs, " +
+                                "p90 %d µs, p99 %d µs, %d bytes allocated/frame, %d GCs, %d ms GC time",
+                        monitor.getTotalBytes() / seconds / (1 << 20), frames / seconds,
+                        monitor.getFramesPerTransfer(), toMicros(executor.getLatencyPercentile(0.5)),
+                        toMicros(executor.getLatencyPercentile(0.9)), toMicros(executor.getLatencyPercentile(0.99)),
+                        (frames == 0) ? 0 : (allocatedBytes / frames), getGcCount() - gcCountStart,
+                        getGcTime() - gcTimeStart);
+            }
+        }
+    }
+
+    private static long toMicros(long nanos) {
+        return TimeUnit.NANOSECONDS.toMicros(nanos);
+    }
+
+    private static long getAllocatedBytes(@Nonnull ThreadMXBean threadBean, long threadId) {
+        if (threadBean instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) threadBean).getThreadAllocatedBytes(threadId);
+        }
+        return -1;
+    }
+
+    private static long getGcCount() {
+        long count = 0;
+        for (GarbageCollectorMXBean bean : ManagementFactory.getGarbageCollectorMXBeans()) {
+            count += Math.max(0, bean.getCollectionCount());
+        }
+        return count;
+    }
+
+    private static long getGcTime() {
+        long time = 0;
+        for (GarbageCollectorMXBean bean : ManagementFactory.getGarbageCollectorMXBeans()) {
+            time += Math.max(0, bean.getCollectionTime());
+        }
+        return time;
+    }
+}
@@ -0,0 +1,129 @@
+/*
+ * This file is part of the Illarion project.
+ *
+ * Copyright © 2016 - Illarion e.V.
+ *
+ * Illarion is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Illarion is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ */
+package illarion.client.resources;
+
+import illarion.client.resources.data.ResourceTemplate;
+import org.testng.annotations.Test;
+
+import javax.annotation.Nonnull;
+
+import static org.testng.Assert.*;
+
+/**
+ * The test class for the lookup of the {@link AbstractTemplateFactory}.
+ *
+ * @author Martin Karing &lt;nitram@illarion.org&gt;
+ */
+public class AbstractTemplateFactoryTest {
+    @Nonnull
+    private static TestFactory createFactory(int defaultId, @Nonnull int... ids) {
+        TestFactory factory = new TestFactory(defaultId);
+        factory.init();
+        for (int id : ids) {
+            factory.storeResource(new TestTemplate(id));
+        }
+        return factory;
+    }
+
+    private static void assertLookup(@Nonnull TestFactory factory, @Nonnull int... ids) {
+        for (int id : ids) {
+            assertTrue(factory.hasTemplate(id), "Template " + id + " is missing");
+            assertEquals(factory.getTemplate(id).getTemplateId(), id);
+        }
+    }
+
+    @Test
+    public void testDenseLookup() {
+        int[] ids = {5, 6, 7, 9, 200};
+        TestFactory factory = createFactory(-1, ids);
+        factory.loadingFinished();
+
+        assertLookup(factory, ids);
+        assertFalse(factory.hasTemplate(4));
+        assertFalse(factory.hasTemplate(8));
+        assertFalse(factory.hasTemplate(201));
+        assertFalse(factory.hasTemplate(Integer.MIN_VALUE));
+        assertFalse(factory.hasTemplate(Integer.MAX_VALUE));
+    }
+
+    @Test
+    public void testSparseLookup() {
+        int[] ids = {-70000, 0, 17, 1000, 65536, 1 << 20, Integer.MAX_VALUE};
+        TestFactory factory = createFactory(-1, ids);
+        factory.loadingFinished();
+
+        assertLookup(factory, ids);
+        assertFalse(factory.hasTemplate(1));
+        assertFalse(factory.hasTemplate(-1));
+        assertFalse(factory.hasTemplate(Integer.MIN_VALUE));
+    }
+
+    @Test
+    public void testDefaultTemplate() {
+        TestFactory factory = createFactory(0, 0, 10, 20);
+        factory.loadingFinished();
+
+        assertEquals(factory.getTemplate(15).getTemplateId(), 0);
+        assertEquals(factory.getTemplate(10).getTemplateId(), 10);
+    }
+
+    @Test(expectedExceptions = IllegalStateException.class)
+    public void testMissingTemplate() {
+        TestFactory factory = createFactory(-1, 1, 2, 3);
+        factory.loadingFinished();
+
+        factory.getTemplate(4);
+    }
+
+    @Test
+    public void testStoreAfterFreezing() {
+        TestFactory factory = createFactory(-1, 1, 2, 3);
+        factory.loadingFinished();
+        factory.storeResource(new TestTemplate(100000));
+
+        assertLookup(factory, 1, 2, 3, 100000);
+
+        factory.loadingFinished();
+        assertLookup(factory, 1, 2, 3, 100000);
+    }
+
+    @Test
+    public void testLookupBeforeFreezing() {
+        TestFactory factory = createFactory(0, 0, 8);
+
+        assertLookup(factory, 0, 8);
+        assertEquals(factory.getTemplate(3).getTemplateId(), 0);
+    }
+
+    private static final class TestTemplate implements ResourceTemplate {
+        private final int templateId;
+
+        TestTemplate(int templateId) {
+            this.templateId = templateId;
+        }
+
+        @Override
+        public int getTemplateId() {
+            return templateId;
+        }
+    }
+
+    private static final class TestFactory extends AbstractTemplateFactory<TestTemplate> {
+        TestFactory(int defaultId) {
+            super(defaultId);
+        }
+    }
+}
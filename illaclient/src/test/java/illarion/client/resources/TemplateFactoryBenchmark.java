@@ -0,0 +1,192 @@
+/*
+ * This file is part of the Illarion project.
+ *
+ * Copyright © 2016 - Illarion e.V.
+ *
+ * Illarion is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Illarion is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ */
+package illarion.client.resources;
+
+import illarion.client.resources.data.ResourceTemplate;
+import illarion.common.util.*;
+
+import javax.annotation.Nonnull;
+import java.util.*;
+import java.util.function.Consumer;
+
+/**
+ * This benchmark compares the lookup throughput of the template factories before and after freezing them with the
+ * boxed map lookup. The template IDs are taken from the resource tables in case they are on the class path,
+ * otherwise synthetic IDs that resemble the tables are used.
+ *
+ * @author Martin Karing &lt;nitram@illarion.org&gt;
+ */
+public final class TemplateFactoryBenchmark {
+    /**
+     * The amount of lookups done in each run.
+     */
+    private static final int LOOKUPS = 10000000;
+
+    /**
+     * The amount of runs that are done before the measured runs start.
+     */
+    private static final int WARM_UP_RUNS = 3;
+
+    /**
+     * The sum of the looked up IDs. It is printed to keep the lookups from being optimized away.
+     */
+    private static long checksum;
+
+    private TemplateFactoryBenchmark() {
+    }
+
+    /**
+     * Execute the benchmark.
+     *
+     * @param args optional the amount of measured runs
+     */
+    public static void main(@Nonnull String[] args) {
+        int runs = (args.length > 0) ? Integer.parseInt(args[0]) : 5;
+
+        Map<String, int[]> distributions = loadTableIds();
+        if (distributions.isEmpty()) {
+            System.out.println("Resource tables not found, using synthetic IDs.");
+            distributions = createSyntheticIds();
+        }
+
+        for (Map.Entry<String, int[]> distribution : distributions.entrySet()) {
+            int[] ids = distribution.getValue();
+            Map<Integer, ResourceTemplate> map = new HashMap<>();
+            BenchmarkFactory factory = new BenchmarkFactory();
+            for (int id : ids) {
+                ResourceTemplate template = () -> id;
+                map.put(id, template);
+                factory.storeResource(template);
+            }
+            int[] lookups = createLookups(ids, 4711L);
+
+            for (int i = 0; i < WARM_UP_RUNS; i++) {
+                runMap(map, lookups);
+                runFactory(factory, lookups);
+            }
+            for (int i = 0; i < runs; i++) {
+                System.out.printf("%s (%d IDs): map %.1f M/s, factory %.1f M/s%n", distribution.getKey(), ids.length,
+                        runMap(map, lookups), runFactory(factory, lookups));
+            }
+            factory.loadingFinished();
+            for (int i = 0; i < WARM_UP_RUNS; i++) {
+                runFactory(factory, lookups);
+            }
+            for (int i = 0; i < runs; i++) {
+                System.out.printf("%s (%d IDs): frozen factory %.1f M/s%n", distribution.getKey(), ids.length,
+                        runFactory(factory, lookups));
+            }
+        }
+        System.out.println("Checksum: " + checksum);
+    }
+
+    @Nonnull
+    private static Map<String, int[]> loadTableIds() {
+        Crypto crypto = new Crypto();
+        crypto.loadPublicKey();
+        if (!crypto.hasPublicKey()) {
+            return Collections.emptyMap();
+        }
+        TableLoader.setCrypto(crypto);
+
+        Map<String, int[]> result = new LinkedHashMap<>();
+        try {
+            result.put("Items", collectIds(ids -> new TableLoaderItems((line, loader) -> {
+                ids.add(loader.getItemId());
+                return true;
+            })));
+            result.put("Tiles", collectIds(ids -> new TableLoaderTiles((line, loader) -> {
+                ids.add(loader.getTileId());
+                return true;
+            })));
+            result.put("Overlays", collectIds(ids -> new TableLoaderOverlay((TableLoaderSink<TableLoaderOverlay>) (line, loader) -> {
+                ids.add(loader.getTileId());
+                return true;
+            })));
+            result.put("Characters", collectIds(ids -> new TableLoaderCharacters((line, loader) -> {
+                ids.add(loader.getAvatarId());
+                return true;
+            })));
+            result.put("Effects", collectIds(ids -> new TableLoaderEffects((line, loader) -> {
+                ids.add(loader.getEffectId());
+                return true;
+            })));
+        } catch (@Nonnull NoResourceException e) {
+            return Collections.emptyMap();
+        }
+        return result;
+    }
+
+    @Nonnull
+    private static int[] collectIds(@Nonnull Consumer<Collection<Integer>> tableReader) {
+        Collection<Integer> ids = new LinkedHashSet<>();
+        tableReader.accept(ids);
+        return ids.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    @Nonnull
+    private static Map<String, int[]> createSyntheticIds() {
+        Random random = new Random(42L);
+        Map<String, int[]> result = new LinkedHashMap<>();
+
+        // item and tile IDs are mostly continuous with a few gaps
+        result.put("Dense", random.ints(0, 4000).distinct().limit(3000).sorted().toArray());
+
+        // avatar IDs are spread in clusters over a large range
+        Set<Integer> clustered = new TreeSet<>();
+        while (clustered.size() < 2000) {
+            int cluster = random.nextInt(200) * 100;
+            clustered.add(cluster + random.nextInt(20));
+        }
+        result.put("Clustered", clustered.stream().mapToInt(Integer::intValue).toArray());
+        return result;
+    }
+
+    @Nonnull
+    private static int[] createLookups(@Nonnull int[] ids, long seed) {
+        Random random = new Random(seed);
+        int[] lookups = new int[LOOKUPS];
+        for (int i = 0; i < lookups.length; i++) {
+            lookups[i] = ids[random.nextInt(ids.length)];
+        }
+        return lookups;
+    }
+
+    private static double runMap(@Nonnull Map<Integer, ResourceTemplate> map, @Nonnull int[] lookups) {
+        long start = System.nanoTime();
+        long sum = 0;
+        for (int id : lookups) {
+            sum += map.get(id).getTemplateId();
+        }
+        long duration = System.nanoTime() - start;
+        checksum += sum;
+        return lookups.length * 1000.0 / duration;
+    }
+
+    private static double runFactory(@Nonnull BenchmarkFactory factory, @Nonnull int[] lookups) {
+        long start = System.nanoTime();
+        long sum = 0;
+        for (int id : lookups) {
+            sum += factory.getTemplate(id).getTemplateId();
+        }
+        long duration = System.nanoTime() - start;
+        checksum += sum;
+        return lookups.length * 1000.0 / duration;
+    }
+
+    private static final class BenchmarkFactory extends AbstractTemplateFactory<ResourceTemplate> {
+    }
+}
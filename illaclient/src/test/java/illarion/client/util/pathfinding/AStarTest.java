@@ -0,0 +1,160 @@
+/*
+ * This file is part of the Illarion project.
+ *
+ * Copyright © 2016 - Illarion e.V.
+ *
+ * Illarion is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Illarion is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ */
+package illarion.client.util.pathfinding;
+
+import illarion.client.world.CharMovementMode;
+import illarion.common.types.Direction;
+import illarion.common.types.ServerCoordinate;
+import org.testng.annotations.Test;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.Collection;
+import java.util.EnumSet;
+
+import static org.testng.Assert.*;
+
+/**
+ * The test class for the {@link AStar} path finder.
+ *
+ * @author Martin Karing &lt;nitram@illarion.org&gt;
+ */
+public class AStarTest {
+    @Nonnull
+    private static final Collection<Direction> DIRECTIONS = EnumSet.allOf(Direction.class);
+
+    @Nullable
+    private static Path findPath(@Nonnull PathFindingAlgorithm algorithm, @Nonnull MoveCostProvider map,
+                                 @Nonnull ServerCoordinate start, @Nonnull ServerCoordinate end) {
+        return algorithm.findPath(map, start, end, 0, DIRECTIONS, CharMovementMode.Walk);
+    }
+
+    @Test
+    public void testCompletePath() {
+        PathFindingMonitor monitor = new PathFindingMonitor();
+        GridMap map = new GridMap(20);
+        ServerCoordinate end = new ServerCoordinate(10, 5, 0);
+
+        Path path = findPath(new AStar(AStar.DEFAULT_MAX_EXPANSIONS, monitor), map, new ServerCoordinate(0, 0, 0),
+                end);
+        assertNotNull(path);
+        assertTrue(path.isComplete());
+        assertEquals(path.getDestination(), end);
+        assertEquals(monitor.getTotalResults(PathFindingMonitor.Result.Complete), 1L);
+    }
+
+    @Test
+    public void testPathAroundWall() {
+        GridMap map = new GridMap(20);
+        for (int y = 0; y < 19; y++) {
+            map.block(10, y);
+        }
+        ServerCoordinate end = new ServerCoordinate(15, 0, 0);
+
+        Path path = findPath(new AStar(), map, new ServerCoordinate(5, 0, 0), end);
+        assertNotNull(path);
+        assertTrue(path.isComplete());
+        int steps = 0;
+        for (PathNode node = path.nextStep(); node != null; node = path.nextStep()) {
+            ServerCoordinate location = node.getLocation();
+            assertFalse(map.isBlocked(location.getX(), location.getY()), "Path leads through " + location);
+            steps++;
+        }
+        assertTrue(steps >= 19, "Path with " + steps + " steps can't lead around the wall");
+    }
+
+    @Test
+    public void testUnreachableTarget() {
+        PathFindingMonitor monitor = new PathFindingMonitor();
+        GridMap map = new GridMap(20);
+        for (int x = 14; x <= 16; x++) {
+            for (int y = 14; y <= 16; y++) {
+                if ((x != 15) || (y != 15)) {
+                    map.block(x, y);
+                }
+            }
+        }
+
+        Path path = findPath(new AStar(AStar.DEFAULT_MAX_EXPANSIONS, monitor), map, new ServerCoordinate(0, 0, 0),
+                new ServerCoordinate(15, 15, 0));
+        assertNull(path);
+        assertEquals(monitor.getTotalResults(PathFindingMonitor.Result.Failed), 1L);
+    }
+
+    @Test
+    public void testPartialPath() {
+        PathFindingMonitor monitor = new PathFindingMonitor();
+        GridMap map = new GridMap(200);
+        ServerCoordinate start = new ServerCoordinate(0, 100, 0);
+        ServerCoordinate end = new ServerCoordinate(150, 100, 0);
+
+        Path path = findPath(new AStar(20, monitor), map, start, end);
+        assertNotNull(path, "Search that hit the expansion limit reported no path");
+        assertFalse(path.isComplete());
+        ServerCoordinate destination = path.getDestination();
+        assertNotNull(destination);
+        assertTrue(destination.getDistance(end) < start.getDistance(end),
+                "Partial path does not lead closer to the target");
+        assertEquals(monitor.getTotalResults(PathFindingMonitor.Result.Partial), 1L);
+        assertTrue(monitor.getTotalExpandedNodes() <= 20L);
+    }
+
+    @Test
+    public void testWithinApproachDistance() {
+        GridMap map = new GridMap(20);
+        Path path = new AStar().findPath(map, new ServerCoordinate(0, 0, 0), new ServerCoordinate(2, 0, 0), 2,
+                DIRECTIONS, CharMovementMode.Walk);
+        assertNull(path);
+    }
+
+    /**
+     * A square map that allows walking on every tile that is not blocked.
+     */
+    private static final class GridMap implements MoveCostProvider {
+        private final int size;
+        @Nonnull
+        private final boolean[] blocked;
+
+        GridMap(int size) {
+            this.size = size;
+            blocked = new boolean[size * size];
+        }
+
+        void block(int x, int y) {
+            blocked[(y * size) + x] = true;
+        }
+
+        boolean isBlocked(int x, int y) {
+            return (x < 0) || (y < 0) || (x >= size) || (y >= size) || blocked[(y * size) + x];
+        }
+
+        @Override
+        public int getMovementCost(@Nonnull ServerCoordinate origin, @Nonnull CharMovementMode mode,
+                                   @Nonnull Direction direction) {
+            int steps = (mode == CharMovementMode.Run) ? 2 : 1;
+            int x = origin.getX();
+            int y = origin.getY();
+            for (int i = 0; i < steps; i++) {
+                x += direction.getDirectionVectorX();
+                y += direction.getDirectionVectorY();
+                if (isBlocked(x, y)) {
+                    return BLOCKED;
+                }
+            }
+            return (mode == CharMovementMode.Run) ? 200 : 300;
+        }
+    }
+}
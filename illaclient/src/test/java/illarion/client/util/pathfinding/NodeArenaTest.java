@@ -0,0 +1,110 @@
+/*
+ * This file is part of the Illarion project.
+ *
+ * Copyright © 2016 - Illarion e.V.
+ *
+ * Illarion is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Illarion is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ */
+package illarion.client.util.pathfinding;
+
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.*;
+
+/**
+ * The test class for the {@link NodeArena}.
+ *
+ * @author Martin Karing &lt;nitram@illarion.org&gt;
+ */
+public class NodeArenaTest {
+    @Test
+    public void testFindNode() {
+        NodeArena arena = new NodeArena();
+        int first = arena.addNode(0, 0, NodeArena.NO_NODE, 0, 0, 10);
+        int second = arena.addNode(-3, 7, first, 1, 5, 8);
+
+        assertEquals(arena.findNode(0, 0), first);
+        assertEquals(arena.findNode(-3, 7), second);
+        assertEquals(arena.findNode(7, -3), NodeArena.NO_NODE);
+        assertEquals(arena.getParent(second), first);
+        assertEquals(arena.getMode(second), 1);
+        assertEquals(arena.getCost(second), 5);
+        assertEquals(arena.getHeuristic(second), 8);
+        assertFalse(arena.isOpen(second));
+    }
+
+    @Test
+    public void testGrowth() {
+        NodeArena arena = new NodeArena();
+        for (int x = -20; x < 20; x++) {
+            for (int y = -20; y < 20; y++) {
+                arena.addNode(x, y, NodeArena.NO_NODE, 0, x + y, 0);
+            }
+        }
+        assertEquals(arena.getNodeCount(), 1600);
+        for (int x = -20; x < 20; x++) {
+            for (int y = -20; y < 20; y++) {
+                int node = arena.findNode(x, y);
+                assertNotEquals(node, NodeArena.NO_NODE, "Node at " + x + ", " + y + " got lost");
+                assertEquals(arena.getX(node), x);
+                assertEquals(arena.getY(node), y);
+            }
+        }
+    }
+
+    @Test
+    public void testHeapOrder() {
+        NodeArena arena = new NodeArena();
+        int expensive = arena.addNode(1, 0, NodeArena.NO_NODE, 0, 10, 10);
+        int cheap = arena.addNode(2, 0, NodeArena.NO_NODE, 0, 2, 3);
+        int farTie = arena.addNode(3, 0, NodeArena.NO_NODE, 0, 2, 8);
+        int closeTie = arena.addNode(4, 0, NodeArena.NO_NODE, 0, 8, 2);
+        arena.push(expensive);
+        arena.push(cheap);
+        arena.push(farTie);
+        arena.push(closeTie);
+        assertTrue(arena.isOpen(expensive));
+
+        assertEquals(arena.poll(), cheap);
+        assertEquals(arena.poll(), closeTie, "On equal predicted cost the node closer to the target comes first");
+        assertEquals(arena.poll(), farTie);
+        assertEquals(arena.poll(), expensive);
+        assertTrue(arena.isHeapEmpty());
+        assertFalse(arena.isOpen(expensive));
+    }
+
+    @Test
+    public void testUpdateNode() {
+        NodeArena arena = new NodeArena();
+        int first = arena.addNode(1, 0, NodeArena.NO_NODE, 0, 5, 5);
+        int second = arena.addNode(2, 0, NodeArena.NO_NODE, 0, 8, 5);
+        arena.push(first);
+        arena.push(second);
+
+        arena.updateNode(second, first, 2, 1);
+        assertEquals(arena.getParent(second), first);
+        assertEquals(arena.getMode(second), 2);
+        assertEquals(arena.poll(), second, "Cheaper node was not moved to the top of the heap");
+        assertEquals(arena.poll(), first);
+    }
+
+    @Test
+    public void testReset() {
+        NodeArena arena = new NodeArena();
+        int node = arena.addNode(4, 4, NodeArena.NO_NODE, 0, 0, 0);
+        arena.push(node);
+        arena.reset();
+
+        assertEquals(arena.getNodeCount(), 0);
+        assertTrue(arena.isHeapEmpty());
+        assertEquals(arena.findNode(4, 4), NodeArena.NO_NODE);
+    }
+}
@@ -0,0 +1,174 @@
+/*
+ * This file is part of the Illarion project.
+ *
+ * Copyright © 2016 - Illarion e.V.
+ *
+ * Illarion is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Illarion is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ */
+package illarion.client.util.pathfinding;
+
+import illarion.client.world.CharMovementMode;
+import illarion.common.types.Direction;
+import illarion.common.types.ServerCoordinate;
+
+import javax.annotation.Nonnull;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This benchmark runs the path finder on synthetic maps with a known density of blocked tiles and reports the time
+ * and the memory allocated per search. The maps and the searched routes are generated from a fixed seed, so the
+ * results of different runs are comparable.
+ *
+ * @author Martin Karing &lt;nitram@illarion.org&gt;
+ */
+public final class PathFindingBenchmark {
+    /**
+     * The size of the synthetic maps in tiles.
+     */
+    private static final int MAP_SIZE = 256;
+
+    /**
+     * The densities of blocked tiles the maps are generated with.
+     */
+    private static final double[] DENSITIES = {0.0, 0.1, 0.2, 0.3, 0.4};
+
+    /**
+     * The amount of routes searched on each map.
+     */
+    private static final int ROUTES = 200;
+
+    /**
+     * The amount of runs that are done before the measured runs start.
+     */
+    private static final int WARM_UP_RUNS = 3;
+
+    private PathFindingBenchmark() {
+    }
+
+    /**
+     * Execute the benchmark.
+     *
+     * @param args optional the amount of measured runs and the expansion limit of the path finder
+     */
+    public static void main(@Nonnull String[] args) {
+        int runs = (args.length > 0) ? Integer.parseInt(args[0]) : 5;
+        int maxExpansions = (args.length > 1) ? Integer.parseInt(args[1]) : AStar.DEFAULT_MAX_EXPANSIONS;
+
+        PathFindingAlgorithm algorithm = new AStar(maxExpansions);
+        for (double density : DENSITIES) {
+            SyntheticMap map = new SyntheticMap(MAP_SIZE, density, 42L);
+            ServerCoordinate[][] routes = createRoutes(map, 4711L);
+            for (int i = 0; i < WARM_UP_RUNS; i++) {
+                runOnce(algorithm, map, routes);
+            }
+            for (int i = 0; i < runs; i++) {
+                System.out.printf("Density %.1f: %s%n", density, runOnce(algorithm, map, routes));
+            }
+        }
+    }
+
+    @Nonnull
+    private static ServerCoordinate[][] createRoutes(@Nonnull SyntheticMap map, long seed) {
+        Random random = new Random(seed);
+        ServerCoordinate[][] routes = new ServerCoordinate[ROUTES][];
+        for (int i = 0; i < ROUTES; i++) {
+            ServerCoordinate start;
+            ServerCoordinate end;
+            do {
+                start = new ServerCoordinate(random.nextInt(MAP_SIZE), random.nextInt(MAP_SIZE), 0);
+                end = new ServerCoordinate(random.nextInt(MAP_SIZE), random.nextInt(MAP_SIZE), 0);
+            } while (map.isBlocked(start.getX(), start.getY()) || start.equals(end));
+            routes[i] = new ServerCoordinate[]{start, end};
+        }
+        return routes;
+    }
+
+    @Nonnull
+    private static String runOnce(@Nonnull PathFindingAlgorithm algorithm, @Nonnull SyntheticMap map,
+                                  @Nonnull ServerCoordinate[][] routes) {
+        Collection<Direction> directions = EnumSet.allOf(Direction.class);
+        ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+
+        int complete = 0;
+        int partial = 0;
+        int failed = 0;
+        long allocatedStart = getAllocatedBytes(threadBean, threadId);
+        long startTime = System.nanoTime();
+        for (ServerCoordinate[] route : routes) {
+            Path path = algorithm.findPath(map, route[0], route[1], 0, directions, CharMovementMode.Walk,
+                                           CharMovementMode.Run);
+            if (path == null) {
+                failed++;
+            } else if (path.isComplete()) {
+                complete++;
+            } else {
+                partial++;
+            }
+        }
+        long duration = System.nanoTime() - startTime;
+        long allocated = getAllocatedBytes(threadBean, threadId) - allocatedStart;
+
+        return String.format("%d µs/search, %d bytes allocated/search, %d complete, %d partial, %d failed",
+                TimeUnit.NANOSECONDS.toMicros(duration / routes.length), allocated / routes.length, complete,
+                partial, failed);
+    }
+
+    private static long getAllocatedBytes(@Nonnull ThreadMXBean threadBean, long threadId) {
+        if (threadBean instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) threadBean).getThreadAllocatedBytes(threadId);
+        }
+        return -1;
+    }
+
+    /**
+     * A square map with randomly blocked tiles.
+     */
+    private static final class SyntheticMap implements MoveCostProvider {
+        private final int size;
+        @Nonnull
+        private final boolean[] blocked;
+
+        SyntheticMap(int size, double density, long seed) {
+            this.size = size;
+            blocked = new boolean[size * size];
+            Random random = new Random(seed);
+            for (int i = 0; i < blocked.length; i++) {
+                blocked[i] = random.nextDouble() < density;
+            }
+        }
+
+        boolean isBlocked(int x, int y) {
+            return (x < 0) || (y < 0) || (x >= size) || (y >= size) || blocked[(y * size) + x];
+        }
+
+        @Override
+        public int getMovementCost(@Nonnull ServerCoordinate origin, @Nonnull CharMovementMode mode,
+                                   @Nonnull Direction direction) {
+            int steps = (mode == CharMovementMode.Run) ? 2 : 1;
+            int x = origin.getX();
+            int y = origin.getY();
+            for (int i = 0; i < steps; i++) {
+                x += direction.getDirectionVectorX();
+                y += direction.getDirectionVectorY();
+                if (isBlocked(x, y)) {
+                    return BLOCKED;
+                }
+            }
+            return (mode == CharMovementMode.Run) ? 200 : 300;
+        }
+    }
+}
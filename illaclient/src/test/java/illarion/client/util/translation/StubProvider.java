@@ -0,0 +1,110 @@
+/*
+ * This file is part of the Illarion project.
+ *
+ * Copyright © 2016 - Illarion e.V.
+ *
+ * Illarion is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Illarion is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ */
+package illarion.client.util.translation;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * This provider translates texts locally by tagging them with the target language. It simulates the latency of a
+ * remote service and counts the requests, so the translation pipeline can be measured without network access.
+ *
+ * @author Martin Karing &lt;nitram@illarion.org&gt;
+ */
+public class StubProvider implements TranslationProvider {
+    /**
+     * The simulated time one request to the service takes in milliseconds.
+     */
+    private final long latency;
+
+    /**
+     * The maximal amount of texts translated with one request.
+     */
+    private final int maxBatchSize;
+
+    @Nonnull
+    private final AtomicInteger requests = new AtomicInteger();
+    @Nonnull
+    private final AtomicInteger translatedTexts = new AtomicInteger();
+
+    /**
+     * Create a new stub provider.
+     *
+     * @param latency the simulated time one request to the service takes in milliseconds
+     * @param maxBatchSize the maximal amount of texts translated with one request
+     */
+    public StubProvider(long latency, int maxBatchSize) {
+        this.latency = latency;
+        this.maxBatchSize = maxBatchSize;
+    }
+
+    @Nullable
+    @Override
+    public String getTranslation(@Nonnull String original, @Nonnull TranslationDirection direction) {
+        return getTranslations(Collections.singletonList(original), direction).get(0);
+    }
+
+    @Nonnull
+    @Override
+    public List<String> getTranslations(@Nonnull List<String> originals, @Nonnull TranslationDirection direction) {
+        requests.incrementAndGet();
+        translatedTexts.addAndGet(originals.size());
+        try {
+            TimeUnit.MILLISECONDS.sleep(latency);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        String tag = (direction == TranslationDirection.EnglishToGerman) ? "[de] " : "[en] ";
+        List<String> result = new ArrayList<>(originals.size());
+        for (String original : originals) {
+            result.add(tag + original);
+        }
+        return result;
+    }
+
+    @Override
+    public int getMaxBatchSize() {
+        return maxBatchSize;
+    }
+
+    @Override
+    public boolean isProviderWorking() {
+        return true;
+    }
+
+    /**
+     * Get the amount of requests this provider received.
+     *
+     * @return the amount of requests
+     */
+    public int getRequests() {
+        return requests.get();
+    }
+
+    /**
+     * Get the amount of texts this provider translated.
+     *
+     * @return the amount of translated texts
+     */
+    public int getTranslatedTexts() {
+        return translatedTexts.get();
+    }
+}
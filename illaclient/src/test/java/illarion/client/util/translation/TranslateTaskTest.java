@@ -13,265 +13,151 @@
  * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
  * GNU General Public License for more details.
  */
-package illarion.client.util.translation;/*
- * This file is part of the Illarion project.
- *
- * Copyright © 2015 - Illarion e.V.
- *
- * Illarion is free software: you can redistribute it and/or modify
- * it under the terms of the GNU Affero General Public License as published by
- * the Free Software Foundation, either version 3 of the License, or
- * (at your option) any later version.
- *
- * Illarion is distributed in the hope that it will be useful,
- * but WITHOUT ANY WARRANTY; without even the implied warranty of
- * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
- * GNU General Public License for more details.
- */
+package illarion.client.util.translation;
 
-import org.easymock.EasyMockSupport;
-import org.easymock.Mock;
-import org.powermock.api.easymock.PowerMock;
-import org.powermock.core.classloader.annotations.PowerMockIgnore;
-import org.powermock.core.classloader.annotations.PrepareForTest;
-import org.powermock.modules.testng.PowerMockObjectFactory;
-import org.testng.IObjectFactory;
-import org.testng.annotations.BeforeMethod;
-import org.testng.annotations.ObjectFactory;
 import org.testng.annotations.Test;
 
-import java.util.concurrent.Callable;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Future;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
 
-import static org.easymock.EasyMock.expect;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
 
 /**
  * @author Martin Karing &lt;nitram@illarion.org&gt;
  */
-@PrepareForTest({TranslateSentenceTask.class, TranslateTask.class})
-@PowerMockIgnore({"javax.management.*", "javax.xml.parsers.*", "com.sun.org.apache.xerces.internal.jaxp.*",
-        "ch.qos.logback.*", "org.slf4j.*"})
-public class TranslateTaskTest extends EasyMockSupport {
-    @Mock
-    private ExecutorService service;
-    @Mock
-    private TranslationProvider provider;
-    @Mock
-    private TranslatorCallback callback;
-
+public class TranslateTaskTest {
     /**
      * Test if the translation task correctly splits a complex chat line into sentences.
-     *
-     * @throws Exception
      */
-    @SuppressWarnings({"ConstantConditions", "unchecked", "OverlyLongMethod"})
     @Test
-    public void testSentenceSplit() throws Exception {
-        service = createMock(ExecutorService.class);
-        provider = createMock(TranslationProvider.class);
-        callback = createMock(TranslatorCallback.class);
-        replayAll();
-
-        Callable task = new TranslateTask(service, provider, TranslationDirection.EnglishToGerman,
+    public void testSentenceSplit() {
+        RecordingTranslator translator = new RecordingTranslator();
+        translator.translations.put("Hello.", "Hallo.");
+        translator.translations.put("This is a multi sentence line!", "Das ist eine Zeile mit mehreren Sätzen.");
+        translator.translations.put("It should be split.", "Sie sollte geteilt werden.");
+        translator.translations.put("Even if the last part is not terminated",
+                "Auch wenn der letzte Teil nicht abgeschlossen ist");
+        RecordingCallback callback = new RecordingCallback();
+
+        TranslateTask task = new TranslateTask(translator,
                 "Hello. This is a multi sentence line! It should be split. Even if the last part is not terminated",
                 callback);
-        verifyAll();
-        resetAll();
-
         // until now nothing should happen to ensure that the creation of the task is very cheap
-        // the next thing is calling the task and that should actually do things.
-        Future<String> firstFuture = createMock(Future.class);
-        expect(firstFuture.get()).andReturn("Hallo.").anyTimes();
-        TranslateSentenceTask task1Mock = PowerMock.createMock(TranslateSentenceTask.class);
-        PowerMock.expectStrictNew(TranslateSentenceTask.class,
-                new Class<?>[]{TranslationProvider.class, TranslationDirection.class, String.class},
-                provider, TranslationDirection.EnglishToGerman, "Hello.")
-                .andReturn(task1Mock);
-        expect(service.submit(task1Mock)).andReturn(firstFuture);
-
-        Future<String> secondFuture = createMock(Future.class);
-        expect(secondFuture.get()).andReturn("Das ist eine Zeile mit mehreren Sätzen.").anyTimes();
-        TranslateSentenceTask task2Mock = PowerMock.createMock(TranslateSentenceTask.class);
-        PowerMock.expectStrictNew(TranslateSentenceTask.class,
-                new Class<?>[]{TranslationProvider.class, TranslationDirection.class, String.class},
-                provider, TranslationDirection.EnglishToGerman,
-                "This is a multi sentence line!").andReturn(task2Mock);
-        expect(service.submit(task2Mock)).andReturn(secondFuture);
-
-        Future<String> thirdFuture = createMock(Future.class);
-        expect(thirdFuture.get()).andReturn("Sie sollte geteilt werden.").anyTimes();
-        TranslateSentenceTask task3Mock = PowerMock.createMock(TranslateSentenceTask.class);
-        PowerMock.expectStrictNew(TranslateSentenceTask.class,
-                new Class<?>[]{TranslationProvider.class, TranslationDirection.class, String.class},
-                provider, TranslationDirection.EnglishToGerman,
-                "It should be split.").andReturn(task3Mock);
-        expect(service.submit(task3Mock)).andReturn(thirdFuture);
-
-        Future<String> fourthFuture = createMock(Future.class);
-        expect(fourthFuture.get()).andReturn("Auch wenn der letzte Teil nicht abgeschlossen ist").anyTimes();
-        TranslateSentenceTask task4Mock = PowerMock.createMock(TranslateSentenceTask.class);
-        PowerMock.expectStrictNew(TranslateSentenceTask.class,
-                new Class<?>[]{TranslationProvider.class, TranslationDirection.class, String.class},
-                provider, TranslationDirection.EnglishToGerman,
-                "Even if the last part is not terminated").andReturn(task4Mock);
-        expect(service.submit(task4Mock)).andReturn(fourthFuture);
+        assertTrue(translator.requested.isEmpty());
+        assertTrue(callback.results.isEmpty());
 
-        callback.sendTranslation("Hallo. Das ist eine Zeile mit mehreren Sätzen. Sie sollte geteilt werden. Auch wenn" +
-                " der letzte Teil nicht abgeschlossen ist");
+        task.run();
 
-        PowerMock.replay(task1Mock, task2Mock, task3Mock, task4Mock);
-        PowerMock.replay(TranslateSentenceTask.class);
-        replayAll();
-        // Everything we expect is recorded. Let's do this.
-
-        task.call();
-
-        PowerMock.verify(task1Mock, task2Mock, task3Mock, task4Mock);
-        PowerMock.verify(TranslateSentenceTask.class);
-        verifyAll();
+        assertEquals(translator.requested, Arrays.asList("Hello.", "This is a multi sentence line!",
+                "It should be split.", "Even if the last part is not terminated"));
+        assertEquals(callback.results, Arrays.asList("Hallo. Das ist eine Zeile mit mehreren Sätzen. Sie sollte " +
+                "geteilt werden. Auch wenn der letzte Teil nicht abgeschlossen ist"));
     }
 
     /**
      * Test if the translation task correctly excludes the default headers from the text.
-     *
-     * @throws Exception
      */
-    @SuppressWarnings({"ConstantConditions", "unchecked"})
     @Test
-    public void testHeaderExclusion1() throws Exception {
-        service = createMock(ExecutorService.class);
-        provider = createMock(TranslationProvider.class);
-        callback = createMock(TranslatorCallback.class);
-        replayAll();
-
-        Callable task = new TranslateTask(service, provider, TranslationDirection.EnglishToGerman,
-                "You hear: ALL YOUR BASE ARE BELONG TO US.",
-                callback);
-        verifyAll();
-        resetAll();
-
-        // until now nothing should happen to ensure that the creation of the task is very cheap
-        // the next thing is calling the task and that should actually do things.
-        Future<String> translationFuture = createMock(Future.class);
-        expect(translationFuture.get()).andReturn("ALL DEINE STÜTZPUNKT SIND GEHÖREN UNS.").anyTimes();
-        TranslateSentenceTask sentenceTask = PowerMock.createMock(TranslateSentenceTask.class);
-        PowerMock.expectStrictNew(TranslateSentenceTask.class,
-                new Class<?>[]{TranslationProvider.class, TranslationDirection.class, String.class},
-                provider, TranslationDirection.EnglishToGerman, "ALL YOUR BASE ARE BELONG TO US.")
-                .andReturn(sentenceTask);
-        expect(service.submit(sentenceTask)).andReturn(translationFuture);
-
-        callback.sendTranslation("You hear: ALL DEINE STÜTZPUNKT SIND GEHÖREN UNS.");
-
-        PowerMock.replay(sentenceTask);
-        PowerMock.replay(TranslateSentenceTask.class);
-        replayAll();
-        // Everything we expect is recorded. Let's do this.
-
-        task.call();
-
-        PowerMock.verify(sentenceTask);
-        PowerMock.verify(TranslateSentenceTask.class);
-        verifyAll();
+    public void testHeaderExclusion1() {
+        testSingleSentence("You hear: ALL YOUR BASE ARE BELONG TO US.",
+                "You hear: ALL DEINE STÜTZPUNKT SIND GEHÖREN UNS.");
     }
 
     /**
      * Test if the translation task correctly excludes headers that contain generic parts (names) from the text.
-     *
-     * @throws Exception
      */
-    @SuppressWarnings({"ConstantConditions", "unchecked"})
     @Test
-    public void testHeaderExclusion2() throws Exception {
-        service = createMock(ExecutorService.class);
-        provider = createMock(TranslationProvider.class);
-        callback = createMock(TranslatorCallback.class);
-        replayAll();
-
-        Callable task = new TranslateTask(service, provider, TranslationDirection.EnglishToGerman,
-                "Somebody says: ALL YOUR BASE ARE BELONG TO US.",
-                callback);
-        verifyAll();
-        resetAll();
-
-        // until now nothing should happen to ensure that the creation of the task is very cheap
-        // the next thing is calling the task and that should actually do things.
-        Future<String> translationFuture = createMock(Future.class);
-        expect(translationFuture.get()).andReturn("ALL DEINE STÜTZPUNKT SIND GEHÖREN UNS.").anyTimes();
-        TranslateSentenceTask sentenceTask = PowerMock.createMock(TranslateSentenceTask.class);
-        PowerMock.expectStrictNew(TranslateSentenceTask.class,
-                new Class<?>[]{TranslationProvider.class, TranslationDirection.class, String.class},
-                provider, TranslationDirection.EnglishToGerman, "ALL YOUR BASE ARE BELONG TO US.")
-                .andReturn(sentenceTask);
-        expect(service.submit(sentenceTask)).andReturn(translationFuture);
-
-        callback.sendTranslation("Somebody says: ALL DEINE STÜTZPUNKT SIND GEHÖREN UNS.");
-
-        PowerMock.replay(sentenceTask);
-        PowerMock.replay(TranslateSentenceTask.class);
-        replayAll();
-        // Everything we expect is recorded. Let's do this.
-
-        task.call();
+    public void testHeaderExclusion2() {
+        testSingleSentence("Somebody says: ALL YOUR BASE ARE BELONG TO US.",
+                "Somebody says: ALL DEINE STÜTZPUNKT SIND GEHÖREN UNS.");
+    }
 
-        PowerMock.verify(sentenceTask);
-        PowerMock.verify(TranslateSentenceTask.class);
-        verifyAll();
+    /**
+     * Test if the translation task correctly excludes the headers and the out of character markers from the text.
+     */
+    @Test
+    public void testHeaderExclusionOoc() {
+        testSingleSentence("Somebody says: ((ALL YOUR BASE ARE BELONG TO US.))",
+                "Somebody says: ((ALL DEINE STÜTZPUNKT SIND GEHÖREN UNS.))");
     }
 
     /**
-     * Test if the translation task correctly identifies and excludes OOC marks from the translation.
-     *
-     * @throws Exception
+     * Test if the entire line fails to translate in case one sentence fails.
      */
-    @SuppressWarnings({"ConstantConditions", "unchecked"})
     @Test
-    public void testHeaderExclusionOoc() throws Exception {
-        service = createMock(ExecutorService.class);
-        provider = createMock(TranslationProvider.class);
-        callback = createMock(TranslatorCallback.class);
-        replayAll();
+    public void testFailedSentence() {
+        RecordingTranslator translator = new RecordingTranslator();
+        translator.translations.put("Hello.", "Hallo.");
+        RecordingCallback callback = new RecordingCallback();
 
-        Callable task = new TranslateTask(service, provider, TranslationDirection.EnglishToGerman,
-                "Somebody says: ((ALL YOUR BASE ARE BELONG TO US.))",
-                callback);
-        verifyAll();
-        resetAll();
+        new TranslateTask(translator, "Hello. Nobody knows this sentence.", callback).run();
 
-        // until now nothing should happen to ensure that the creation of the task is very cheap
-        // the next thing is calling the task and that should actually do things.
-        Future<String> translationFuture = createMock(Future.class);
-        expect(translationFuture.get()).andReturn("ALL DEINE STÜTZPUNKT SIND GEHÖREN UNS.").anyTimes();
-        TranslateSentenceTask sentenceTask = PowerMock.createMock(TranslateSentenceTask.class);
-        PowerMock.expectStrictNew(TranslateSentenceTask.class,
-                new Class<?>[]{TranslationProvider.class, TranslationDirection.class, String.class},
-                provider, TranslationDirection.EnglishToGerman, "ALL YOUR BASE ARE BELONG TO US.")
-                .andReturn(sentenceTask);
-        expect(service.submit(sentenceTask)).andReturn(translationFuture);
+        assertEquals(translator.requested, Arrays.asList("Hello.", "Nobody knows this sentence."));
+        assertEquals(callback.results.size(), 1);
+        assertNull(callback.results.get(0));
+    }
 
-        callback.sendTranslation("Somebody says: ((ALL DEINE STÜTZPUNKT SIND GEHÖREN UNS.))");
+    /**
+     * Test if the callback is notified only once the last sentence is translated.
+     */
+    @Test
+    public void testDelayedTranslation() {
+        CompletableFuture<String> first = new CompletableFuture<>();
+        CompletableFuture<String> second = new CompletableFuture<>();
+        List<CompletableFuture<String>> futures = new ArrayList<>(Arrays.asList(first, second));
+        RecordingCallback callback = new RecordingCallback();
+
+        new TranslateTask(sentence -> futures.remove(0), "Hello. Goodbye.", callback).run();
+        second.complete("Tschüss.");
+        assertTrue(callback.results.isEmpty());
+        first.complete("Hallo.");
+
+        assertEquals(callback.results, Arrays.asList("Hallo. Tschüss."));
+    }
 
-        PowerMock.replay(sentenceTask);
-        PowerMock.replay(TranslateSentenceTask.class);
-        replayAll();
-        // Everything we expect is recorded. Let's do this.
+    private static void testSingleSentence(@Nonnull String original, @Nonnull String expected) {
+        RecordingTranslator translator = new RecordingTranslator();
+        translator.translations.put("ALL YOUR BASE ARE BELONG TO US.", "ALL DEINE STÜTZPUNKT SIND GEHÖREN UNS.");
+        RecordingCallback callback = new RecordingCallback();
 
-        task.call();
+        new TranslateTask(translator, original, callback).run();
 
-        PowerMock.verify(sentenceTask);
-        PowerMock.verify(TranslateSentenceTask.class);
-        verifyAll();
+        assertEquals(translator.requested, Arrays.asList("ALL YOUR BASE ARE BELONG TO US."));
+        assertEquals(callback.results, Arrays.asList(expected));
     }
 
-    @BeforeMethod
-    public void prepareTests() {
-        resetAll();
-        PowerMock.reset(TranslateSentenceTask.class);
+    /**
+     * This sentence translator answers all requests right away with the known translations.
+     */
+    private static final class RecordingTranslator implements Function<String, CompletableFuture<String>> {
+        @Nonnull
+        private final Map<String, String> translations = new HashMap<>();
+        @Nonnull
+        private final List<String> requested = new ArrayList<>();
+
+        @Override
+        public CompletableFuture<String> apply(@Nonnull String sentence) {
+            requested.add(sentence);
+            return CompletableFuture.completedFuture(translations.get(sentence));
+        }
     }
 
-    @ObjectFactory
-    public IObjectFactory getObjectFactory() {
-        return new PowerMockObjectFactory();
+    private static final class RecordingCallback implements TranslatorCallback {
+        @Nonnull
+        private final List<String> results = new ArrayList<>();
+
+        @Override
+        public void sendTranslation(@Nullable String translation) {
+            results.add(translation);
+        }
     }
 }
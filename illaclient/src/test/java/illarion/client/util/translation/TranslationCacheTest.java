@@ -0,0 +1,123 @@
+/*
+ * This file is part of the Illarion project.
+ *
+ * Copyright © 2016 - Illarion e.V.
+ *
+ * Illarion is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Illarion is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ */
+package illarion.client.util.translation;
+
+import org.testng.annotations.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.testng.Assert.*;
+
+/**
+ * @author Martin Karing &lt;nitram@illarion.org&gt;
+ */
+public class TranslationCacheTest {
+    /**
+     * Test if the least recently used translation is dropped once the cache is full.
+     */
+    @Test
+    public void testLeastRecentlyUsed() {
+        TranslationCache cache = new TranslationCache(2, null);
+        cache.put("a", "1");
+        cache.put("b", "2");
+        assertEquals(cache.get("a"), "1");
+        cache.put("c", "3");
+
+        assertEquals(cache.size(), 2);
+        assertEquals(cache.get("a"), "1");
+        assertNull(cache.get("b"));
+        assertEquals(cache.get("c"), "3");
+    }
+
+    /**
+     * Test if the translations survive storing and loading the cache.
+     */
+    @Test
+    public void testSaveAndLoad() throws Exception {
+        Path file = Files.createTempFile("translations", ".cache");
+        Files.delete(file);
+        try {
+            TranslationCache cache = new TranslationCache(16, file);
+            cache.put("a", "1");
+            cache.put("b", "Zwei Sätze.");
+            cache.save();
+            assertTrue(Files.isRegularFile(file));
+
+            TranslationCache loaded = new TranslationCache(16, file);
+            loaded.load();
+            assertEquals(loaded.size(), 2);
+            assertEquals(loaded.get("a"), "1");
+            assertEquals(loaded.get("b"), "Zwei Sätze.");
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    /**
+     * Test if a unchanged cache is not stored.
+     */
+    @Test
+    public void testSaveUnchanged() throws Exception {
+        Path file = Files.createTempFile("translations", ".cache");
+        Files.delete(file);
+        try {
+            new TranslationCache(16, file).save();
+            assertFalse(Files.exists(file));
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    /**
+     * Test if translations added before the cache is loaded are kept and count as more recently used than the loaded
+     * ones.
+     */
+    @Test
+    public void testLoadKeepsAddedTranslations() throws Exception {
+        Path file = Files.createTempFile("translations", ".cache");
+        Files.delete(file);
+        try {
+            TranslationCache stored = new TranslationCache(16, file);
+            stored.put("a", "1");
+            stored.put("b", "2");
+            stored.save();
+
+            TranslationCache cache = new TranslationCache(3, file);
+            cache.put("b", "new");
+            cache.put("c", "3");
+            cache.load();
+
+            assertEquals(cache.size(), 3);
+            assertEquals(cache.get("b"), "new");
+            assertEquals(cache.get("c"), "3");
+
+            cache.put("d", "4");
+            assertNull(cache.get("a"));
+            assertEquals(cache.get("d"), "4");
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    /**
+     * Test if the white spaces of a sentence are normalized.
+     */
+    @Test
+    public void testNormalize() {
+        assertEquals(TranslationCache.normalize("  Hello \t  world.\n"), "Hello world.");
+    }
+}
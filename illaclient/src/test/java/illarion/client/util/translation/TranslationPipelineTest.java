@@ -0,0 +1,171 @@
+/*
+ * This file is part of the Illarion project.
+ *
+ * Copyright © 2016 - Illarion e.V.
+ *
+ * Illarion is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Illarion is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ */
+package illarion.client.util.translation;
+
+import org.testng.annotations.Test;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.testng.Assert.*;
+
+/**
+ * @author Martin Karing &lt;nitram@illarion.org&gt;
+ */
+public class TranslationPipelineTest {
+    /**
+     * Test if requests for the same sentence share one translation and are sent to the provider only once.
+     */
+    @Test(timeOut = 10000)
+    public void testCoalescing() throws Exception {
+        GateProvider provider = new GateProvider(10);
+        TranslationPipeline pipeline = new TranslationPipeline(new TranslationCache(16, null));
+
+        CompletableFuture<String> first = pipeline.translate(provider, TranslationDirection.EnglishToGerman,
+                "Hello world.");
+        provider.awaitRequests(1);
+        CompletableFuture<String> second = pipeline.translate(provider, TranslationDirection.EnglishToGerman,
+                "  Hello   world. ");
+        assertSame(second, first);
+
+        provider.open();
+        assertEquals(first.get(), "[de] Hello world.");
+        assertEquals(provider.getTranslatedTexts(), 1);
+    }
+
+    /**
+     * Test if a translated sentence is served from the cache without another request to the provider.
+     */
+    @Test(timeOut = 10000)
+    public void testCachedTranslation() throws Exception {
+        GateProvider provider = new GateProvider(10);
+        provider.open();
+        TranslationCache cache = new TranslationCache(16, null);
+        TranslationPipeline pipeline = new TranslationPipeline(cache);
+
+        assertEquals(pipeline.translate(provider, TranslationDirection.GermanToEnglish, "Hallo.").get(),
+                "[en] Hallo.");
+        CompletableFuture<String> cached = pipeline.translate(provider, TranslationDirection.GermanToEnglish,
+                "Hallo.");
+
+        assertTrue(cached.isDone());
+        assertEquals(cached.get(), "[en] Hallo.");
+        assertEquals(provider.getTranslatedTexts(), 1);
+        assertEquals(cache.size(), 1);
+    }
+
+    /**
+     * Test if requests fail right away once too many sentences are waiting and if the waiting sentences are
+     * translated anyway.
+     */
+    @Test(timeOut = 10000)
+    public void testQueueFull() throws Exception {
+        GateProvider provider = new GateProvider(1);
+        TranslationPipeline pipeline = new TranslationPipeline(new TranslationCache(256, null));
+
+        // Keep both workers busy, so all further sentences stay in the queue.
+        List<CompletableFuture<String>> accepted = new ArrayList<>();
+        accepted.add(pipeline.translate(provider, TranslationDirection.EnglishToGerman, "Sentence -2."));
+        accepted.add(pipeline.translate(provider, TranslationDirection.EnglishToGerman, "Sentence -1."));
+        provider.awaitRequests(2);
+
+        for (int i = 0; i < 64; i++) {
+            accepted.add(pipeline.translate(provider, TranslationDirection.EnglishToGerman, "Sentence " + i + '.'));
+        }
+        CompletableFuture<String> rejected = pipeline.translate(provider, TranslationDirection.EnglishToGerman,
+                "Sentence 64.");
+        assertTrue(rejected.isDone());
+        assertNull(rejected.get());
+
+        provider.open();
+        for (CompletableFuture<String> translation : accepted) {
+            assertNotNull(translation.get());
+        }
+        assertEquals(provider.getTranslatedTexts(), 66);
+    }
+
+    /**
+     * This provider tags the texts with the target language. All requests wait until the provider is opened.
+     */
+    private static final class GateProvider implements TranslationProvider {
+        private final int maxBatchSize;
+        @Nonnull
+        private final CountDownLatch gate = new CountDownLatch(1);
+        @Nonnull
+        private final Semaphore requests = new Semaphore(0);
+        @Nonnull
+        private final AtomicInteger translatedTexts = new AtomicInteger();
+
+        GateProvider(int maxBatchSize) {
+            this.maxBatchSize = maxBatchSize;
+        }
+
+        @Nullable
+        @Override
+        public String getTranslation(@Nonnull String original, @Nonnull TranslationDirection direction) {
+            return getTranslations(Collections.singletonList(original), direction).get(0);
+        }
+
+        @Nonnull
+        @Override
+        public List<String> getTranslations(@Nonnull List<String> originals,
+                                            @Nonnull TranslationDirection direction) {
+            requests.release();
+            try {
+                gate.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            translatedTexts.addAndGet(originals.size());
+            String tag = (direction == TranslationDirection.EnglishToGerman) ? "[de] " : "[en] ";
+            List<String> result = new ArrayList<>(originals.size());
+            for (String original : originals) {
+                result.add(tag + original);
+            }
+            return result;
+        }
+
+        @Override
+        public int getMaxBatchSize() {
+            return maxBatchSize;
+        }
+
+        @Override
+        public boolean isProviderWorking() {
+            return true;
+        }
+
+        void open() {
+            gate.countDown();
+        }
+
+        void awaitRequests(int count) throws InterruptedException {
+            requests.acquire(count);
+        }
+
+        int getTranslatedTexts() {
+            return translatedTexts.get();
+        }
+    }
+}
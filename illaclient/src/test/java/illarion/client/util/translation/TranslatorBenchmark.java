@@ -0,0 +1,129 @@
+/*
+ * This file is part of the Illarion project.
+ *
+ * Copyright © 2016 - Illarion e.V.
+ *
+ * Illarion is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Illarion is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ */
+package illarion.client.util.translation;
+
+import javax.annotation.Nonnull;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * This benchmark translates a synthetic chat log with the {@link StubProvider} and reports the time and the amount
+ * of requests sent to the provider. It compares the translator with a plain translation of every sentence in its own
+ * request, as it was done before the cache and the batching were introduced.
+ *
+ * @author Martin Karing &lt;nitram@illarion.org&gt;
+ */
+public final class TranslatorBenchmark {
+    /**
+     * The sentences the chat lines are built from. The first sentences are used far more often than the last ones,
+     * like the greetings and the phrases of the NPCs are in the game.
+     */
+    @Nonnull
+    private static final String[] SENTENCES = {"Hello.", "Greetings, traveller!", "Goodbye.", "Farewell!",
+            "Can I help you?", "I sell tools.", "What do you want to buy?", "Thank you.", "Be welcome in Cadomyr.",
+            "The queen protects us.", "Have you seen the rats in the cellar?", "Bring me ten apples.",
+            "The mine is to the north.", "Beware of the bandits on the road.", "I have no time for you.",
+            "Please leave my house.", "The harbour is closed today.", "Do you know where Runewick is?",
+            "I am looking for a smith.", "The weather is nice today.", "My feet hurt from all this walking.",
+            "Did you hear the news from Galmair?", "Someone stole my sword!", "The tavern serves good beer.",
+            "Let us go hunting.", "Follow me.", "Wait here.", "I will be back soon.", "How much is this?",
+            "That is too expensive."};
+
+    /**
+     * The amount of chat lines sent to the translator at once, like a player double clicking a few lines.
+     */
+    private static final int BURST_SIZE = 10;
+
+    private TranslatorBenchmark() {
+    }
+
+    /**
+     * Execute the benchmark.
+     *
+     * @param args optional the amount of chat lines, the simulated latency in milliseconds and the batch size
+     */
+    public static void main(@Nonnull String[] args) throws InterruptedException {
+        int lines = (args.length > 0) ? Integer.parseInt(args[0]) : 500;
+        long latency = (args.length > 1) ? Long.parseLong(args[1]) : 20;
+        int batchSize = (args.length > 2) ? Integer.parseInt(args[2]) : 10;
+        String[] chatLog = createChatLog(lines, 42L);
+
+        StubProvider plainProvider = new StubProvider(latency, 1);
+        ExecutorService plainExecutor = Executors.newCachedThreadPool();
+        System.out.println("Sentence by sentence: " + runOnce(chatLog, plainProvider, (original, callback) ->
+                new TranslateTask(sentence -> CompletableFuture.supplyAsync(() ->
+                        plainProvider.getTranslation(sentence, TranslationDirection.EnglishToGerman), plainExecutor),
+                        original, callback).run()));
+        plainExecutor.shutdown();
+
+        StubProvider provider = new StubProvider(latency, batchSize);
+        Translator translator = new Translator(provider, TranslationDirection.EnglishToGerman, null);
+        System.out.println("Translator:           " + runOnce(chatLog, provider, translator::translate));
+    }
+
+    @Nonnull
+    private static String[] createChatLog(int lines, long seed) {
+        Random random = new Random(seed);
+        String[] chatLog = new String[lines];
+        for (int i = 0; i < lines; i++) {
+            StringBuilder builder = new StringBuilder("Somebody says: ");
+            int sentences = 1 + random.nextInt(3);
+            for (int j = 0; j < sentences; j++) {
+                if (j > 0) {
+                    builder.append(' ');
+                }
+                builder.append(SENTENCES[random.nextInt(1 + random.nextInt(SENTENCES.length))]);
+            }
+            chatLog[i] = builder.toString();
+        }
+        return chatLog;
+    }
+
+    @Nonnull
+    private static String runOnce(@Nonnull String[] chatLog, @Nonnull StubProvider provider,
+                                  @Nonnull LineTranslator translator) throws InterruptedException {
+        AtomicInteger failed = new AtomicInteger();
+        long startTime = System.nanoTime();
+        for (int start = 0; start < chatLog.length; start += BURST_SIZE) {
+            int end = Math.min(chatLog.length, start + BURST_SIZE);
+            CountDownLatch latch = new CountDownLatch(end - start);
+            for (int i = start; i < end; i++) {
+                translator.translate(chatLog[i], translation -> {
+                    if (translation == null) {
+                        failed.incrementAndGet();
+                    }
+                    latch.countDown();
+                });
+            }
+            latch.await();
+        }
+        long duration = System.nanoTime() - startTime;
+
+        return String.format("%d ms, %d requests, %d translated sentences, %d failed lines",
+                TimeUnit.NANOSECONDS.toMillis(duration), provider.getRequests(), provider.getTranslatedTexts(),
+                failed.get());
+    }
+
+    @FunctionalInterface
+    private interface LineTranslator {
+        void translate(@Nonnull String original, @Nonnull TranslatorCallback callback);
+    }
+}
@@ -0,0 +1,169 @@
+/*
+ * This file is part of the Illarion project.
+ *
+ * Copyright © 2016 - Illarion e.V.
+ *
+ * Illarion is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Illarion is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ */
+package illarion.client.world;
+
+import illarion.client.graphics.AbstractEntity;
+import illarion.client.graphics.Avatar;
+import illarion.common.types.Rectangle;
+import illarion.common.types.ServerCoordinate;
+import org.powermock.core.classloader.annotations.PrepareForTest;
+import org.powermock.modules.testng.PowerMockObjectFactory;
+import org.testng.IObjectFactory;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.ObjectFactory;
+import org.testng.annotations.Test;
+
+import javax.annotation.Nonnull;
+
+import static org.easymock.EasyMock.expect;
+import static org.powermock.api.easymock.PowerMock.*;
+import static org.testng.Assert.*;
+
+/**
+ * The test class for the {@link CharacterIndex}.
+ *
+ * @author Martin Karing &lt;nitram@illarion.org&gt;
+ */
+@PrepareForTest({Char.class, Avatar.class, AbstractEntity.class})
+public class CharacterIndexTest {
+    @Nonnull
+    private static Avatar createAvatar(int order) {
+        Avatar avatar = createMock(Avatar.class);
+        expect(avatar.getOrder()).andStubReturn(order);
+        return avatar;
+    }
+
+    @Nonnull
+    private static Char createChar(@Nonnull Avatar avatar) {
+        Char character = createMock(Char.class);
+        expect(character.getAvatar()).andStubReturn(avatar);
+        return character;
+    }
+
+    @Test
+    public void testLocation() {
+        Char character = createMock(Char.class);
+        replayAll();
+
+        CharacterIndex index = new CharacterIndex();
+        ServerCoordinate first = new ServerCoordinate(1, 2, 0);
+        ServerCoordinate second = new ServerCoordinate(2, 2, 0);
+
+        index.setLocation(character, first);
+        assertSame(index.getCharacterAt(first), character);
+        assertNull(index.getCharacterAt(second));
+
+        index.setLocation(character, second);
+        assertNull(index.getCharacterAt(first));
+        assertSame(index.getCharacterAt(second), character);
+
+        index.setLocation(character, null);
+        assertNull(index.getCharacterAt(second));
+    }
+
+    @Test
+    public void testSharedLocation() {
+        Char firstChar = createMock(Char.class);
+        Char secondChar = createMock(Char.class);
+        replayAll();
+
+        CharacterIndex index = new CharacterIndex();
+        ServerCoordinate location = new ServerCoordinate(5, 5, 1);
+        index.setLocation(firstChar, location);
+        index.setLocation(secondChar, location);
+        assertSame(index.getCharacterAt(location), firstChar);
+
+        index.remove(firstChar);
+        assertSame(index.getCharacterAt(location), secondChar);
+
+        index.clear();
+        assertNull(index.getCharacterAt(location));
+    }
+
+    @Test
+    public void testHitArea() {
+        Avatar avatar = createAvatar(0);
+        Char character = createChar(avatar);
+        replayAll();
+
+        CharacterIndex index = new CharacterIndex();
+        index.setHitArea(character, avatar, new Rectangle(50, -20, 40, 40));
+
+        /* The area spans the borders of multiple buckets. */
+        assertSame(index.getCharacterOnDisplayLoc(50, -20), character);
+        assertSame(index.getCharacterOnDisplayLoc(70, 0), character);
+        assertSame(index.getCharacterOnDisplayLoc(89, 19), character);
+        assertNull(index.getCharacterOnDisplayLoc(90, 0));
+        assertNull(index.getCharacterOnDisplayLoc(49, 0));
+        assertNull(index.getCharacterOnDisplayLoc(70, 20));
+
+        index.setHitArea(character, avatar, new Rectangle(200, 200, 10, 10));
+        assertNull(index.getCharacterOnDisplayLoc(70, 0));
+        assertSame(index.getCharacterOnDisplayLoc(205, 205), character);
+
+        index.setHitArea(character, avatar, new Rectangle());
+        assertNull(index.getCharacterOnDisplayLoc(205, 205));
+    }
+
+    @Test
+    public void testOverlappingHitAreas() {
+        Avatar backAvatar = createAvatar(10);
+        Avatar frontAvatar = createAvatar(5);
+        Char backChar = createChar(backAvatar);
+        Char frontChar = createChar(frontAvatar);
+        replayAll();
+
+        CharacterIndex index = new CharacterIndex();
+        index.setHitArea(backChar, backAvatar, new Rectangle(0, 0, 30, 30));
+        index.setHitArea(frontChar, frontAvatar, new Rectangle(20, 20, 30, 30));
+
+        assertSame(index.getCharacterOnDisplayLoc(10, 10), backChar);
+        assertSame(index.getCharacterOnDisplayLoc(25, 25), frontChar);
+        assertSame(index.getCharacterOnDisplayLoc(45, 45), frontChar);
+
+        index.remove(frontChar);
+        assertSame(index.getCharacterOnDisplayLoc(25, 25), backChar);
+    }
+
+    @Test
+    public void testReplacedAvatar() {
+        Avatar oldAvatar = createAvatar(0);
+        Avatar newAvatar = createAvatar(0);
+        Char character = createChar(newAvatar);
+        replayAll();
+
+        CharacterIndex index = new CharacterIndex();
+        index.setHitArea(character, oldAvatar, new Rectangle(0, 0, 10, 10));
+        assertNull(index.getCharacterOnDisplayLoc(5, 5), "Area of a avatar that is not used anymore was found");
+
+        index.setHitArea(character, newAvatar, new Rectangle(0, 0, 10, 10));
+        index.removeHitArea(character, oldAvatar);
+        assertSame(index.getCharacterOnDisplayLoc(5, 5), character, "Old avatar removed the area of the new one");
+
+        index.removeHitArea(character, newAvatar);
+        assertNull(index.getCharacterOnDisplayLoc(5, 5));
+    }
+
+    @BeforeMethod
+    public void prepareTests() {
+        resetAll();
+    }
+
+    @ObjectFactory
+    public IObjectFactory getObjectFactory() {
+        return new PowerMockObjectFactory();
+    }
+}
@@ -0,0 +1,175 @@
+/*
+ * This file is part of the Illarion project.
+ *
+ * Copyright © 2016 - Illarion e.V.
+ *
+ * Illarion is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Illarion is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ */
+package illarion.client.world;
+
+import org.powermock.core.classloader.annotations.PrepareForTest;
+import org.powermock.modules.testng.PowerMockObjectFactory;
+import org.testng.IObjectFactory;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.ObjectFactory;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.powermock.api.easymock.PowerMock.*;
+import static org.testng.Assert.*;
+
+/**
+ * The test class for the {@link MapTileStore}.
+ *
+ * @author Martin Karing &lt;nitram@illarion.org&gt;
+ */
+@PrepareForTest(MapTile.class)
+public class MapTileStoreTest {
+    @Test
+    public void testPutAndGet() {
+        MapTile first = createMock(MapTile.class);
+        MapTile second = createMock(MapTile.class);
+        replayAll();
+
+        MapTileStore store = new MapTileStore();
+        assertTrue(store.isEmpty());
+        assertNull(store.put(3, 4, 0, first));
+        assertSame(store.get(3, 4, 0), first);
+        assertNull(store.get(4, 3, 0));
+        assertNull(store.get(3, 4, 1));
+
+        assertSame(store.put(3, 4, 0, second), first);
+        assertSame(store.get(3, 4, 0), second);
+        assertEquals(store.size(), 1);
+    }
+
+    @Test
+    public void testChunkBorders() {
+        int[] coordinates = {-17, -16, -15, -1, 0, 1, 15, 16, 17};
+        Map<MapTile, int[]> tiles = new IdentityHashMap<>();
+        MapTileStore store = new MapTileStore();
+        for (int x : coordinates) {
+            for (int y : coordinates) {
+                for (int z = -1; z <= 1; z++) {
+                    MapTile tile = createMock(MapTile.class);
+                    tiles.put(tile, new int[]{x, y, z});
+                    assertNull(store.put(x, y, z, tile));
+                }
+            }
+        }
+        replayAll();
+
+        assertEquals(store.size(), tiles.size());
+        for (Map.Entry<MapTile, int[]> entry : tiles.entrySet()) {
+            int[] location = entry.getValue();
+            assertSame(store.get(location[0], location[1], location[2]), entry.getKey());
+        }
+    }
+
+    @Test
+    public void testCoordinateLimits() {
+        int maxXY = (1 << 27) - 1;
+        int minXY = -(1 << 27);
+        MapTile first = createMock(MapTile.class);
+        MapTile second = createMock(MapTile.class);
+        replayAll();
+
+        MapTileStore store = new MapTileStore();
+        store.put(maxXY, minXY, Short.MAX_VALUE, first);
+        store.put(minXY, maxXY, Short.MIN_VALUE, second);
+
+        assertSame(store.get(maxXY, minXY, Short.MAX_VALUE), first);
+        assertSame(store.get(minXY, maxXY, Short.MIN_VALUE), second);
+        assertNull(store.get(maxXY, minXY, Short.MIN_VALUE));
+    }
+
+    @Test
+    public void testRemove() {
+        MapTile first = createMock(MapTile.class);
+        MapTile second = createMock(MapTile.class);
+        replayAll();
+
+        MapTileStore store = new MapTileStore();
+        store.put(0, 0, 0, first);
+        store.put(1, 0, 0, second);
+
+        assertNull(store.remove(2, 0, 0));
+        assertNull(store.remove(100, 100, 0));
+        assertSame(store.remove(0, 0, 0), first);
+        assertNull(store.get(0, 0, 0));
+        assertSame(store.get(1, 0, 0), second);
+        assertEquals(store.size(), 1);
+
+        assertSame(store.remove(1, 0, 0), second);
+        assertTrue(store.isEmpty());
+    }
+
+    /**
+     * Test if the chunks stay reachable while the table grows and after other chunks are removed from it.
+     */
+    @Test
+    public void testManyChunks() {
+        List<MapTile> tiles = new ArrayList<>();
+        MapTileStore store = new MapTileStore();
+        for (int i = 0; i < 500; i++) {
+            MapTile tile = createMock(MapTile.class);
+            tiles.add(tile);
+            store.put(i * 16, (i % 7) * 16, i % 3, tile);
+        }
+        replayAll();
+
+        for (int i = 0; i < 500; i += 2) {
+            assertSame(store.remove(i * 16, (i % 7) * 16, i % 3), tiles.get(i));
+        }
+        assertEquals(store.size(), 250);
+        for (int i = 0; i < 500; i++) {
+            MapTile expected = ((i % 2) == 0) ? null : tiles.get(i);
+            assertSame(store.get(i * 16, (i % 7) * 16, i % 3), expected);
+        }
+    }
+
+    @Test
+    public void testForEachAndClear() {
+        Set<MapTile> tiles = Collections.newSetFromMap(new IdentityHashMap<>());
+        MapTileStore store = new MapTileStore();
+        for (int i = 0; i < 40; i++) {
+            MapTile tile = createMock(MapTile.class);
+            tiles.add(tile);
+            store.put(i * 5, -i * 3, 0, tile);
+        }
+        replayAll();
+
+        Set<MapTile> visited = Collections.newSetFromMap(new IdentityHashMap<>());
+        store.forEach(visited::add);
+        assertEquals(visited, tiles);
+
+        assertEquals(new HashSet<>(store.clear()), tiles);
+        assertTrue(store.isEmpty());
+        assertNull(store.get(0, 0, 0));
+    }
+
+    @BeforeMethod
+    public void prepareTests() {
+        resetAll();
+    }
+
+    @ObjectFactory
+    public IObjectFactory getObjectFactory() {
+        return new PowerMockObjectFactory();
+    }
+}
@@ -0,0 +1,291 @@
+/*
+ * This file is part of the Illarion project.
+ *
+ * Copyright © 2016 - Illarion e.V.
+ *
+ * Illarion is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Illarion is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ */
+package illarion.common.util;
+
+import org.jetbrains.annotations.Contract;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.WillNotClose;
+import javax.annotation.concurrent.NotThreadSafe;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * This is the precompiled, column oriented form of a data table. It is created by the {@link BinaryTableWriter}
+ * during the build and read by the {@link TableLoader}. The values are accessed straight from the backing buffer,
+ * so reading a table does not require to tokenize lines or to parse numbers.
+ * <p/>
+ * Layout of the table (all values big endian):
+ * <ul>
+ * <li>header: magic number, row count, column count, string count, offset of the string pool</li>
+ * <li>row index: the amount of cells in each row</li>
+ * <li>column directory: type and offset of each column</li>
+ * <li>column data: one value per row, either a short, a int or the index of a string in the pool</li>
+ * <li>string pool: offsets of the strings followed by the UTF-8 encoded strings</li>
+ * </ul>
+ *
+ * @author Martin Karing &lt;nitram@illarion.org&gt;
+ */
+@NotThreadSafe
+public final class BinaryTable {
+    /**
+     * The file extension of precompiled tables.
+     */
+    @Nonnull
+    public static final String FILE_EXTENSION = ".tbd";
+
+    /**
+     * The magic number at the start of each precompiled table.
+     */
+    static final int MAGIC = 0x49544231;
+
+    /**
+     * The size of the header in bytes.
+     */
+    static final int HEADER_SIZE = 20;
+
+    /**
+     * Column type of columns that only contain numbers in the range of a short.
+     */
+    static final int TYPE_SHORT = 0;
+
+    /**
+     * Column type of columns that only contain numbers.
+     */
+    static final int TYPE_INT = 1;
+
+    /**
+     * Column type of columns that contain strings.
+     */
+    static final int TYPE_STRING = 2;
+
+    /**
+     * The buffer that contains the table.
+     */
+    @Nonnull
+    private final ByteBuffer buffer;
+
+    /**
+     * The amount of rows in this table.
+     */
+    private final int rowCount;
+
+    /**
+     * The amount of columns in this table.
+     */
+    private final int columnCount;
+
+    /**
+     * The offset of the row index.
+     */
+    private final int rowIndexOffset;
+
+    /**
+     * The offset of the column directory.
+     */
+    private final int columnDirectoryOffset;
+
+    /**
+     * The offset of the string offsets in the string pool.
+     */
+    private final int stringOffsetsOffset;
+
+    /**
+     * The offset of the first byte of the string data in the pool.
+     */
+    private final int stringDataOffset;
+
+    /**
+     * The strings of the pool that were decoded already. Strings are shared between all cells that contain them.
+     */
+    @Nonnull
+    private final String[] decodedStrings;
+
+    /**
+     * Create a table that reads its data from a buffer.
+     *
+     * @param buffer the buffer that contains the table, starting at position 0
+     * @throws IOException in case the buffer does not contain a precompiled table
+     */
+    public BinaryTable(@Nonnull ByteBuffer buffer) throws IOException {
+        this.buffer = buffer;
+        if ((buffer.limit() < HEADER_SIZE) || (buffer.getInt(0) != MAGIC)) {
+            throw new IOException("Buffer does not contain a precompiled table.");
+        }
+        rowCount = buffer.getInt(4);
+        columnCount = buffer.getInt(8);
+        int stringCount = buffer.getInt(12);
+        stringOffsetsOffset = buffer.getInt(16);
+        rowIndexOffset = HEADER_SIZE;
+        columnDirectoryOffset = rowIndexOffset + (rowCount * 4);
+        stringDataOffset = stringOffsetsOffset + ((stringCount + 1) * 4);
+        if ((rowCount < 0) || (columnCount < 0) || (stringCount < 0) || (stringDataOffset > buffer.limit())) {
+            throw new IOException("Precompiled table is corrupted.");
+        }
+        decodedStrings = new String[stringCount];
+    }
+
+    /**
+     * Read a precompiled table from a stream. The stream is read completely, but not closed.
+     *
+     * @param in the stream that supplies the table
+     * @return the table
+     * @throws IOException in case reading the stream fails or the data is not a precompiled table
+     */
+    @Nonnull
+    public static BinaryTable read(@Nonnull @WillNotClose InputStream in) throws IOException {
+        byte[] data = new byte[16384];
+        int length = 0;
+        while (true) {
+            int read = in.read(data, length, data.length - length);
+            if (read < 0) {
+                break;
+            }
+            length += read;
+            if (length == data.length) {
+                data = Arrays.copyOf(data, data.length * 2);
+            }
+        }
+        return new BinaryTable(ByteBuffer.wrap(data, 0, length).slice());
+    }
+
+    /**
+     * Map a unencrypted precompiled table file into the memory.
+     *
+     * @param file the file that contains the table
+     * @return the table
+     * @throws IOException in case mapping the file fails or the file is not a precompiled table
+     */
+    @Nonnull
+    public static BinaryTable map(@Nonnull File file) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r"); FileChannel channel = raf.getChannel()) {
+            return new BinaryTable(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    /**
+     * Get the amount of rows in this table.
+     *
+     * @return the amount of rows
+     */
+    @Contract(pure = true)
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    /**
+     * Get the amount of cells that are present in one row.
+     *
+     * @param row the index of the row
+     * @return the amount of cells in this row
+     */
+    @Contract(pure = true)
+    public int getCellCount(int row) {
+        return buffer.getInt(rowIndexOffset + (row * 4));
+    }
+
+    /**
+     * Check if a cell is present in the table.
+     *
+     * @param row the index of the row
+     * @param column the index of the column
+     * @return {@code true} in case the cell is present
+     */
+    @Contract(pure = true)
+    public boolean hasCell(int row, int column) {
+        return (column >= 0) && (column < columnCount) && (row >= 0) && (row < rowCount) &&
+                (column < getCellCount(row));
+    }
+
+    /**
+     * Check if a column contains only numbers.
+     *
+     * @param column the index of the column
+     * @return {@code true} in case all values in the column are numbers
+     */
+    @Contract(pure = true)
+    public boolean isNumeric(int column) {
+        return getColumnType(column) != TYPE_STRING;
+    }
+
+    /**
+     * Get the value of a cell as number.
+     *
+     * @param row the index of the row
+     * @param column the index of the column
+     * @return the value of the cell
+     * @throws NumberFormatException in case the cell contains a string that is not a number
+     */
+    @Contract(pure = true)
+    public int getInt(int row, int column) {
+        int columnOffset = getColumnOffset(column);
+        switch (getColumnType(column)) {
+            case TYPE_SHORT:
+                return buffer.getShort(columnOffset + (row * 2));
+            case TYPE_INT:
+                return buffer.getInt(columnOffset + (row * 4));
+            default:
+                return Integer.parseInt(getPooledString(buffer.getInt(columnOffset + (row * 4))));
+        }
+    }
+
+    /**
+     * Get the value of a cell as string.
+     *
+     * @param row the index of the row
+     * @param column the index of the column
+     * @return the value of the cell
+     */
+    @Nonnull
+    @Contract(pure = true)
+    public String getString(int row, int column) {
+        if (isNumeric(column)) {
+            return Integer.toString(getInt(row, column));
+        }
+        return getPooledString(buffer.getInt(getColumnOffset(column) + (row * 4)));
+    }
+
+    private int getColumnType(int column) {
+        return buffer.getInt(columnDirectoryOffset + (column * 8));
+    }
+
+    private int getColumnOffset(int column) {
+        return buffer.getInt(columnDirectoryOffset + (column * 8) + 4);
+    }
+
+    @Nonnull
+    private String getPooledString(int index) {
+        @Nullable String result = decodedStrings[index];
+        if (result == null) {
+            int start = buffer.getInt(stringOffsetsOffset + (index * 4));
+            int end = buffer.getInt(stringOffsetsOffset + ((index + 1) * 4));
+            byte[] data = new byte[end - start];
+            ByteBuffer view = buffer.duplicate();
+            view.position(stringDataOffset + start);
+            view.get(data);
+            result = new String(data, StandardCharsets.UTF_8);
+            decodedStrings[index] = result;
+        }
+        return result;
+    }
+}
@@ -0,0 +1,164 @@
+/*
+ * This file is part of the Illarion project.
+ *
+ * Copyright © 2016 - Illarion e.V.
+ *
+ * Illarion is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Illarion is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ */
+package illarion.common.util;
+
+import javax.annotation.Nonnull;
+import javax.annotation.WillNotClose;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * This class converts the CSV data tables to the precompiled form that is read by the {@link BinaryTable}. The
+ * tables are tokenized exactly the way the {@link TableLoader} does it. The first line is taken as header line and
+ * dropped along with all empty lines and comments.
+ *
+ * @author Martin Karing &lt;nitram@illarion.org&gt;
+ */
+public final class BinaryTableWriter {
+    private BinaryTableWriter() {
+    }
+
+    /**
+     * Convert a CSV table to a precompiled table.
+     *
+     * @param in the stream that supplies the UTF-8 encoded CSV table, it is not closed
+     * @param out the stream that receives the precompiled table, it is not closed
+     * @param delimiter the delimiter of the columns in the CSV table
+     * @throws IOException in case reading or writing fails
+     */
+    public static void convert(
+            @Nonnull @WillNotClose InputStream in,
+            @Nonnull @WillNotClose OutputStream out,
+            @Nonnull String delimiter) throws IOException {
+        List<List<String>> rows = new ArrayList<>();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+        String line = reader.readLine();
+        if (line != null) {
+            while ((line = reader.readLine()) != null) {
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                List<String> tokens = new ArrayList<>();
+                TableLoader.parseTokens(line, 0, delimiter, tokens);
+                rows.add(tokens);
+            }
+        }
+
+        int columnCount = 0;
+        for (List<String> row : rows) {
+            columnCount = Math.max(columnCount, row.size());
+        }
+
+        int[] columnTypes = new int[columnCount];
+        for (int column = 0; column < columnCount; column++) {
+            columnTypes[column] = getColumnType(rows, column);
+        }
+
+        Map<String, Integer> stringIndices = new HashMap<>();
+        List<byte[]> strings = new ArrayList<>();
+        ByteArrayOutputStream columnData = new ByteArrayOutputStream();
+        DataOutputStream columnOut = new DataOutputStream(columnData);
+        int[] columnOffsets = new int[columnCount];
+        int dataStart = BinaryTable.HEADER_SIZE + (rows.size() * 4) + (columnCount * 8);
+        for (int column = 0; column < columnCount; column++) {
+            columnOffsets[column] = dataStart + columnOut.size();
+            for (List<String> row : rows) {
+                String value = (column < row.size()) ? row.get(column) : null;
+                switch (columnTypes[column]) {
+                    case BinaryTable.TYPE_SHORT:
+                        columnOut.writeShort((value == null) ? 0 : Integer.parseInt(value));
+                        break;
+                    case BinaryTable.TYPE_INT:
+                        columnOut.writeInt((value == null) ? 0 : Integer.parseInt(value));
+                        break;
+                    default:
+                        if (value == null) {
+                            columnOut.writeInt(0);
+                        } else {
+                            Integer index = stringIndices.get(value);
+                            if (index == null) {
+                                index = strings.size();
+                                stringIndices.put(value, index);
+                                strings.add(value.getBytes(StandardCharsets.UTF_8));
+                            }
+                            columnOut.writeInt(index);
+                        }
+                }
+            }
+        }
+        columnOut.flush();
+
+        DataOutputStream tableOut = new DataOutputStream(out);
+        tableOut.writeInt(BinaryTable.MAGIC);
+        tableOut.writeInt(rows.size());
+        tableOut.writeInt(columnCount);
+        tableOut.writeInt(strings.size());
+        tableOut.writeInt(dataStart + columnOut.size());
+        for (List<String> row : rows) {
+            tableOut.writeInt(row.size());
+        }
+        for (int column = 0; column < columnCount; column++) {
+            tableOut.writeInt(columnTypes[column]);
+            tableOut.writeInt(columnOffsets[column]);
+        }
+        columnData.writeTo(tableOut);
+        int stringOffset = 0;
+        tableOut.writeInt(stringOffset);
+        for (byte[] string : strings) {
+            stringOffset += string.length;
+            tableOut.writeInt(stringOffset);
+        }
+        for (byte[] string : strings) {
+            tableOut.write(string);
+        }
+        tableOut.flush();
+    }
+
+    /**
+     * Find the most compact type that is able to store all values of a column. Numbers are only stored as numbers
+     * in case converting them back to a string results in the original text.
+     *
+     * @param rows the rows of the table
+     * @param column the index of the column
+     * @return the type of the column
+     */
+    private static int getColumnType(@Nonnull List<List<String>> rows, int column) {
+        int type = BinaryTable.TYPE_SHORT;
+        for (List<String> row : rows) {
+            if (column >= row.size()) {
+                continue;
+            }
+            String value = row.get(column);
+            int number;
+            try {
+                number = Integer.parseInt(value);
+            } catch (@Nonnull NumberFormatException e) {
+                return BinaryTable.TYPE_STRING;
+            }
+            if (!Integer.toString(number).equals(value)) {
+                return BinaryTable.TYPE_STRING;
+            }
+            if ((number < Short.MIN_VALUE) || (number > Short.MAX_VALUE)) {
+                type = BinaryTable.TYPE_INT;
+            }
+        }
+        return type;
+    }
+}
@@ -263,6 +263,21 @@ public final class Crypto {
         log.error("Loading the public key failed.");
     }
 
+    /**
+     * Load the public key from a input stream.
+     *
+     * @param in the input stream the load the public key from
+     */
+    public void loadPublicKey(InputStream in) {
+        publicKey = loadKeyImpl(in);
+
+        if (hasPublicKey()) {
+            return;
+        }
+
+        log.error("Loading the public key failed.");
+    }
+
     /**
      * Load a key from a string reference. This function will be check both the file system and the class path for
      * this file.
@@ -23,12 +23,16 @@ import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import java.io.*;
 import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Class for loading data tables with different delimiters and also the special
  * NDSC table type that is created by the config tool. The data is tokenized and
  * distributed to a callback class that is allowed to parse the values by the
  * functions offered by this class line by line.
+ * <p/>
+ * Tables that were precompiled by the {@link BinaryTableWriter} are read from a {@link BinaryTable} instead. In
+ * this case the values are read straight from the columns of the table without tokenizing the lines.
  *
  * @author Nop
  * @author Martin Karing &lt;nitram@illarion.org&gt;
@@ -59,6 +63,22 @@ public class TableLoader {
     @Nonnull
     private final ArrayList<String> tokens;
 
+    /**
+     * The precompiled table that is currently read or {@code null} in case a CSV table is read.
+     */
+    @Nullable
+    private BinaryTable binaryTable;
+
+    /**
+     * The row of the precompiled table that is currently handed to the callback.
+     */
+    private int binaryRow;
+
+    /**
+     * The amount of columns at the start of each row of the precompiled table that are not handed to the callback.
+     */
+    private int binaryColumnOffset;
+
     /**
      * Construct a table loader that loads the table from the file system. With
      * this constructor the table loader takes a {@code ,} as delimiter.
@@ -76,7 +96,9 @@ public class TableLoader {
     }
 
     /**
-     * Construct a table loader that loads the table from the file system.
+     * Construct a table loader that loads the table from the file system. In case the name of the file ends with
+     * {@link BinaryTable#FILE_EXTENSION} the file is taken as unencrypted precompiled table and mapped into the
+     * memory. The delimiter is not used in this case.
      * <p/>
      * <b>Important:</b> The first line is assumed as header line and thrown away at the reading operation.
      * <p/>
@@ -94,6 +116,15 @@ public class TableLoader {
             return;
         }
 
+        if (table.getName().endsWith(BinaryTable.FILE_EXTENSION)) {
+            try {
+                loadTable(BinaryTable.map(table), false, callback);
+            } catch (@Nonnull IOException e) {
+                LOGGER.error("Unable to read data file {}", table.getPath(), e);
+            }
+            return;
+        }
+
         InputStream is = null;
         try {
             is = new FileInputStream(table);
@@ -141,7 +172,8 @@ public class TableLoader {
 
     /**
      * Load a table from the jar file resources. The table needs to be in the resources and its file name ending is
-     * {@code .dat}. The file is taken as encrypted and is decrypted using {@link Crypto}.
+     * {@code .dat}. The file is taken as encrypted and is decrypted using {@link Crypto}. In case a precompiled
+     * version of the table with the ending {@link BinaryTable#FILE_EXTENSION} is present, it is used instead.
      * <p/>
      * <b>Important:</b> The first line is assumed as header line and thrown away at the reading operation.
      * <p/>
@@ -162,6 +194,10 @@ public class TableLoader {
             throw new IllegalStateException("This constructor requires a Cryptography instance to be present.");
         }
 
+        if (loadBinaryTable(table, ndsc, callback)) {
+            return;
+        }
+
         // read table via class loader
         InputStream rsc = Thread.currentThread().getContextClassLoader().getResourceAsStream(table + ".dat");
         if (rsc == null) {
@@ -215,6 +251,43 @@ public class TableLoader {
         delimiter = newDelimiter;
     }
 
+    /**
+     * Load the precompiled version of a table from the jar file resources.
+     *
+     * @param table the name of the table that shall be loaded
+     * @param ndsc true in case the table that shall be loaded is a NDSC table
+     * @param callback the call back class that is allowed to parse the values this table loader reads
+     * @return {@code true} in case the precompiled table was found and load
+     */
+    private <T extends TableLoader> boolean loadBinaryTable(
+            @Nonnull String table, boolean ndsc, @Nonnull TableLoaderSink<T> callback) {
+        assert crypto != null;
+        InputStream rsc = Thread.currentThread().getContextClassLoader()
+                .getResourceAsStream(table + BinaryTable.FILE_EXTENSION);
+        if (rsc == null) {
+            return false;
+        }
+        try {
+            BinaryTable binary;
+            try (InputStream decryptedStream = crypto.getDecryptedStream(rsc)) {
+                binary = BinaryTable.read(decryptedStream);
+            }
+            loadTable(binary, ndsc, callback);
+            return true;
+        } catch (@Nonnull IOException e) {
+            LOGGER.error("Error reading table {}", table, e);
+            throw new NoResourceException("Error reading table " + table, e);
+        } catch (@Nonnull CryptoException e) {
+            LOGGER.error("Error decrypting table {}", table, e);
+            throw new NoResourceException("Error reading table " + table, e);
+        } finally {
+            try {
+                rsc.close();
+            } catch (@Nonnull IOException ignored) {
+            }
+        }
+    }
+
     /**
      * Set the Crypto instance that is used to decrypt the tables from the resources. This crypto instance needs to
      * be fully set up so the table loader can use it right away. All instances of the table loader will use this
@@ -237,6 +310,15 @@ public class TableLoader {
     @Nonnull
     @Contract(pure = true)
     public String get(int index) {
+        if (binaryTable != null) {
+            int column = index + binaryColumnOffset;
+            if (binaryTable.hasCell(binaryRow, column)) {
+                return binaryTable.getString(binaryRow, column);
+            }
+            LOGGER.error("Missing element in line at {}", binaryTable.hasCell(binaryRow, binaryColumnOffset) ?
+                    binaryTable.getString(binaryRow, binaryColumnOffset) : "<empty>");
+            return "<missing>";
+        }
         if (index < tokens.size()) {
             String token = tokens.get(index);
             if (token != null) {
@@ -259,6 +341,10 @@ public class TableLoader {
      */
     @Contract(pure = true)
     public boolean getBoolean(int index) {
+        if (isBinaryNumber(index)) {
+            assert binaryTable != null;
+            return binaryTable.getInt(binaryRow, index + binaryColumnOffset) != 0;
+        }
         String tokenValue = get(index);
         return !"0".equals(tokenValue);
     }
@@ -272,10 +358,29 @@ public class TableLoader {
      */
     @Contract(pure = true)
     public int getInt(int index) {
+        if (isBinaryNumber(index)) {
+            assert binaryTable != null;
+            return binaryTable.getInt(binaryRow, index + binaryColumnOffset);
+        }
         String tokenValue = get(index);
         return Integer.parseInt(tokenValue);
     }
 
+    /**
+     * Check if the value at a index is a number that is read from a precompiled table.
+     *
+     * @param index the index of the token
+     * @return {@code true} in case the value can be read from the number column of a precompiled table
+     */
+    @Contract(pure = true)
+    private boolean isBinaryNumber(int index) {
+        if (binaryTable == null) {
+            return false;
+        }
+        int column = index + binaryColumnOffset;
+        return binaryTable.hasCell(binaryRow, column) && binaryTable.isNumeric(column);
+    }
+
     /**
      * Return the string representation of a token that was read in the last
      * line with a given index.
@@ -323,7 +428,14 @@ public class TableLoader {
                 tokens.clear();
 
                 // find tokens
-                parseTokens(line, ndsc);
+                int start = 0;
+                // skip table id and color
+                if (ndsc) {
+                    start = line.indexOf(delimiter);
+                    start = line.indexOf(delimiter, start + 1);
+                    start++;
+                }
+                parseTokens(line, start, delimiter, tokens);
 
                 if (!callback.processRecord(lineCount, (T) this)) {
                     break;
@@ -335,22 +447,40 @@ public class TableLoader {
     }
 
     /**
-     * Parse all the tokens delimited by the set delimiter ({@link #delimiter}) from one line into the tokens array
-     * ({@link #tokens}). The tokens need to be read by the callback function after this function is done in order to
-     * clean the tokens array again.
+     * Hand all rows of a precompiled table to the callback.
      *
-     * @param line the string line that shall be parsed for the tokens
-     * @param ndsc true for ndsc tables. For ndsc tables the first two tokens
-     * are ignored
+     * @param table the precompiled table
+     * @param ndsc true for NDSC table, that causes the first two columns to be ignored
+     * @param callback the callback class that is allowed to parse the values this table loader reads
      */
-    private void parseTokens(@Nonnull String line, boolean ndsc) {
-        int pos = 0;
-        // skip table id and color
-        if (ndsc) {
-            pos = line.indexOf(delimiter);
-            pos = line.indexOf(delimiter, pos + 1);
-            pos++;
+    @SuppressWarnings("unchecked")
+    private <T extends TableLoader> void loadTable(
+            @Nonnull BinaryTable table, boolean ndsc, @Nonnull TableLoaderSink<T> callback) {
+        binaryTable = table;
+        binaryColumnOffset = ndsc ? 2 : 0;
+        try {
+            int rowCount = table.getRowCount();
+            for (binaryRow = 0; binaryRow < rowCount; binaryRow++) {
+                if (!callback.processRecord(binaryRow, (T) this)) {
+                    break;
+                }
+            }
+        } finally {
+            binaryTable = null;
         }
+    }
+
+    /**
+     * Parse all the tokens delimited by the delimiter from one line into the tokens list. This is shared with the
+     * {@link BinaryTableWriter} so both forms of the tables are tokenized the same way.
+     *
+     * @param line the string line that shall be parsed for the tokens
+     * @param start the index in the line where the first token starts
+     * @param delimiter the delimiter of the tokens
+     * @param tokens the list that receives the tokens
+     */
+    static void parseTokens(@Nonnull String line, int start, @Nonnull String delimiter, @Nonnull List<String> tokens) {
+        int pos = start;
 
         boolean running = true;
         while (running) {
@@ -0,0 +1,159 @@
+/*
+ * This file is part of the Illarion project.
+ *
+ * Copyright © 2016 - Illarion e.V.
+ *
+ * Illarion is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Illarion is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ */
+package illarion.common.util;
+
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import javax.annotation.Nonnull;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.Key;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.testng.Assert.*;
+
+/**
+ * The test class for the precompiled tables written by the {@link BinaryTableWriter} and read by the
+ * {@link BinaryTable}.
+ *
+ * @author Martin Karing &lt;nitram@illarion.org&gt;
+ */
+public class BinaryTableTest {
+    /**
+     * The CSV table used by the tests. It contains short and int columns, numbers that do not print back to their
+     * original text, quoted and non-ASCII strings and rows with missing cells.
+     */
+    @Nonnull
+    private static final String TABLE = "id,value,name,text\n" +
+            "1,100000,'sword',plain\n" +
+            "# comment lines are skipped\n" +
+            "\n" +
+            "2,-5,'shield, round',007\n" +
+            "-3,2147483647,'Ängstliche Maus',x\n" +
+            "32767,0,'',\n" +
+            "4,7\n";
+
+    private Crypto crypto;
+
+    @BeforeClass
+    public void setUp() throws Exception {
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+        generator.initialize(1024);
+        KeyPair keys = generator.generateKeyPair();
+
+        crypto = new Crypto();
+        crypto.loadPrivateKey(new ByteArrayInputStream(serialize(keys.getPrivate())));
+        crypto.loadPublicKey(new ByteArrayInputStream(serialize(keys.getPublic())));
+        assertTrue(crypto.hasPrivateKey());
+        assertTrue(crypto.hasPublicKey());
+    }
+
+    @Nonnull
+    private static byte[] serialize(@Nonnull Key key) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (ObjectOutputStream objectOut = new ObjectOutputStream(out)) {
+            objectOut.writeObject(key);
+        }
+        return out.toByteArray();
+    }
+
+    @Nonnull
+    private static byte[] convert() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        BinaryTableWriter.convert(new ByteArrayInputStream(TABLE.getBytes(StandardCharsets.UTF_8)), out, ",");
+        return out.toByteArray();
+    }
+
+    /**
+     * Get the rows of the test table the way the CSV table loader tokenizes them.
+     */
+    @Nonnull
+    private static List<List<String>> getExpectedRows() {
+        List<List<String>> rows = new ArrayList<>();
+        String[] lines = TABLE.split("\n");
+        for (int i = 1; i < lines.length; i++) {
+            if (lines[i].isEmpty() || lines[i].startsWith("#")) {
+                continue;
+            }
+            List<String> tokens = new ArrayList<>();
+            TableLoader.parseTokens(lines[i], 0, ",", tokens);
+            rows.add(tokens);
+        }
+        return rows;
+    }
+
+    private static void assertSameRows(@Nonnull BinaryTable table) {
+        List<List<String>> expectedRows = getExpectedRows();
+        assertEquals(table.getRowCount(), expectedRows.size());
+        for (int row = 0; row < expectedRows.size(); row++) {
+            List<String> expectedRow = expectedRows.get(row);
+            assertEquals(table.getCellCount(row), expectedRow.size(), "Cell count of row " + row);
+            for (int column = 0; column < expectedRow.size(); column++) {
+                assertTrue(table.hasCell(row, column));
+                assertEquals(table.getString(row, column), expectedRow.get(column),
+                        "Cell " + column + " of row " + row);
+            }
+            assertFalse(table.hasCell(row, expectedRow.size()));
+        }
+    }
+
+    @Test
+    public void testEncryptedRoundTrip() throws Exception {
+        ByteArrayOutputStream encrypted = new ByteArrayOutputStream();
+        crypto.encrypt(new ByteArrayInputStream(convert()), encrypted);
+
+        BinaryTable table;
+        try (InputStream in = crypto.getDecryptedStream(new ByteArrayInputStream(encrypted.toByteArray()))) {
+            table = BinaryTable.read(in);
+        }
+        assertSameRows(table);
+    }
+
+    @Test
+    public void testMappedRoundTrip() throws Exception {
+        Path file = Files.createTempFile("table", BinaryTable.FILE_EXTENSION);
+        try {
+            Files.write(file, convert());
+            assertSameRows(BinaryTable.map(file.toFile()));
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testColumnTypes() throws Exception {
+        BinaryTable table = BinaryTable.read(new ByteArrayInputStream(convert()));
+        assertTrue(table.isNumeric(0));
+        assertTrue(table.isNumeric(1));
+        assertFalse(table.isNumeric(2));
+        assertFalse(table.isNumeric(3), "007 does not print back to its original text");
+
+        assertEquals(table.getInt(2, 0), -3);
+        assertEquals(table.getInt(2, 1), Integer.MAX_VALUE);
+        assertEquals(table.getInt(3, 0), Short.MAX_VALUE);
+    }
+
+    @Test(expectedExceptions = IOException.class)
+    public void testCorruptedTable() throws Exception {
+        BinaryTable.read(new ByteArrayInputStream(TABLE.getBytes(StandardCharsets.UTF_8)));
+    }
+}
@@ -451,6 +451,12 @@ public class MainViewController extends AbstractController implements MavenDownl
         }
     }
 
+    @Override
+    public void reportThroughput(long bytesPerSecond, long transferred) {
+        // The rate is shown along with the progress details already.
+        log.debug("Download rate: {} bytes/s, {} bytes transferred", bytesPerSecond, transferred);
+    }
+
     @Override
     public void resolvingDone(@Nonnull Collection<File> classpath) {
         if (launchClass == null) {
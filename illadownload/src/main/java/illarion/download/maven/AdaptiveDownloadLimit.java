@@ -0,0 +1,140 @@
+/*
+ * This file is part of the Illarion project.
+ *
+ * Copyright © 2016 - Illarion e.V.
+ *
+ * Illarion is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Illarion is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ */
+package illarion.download.maven;
+
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * This limit controls how many artifacts are downloaded at the same time. It starts with a small amount of downloads
+ * and probes for a higher limit as long as the additional downloads increase the overall download rate. In case a
+ * higher limit does not pay off, the limit goes back down and stays there for a while before probing again.
+ *
+ * @author Martin Karing &lt;nitram@illarion.org&gt;
+ */
+@ThreadSafe
+final class AdaptiveDownloadLimit {
+    /**
+     * The factor the download rate has to grow by for a higher limit to be kept.
+     */
+    private static final double MIN_GAIN = 1.1;
+
+    /**
+     * The amount of samples the limit is kept after a failed probe.
+     */
+    private static final int HOLD_SAMPLES = 5;
+
+    /**
+     * The highest allowed limit.
+     */
+    private final int maxLimit;
+
+    /**
+     * The current limit.
+     */
+    private int limit;
+
+    /**
+     * The amount of downloads that are currently running.
+     */
+    private int running;
+
+    /**
+     * This flag is set while the limit was raised and the effect on the download rate is not sampled yet.
+     */
+    private boolean probing;
+
+    /**
+     * The download rate before the limit was raised.
+     */
+    private long probeBaseRate;
+
+    /**
+     * The amount of samples left until the next probe.
+     */
+    private int holdSamples;
+
+    /**
+     * Create a new limit.
+     *
+     * @param initialLimit the limit the downloads start with
+     * @param maxLimit the highest allowed limit
+     */
+    AdaptiveDownloadLimit(int initialLimit, int maxLimit) {
+        if ((initialLimit < 1) || (maxLimit < initialLimit)) {
+            throw new IllegalArgumentException("Invalid limits: " + initialLimit + " to " + maxLimit);
+        }
+        limit = initialLimit;
+        this.maxLimit = maxLimit;
+    }
+
+    /**
+     * Wait until another download is allowed to start.
+     *
+     * @throws InterruptedException in case the thread is interrupted while waiting
+     */
+    synchronized void acquire() throws InterruptedException {
+        while (running >= limit) {
+            wait();
+        }
+        running++;
+    }
+
+    /**
+     * Report that a download is finished.
+     */
+    synchronized void release() {
+        running--;
+        notifyAll();
+    }
+
+    /**
+     * Get the current limit.
+     *
+     * @return the amount of downloads allowed at the same time
+     */
+    synchronized int getLimit() {
+        return limit;
+    }
+
+    /**
+     * Update the limit with a new sample of the download rate. This is supposed to be called in regular intervals
+     * while downloads are running.
+     *
+     * @param bytesPerSecond the download rate since the last sample
+     */
+    synchronized void update(long bytesPerSecond) {
+        if (probing) {
+            probing = false;
+            if (bytesPerSecond < (probeBaseRate * MIN_GAIN)) {
+                limit--;
+                holdSamples = HOLD_SAMPLES;
+                return;
+            }
+            // The higher limit paid off, so the next step is probed right away.
+        }
+        if (holdSamples > 0) {
+            holdSamples--;
+            return;
+        }
+        // Raising the limit only has an effect in case all allowed downloads are running.
+        if ((limit < maxLimit) && (running >= limit) && (bytesPerSecond > 0)) {
+            probeBaseRate = bytesPerSecond;
+            limit++;
+            probing = true;
+            notifyAll();
+        }
+    }
+}
@@ -0,0 +1,221 @@
+/*
+ * This file is part of the Illarion project.
+ *
+ * Copyright © 2016 - Illarion e.V.
+ *
+ * Illarion is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Illarion is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ */
+package illarion.download.maven;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nonnull;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.*;
+
+/**
+ * This executor resolves the artifact requests. At first the artifacts stored in the local repository are verified in
+ * parallel. The artifacts that are missing or damaged are downloaded afterwards. The amount of parallel downloads
+ * adapts to the download rate and the rate is reported to the tracer.
+ *
+ * @author Martin Karing &lt;nitram@illarion.org&gt;
+ */
+final class ArtifactRequestExecutor {
+    @Nonnull
+    private static final Logger log = LoggerFactory.getLogger(ArtifactRequestExecutor.class);
+
+    /**
+     * The amount of parallel downloads the executor starts with.
+     */
+    private static final int INITIAL_DOWNLOADS = 2;
+
+    /**
+     * The maximal amount of parallel downloads.
+     */
+    private static final int MAX_DOWNLOADS = 8;
+
+    /**
+     * The interval in milliseconds the download rate is sampled in.
+     */
+    private static final long SAMPLE_INTERVAL = 1000;
+
+    @Nonnull
+    private final DefaultArtifactRequestTracer tracer;
+
+    /**
+     * The transferred bytes at the last sample of the download rate.
+     */
+    private long lastTransferred;
+
+    /**
+     * The time of the last sample of the download rate in nanoseconds.
+     */
+    private long lastSampleTime;
+
+    ArtifactRequestExecutor(@Nonnull DefaultArtifactRequestTracer tracer) {
+        this.tracer = tracer;
+    }
+
+    /**
+     * Resolve the artifacts.
+     *
+     * @param requests the requests of the artifacts
+     * @return the files of the artifacts in the order of the requests
+     * @throws InterruptedException in case the thread is interrupted while waiting for the artifacts
+     * @throws ExecutionException in case resolving any artifact failed
+     */
+    @Nonnull
+    public Collection<File> resolve(@Nonnull List<FutureArtifactRequest> requests)
+            throws InterruptedException, ExecutionException {
+        File[] files = new File[requests.size()];
+        List<Integer> missing = verifyLocalFiles(requests, files);
+        log.info("{} of {} artifacts are valid in the local repository.", requests.size() - missing.size(),
+                requests.size());
+
+        if (!missing.isEmpty()) {
+            download(requests, missing, files);
+        }
+
+        Collection<File> result = new ArrayList<>(files.length);
+        for (File file : files) {
+            result.add(file);
+        }
+        return result;
+    }
+
+    /**
+     * Check the local files of all artifacts.
+     *
+     * @param requests the requests of the artifacts
+     * @param files the array that receives the files of the valid artifacts
+     * @return the indices of the requests that have to be resolved
+     */
+    @Nonnull
+    private static List<Integer> verifyLocalFiles(@Nonnull List<FutureArtifactRequest> requests,
+                                                  @Nonnull File[] files) throws InterruptedException {
+        int threads = Math.max(1, Math.min(Runtime.getRuntime().availableProcessors(), requests.size()));
+        ExecutorService executorService = Executors.newFixedThreadPool(threads,
+                new ThreadFactoryBuilder()
+                        .setDaemon(true)
+                        .setNameFormat("Verify Thread-%d")
+                        .build()
+        );
+        try {
+            List<Future<File>> results = new ArrayList<>(requests.size());
+            for (FutureArtifactRequest request : requests) {
+                results.add(executorService.submit(request::verifyLocalFile));
+            }
+
+            List<Integer> missing = new ArrayList<>();
+            for (int i = 0; i < results.size(); i++) {
+                try {
+                    files[i] = results.get(i).get();
+                } catch (ExecutionException e) {
+                    log.warn("Failed to verify the local file of {}", requests.get(i).getRequest().getArtifact(),
+                            e.getCause());
+                }
+                if (files[i] == null) {
+                    missing.add(i);
+                }
+            }
+            return missing;
+        } finally {
+            executorService.shutdownNow();
+        }
+    }
+
+    /**
+     * Resolve the artifacts that are not valid in the local repository.
+     *
+     * @param requests the requests of all artifacts
+     * @param missing the indices of the requests that are supposed to be resolved
+     * @param files the array that receives the files of the resolved artifacts
+     */
+    private void download(@Nonnull List<FutureArtifactRequest> requests, @Nonnull List<Integer> missing,
+                          @Nonnull File[] files) throws InterruptedException, ExecutionException {
+        int maxDownloads = Math.min(MAX_DOWNLOADS, missing.size());
+        AdaptiveDownloadLimit limit = new AdaptiveDownloadLimit(Math.min(INITIAL_DOWNLOADS, maxDownloads),
+                maxDownloads);
+
+        ExecutorService executorService = Executors.newFixedThreadPool(maxDownloads,
+                new ThreadFactoryBuilder()
+                        .setDaemon(false)
+                        .setNameFormat("Download Thread-%d")
+                        .build()
+        );
+        ScheduledExecutorService sampler = Executors.newSingleThreadScheduledExecutor(
+                new ThreadFactoryBuilder()
+                        .setDaemon(true)
+                        .setNameFormat("Download Rate Sampler")
+                        .build()
+        );
+        lastTransferred = tracer.getTransferredBytes();
+        lastSampleTime = System.nanoTime();
+        sampler.scheduleAtFixedRate(() -> sampleThroughput(limit), SAMPLE_INTERVAL, SAMPLE_INTERVAL,
+                TimeUnit.MILLISECONDS);
+        long startTransferred = lastTransferred;
+        long startTime = lastSampleTime;
+
+        try {
+            List<Future<File>> results = new ArrayList<>(missing.size());
+            for (int index : missing) {
+                FutureArtifactRequest request = requests.get(index);
+                results.add(executorService.submit(() -> {
+                    limit.acquire();
+                    try {
+                        return request.call().getArtifact().getFile();
+                    } finally {
+                        limit.release();
+                    }
+                }));
+            }
+            for (int i = 0; i < results.size(); i++) {
+                files[missing.get(i)] = results.get(i).get();
+            }
+        } finally {
+            sampler.shutdownNow();
+            executorService.shutdownNow();
+        }
+
+        long duration = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime);
+        long transferred = tracer.getTransferredBytes() - startTransferred;
+        if (duration > 0) {
+            tracer.reportThroughput((transferred * 1000L) / duration);
+        }
+        log.info("Resolved {} artifacts with {} bytes in {}ms. Final download limit: {}", missing.size(),
+                transferred, duration, limit.getLimit());
+    }
+
+    /**
+     * Sample the download rate, report it and adjust the limit of parallel downloads.
+     *
+     * @param limit the limit of parallel downloads
+     */
+    private void sampleThroughput(@Nonnull AdaptiveDownloadLimit limit) {
+        long now = System.nanoTime();
+        long transferred = tracer.getTransferredBytes();
+        long elapsed = now - lastSampleTime;
+        if (elapsed <= 0) {
+            return;
+        }
+        long bytesPerSecond = ((transferred - lastTransferred) * TimeUnit.SECONDS.toNanos(1)) / elapsed;
+        lastTransferred = transferred;
+        lastSampleTime = now;
+
+        tracer.reportThroughput(bytesPerSecond);
+        limit.update(bytesPerSecond);
+    }
+}
@@ -42,6 +42,11 @@ class DefaultArtifactRequestTracer implements ArtifactRequestTracer {
     @Nonnull
     private final Map<String, Boolean> recordedTotalForArtifact;
 
+    /**
+     * The last reported download rate in bytes per second.
+     */
+    private volatile long throughput;
+
     public DefaultArtifactRequestTracer(boolean offline,
                                         @Nonnull MavenDownloaderCallback callback,
                                         @Nonnull ProgressMonitor progressMonitor) {
@@ -73,10 +78,34 @@ class DefaultArtifactRequestTracer implements ArtifactRequestTracer {
         if (fullTotalSize >= total) {
             text += '\\' + humanReadableByteCount(fullTotalSize, true);
         }
+        long currentThroughput = throughput;
+        if (currentThroughput > 0) {
+            text += " (" + humanReadableByteCount(currentThroughput, true) + "/s)";
+        }
 
         callback.reportNewState(ResolvingArtifacts, progressMonitor, offline, text);
     }
 
+    /**
+     * Get the amount of bytes transferred for all artifacts.
+     *
+     * @return the transferred bytes
+     */
+    public long getTransferredBytes() {
+        return totalTransferred.get();
+    }
+
+    /**
+     * Report the current download rate. The rate is forwarded to the callback and shown with the next progress
+     * update.
+     *
+     * @param bytesPerSecond the amount of bytes downloaded per second
+     */
+    public void reportThroughput(long bytesPerSecond) {
+        throughput = bytesPerSecond;
+        callback.reportThroughput(bytesPerSecond, totalTransferred.get());
+    }
+
     @Nonnull
     private static String humanReadableByteCount(long bytes, boolean si) {
         int unit = si ? 1000 : 1024;
@@ -15,20 +15,42 @@
  */
 package illarion.download.maven;
 
+import com.google.common.hash.Hashing;
+import com.google.common.io.Files;
 import illarion.common.util.ProgressMonitor;
 import org.eclipse.aether.RepositorySystem;
 import org.eclipse.aether.RepositorySystemSession;
 import org.eclipse.aether.RequestTrace;
+import org.eclipse.aether.artifact.Artifact;
+import org.eclipse.aether.repository.LocalRepositoryManager;
 import org.eclipse.aether.resolution.ArtifactRequest;
+import org.eclipse.aether.resolution.ArtifactResolutionException;
 import org.eclipse.aether.resolution.ArtifactResult;
+import org.eclipse.aether.transfer.ArtifactNotFoundException;
+import org.eclipse.aether.transfer.ArtifactTransferException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.util.concurrent.Callable;
 
 /**
  * @author Martin Karing &lt;nitram@illarion.org&gt;
  */
 class FutureArtifactRequest implements Callable<ArtifactResult> {
+    @Nonnull
+    private static final Logger log = LoggerFactory.getLogger(FutureArtifactRequest.class);
+
+    /**
+     * The amount of times resolving the artifact is tried in case the transfer fails. Every new attempt resumes the
+     * partially downloaded file of the previous one.
+     */
+    private static final int MAX_ATTEMPTS = 3;
+
     @Nonnull
     private final ProgressMonitor progressMonitor;
     @Nonnull
@@ -55,9 +77,84 @@ class FutureArtifactRequest implements Callable<ArtifactResult> {
     @Override
     public ArtifactResult call() throws Exception {
         progressMonitor.setProgress(0.f);
-        ArtifactResult result = system.resolveArtifact(session, request);
-        progressMonitor.setProgress(1.f);
-        return result;
+        int attempt = 1;
+        while (true) {
+            try {
+                ArtifactResult result = system.resolveArtifact(session, request);
+                progressMonitor.setProgress(1.f);
+                return result;
+            } catch (ArtifactResolutionException e) {
+                if ((attempt >= MAX_ATTEMPTS) || session.isOffline() || !isTransferFailure(e)) {
+                    throw e;
+                }
+                log.warn("Transfer of {} failed. Resuming the download. Attempt {} of {}", request.getArtifact(),
+                        attempt + 1, MAX_ATTEMPTS);
+                attempt++;
+            }
+        }
+    }
+
+    /**
+     * Check if resolving an artifact failed because its transfer failed. Artifacts that do not exist are not
+     * considered a transfer failure.
+     *
+     * @param e the exception thrown while resolving the artifact
+     * @return {@code true} in case downloading the artifact again may succeed
+     */
+    private static boolean isTransferFailure(@Nonnull ArtifactResolutionException e) {
+        for (ArtifactResult result : e.getResults()) {
+            for (Exception cause : result.getExceptions()) {
+                if ((cause instanceof ArtifactTransferException) && !(cause instanceof ArtifactNotFoundException)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Check if the artifact is stored in the local repository already and if the file matches the checksum that was
+     * stored along with it when it was downloaded. A local file that does not match the checksum is deleted, so it is
+     * downloaded again. Snapshot artifacts and artifacts without a stored checksum always have to be resolved.
+     *
+     * @return the local file of the artifact or {@code null} in case the artifact has to be resolved
+     * @throws IOException in case reading the local file fails
+     */
+    @Nullable
+    public File verifyLocalFile() throws IOException {
+        Artifact artifact = request.getArtifact();
+        LocalRepositoryManager manager = session.getLocalRepositoryManager();
+        if ((artifact == null) || artifact.isSnapshot() || (manager == null)) {
+            return null;
+        }
+
+        File file = new File(manager.getRepository().getBasedir(), manager.getPathForLocalArtifact(artifact));
+        File checksumFile = new File(file.getPath() + ".sha1");
+        if (!file.isFile() || !checksumFile.isFile()) {
+            return null;
+        }
+
+        String expected = Files.readFirstLine(checksumFile, StandardCharsets.US_ASCII);
+        if (expected != null) {
+            expected = expected.trim();
+            int separator = expected.indexOf(' ');
+            if (separator > -1) {
+                expected = expected.substring(0, separator);
+            }
+        }
+        String actual = Files.hash(file, Hashing.sha1()).toString();
+        if (actual.equalsIgnoreCase(expected)) {
+            progressMonitor.setProgress(1.f);
+            return file;
+        }
+
+        log.warn("Local file of {} does not match its checksum. Downloading it again.", artifact);
+        boolean deleted = file.delete();
+        deleted &= checksumFile.delete();
+        if (!deleted) {
+            log.warn("Failed to delete the damaged files of {}.", artifact);
+        }
+        return null;
     }
 
     @Nonnull
@@ -15,7 +15,6 @@
  */
 package illarion.download.maven;
 
-import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import illarion.common.config.Config;
 import illarion.common.util.AppIdent;
 import illarion.common.util.DirectoryManager;
@@ -44,7 +43,6 @@ import org.eclipse.aether.repository.LocalRepositoryManager;
 import org.eclipse.aether.repository.RemoteRepository;
 import org.eclipse.aether.repository.RemoteRepository.Builder;
 import org.eclipse.aether.repository.RepositoryPolicy;
-import org.eclipse.aether.resolution.ArtifactResult;
 import org.eclipse.aether.resolution.VersionRangeRequest;
 import org.eclipse.aether.resolution.VersionRangeResolutionException;
 import org.eclipse.aether.resolution.VersionRangeResult;
@@ -84,6 +82,12 @@ public class MavenDownloader {
     @Nonnull
     private static final Logger log = LoggerFactory.getLogger(MavenDownloader.class);
 
+    /**
+     * The minimal size of a partially downloaded file in bytes for the download to be resumed. Smaller files are
+     * downloaded again from the start.
+     */
+    private static final int RESUME_THRESHOLD = 16 * 1024;
+
     /**
      * The list of repositories that are used.
      */
@@ -166,6 +170,9 @@ public class MavenDownloader {
         session.setRepositoryListener(repositoryListener);
         session.setConfigProperty(ConfigurationProperties.USER_AGENT, APPLICATION.getApplicationIdentifier());
         session.setConfigProperty(ConfigurationProperties.REQUEST_TIMEOUT, requestTimeOut);
+        session.setConfigProperty(ConfigurationProperties.PERSISTED_CHECKSUMS, true);
+        session.setConfigProperty("aether.connector.resumeDownloads", true);
+        session.setConfigProperty("aether.connector.resumeThreshold", RESUME_THRESHOLD);
         session.setUpdatePolicy(UPDATE_POLICY_ALWAYS);
         session.setChecksumPolicy(CHECKSUM_POLICY_FAIL);
 
@@ -228,7 +235,7 @@ public class MavenDownloader {
 
             ProgressMonitor progressMonitor = new ProgressMonitor();
 
-            ArtifactRequestTracer tracer = new DefaultArtifactRequestTracer(offline, callback, progressMonitor);
+            DefaultArtifactRequestTracer tracer = new DefaultArtifactRequestTracer(offline, callback, progressMonitor);
 
             ArtifactRequestBuilder builder = new ArtifactRequestBuilder(system, session, tracer);
             DependencyVisitor visitor = new FilteringDependencyVisitor(builder, filter);
@@ -242,22 +249,7 @@ public class MavenDownloader {
             }
             callback.reportNewState(ResolvingArtifacts, progressMonitor, offline, null);
 
-            ExecutorService executorService = Executors.newFixedThreadPool(4,
-                    new ThreadFactoryBuilder()
-                            .setDaemon(false)
-                            .setNameFormat("Download Thread-%d")
-                            .build()
-            );
-            List<Future<ArtifactResult>> results = executorService.invokeAll(requests);
-            executorService.shutdown();
-            while (!executorService.awaitTermination(1, TimeUnit.MINUTES)) {
-                log.info("Downloading is not done yet.");
-            }
-
-            Collection<File> result = new ArrayList<>();
-            for (@Nonnull Future<ArtifactResult> artifactResult : results) {
-                result.add(artifactResult.get().getArtifact().getFile());
-            }
+            Collection<File> result = new ArtifactRequestExecutor(tracer).resolve(requests);
 
             if (result.isEmpty()) {
                 callback.resolvingDone(Collections.<File>emptyList());
@@ -61,6 +61,15 @@ public interface MavenDownloaderCallback {
     void reportNewState(
             @Nonnull State state, @Nullable ProgressMonitor progress, boolean offline, @Nullable String detail);
 
+    /**
+     * Report the current download rate. This is the rate of all artifacts that are downloaded at the same time. It
+     * is reported regularly while artifacts are downloaded.
+     *
+     * @param bytesPerSecond the amount of bytes downloaded per second
+     * @param transferred the amount of bytes downloaded so far
+     */
+    void reportThroughput(long bytesPerSecond, long transferred);
+
     /**
      * Report that the resolving is done.
      *
@@ -0,0 +1,104 @@
+/*
+ * This file is part of the Illarion project.
+ *
+ * Copyright © 2016 - Illarion e.V.
+ *
+ * Illarion is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Illarion is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ */
+package illarion.download.maven;
+
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.*;
+
+/**
+ * @author Martin Karing &lt;nitram@illarion.org&gt;
+ */
+public class AdaptiveDownloadLimitTest {
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void invalidLimits() {
+        new AdaptiveDownloadLimit(3, 2);
+    }
+
+    @Test
+    public void raiseWhileRateGrows() throws InterruptedException {
+        AdaptiveDownloadLimit limit = new AdaptiveDownloadLimit(1, 4);
+        limit.acquire();
+
+        limit.update(100);
+        assertEquals(limit.getLimit(), 2);
+
+        // The higher limit paid off, but it is not raised again before the new download is running.
+        limit.update(200);
+        assertEquals(limit.getLimit(), 2);
+
+        limit.acquire();
+        limit.update(300);
+        assertEquals(limit.getLimit(), 3);
+    }
+
+    @Test
+    public void lowerAndHoldWithoutGain() throws InterruptedException {
+        AdaptiveDownloadLimit limit = new AdaptiveDownloadLimit(1, 4);
+        limit.acquire();
+
+        limit.update(100);
+        assertEquals(limit.getLimit(), 2);
+        limit.update(105);
+        assertEquals(limit.getLimit(), 1);
+
+        for (int i = 0; i < 5; i++) {
+            limit.update(100);
+            assertEquals(limit.getLimit(), 1);
+        }
+        limit.update(100);
+        assertEquals(limit.getLimit(), 2);
+    }
+
+    @Test
+    public void keepLimitWhileDownloadsAreMissing() throws InterruptedException {
+        AdaptiveDownloadLimit limit = new AdaptiveDownloadLimit(2, 4);
+        limit.acquire();
+
+        limit.update(100);
+        assertEquals(limit.getLimit(), 2);
+    }
+
+    @Test
+    public void keepMaximalLimit() throws InterruptedException {
+        AdaptiveDownloadLimit limit = new AdaptiveDownloadLimit(2, 2);
+        limit.acquire();
+        limit.acquire();
+
+        limit.update(100);
+        assertEquals(limit.getLimit(), 2);
+    }
+
+    @Test(timeOut = 10000)
+    public void acquireWaitsForRelease() throws InterruptedException {
+        AdaptiveDownloadLimit limit = new AdaptiveDownloadLimit(1, 1);
+        limit.acquire();
+
+        Thread waiting = new Thread(() -> {
+            try {
+                limit.acquire();
+            } catch (InterruptedException ignored) {
+            }
+        });
+        waiting.start();
+        waiting.join(200);
+        assertTrue(waiting.isAlive());
+
+        limit.release();
+        waiting.join();
+        assertFalse(waiting.isAlive());
+    }
+}
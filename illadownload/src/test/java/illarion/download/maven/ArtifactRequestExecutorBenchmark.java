@@ -0,0 +1,325 @@
+/*
+ * This file is part of the Illarion project.
+ *
+ * Copyright © 2016 - Illarion e.V.
+ *
+ * Illarion is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Illarion is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ */
+package illarion.download.maven;
+
+import com.google.common.hash.Hashing;
+import com.google.common.io.Files;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import illarion.common.util.ProgressMonitor;
+import org.apache.maven.model.building.DefaultModelBuilderFactory;
+import org.apache.maven.model.building.ModelBuilder;
+import org.apache.maven.repository.internal.MavenRepositorySystemUtils;
+import org.eclipse.aether.ConfigurationProperties;
+import org.eclipse.aether.DefaultRepositorySystemSession;
+import org.eclipse.aether.RepositorySystem;
+import org.eclipse.aether.artifact.DefaultArtifact;
+import org.eclipse.aether.connector.basic.BasicRepositoryConnectorFactory;
+import org.eclipse.aether.impl.DefaultServiceLocator;
+import org.eclipse.aether.repository.LocalRepository;
+import org.eclipse.aether.repository.RemoteRepository;
+import org.eclipse.aether.resolution.ArtifactRequest;
+import org.eclipse.aether.resolution.ArtifactResult;
+import org.eclipse.aether.spi.connector.RepositoryConnectorFactory;
+import org.eclipse.aether.spi.connector.transport.TransporterFactory;
+import org.eclipse.aether.transport.http.HttpTransporterFactory;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * This benchmark resolves a set of synthetic artifacts from a repository directory that is served by a local HTTP
+ * server. The server limits the rate of every connection and can cut transfers off halfway, so the effects of the
+ * parallel downloads, of resuming interrupted downloads and of skipping valid local artifacts can be measured without
+ * a real remote repository. The results are compared with resolving all artifacts with a fixed pool of four threads.
+ *
+ * @author Martin Karing &lt;nitram@illarion.org&gt;
+ */
+public final class ArtifactRequestExecutorBenchmark {
+    private static final String GROUP_ID = "org.illarion.benchmark";
+    private static final String VERSION = "1.0";
+
+    @Nonnull
+    private static final Pattern RANGE = Pattern.compile("bytes=(\\d+)-");
+
+    private ArtifactRequestExecutorBenchmark() {
+    }
+
+    /**
+     * Execute the benchmark.
+     *
+     * @param args optional the amount of artifacts and the rate limit of one connection in kB/s
+     */
+    public static void main(@Nonnull String[] args) throws Exception {
+        int artifacts = (args.length > 0) ? Integer.parseInt(args[0]) : 30;
+        int rateLimit = (args.length > 1) ? Integer.parseInt(args[1]) : 512;
+
+        File workDir = java.nio.file.Files.createTempDirectory("illarion-download-benchmark").toFile();
+        File remoteDir = new File(workDir, "remote");
+        long totalSize = createRepository(remoteDir, artifacts, new Random(42L));
+        System.out.printf("%d artifacts with %d kB, %d kB/s per connection%n", artifacts, totalSize / 1000,
+                rateLimit);
+
+        RepositoryServer server = new RepositoryServer(remoteDir, rateLimit * 1000L);
+        try {
+            File local = new File(workDir, "fixed");
+            System.out.println("Fixed pool, empty repository:     " +
+                    runFixedPool(server, local, artifacts));
+
+            local = new File(workDir, "executor");
+            System.out.println("Executor, empty repository:       " + runExecutor(server, local, artifacts));
+            System.out.println("Executor, valid local repository: " + runExecutor(server, local, artifacts));
+
+            local = new File(workDir, "interrupted");
+            server.setCutOffTransfers(true);
+            System.out.println("Executor, interrupted transfers:  " + runExecutor(server, local, artifacts));
+        } finally {
+            server.stop();
+        }
+    }
+
+    private static long createRepository(@Nonnull File remoteDir, int artifacts, @Nonnull Random random)
+            throws IOException {
+        long totalSize = 0;
+        for (int i = 0; i < artifacts; i++) {
+            String artifactId = "artifact-" + i;
+            File dir = new File(remoteDir, GROUP_ID.replace('.', '/') + '/' + artifactId + '/' + VERSION);
+            if (!dir.mkdirs()) {
+                throw new IOException("Failed to create " + dir);
+            }
+            byte[] data = new byte[50000 + random.nextInt(750000)];
+            random.nextBytes(data);
+            totalSize += data.length;
+            writeWithChecksum(new File(dir, artifactId + '-' + VERSION + ".jar"), data);
+            String pom = "<project><modelVersion>4.0.0</modelVersion><groupId>" + GROUP_ID + "</groupId>" +
+                    "<artifactId>" + artifactId + "</artifactId><version>" + VERSION + "</version></project>";
+            writeWithChecksum(new File(dir, artifactId + '-' + VERSION + ".pom"),
+                    pom.getBytes(StandardCharsets.UTF_8));
+        }
+        return totalSize;
+    }
+
+    private static void writeWithChecksum(@Nonnull File file, @Nonnull byte[] data) throws IOException {
+        Files.write(data, file);
+        Files.write(Hashing.sha1().hashBytes(data).toString(), new File(file.getPath() + ".sha1"),
+                StandardCharsets.US_ASCII);
+    }
+
+    @Nonnull
+    private static String runFixedPool(@Nonnull RepositoryServer server, @Nonnull File local, int artifacts)
+            throws Exception {
+        RecordingCallback callback = new RecordingCallback();
+        List<FutureArtifactRequest> requests = createRequests(server, local, artifacts, callback);
+        long servedStart = server.getServedBytes();
+        long startTime = System.nanoTime();
+        ExecutorService executorService = Executors.newFixedThreadPool(4);
+        for (Future<ArtifactResult> result : executorService.invokeAll(requests)) {
+            result.get();
+        }
+        executorService.shutdown();
+        return report(startTime, server.getServedBytes() - servedStart, callback);
+    }
+
+    @Nonnull
+    private static String runExecutor(@Nonnull RepositoryServer server, @Nonnull File local, int artifacts)
+            throws Exception {
+        RecordingCallback callback = new RecordingCallback();
+        List<FutureArtifactRequest> requests = createRequests(server, local, artifacts, callback);
+        long servedStart = server.getServedBytes();
+        long startTime = System.nanoTime();
+        new ArtifactRequestExecutor(callback.tracer).resolve(requests);
+        return report(startTime, server.getServedBytes() - servedStart, callback);
+    }
+
+    @Nonnull
+    private static String report(long startTime, long servedBytes, @Nonnull RecordingCallback callback) {
+        return String.format("%5d ms, %6d kB served, last reported rate %d kB/s",
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime), servedBytes / 1000,
+                callback.throughput / 1000);
+    }
+
+    @Nonnull
+    private static List<FutureArtifactRequest> createRequests(@Nonnull RepositoryServer server, @Nonnull File local,
+                                                              int artifacts, @Nonnull RecordingCallback callback) {
+        DefaultServiceLocator serviceLocator = MavenRepositorySystemUtils.newServiceLocator();
+        serviceLocator.addService(RepositoryConnectorFactory.class, BasicRepositoryConnectorFactory.class);
+        serviceLocator.addService(TransporterFactory.class, HttpTransporterFactory.class);
+        serviceLocator.setServices(ModelBuilder.class, new DefaultModelBuilderFactory().newInstance());
+        RepositorySystem system = serviceLocator.getService(RepositorySystem.class);
+
+        DefaultRepositorySystemSession session = MavenRepositorySystemUtils.newSession();
+        session.setTransferListener(new MavenTransferListener());
+        session.setConfigProperty(ConfigurationProperties.PERSISTED_CHECKSUMS, true);
+        session.setConfigProperty("aether.connector.resumeDownloads", true);
+        session.setConfigProperty("aether.connector.resumeThreshold", 16 * 1024);
+        session.setLocalRepositoryManager(system.newLocalRepositoryManager(session, new LocalRepository(local)));
+
+        RemoteRepository repository = new RemoteRepository.Builder("benchmark", "default", server.getUrl()).build();
+        List<FutureArtifactRequest> requests = new ArrayList<>();
+        for (int i = 0; i < artifacts; i++) {
+            ArtifactRequest request = new ArtifactRequest(
+                    new DefaultArtifact(GROUP_ID, "artifact-" + i, "jar", VERSION),
+                    Collections.singletonList(repository), null);
+            requests.add(new FutureArtifactRequest(system, session, request, callback.tracer));
+        }
+        return requests;
+    }
+
+    /**
+     * A HTTP server that serves the files of a directory with a limited rate per connection.
+     */
+    private static final class RepositoryServer {
+        @Nonnull
+        private final HttpServer server;
+        @Nonnull
+        private final File root;
+        private final long bytesPerSecond;
+        @Nonnull
+        private final AtomicLong servedBytes = new AtomicLong();
+        @Nonnull
+        private final Set<String> cutOffFiles = ConcurrentHashMap.newKeySet();
+        private volatile boolean cutOffTransfers;
+
+        RepositoryServer(@Nonnull File root, long bytesPerSecond) throws IOException {
+            this.root = root;
+            this.bytesPerSecond = bytesPerSecond;
+            server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+            server.createContext("/", this::handle);
+            server.setExecutor(Executors.newCachedThreadPool());
+            server.start();
+        }
+
+        @Nonnull
+        String getUrl() {
+            return "http://127.0.0.1:" + server.getAddress().getPort() + '/';
+        }
+
+        long getServedBytes() {
+            return servedBytes.get();
+        }
+
+        /**
+         * In case this is set, the first transfer of every artifact is cut off after half of the file.
+         */
+        void setCutOffTransfers(boolean cutOffTransfers) {
+            this.cutOffTransfers = cutOffTransfers;
+        }
+
+        void stop() {
+            server.stop(0);
+        }
+
+        private void handle(@Nonnull HttpExchange exchange) throws IOException {
+            File file = new File(root, exchange.getRequestURI().getPath().substring(1));
+            if (!file.isFile()) {
+                exchange.sendResponseHeaders(404, -1);
+                exchange.close();
+                return;
+            }
+            boolean head = "HEAD".equals(exchange.getRequestMethod());
+            long length = file.length();
+            long offset = getRangeOffset(exchange.getRequestHeaders().getFirst("Range"));
+            if ((offset > 0) && (offset < length)) {
+                exchange.getResponseHeaders().add("Content-Range",
+                        "bytes " + offset + '-' + (length - 1) + '/' + length);
+                exchange.sendResponseHeaders(206, head ? -1 : (length - offset));
+            } else {
+                offset = 0;
+                exchange.sendResponseHeaders(200, head ? -1 : length);
+            }
+            if (head) {
+                exchange.close();
+                return;
+            }
+
+            long end = length;
+            if (cutOffTransfers && file.getName().endsWith(".jar") && cutOffFiles.add(file.getName())) {
+                end = length / 2;
+            }
+            try (RandomAccessFile in = new RandomAccessFile(file, "r");
+                 OutputStream out = exchange.getResponseBody()) {
+                in.seek(offset);
+                byte[] buffer = new byte[8192];
+                long startTime = System.nanoTime();
+                long sent = 0;
+                while (offset + sent < end) {
+                    int read = in.read(buffer, 0, (int) Math.min(buffer.length, end - offset - sent));
+                    out.write(buffer, 0, read);
+                    sent += read;
+                    servedBytes.addAndGet(read);
+                    long due = (sent * TimeUnit.SECONDS.toNanos(1)) / bytesPerSecond;
+                    long wait = due - (System.nanoTime() - startTime);
+                    if (wait > 0) {
+                        TimeUnit.NANOSECONDS.sleep(wait);
+                    }
+                }
+                if (end < length) {
+                    // The server drops the connection without sending the rest of the file.
+                    throw new IOException("Transfer of " + file.getName() + " cut off.");
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        private static long getRangeOffset(@Nullable String range) {
+            if (range == null) {
+                return 0;
+            }
+            Matcher matcher = RANGE.matcher(range);
+            return matcher.find() ? Long.parseLong(matcher.group(1)) : 0;
+        }
+    }
+
+    private static final class RecordingCallback implements MavenDownloaderCallback {
+        @Nonnull
+        private final DefaultArtifactRequestTracer tracer;
+        private volatile long throughput;
+
+        RecordingCallback() {
+            tracer = new DefaultArtifactRequestTracer(false, this, new ProgressMonitor());
+        }
+
+        @Override
+        public void reportNewState(@Nonnull State state, @Nullable ProgressMonitor progress, boolean offline,
+                                   @Nullable String detail) {
+        }
+
+        @Override
+        public void reportThroughput(long bytesPerSecond, long transferred) {
+            throughput = bytesPerSecond;
+        }
+
+        @Override
+        public void resolvingDone(@Nonnull Collection<File> classpath) {
+        }
+
+        @Override
+        public void resolvingFailed(@Nonnull Exception ex) {
+        }
+    }
+}
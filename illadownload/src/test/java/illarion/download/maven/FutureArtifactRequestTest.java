@@ -0,0 +1,129 @@
+/*
+ * This file is part of the Illarion project.
+ *
+ * Copyright © 2016 - Illarion e.V.
+ *
+ * Illarion is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Illarion is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ */
+package illarion.download.maven;
+
+import com.google.common.hash.Hashing;
+import com.google.common.io.Files;
+import org.eclipse.aether.RepositorySystem;
+import org.eclipse.aether.RepositorySystemSession;
+import org.eclipse.aether.artifact.Artifact;
+import org.eclipse.aether.artifact.DefaultArtifact;
+import org.eclipse.aether.repository.LocalRepository;
+import org.eclipse.aether.repository.LocalRepositoryManager;
+import org.eclipse.aether.resolution.ArtifactRequest;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import javax.annotation.Nonnull;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import static org.easymock.EasyMock.*;
+import static org.testng.Assert.*;
+
+/**
+ * @author Martin Karing &lt;nitram@illarion.org&gt;
+ */
+public class FutureArtifactRequestTest {
+    private static final byte[] CONTENT = "artifact content".getBytes(StandardCharsets.US_ASCII);
+
+    private File repository;
+
+    @BeforeMethod
+    public void setUp() {
+        repository = Files.createTempDir();
+    }
+
+    @AfterMethod
+    public void tearDown() {
+        File[] files = repository.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                assertTrue(file.delete());
+            }
+        }
+        assertTrue(repository.delete());
+    }
+
+    @Test
+    public void verifyMatchingFile() throws IOException {
+        File file = new File(repository, "artifact.jar");
+        Files.write(CONTENT, file);
+        Files.write(Hashing.sha1().hashBytes(CONTENT) + "  artifact.jar\n", new File(repository, "artifact.jar.sha1"),
+                StandardCharsets.US_ASCII);
+
+        FutureArtifactRequest request = createRequest("org.illarion:test:1.0");
+        assertEquals(request.verifyLocalFile(), file);
+        assertEquals(request.getProgressMonitor().getProgress(), 1.f);
+    }
+
+    @Test
+    public void verifyDamagedFile() throws IOException {
+        File file = new File(repository, "artifact.jar");
+        File checksumFile = new File(repository, "artifact.jar.sha1");
+        Files.write(CONTENT, file);
+        Files.write(Hashing.sha1().hashBytes(new byte[]{1, 2, 3}).toString(), checksumFile,
+                StandardCharsets.US_ASCII);
+
+        assertNull(createRequest("org.illarion:test:1.0").verifyLocalFile());
+        assertFalse(file.exists());
+        assertFalse(checksumFile.exists());
+    }
+
+    @Test
+    public void verifyWithoutChecksum() throws IOException {
+        File file = new File(repository, "artifact.jar");
+        Files.write(CONTENT, file);
+
+        assertNull(createRequest("org.illarion:test:1.0").verifyLocalFile());
+        assertTrue(file.exists());
+    }
+
+    @Test
+    public void verifySnapshot() throws IOException {
+        File file = new File(repository, "artifact.jar");
+        Files.write(CONTENT, file);
+        Files.write(Hashing.sha1().hashBytes(CONTENT).toString(), new File(repository, "artifact.jar.sha1"),
+                StandardCharsets.US_ASCII);
+
+        assertNull(createRequest("org.illarion:test:1.0-SNAPSHOT").verifyLocalFile());
+        assertTrue(file.exists());
+    }
+
+    /**
+     * Create a request for a artifact that is stored as {@code artifact.jar} in the local repository.
+     *
+     * @param coordinates the coordinates of the artifact
+     * @return the request
+     */
+    @Nonnull
+    private FutureArtifactRequest createRequest(@Nonnull String coordinates) {
+        Artifact artifact = new DefaultArtifact(coordinates);
+
+        LocalRepositoryManager manager = createMock(LocalRepositoryManager.class);
+        expect(manager.getRepository()).andReturn(new LocalRepository(repository)).anyTimes();
+        expect(manager.getPathForLocalArtifact(artifact)).andReturn("artifact.jar").anyTimes();
+        RepositorySystemSession session = createMock(RepositorySystemSession.class);
+        expect(session.getLocalRepositoryManager()).andReturn(manager).anyTimes();
+        RepositorySystem system = createMock(RepositorySystem.class);
+        ArtifactRequestTracer tracer = createMock(ArtifactRequestTracer.class);
+        replay(manager, session, system, tracer);
+
+        return new FutureArtifactRequest(system, session, new ArtifactRequest(artifact, null, null), tracer);
+    }
+}
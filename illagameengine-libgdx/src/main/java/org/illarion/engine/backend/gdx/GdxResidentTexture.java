@@ -0,0 +1,84 @@
+/*
+ * This file is part of the Illarion project.
+ *
+ * Copyright © 2016 - Illarion e.V.
+ *
+ * Illarion is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Illarion is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ */
+package org.illarion.engine.backend.gdx;
+
+import com.badlogic.gdx.graphics.g2d.TextureRegion;
+import org.illarion.engine.backend.shared.ResidentTexture;
+import org.illarion.engine.backend.shared.TextureAtlasResidency;
+import org.illarion.engine.graphic.Texture;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+/**
+ * This is the texture of a sprite on a atlas that is loaded on demand. The texture region is redirected to the
+ * atlas once it is loaded and back to the placeholder once the atlas is evicted.
+ *
+ * @author Martin Karing &lt;nitram@illarion.org&gt;
+ */
+class GdxResidentTexture extends GdxTexture implements ResidentTexture {
+    /**
+     * The texture manager that supplies the placeholder.
+     */
+    @Nonnull
+    private final GdxTextureManager textureManager;
+
+    /**
+     * The sprite on the atlas that is displayed by this texture.
+     */
+    @Nonnull
+    private final TextureAtlasResidency.Sprite sprite;
+
+    GdxResidentTexture(@Nonnull GdxTextureManager textureManager, @Nonnull TextureAtlasResidency.Sprite sprite) {
+        super(new TextureRegion());
+        this.textureManager = textureManager;
+        this.sprite = sprite;
+    }
+
+    @Override
+    public void setSource(@Nullable Texture atlasTexture, @Nonnull TextureAtlasResidency.Sprite sprite) {
+        TextureRegion region = super.getTextureRegion();
+        if (atlasTexture instanceof GdxTexture) {
+            TextureRegion atlasRegion = ((GdxTexture) atlasTexture).getTextureRegion();
+            region.setRegion(atlasRegion, sprite.getPosX(), sprite.getPosY(), sprite.getWidth(),
+                    sprite.getHeight());
+        } else {
+            region.setRegion(textureManager.getPlaceholder());
+        }
+    }
+
+    @Nonnull
+    @Override
+    public TextureRegion getTextureRegion() {
+        sprite.markUsed();
+        TextureRegion region = super.getTextureRegion();
+        if (region.getTexture() == null) {
+            // the placeholder can only be created by the rendering thread
+            region.setRegion(textureManager.getPlaceholder());
+        }
+        return region;
+    }
+
+    @Override
+    public int getHeight() {
+        return sprite.getHeight();
+    }
+
+    @Override
+    public int getWidth() {
+        return sprite.getWidth();
+    }
+}
@@ -18,11 +18,16 @@ package org.illarion.engine.backend.gdx;
 import com.badlogic.gdx.Gdx;
 import com.badlogic.gdx.files.FileHandle;
 import com.badlogic.gdx.graphics.Pixmap;
+import com.badlogic.gdx.graphics.Pixmap.Format;
 import com.badlogic.gdx.graphics.Texture;
 import com.badlogic.gdx.graphics.Texture.TextureFilter;
+import com.badlogic.gdx.graphics.TextureData;
 import com.badlogic.gdx.graphics.g2d.TextureRegion;
+import com.badlogic.gdx.graphics.glutils.PixmapTextureData;
 import com.badlogic.gdx.utils.GdxRuntimeException;
 import org.illarion.engine.backend.shared.AbstractTextureManager;
+import org.illarion.engine.backend.shared.ResidentTexture;
+import org.illarion.engine.backend.shared.TextureAtlasResidency;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
@@ -33,6 +38,12 @@ import javax.annotation.Nullable;
  * @author Martin Karing &lt;nitram@illarion.org&gt;
  */
 class GdxTextureManager extends AbstractTextureManager<Pixmap> {
+    /**
+     * The transparent texture that is displayed while a atlas that is loaded on demand is not resident.
+     */
+    @Nullable
+    private Texture placeholder;
+
     @Override
     @Nullable
     protected Pixmap loadTextureData(@Nonnull String textureName) {
@@ -47,6 +58,51 @@ class GdxTextureManager extends AbstractTextureManager<Pixmap> {
         }
     }
 
+    @Override
+    protected long getTextureDataSize(@Nonnull Pixmap textureData) {
+        return textureData.getPixels().capacity();
+    }
+
+    @Override
+    protected boolean isResidencySupported() {
+        return true;
+    }
+
+    @Nonnull
+    @Override
+    protected ResidentTexture createResidentTexture(@Nonnull TextureAtlasResidency.Sprite sprite) {
+        return new GdxResidentTexture(this, sprite);
+    }
+
+    @Override
+    protected void disposeTexture(@Nonnull org.illarion.engine.graphic.Texture texture) {
+        if (texture instanceof GdxTexture) {
+            Texture gdxTexture = ((GdxTexture) texture).getTextureRegion().getTexture();
+            TextureData textureData = gdxTexture.getTextureData();
+            gdxTexture.dispose();
+            if (textureData instanceof PixmapTextureData) {
+                textureData.consumePixmap().dispose();
+            }
+        }
+    }
+
+    /**
+     * Get the transparent texture that is displayed while a atlas is not resident. This must only be called by the
+     * rendering thread.
+     *
+     * @return the placeholder texture
+     */
+    @Nonnull
+    Texture getPlaceholder() {
+        if (placeholder == null) {
+            Pixmap pixmap = new Pixmap(1, 1, Format.RGBA8888);
+            pixmap.setColor(0.f, 0.f, 0.f, 0.f);
+            pixmap.fill();
+            placeholder = new Texture(pixmap, false);
+        }
+        return placeholder;
+    }
+
     @Nullable
     @Override
     protected GdxTexture loadTexture(@Nonnull String resource, @Nonnull Pixmap preLoadData) {
@@ -15,7 +15,9 @@
  */
 package org.illarion.engine.backend.gdx;
 
+import com.badlogic.gdx.Gdx;
 import com.badlogic.gdx.graphics.Color;
+import com.badlogic.gdx.graphics.GL20;
 import com.badlogic.gdx.graphics.Pixmap;
 import com.badlogic.gdx.graphics.Pixmap.Format;
 import com.badlogic.gdx.graphics.Texture;
@@ -30,11 +32,23 @@ import org.illarion.engine.graphic.WorldMapDataProviderCallback;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import javax.annotation.concurrent.GuardedBy;
+import java.nio.ByteBuffer;
+import java.util.stream.IntStream;
 
 /**
  * @author Martin Karing &lt;nitram@illarion.org&gt;
  */
 class GdxWorldMap implements WorldMap, WorldMapDataProviderCallback {
+    /**
+     * The amount of rows of tiles that are requested from the provider at once while the entire map is rebuild.
+     */
+    private static final int FETCH_BAND_HEIGHT = 64;
+
+    /**
+     * The amount of bytes that is used to store one pixel of the world map.
+     */
+    private static final int BYTES_PER_PIXEL = 3;
+
     /**
      * The origin location of the map.
      */
@@ -67,22 +81,35 @@ class GdxWorldMap implements WorldMap, WorldMapDataProviderCallback {
     private final WorldMapDataProvider provider;
 
     /**
-     * The color instance that is used temporary to calculate color values.
+     * The buffer that receives the packed tile data of one band of rows while the entire map is rebuild.
      */
     @Nonnull
-    private final Color tempDrawingColor;
+    private final int[] fetchBuffer;
 
     /**
      * This flag is set {@code true} in case the map requires to be rendered again.
      */
+    @GuardedBy("worldMapPixels")
     private boolean mapDirty;
 
+    /**
+     * The first row of the world map that changed since the last upload to the texture.
+     */
+    @GuardedBy("worldMapPixels")
+    private int dirtyFirstRow;
+
+    /**
+     * The last row of the world map that changed since the last upload to the texture.
+     */
+    @GuardedBy("worldMapPixels")
+    private int dirtyLastRow;
+
     GdxWorldMap(@Nonnull WorldMapDataProvider provider) {
         this.provider = provider;
 
         worldMapPixels = new Pixmap(WORLD_MAP_WIDTH, WORLD_MAP_HEIGHT, Format.RGB888);
         worldMapTexture = new GdxTexture(new TextureRegion(new Texture(worldMapPixels)));
-        tempDrawingColor = new Color();
+        fetchBuffer = new int[WORLD_MAP_WIDTH * FETCH_BAND_HEIGHT];
     }
 
     @Nullable
@@ -121,27 +148,93 @@ class GdxWorldMap implements WorldMap, WorldMapDataProviderCallback {
         }
 
         if (tileId != NO_TILE) {
-            GdxGraphics.transferColor(MapColor.getColor(tileId), tempDrawingColor);
-            if (overlayId != NO_TILE) {
-                org.illarion.engine.graphic.Color mapColor = MapColor.getColor(tileId);
-                tempDrawingColor.r += mapColor.getRedf();
-                tempDrawingColor.g += mapColor.getGreenf();
-                tempDrawingColor.b += mapColor.getBluef();
-                tempDrawingColor.mul(0.5f);
-            }
-            if (blocked) {
-                tempDrawingColor.mul(0.7f);
-            }
-            tempDrawingColor.a = 1.f;
-
             synchronized (worldMapPixels) {
-                worldMapPixels.setColor(tempDrawingColor);
-                worldMapPixels.drawPixel(texPosX, texPosY);
-                mapDirty = true;
+                writePixel(worldMapPixels.getPixels(), (texPosY * WORLD_MAP_WIDTH) + texPosX, tileId, overlayId,
+                           blocked);
+                markRowsDirty(texPosY, texPosY);
             }
         }
     }
 
+    /**
+     * Write a band of rows of packed tile data as it is delivered by
+     * {@link WorldMapDataProvider#requestTiles(ServerCoordinate, int, int, int[])} to the pixels of the world map.
+     *
+     * @param firstRow the first row of the world map that is written
+     * @param rows the amount of rows that are written
+     * @param data the packed tile data
+     */
+    private void setTiles(int firstRow, int rows, @Nonnull int[] data) {
+        synchronized (worldMapPixels) {
+            ByteBuffer pixels = worldMapPixels.getPixels();
+            IntStream.range(0, rows).parallel().forEach(row -> {
+                int dataOffset = row * WORLD_MAP_WIDTH;
+                int pixelOffset = (firstRow + row) * WORLD_MAP_WIDTH;
+                for (int x = 0; x < WORLD_MAP_WIDTH; x++) {
+                    int packed = data[dataOffset + x];
+                    int tileId = packed & WorldMapDataProvider.PACKED_ID_MASK;
+                    if (tileId != NO_TILE) {
+                        int overlayId = (packed >> WorldMapDataProvider.PACKED_OVERLAY_SHIFT) &
+                                WorldMapDataProvider.PACKED_ID_MASK;
+                        boolean blocked = (packed & WorldMapDataProvider.PACKED_BLOCKED) != 0;
+                        writePixel(pixels, pixelOffset + x, tileId, overlayId, blocked);
+                    }
+                }
+            });
+            markRowsDirty(firstRow, (firstRow + rows) - 1);
+        }
+    }
+
+    /**
+     * Write the color of a single tile to the pixel data of the world map.
+     *
+     * @param pixels the pixel data of the world map
+     * @param pixelIndex the index of the pixel
+     * @param tileId the map ID of the tile
+     * @param overlayId the map ID of the overlay
+     * @param blocked {@code true} in case the tile is blocked
+     */
+    private static void writePixel(@Nonnull ByteBuffer pixels, int pixelIndex, int tileId, int overlayId,
+                                   boolean blocked) {
+        org.illarion.engine.graphic.Color mapColor = MapColor.getColor(tileId);
+        float red = mapColor.getRedf();
+        float green = mapColor.getGreenf();
+        float blue = mapColor.getBluef();
+        if (overlayId != NO_TILE) {
+            red = Math.min(1.f, (red + mapColor.getRedf()) * 0.5f);
+            green = Math.min(1.f, (green + mapColor.getGreenf()) * 0.5f);
+            blue = Math.min(1.f, (blue + mapColor.getBluef()) * 0.5f);
+        }
+        if (blocked) {
+            red *= 0.7f;
+            green *= 0.7f;
+            blue *= 0.7f;
+        }
+
+        int byteIndex = pixelIndex * BYTES_PER_PIXEL;
+        pixels.put(byteIndex, (byte) (red * 255));
+        pixels.put(byteIndex + 1, (byte) (green * 255));
+        pixels.put(byteIndex + 2, (byte) (blue * 255));
+    }
+
+    /**
+     * Extend the range of rows that need to be uploaded to the texture.
+     *
+     * @param firstRow the first row that changed
+     * @param lastRow the last row that changed
+     */
+    @GuardedBy("worldMapPixels")
+    private void markRowsDirty(int firstRow, int lastRow) {
+        if (mapDirty) {
+            dirtyFirstRow = Math.min(dirtyFirstRow, firstRow);
+            dirtyLastRow = Math.max(dirtyLastRow, lastRow);
+        } else {
+            dirtyFirstRow = firstRow;
+            dirtyLastRow = lastRow;
+            mapDirty = true;
+        }
+    }
+
     private boolean currentlyFetchingTiles;
     private boolean cancelFetchingTiles;
 
@@ -170,13 +263,13 @@ class GdxWorldMap implements WorldMap, WorldMapDataProviderCallback {
             throw new IllegalStateException("World map is not ready yet. The origin is not set.");
         }
         currentlyFetchingTiles = true;
-        for (int x = 0; x < WorldMap.WORLD_MAP_WIDTH; x++) {
-            for (int y = 0; y < WorldMap.WORLD_MAP_HEIGHT; y++) {
-                if (cancelFetchingTiles) {
-                    break;
-                }
-                provider.requestTile(new ServerCoordinate(mapOrigin, x, y, 0), this);
+        for (int y = 0; y < WORLD_MAP_HEIGHT; y += FETCH_BAND_HEIGHT) {
+            if (cancelFetchingTiles) {
+                break;
             }
+            int rows = Math.min(FETCH_BAND_HEIGHT, WORLD_MAP_HEIGHT - y);
+            provider.requestTiles(new ServerCoordinate(mapOrigin, 0, y, 0), WORLD_MAP_WIDTH, rows, fetchBuffer);
+            setTiles(y, rows, fetchBuffer);
         }
         currentlyFetchingTiles = false;
         synchronized (this) {
@@ -212,17 +305,35 @@ class GdxWorldMap implements WorldMap, WorldMapDataProviderCallback {
         synchronized (worldMapPixels) {
             worldMapPixels.setColor(Color.BLACK);
             worldMapPixels.fill();
-            mapDirty = true;
+            markRowsDirty(0, WORLD_MAP_HEIGHT - 1);
         }
     }
 
     @Override
     public void render(@Nonnull GameContainer container) {
-        if (mapDirty) {
-            synchronized (worldMapPixels) {
-                worldMapTexture.getTextureRegion().getTexture().draw(worldMapPixels, 0, 0);
-                mapDirty = false;
+        synchronized (worldMapPixels) {
+            if (!mapDirty) {
+                return;
+            }
+            Texture texture = worldMapTexture.getTextureRegion().getTexture();
+            if ((dirtyFirstRow == 0) && (dirtyLastRow == (WORLD_MAP_HEIGHT - 1))) {
+                texture.draw(worldMapPixels, 0, 0);
+            } else {
+                /* Only the rows that changed are send to the graphic card. */
+                ByteBuffer pixels = worldMapPixels.getPixels();
+                int rows = (dirtyLastRow - dirtyFirstRow) + 1;
+                int firstByte = dirtyFirstRow * WORLD_MAP_WIDTH * BYTES_PER_PIXEL;
+                pixels.limit(firstByte + (rows * WORLD_MAP_WIDTH * BYTES_PER_PIXEL));
+                pixels.position(firstByte);
+
+                texture.bind();
+                Gdx.gl.glPixelStorei(GL20.GL_UNPACK_ALIGNMENT, 1);
+                Gdx.gl.glTexSubImage2D(GL20.GL_TEXTURE_2D, 0, 0, dirtyFirstRow, WORLD_MAP_WIDTH, rows,
+                                       worldMapPixels.getGLFormat(), worldMapPixels.getGLType(), pixels);
+
+                pixels.clear();
             }
+            mapDirty = false;
         }
     }
 
@@ -37,6 +37,16 @@ public interface TextureManager {
      */
     void addTextureDirectory(@Nonnull String directory);
 
+    /**
+     * Add a directory that provides texture data.
+     *
+     * @param directory the directory providing the texture data
+     * @param onDemand {@code true} in case the atlases of this directory are supposed to be loaded once they are
+     * rendered for the first time and evicted again in case the residency budget is exceeded, in case the backend
+     * does not support this, the atlases are loaded right away
+     */
+    void addTextureDirectory(@Nonnull String directory, boolean onDemand);
+
     /**
      * Get a specified texture.
      *
@@ -64,6 +74,30 @@ public interface TextureManager {
      */
     void startLoading();
 
+    /**
+     * Set the time each frame may spend on transferring loaded texture atlases to the graphics card while the
+     * loading is in progress.
+     *
+     * @param milliseconds the time budget per frame in milliseconds
+     */
+    void setLoadingFrameBudget(int milliseconds);
+
+    /**
+     * Set the amount of memory the decoded texture atlases that wait for the transfer to the graphics card may
+     * occupy. Decoding more atlases is paused once this budget is used up.
+     *
+     * @param bytes the memory budget in bytes
+     */
+    void setLoadingMemoryBudget(long bytes);
+
+    /**
+     * Set the amount of memory the texture atlases that are loaded on demand may occupy on the graphics card. Once
+     * this budget is exceeded, the atlases that were not rendered for the longest time are evicted.
+     *
+     * @param bytes the residency budget in bytes
+     */
+    void setResidencyBudget(long bytes);
+
     /**
      * Get the progress monitor that reports the loading progress of the texture manager.
      *
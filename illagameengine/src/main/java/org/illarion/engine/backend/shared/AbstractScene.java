@@ -20,18 +20,26 @@ import org.illarion.engine.graphic.Graphics;
 import org.illarion.engine.graphic.Scene;
 import org.illarion.engine.graphic.SceneElement;
 import org.illarion.engine.graphic.SceneEvent;
+import org.illarion.engine.graphic.SpatialSceneElement;
 import org.illarion.engine.graphic.effects.SceneEffect;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
+import javax.annotation.concurrent.GuardedBy;
 import java.util.*;
 import java.util.concurrent.ConcurrentLinkedQueue;
 
 /**
  * This is the abstract implementation of a scene that takes care for the sorting and storing of the scene elements
  * as this is the same for all the implementations.
+ * <p>
+ * The elements are stored in buckets of a grid based on their location in the scene. Each bucket is kept sorted by
+ * the order of the elements. Only the elements in the buckets in and close to the viewport are updated and rendered
+ * each frame. The elements in the other buckets are updated at a reduced rate. Elements that have no location are
+ * always treated as visible.
+ * </p>
  *
  * @author Martin Karing &lt;nitram@illarion.org&gt;
  */
@@ -42,10 +50,82 @@ public abstract class AbstractScene<T extends SceneEffect> implements Scene, Com
     private static final Logger LOGGER = LoggerFactory.getLogger(AbstractScene.class);
 
     /**
-     * This list of elements in the scene. This list is kept sorted.
+     * The amount of bits of the scene coordinates that are used to address a location within one bucket.
+     */
+    private static final int BUCKET_BITS = 8;
+
+    /**
+     * The margin around the viewport in which elements are still treated as visible. This needs to cover the size
+     * of the graphics of the elements, as the location of a element is just one point of its graphic.
+     */
+    private static final int VIEWPORT_MARGIN = 256;
+
+    /**
+     * The key of the bucket that stores all elements without a location.
+     */
+    private static final long GLOBAL_BUCKET = Long.MIN_VALUE;
+
+    /**
+     * The default amount of updates between two updates of the elements outside of the viewport.
+     */
+    public static final int DEFAULT_OFFSCREEN_UPDATE_INTERVAL = 8;
+
+    /**
+     * This class stores a element along with the values it was sorted into the scene with.
+     */
+    private static final class SceneEntry {
+        @Nonnull
+        private final SceneElement element;
+
+        /**
+         * The sequence number of this entry. It is used to order elements with the same order value in the sequence
+         * they were added to the scene.
+         */
+        private final long sequence;
+
+        /**
+         * The order value the entry is currently sorted with.
+         */
+        private int order;
+
+        /**
+         * The key of the bucket the entry is currently stored in.
+         */
+        private long bucket;
+
+        /**
+         * The scene time of the last update of this element or {@code -1} in case it was not updated yet.
+         */
+        private long lastUpdate = -1;
+
+        SceneEntry(@Nonnull SceneElement element, long sequence) {
+            this.element = element;
+            this.sequence = sequence;
+        }
+    }
+
+    /**
+     * The comparator that sorts the entries. Entries with a higher order value are sorted first.
+     */
+    @Nonnull
+    private static final Comparator<SceneEntry> ENTRY_COMPARATOR = (e1, e2) -> {
+        int result = Integer.compare(e2.order, e1.order);
+        return (result == 0) ? Long.compare(e1.sequence, e2.sequence) : result;
+    };
+
+    /**
+     * The entries of all elements in the scene.
+     */
+    @Nonnull
+    @GuardedBy("sceneElements")
+    private final Map<SceneElement, SceneEntry> sceneElements;
+
+    /**
+     * The buckets of the grid. Each bucket is sorted.
      */
     @Nonnull
-    private final List<SceneElement> sceneElements;
+    @GuardedBy("sceneElements")
+    private final Map<Long, NavigableSet<SceneEntry>> buckets;
 
     /**
      * This is the queue of events that are published during the updates.
@@ -59,6 +139,62 @@ public abstract class AbstractScene<T extends SceneEffect> implements Scene, Com
     @Nonnull
     private final List<T> sceneEffects;
 
+    /**
+     * The sequence number assigned to the next element added to the scene.
+     */
+    @GuardedBy("sceneElements")
+    private long nextSequence;
+
+    /**
+     * This flag is set {@code true} in case the set of visible elements needs to be collected again.
+     */
+    @GuardedBy("sceneElements")
+    private boolean visibleDirty = true;
+
+    /**
+     * This flag is {@code true} once a viewport is set.
+     */
+    @GuardedBy("sceneElements")
+    private boolean viewportSet;
+
+    /**
+     * The range of buckets that are treated as visible.
+     */
+    @GuardedBy("sceneElements")
+    private int minBucketX;
+    @GuardedBy("sceneElements")
+    private int maxBucketX;
+    @GuardedBy("sceneElements")
+    private int minBucketY;
+    @GuardedBy("sceneElements")
+    private int maxBucketY;
+
+    /**
+     * The amount of updates between two updates of the elements outside of the viewport.
+     */
+    private int offscreenUpdateInterval = DEFAULT_OFFSCREEN_UPDATE_INTERVAL;
+
+    /**
+     * The amount of updates of this scene.
+     */
+    private long frameCount;
+
+    /**
+     * The total time of all updates of this scene.
+     */
+    private long sceneTime;
+
+    /**
+     * The visible entries in render order.
+     */
+    @Nonnull
+    private SceneEntry[] visibleEntries = new SceneEntry[0];
+
+    /**
+     * The amount of entries in {@link #visibleEntries} that are currently valid.
+     */
+    private int visibleEntryCount;
+
     /**
      * This is the snapshot array that is taken and filled shortly before the update calls. Is then used to render
      * and update the scene.
@@ -71,13 +207,21 @@ public abstract class AbstractScene<T extends SceneEffect> implements Scene, Com
      */
     private int workingArraySize;
 
+    /**
+     * The entries outside of the viewport that receive a update during the current update.
+     */
+    @Nonnull
+    private final List<SceneEntry> offscreenEntries;
+
     /**
      * Create a new scene and setup the internal structures.
      */
     protected AbstractScene() {
-        sceneElements = new ArrayList<>();
+        sceneElements = new IdentityHashMap<>();
+        buckets = new HashMap<>();
         eventQueue = new ConcurrentLinkedQueue<>();
         sceneEffects = new ArrayList<>();
+        offscreenEntries = new ArrayList<>();
     }
 
     @Override
@@ -88,37 +232,205 @@ public abstract class AbstractScene<T extends SceneEffect> implements Scene, Com
     @Override
     public final void addElement(@Nonnull SceneElement element) {
         synchronized (sceneElements) {
-            int insertIndex = Collections.binarySearch(sceneElements, element, this);
-            if (insertIndex < 0) {
-                sceneElements.add(-insertIndex - 1, element);
-            } else {
-                sceneElements.add(insertIndex, element);
+            if (sceneElements.containsKey(element)) {
+                LOGGER.warn("Element {} was added to the scene twice.", element);
+                return;
             }
+            SceneEntry entry = new SceneEntry(element, nextSequence++);
+            entry.order = element.getOrder();
+            entry.bucket = getBucket(element);
+            sceneElements.put(element, entry);
+            insertEntry(entry);
         }
     }
 
     @Override
     public final void updateElementLocation(@Nonnull SceneElement element) {
         synchronized (sceneElements) {
-            // If element is not found, insertIndex = (where the element should be added * -1) - 1
-            int insertIndex = Collections.binarySearch(sceneElements, element, this);
-            // If the item wasn't found, set checkIndex = the proper location
-            int checkIndex = (insertIndex < 0) ? ((insertIndex + 1) * -1) : insertIndex;
-            // If checkIndex is outside our ArrayList, set it to the last element
-            checkIndex = (checkIndex >= sceneElements.size()) ? (checkIndex = sceneElements.size() - 1) : checkIndex;
-            SceneElement testElement = sceneElements.get(checkIndex);
-            if (!Objects.equals(testElement, element)) {
-                removeElement(element);
+            SceneEntry entry = sceneElements.get(element);
+            if (entry == null) {
                 addElement(element);
+                return;
             }
+            int order = element.getOrder();
+            long bucket = getBucket(element);
+            if ((entry.order == order) && (entry.bucket == bucket)) {
+                return;
+            }
+            removeEntry(entry);
+            entry.order = order;
+            entry.bucket = bucket;
+            insertEntry(entry);
         }
     }
 
     @Override
     public final void removeElement(@Nonnull SceneElement element) {
         synchronized (sceneElements) {
-            sceneElements.remove(element);
+            SceneEntry entry = sceneElements.remove(element);
+            if (entry != null) {
+                removeEntry(entry);
+            }
+        }
+    }
+
+    @Override
+    public final void setViewport(int x, int y, int width, int height) {
+        int newMinBucketX = (x - VIEWPORT_MARGIN) >> BUCKET_BITS;
+        int newMaxBucketX = (x + width + VIEWPORT_MARGIN) >> BUCKET_BITS;
+        int newMinBucketY = (y - VIEWPORT_MARGIN) >> BUCKET_BITS;
+        int newMaxBucketY = (y + height + VIEWPORT_MARGIN) >> BUCKET_BITS;
+        synchronized (sceneElements) {
+            if (viewportSet && (newMinBucketX == minBucketX) && (newMaxBucketX == maxBucketX) &&
+                    (newMinBucketY == minBucketY) && (newMaxBucketY == maxBucketY)) {
+                return;
+            }
+            viewportSet = true;
+            minBucketX = newMinBucketX;
+            maxBucketX = newMaxBucketX;
+            minBucketY = newMinBucketY;
+            maxBucketY = newMaxBucketY;
+            visibleDirty = true;
+        }
+    }
+
+    @Override
+    public final void setOffscreenUpdateInterval(int frames) {
+        if (frames < 0) {
+            throw new IllegalArgumentException("The update interval must not be negative: " + frames);
+        }
+        offscreenUpdateInterval = frames;
+    }
+
+    @GuardedBy("sceneElements")
+    private void insertEntry(@Nonnull SceneEntry entry) {
+        NavigableSet<SceneEntry> bucket = buckets.get(entry.bucket);
+        if (bucket == null) {
+            bucket = new TreeSet<>(ENTRY_COMPARATOR);
+            buckets.put(entry.bucket, bucket);
+        }
+        bucket.add(entry);
+        if (isVisibleBucket(entry.bucket)) {
+            visibleDirty = true;
+        }
+    }
+
+    @GuardedBy("sceneElements")
+    private void removeEntry(@Nonnull SceneEntry entry) {
+        NavigableSet<SceneEntry> bucket = buckets.get(entry.bucket);
+        if (bucket != null) {
+            bucket.remove(entry);
+            if (bucket.isEmpty()) {
+                buckets.remove(entry.bucket);
+            }
+        }
+        if (isVisibleBucket(entry.bucket)) {
+            visibleDirty = true;
+        }
+    }
+
+    @GuardedBy("sceneElements")
+    private boolean isVisibleBucket(long bucket) {
+        if (!viewportSet || (bucket == GLOBAL_BUCKET)) {
+            return true;
+        }
+        int bucketX = (int) (bucket >> 32);
+        int bucketY = (int) bucket;
+        return (bucketX >= minBucketX) && (bucketX <= maxBucketX) && (bucketY >= minBucketY) &&
+                (bucketY <= maxBucketY);
+    }
+
+    /**
+     * Get the key of the bucket a element belongs to.
+     *
+     * @param element the element
+     * @return the key of the bucket
+     */
+    private static long getBucket(@Nonnull SceneElement element) {
+        if (element instanceof SpatialSceneElement) {
+            SpatialSceneElement spatialElement = (SpatialSceneElement) element;
+            return getBucket(spatialElement.getSceneX() >> BUCKET_BITS, spatialElement.getSceneY() >> BUCKET_BITS);
+        }
+        return GLOBAL_BUCKET;
+    }
+
+    private static long getBucket(int bucketX, int bucketY) {
+        return ((long) bucketX << 32) | (bucketY & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Collect the entries of all visible buckets and sort them. As every bucket is sorted already, the sort only has
+     * to merge the buckets.
+     */
+    @GuardedBy("sceneElements")
+    private void collectVisibleEntries() {
+        Arrays.fill(visibleEntries, 0, visibleEntryCount, null);
+        visibleEntryCount = 0;
+        if (viewportSet) {
+            addVisibleEntries(buckets.get(GLOBAL_BUCKET));
+            for (int x = minBucketX; x <= maxBucketX; x++) {
+                for (int y = minBucketY; y <= maxBucketY; y++) {
+                    addVisibleEntries(buckets.get(getBucket(x, y)));
+                }
+            }
+        } else {
+            buckets.values().forEach(this::addVisibleEntries);
+        }
+        Arrays.sort(visibleEntries, 0, visibleEntryCount, ENTRY_COMPARATOR);
+        visibleDirty = false;
+    }
+
+    @GuardedBy("sceneElements")
+    private void addVisibleEntries(@Nullable Collection<SceneEntry> bucket) {
+        if ((bucket == null) || bucket.isEmpty()) {
+            return;
+        }
+        int requiredSize = visibleEntryCount + bucket.size();
+        if (requiredSize > visibleEntries.length) {
+            visibleEntries = Arrays.copyOf(visibleEntries, Math.max(requiredSize, visibleEntries.length * 2));
+        }
+        for (SceneEntry entry : bucket) {
+            visibleEntries[visibleEntryCount++] = entry;
+        }
+    }
+
+    /**
+     * Collect the entries outside of the viewport that are supposed to receive a update during this update. The
+     * buckets are spread over the update interval, so only a part of those entries is updated each time.
+     */
+    @GuardedBy("sceneElements")
+    private void collectOffscreenEntries() {
+        offscreenEntries.clear();
+        int interval = offscreenUpdateInterval;
+        if (!viewportSet || (interval == 0)) {
+            return;
+        }
+        long slot = frameCount % interval;
+        for (Map.Entry<Long, NavigableSet<SceneEntry>> bucket : buckets.entrySet()) {
+            long key = bucket.getKey();
+            if (isVisibleBucket(key)) {
+                continue;
+            }
+            if (Math.floorMod(Long.hashCode(key), interval) == slot) {
+                offscreenEntries.addAll(bucket.getValue());
+            }
+        }
+    }
+
+    /**
+     * Get the time that passed since the last update of a entry and mark it as updated.
+     *
+     * @param entry the entry
+     * @param delta the time since the last update of the scene
+     * @return the time since the last update of the entry
+     */
+    private int getEntryDelta(@Nonnull SceneEntry entry, int delta) {
+        long lastUpdate = entry.lastUpdate;
+        entry.lastUpdate = sceneTime;
+        if (lastUpdate < 0) {
+            return delta;
         }
+        return (int) Math.min(Integer.MAX_VALUE, sceneTime - lastUpdate);
     }
 
     /**
@@ -128,11 +440,23 @@ public abstract class AbstractScene<T extends SceneEffect> implements Scene, Com
      * @param delta the time since the last update that is reported to the elements
      */
     protected final void updateScene(@Nonnull GameContainer container, int delta) {
-        Arrays.fill(workingArray, null);
+        frameCount++;
+        sceneTime += delta;
+
+        Arrays.fill(workingArray, 0, workingArraySize, null);
         synchronized (sceneElements) {
-            workingArray = sceneElements.toArray(workingArray);
-            workingArraySize = sceneElements.size();
+            if (visibleDirty) {
+                collectVisibleEntries();
+            }
+            collectOffscreenEntries();
+        }
+        if (workingArray.length < visibleEntryCount) {
+            workingArray = new SceneElement[visibleEntries.length];
+        }
+        for (int i = 0; i < visibleEntryCount; i++) {
+            workingArray[i] = visibleEntries[i].element;
         }
+        workingArraySize = visibleEntryCount;
 
         @Nullable SceneEvent event = eventQueue.poll();
         while (event != null) {
@@ -151,8 +475,10 @@ public abstract class AbstractScene<T extends SceneEffect> implements Scene, Com
         }
 
         for (int i = 0; i < workingArraySize; i++) {
-            SceneElement element = workingArray[i];
-            element.update(container, delta);
+            workingArray[i].update(container, getEntryDelta(visibleEntries[i], delta));
+        }
+        for (SceneEntry entry : offscreenEntries) {
+            entry.element.update(container, getEntryDelta(entry, delta));
         }
     }
 
@@ -202,7 +528,9 @@ public abstract class AbstractScene<T extends SceneEffect> implements Scene, Com
 
     @Override
     public int getElementCount() {
-        return sceneElements.size();
+        synchronized (sceneElements) {
+            return sceneElements.size();
+        }
     }
 
     /**
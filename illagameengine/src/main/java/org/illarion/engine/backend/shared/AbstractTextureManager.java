@@ -26,20 +26,39 @@ import org.xmlpull.v1.XmlPullParserFactory;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
+import javax.annotation.concurrent.GuardedBy;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedDeque;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
 
 /**
  * This is the shared code of the texture manager that is used by all backend implementations in a similar way.
+ * <p>
+ * Textures that are already loaded can be fetched from any thread. In case a texture needs to be created, the request
+ * of a thread other than the one calling {@link #update()} waits until the next update resolves it.
+ * </p>
  *
  * @author Martin Karing &gt;nitram@illarion.org&lt;
  */
 public abstract class AbstractTextureManager<T> implements TextureManager {
     private static final Logger log = LoggerFactory.getLogger(AbstractTextureManager.class);
 
+    /**
+     * The default time in milliseconds each frame may spend on transferring texture atlases to the graphics card.
+     */
+    private static final int DEFAULT_LOADING_FRAME_BUDGET = 16;
+
+    /**
+     * The default amount of memory in bytes the decoded texture atlases waiting for the transfer may occupy.
+     */
+    private static final long DEFAULT_LOADING_MEMORY_BUDGET = 256L * 1024L * 1024L;
+
     /**
      * These are the progress monitors for each directory.
      */
@@ -58,6 +77,24 @@ public abstract class AbstractTextureManager<T> implements TextureManager {
     @Nonnull
     private final List<Boolean> directoriesLoaded;
 
+    /**
+     * This stores the values if the atlases of a directory are loaded on demand.
+     */
+    @Nonnull
+    private final List<Boolean> directoriesOnDemand;
+
+    /**
+     * The residency of the atlases that are loaded on demand or {@code null} in case no directory is loaded on
+     * demand.
+     */
+    @Nullable
+    private TextureAtlasResidency<T> residency;
+
+    /**
+     * The amount of memory in bytes the atlases that are loaded on demand may occupy.
+     */
+    private long residencyBudget = Long.MAX_VALUE;
+
     /**
      * The textures that are known to this manager.
      */
@@ -86,19 +123,63 @@ public abstract class AbstractTextureManager<T> implements TextureManager {
      * These are the tasks that are progressed in the graphics context.
      */
     @Nullable
-    private Queue<Runnable> updateTasks;
+    private Queue<TextureAtlasFinalizeTask<T>> updateTasks;
 
     private boolean loadingStarted;
 
+    /**
+     * The time in nanoseconds each call of {@link #update()} may spend on transferring texture atlases.
+     */
+    private long loadingFrameBudget = TimeUnit.MILLISECONDS.toNanos(DEFAULT_LOADING_FRAME_BUDGET);
+
+    /**
+     * The lock that guards the memory budget of the decoded texture atlases.
+     */
+    @Nonnull
+    private final Object loadingMemoryLock = new Object();
+
+    /**
+     * The amount of memory in bytes the decoded texture atlases waiting for the transfer may occupy.
+     */
+    @GuardedBy("loadingMemoryLock")
+    private long loadingMemoryBudget = DEFAULT_LOADING_MEMORY_BUDGET;
+
+    /**
+     * The amount of memory in bytes that is currently occupied by decoded texture atlases waiting for the transfer.
+     */
+    @GuardedBy("loadingMemoryLock")
+    private long loadingMemoryUsed;
+
+    /**
+     * The time stamp in nanoseconds when the automatic loading was started.
+     */
+    private long loadingStartTime;
+
+    /**
+     * The thread that calls {@link #update()}. Only this thread is allowed to create textures, because this requires
+     * the graphics context. It is {@code null} until the first update.
+     */
+    @Nullable
+    private volatile Thread graphicsThread;
+
+    /**
+     * The texture requests of other threads that require a texture to be created. They are executed by the next
+     * call of {@link #update()}.
+     */
+    @Nonnull
+    private final Queue<FutureTask<Texture>> graphicsRequests;
+
     /**
      * Creates a new texture loader.
      */
     protected AbstractTextureManager() {
         directoryMonitors = new ArrayList<>();
         rootDirectories = new ArrayList<>();
-        textures = new HashMap<>();
+        textures = new ConcurrentHashMap<>();
         progressMonitor = new ProgressMonitor();
         directoriesLoaded = new ArrayList<>();
+        directoriesOnDemand = new ArrayList<>();
+        graphicsRequests = new ConcurrentLinkedQueue<>();
     }
 
     @Override
@@ -112,6 +193,7 @@ public abstract class AbstractTextureManager<T> implements TextureManager {
         }
 
         loadingStarted = true;
+        loadingStartTime = System.nanoTime();
         loadingTasks = new ConcurrentLinkedDeque<>();
         updateTasks = new ConcurrentLinkedQueue<>();
 
@@ -126,7 +208,8 @@ public abstract class AbstractTextureManager<T> implements TextureManager {
         parserFactory.setValidating(false);
 
         // Loading starts here. Firing up the executor.
-        loadingExecutor = Executors.newFixedThreadPool(2, new PoolThreadFactory("TextureLoading", false));
+        int threads = Math.max(2, Runtime.getRuntime().availableProcessors());
+        loadingExecutor = Executors.newFixedThreadPool(threads, new PoolThreadFactory("TextureLoading", false));
         int directoryCount = rootDirectories.size();
         for (int i = 0; i < directoryCount; i++) {
             if (directoriesLoaded.get(i)) {
@@ -135,7 +218,7 @@ public abstract class AbstractTextureManager<T> implements TextureManager {
             String directoryName = rootDirectories.get(i);
             TextureAtlasListXmlLoadingTask<T> task =
                     new TextureAtlasListXmlLoadingTask<>(parserFactory, directoryName, this,
-                            directoryMonitors.get(i), loadingExecutor);
+                            directoryMonitors.get(i), loadingExecutor, getResidency(i));
             loadingExecutor.execute(task);
             loadingTasks.addFirst(task);
             directoriesLoaded.set(i, Boolean.TRUE);
@@ -143,22 +226,128 @@ public abstract class AbstractTextureManager<T> implements TextureManager {
     }
 
     public void update() {
-        if (isLoadingDone()) {
-            return;
+        long deadline = System.nanoTime() + loadingFrameBudget;
+        graphicsThread = Thread.currentThread();
+
+        FutureTask<Texture> request = graphicsRequests.poll();
+        while (request != null) {
+            request.run();
+            request = graphicsRequests.poll();
         }
-        if (updateTasks == null) {
-            return;
+
+        if (!isLoadingDone() && (updateTasks != null)) {
+            // atlases are decoded in parallel, so the atlases are transferred in the order their decoding finished
+            Iterator<TextureAtlasFinalizeTask<T>> taskItr = updateTasks.iterator();
+            while (taskItr.hasNext() && (System.nanoTime() < deadline)) {
+                TextureAtlasFinalizeTask<T> task = taskItr.next();
+                if (task.isReady()) {
+                    taskItr.remove();
+                    task.run();
+                }
+            }
+        }
+
+        if (residency != null) {
+            residency.update(deadline);
+        }
+    }
+
+    @Override
+    public void setResidencyBudget(long bytes) {
+        if (bytes < 1) {
+            throw new IllegalArgumentException("The residency budget has to be positive.");
+        }
+        residencyBudget = bytes;
+        if (residency != null) {
+            residency.setBudget(bytes);
+        }
+    }
+
+    /**
+     * Get the residency that keeps track of the atlases loaded on demand.
+     *
+     * @return the residency or {@code null} in case no directory is loaded on demand
+     */
+    @Nullable
+    public TextureAtlasResidency<T> getResidency() {
+        return residency;
+    }
+
+    /**
+     * Get the residency for the atlases of a directory.
+     *
+     * @param directoryIndex the index of the directory
+     * @return the residency or {@code null} in case the atlases of the directory are loaded right away
+     */
+    @Nullable
+    private TextureAtlasResidency<T> getResidency(int directoryIndex) {
+        if (!directoriesOnDemand.get(directoryIndex)) {
+            return null;
         }
+        if (residency == null) {
+            residency = new TextureAtlasResidency<>(this);
+            residency.setBudget(residencyBudget);
+        }
+        return residency;
+    }
 
-        long startTime = System.currentTimeMillis();
+    @Override
+    public void setLoadingFrameBudget(int milliseconds) {
+        if (milliseconds < 1) {
+            throw new IllegalArgumentException("The frame budget has to be at least one millisecond.");
+        }
+        loadingFrameBudget = TimeUnit.MILLISECONDS.toNanos(milliseconds);
+    }
 
-        do {
-            Runnable task = updateTasks.poll();
-            if (task == null) {
-                return;
+    @Override
+    public void setLoadingMemoryBudget(long bytes) {
+        if (bytes < 1) {
+            throw new IllegalArgumentException("The memory budget has to be positive.");
+        }
+        synchronized (loadingMemoryLock) {
+            loadingMemoryBudget = bytes;
+            loadingMemoryLock.notifyAll();
+        }
+    }
+
+    /**
+     * Wait until the memory budget allows decoding another texture atlas. The budget is exceeded by at most one
+     * atlas per loading thread, as the size of a atlas is only known once its decoded.
+     *
+     * @throws InterruptedException in case the thread is interrupted while waiting
+     */
+    void awaitLoadingMemory() throws InterruptedException {
+        synchronized (loadingMemoryLock) {
+            while (loadingMemoryUsed >= loadingMemoryBudget) {
+                loadingMemoryLock.wait();
             }
-            task.run();
-        } while ((System.currentTimeMillis() - startTime) < 100);
+        }
+    }
+
+    /**
+     * Add decoded texture data to the memory budget.
+     *
+     * @param bytes the size of the texture data
+     */
+    void acquireLoadingMemory(long bytes) {
+        synchronized (loadingMemoryLock) {
+            loadingMemoryUsed += bytes;
+        }
+    }
+
+    /**
+     * Remove texture data that was transferred to the graphics card from the memory budget.
+     *
+     * @param bytes the size of the texture data
+     */
+    void releaseLoadingMemory(long bytes) {
+        if (bytes == 0) {
+            return;
+        }
+        synchronized (loadingMemoryLock) {
+            loadingMemoryUsed -= bytes;
+            loadingMemoryLock.notifyAll();
+        }
     }
 
     void addLoadingTask(@Nonnull TextureAtlasTask task) {
@@ -167,7 +356,7 @@ public abstract class AbstractTextureManager<T> implements TextureManager {
         }
     }
 
-    void addUpdateTask(@Nonnull Runnable task) {
+    void addUpdateTask(@Nonnull TextureAtlasFinalizeTask<T> task) {
         if (updateTasks != null) {
             updateTasks.add(task);
         }
@@ -213,8 +402,53 @@ public abstract class AbstractTextureManager<T> implements TextureManager {
     @Nullable
     protected abstract T loadTextureData(@Nonnull String textureName);
 
+    /**
+     * Get the amount of memory occupied by texture data. This is used to keep the memory used during the loading
+     * within the budget.
+     *
+     * @param textureData the texture data
+     * @return the size of the texture data in bytes
+     */
+    protected abstract long getTextureDataSize(@Nonnull T textureData);
+
+    /**
+     * Check if the backend is able to load texture atlases on demand. In case it is not, directories that are
+     * supposed to be load on demand are loaded right away.
+     *
+     * @return {@code true} in case {@link #createResidentTexture(TextureAtlasResidency.Sprite)} is implemented
+     */
+    protected boolean isResidencySupported() {
+        return false;
+    }
+
+    /**
+     * Create the texture of a sprite on a atlas that is loaded on demand.
+     *
+     * @param sprite the sprite
+     * @return the texture that displays a placeholder until the atlas is loaded
+     */
+    @Nonnull
+    protected ResidentTexture createResidentTexture(@Nonnull TextureAtlasResidency.Sprite sprite) {
+        throw new UnsupportedOperationException("Loading texture atlases on demand is not supported.");
+    }
+
+    /**
+     * Release the resources of a texture atlas that was evicted.
+     *
+     * @param texture the texture of the atlas
+     */
+    protected void disposeTexture(@Nonnull Texture texture) {
+        texture.dispose();
+    }
+
     @Override
     public final void addTextureDirectory(@Nonnull String directory) {
+        addTextureDirectory(directory, false);
+    }
+
+    @Override
+    public final void addTextureDirectory(@Nonnull String directory, boolean onDemand) {
+        directoriesOnDemand.add(onDemand && isResidencySupported());
         rootDirectories.add(directory);
         ProgressMonitor dirProgressMonitor = new ProgressMonitor();
         directoryMonitors.add(dirProgressMonitor);
@@ -280,6 +514,21 @@ public abstract class AbstractTextureManager<T> implements TextureManager {
             return loadedTexture;
         }
 
+        // Checking if the texture is located on a atlas that is loaded on demand.
+        if ((residency != null) && directoriesOnDemand.get(directoryIndex)) {
+            @Nullable Texture residentTexture = residency.getTexture(cleanName);
+            if (residentTexture != null) {
+                textures.put(cleanName, residentTexture);
+                return residentTexture;
+            }
+        }
+
+        // Everything past this point may create textures, so other threads have to hand the request over.
+        Thread currentGraphicsThread = graphicsThread;
+        if ((currentGraphicsThread != null) && (currentGraphicsThread != Thread.currentThread())) {
+            return getTextureOnGraphicsThread(directoryIndex, name);
+        }
+
         // Checking if the texture is located on a separated file.
         @Nullable T preLoadTextureData = loadTextureData(cleanName + ".png");
         if (preLoadTextureData != null) {
@@ -308,7 +557,7 @@ public abstract class AbstractTextureManager<T> implements TextureManager {
 
             TextureAtlasListXmlLoadingTask<T> task =
                     new TextureAtlasListXmlLoadingTask<>(parserFactory, directoryName, this,
-                            directoryMonitors.get(directoryIndex), null);
+                            directoryMonitors.get(directoryIndex), null, getResidency(directoryIndex));
             if (loadingTasks == null) {
                 loadingTasks = new ConcurrentLinkedDeque<>();
                 updateTasks = new ConcurrentLinkedQueue<>();
@@ -325,6 +574,12 @@ public abstract class AbstractTextureManager<T> implements TextureManager {
 
             log.trace("Loading of directory {} is done.", directoryName);
             Texture result = textures.get(cleanName);
+            if ((result == null) && (residency != null) && directoriesOnDemand.get(directoryIndex)) {
+                result = residency.getTexture(cleanName);
+                if (result != null) {
+                    textures.put(cleanName, result);
+                }
+            }
             if (result == null) {
                 log.error("Failed to load texture: {} from directory: {}", cleanName, directoryName);
             }
@@ -334,6 +589,29 @@ public abstract class AbstractTextureManager<T> implements TextureManager {
         return null;
     }
 
+    /**
+     * Request a texture from the graphics thread and wait until it is resolved.
+     *
+     * @param directoryIndex the index of the directory of the texture
+     * @param name the name of the texture
+     * @return the texture or {@code null} in case it does not exist
+     */
+    @Nullable
+    private Texture getTextureOnGraphicsThread(int directoryIndex, @Nonnull String name) {
+        FutureTask<Texture> request = new FutureTask<>(() -> getTexture(directoryIndex, name));
+        graphicsRequests.offer(request);
+        try {
+            return request.get();
+        } catch (InterruptedException e) {
+            request.cancel(false);
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException e) {
+            log.error("Failed to load texture: {}", name, e.getCause());
+            return null;
+        }
+    }
+
     @Nullable
     @Override
     public Texture getTexture(@Nonnull String directory, @Nonnull String name) {
@@ -365,6 +643,8 @@ public abstract class AbstractTextureManager<T> implements TextureManager {
 
         if (loadingExecutor != null) {
             loadingExecutor.shutdown();
+            log.info("Loading the texture atlases took {} ms",
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - loadingStartTime));
         }
         loadingExecutor = null;
         loadingTasks = null;
@@ -0,0 +1,38 @@
+/*
+ * This file is part of the Illarion project.
+ *
+ * Copyright © 2016 - Illarion e.V.
+ *
+ * Illarion is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Illarion is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ */
+package org.illarion.engine.backend.shared;
+
+import org.illarion.engine.graphic.Texture;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+/**
+ * This is a texture of a sprite on a texture atlas that is loaded on demand. The texture remains valid while the
+ * atlas is loaded and evicted again. As long as the atlas is not loaded, a transparent placeholder is displayed.
+ *
+ * @author Martin Karing &lt;nitram@illarion.org&gt;
+ */
+public interface ResidentTexture extends Texture {
+    /**
+     * Set the atlas that currently provides the image of this texture. This is only called by the thread that
+     * renders the textures.
+     *
+     * @param atlasTexture the texture of the atlas or {@code null} to display the placeholder
+     * @param sprite the location of the sprite on the atlas
+     */
+    void setSource(@Nullable Texture atlasTexture, @Nonnull TextureAtlasResidency.Sprite sprite);
+}
@@ -26,11 +26,12 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
 
 /**
  * @author Martin Karing &lt;nitram@illarion.org&gt;
  */
-public class TextureAtlasFinalizeTask<T> implements Runnable, TextureAtlasTask {
+public class TextureAtlasFinalizeTask<T> implements Runnable, TextureAtlasTask, TextureAtlasSpriteSink {
     /**
      * The logger that provides the logging output of this class.
      */
@@ -47,6 +48,8 @@ public class TextureAtlasFinalizeTask<T> implements Runnable, TextureAtlasTask {
     @Nonnull
     private final FutureTask<T> preLoadTask;
     @Nonnull
+    private final TextureAtlasPreLoadTask<T> preLoadCallable;
+    @Nonnull
     private final AbstractTextureManager<T> textureManager;
     @Nonnull
     private final String atlasName;
@@ -59,11 +62,13 @@ public class TextureAtlasFinalizeTask<T> implements Runnable, TextureAtlasTask {
 
     public TextureAtlasFinalizeTask(
             @Nonnull FutureTask<T> preLoadTask,
+            @Nonnull TextureAtlasPreLoadTask<T> preLoadCallable,
             @Nonnull String atlasName,
             @Nonnull AbstractTextureManager<T> textureManager,
             @Nonnull ProgressMonitor monitor,
             float progressToAdd) {
         this.preLoadTask = preLoadTask;
+        this.preLoadCallable = preLoadCallable;
         this.atlasName = atlasName;
         this.textureManager = textureManager;
         this.monitor = monitor;
@@ -72,6 +77,7 @@ public class TextureAtlasFinalizeTask<T> implements Runnable, TextureAtlasTask {
         done = false;
     }
 
+    @Override
     public void addSprite(
             @Nonnull String name, int posX, int posY, int width, int height) {
         SpriteData data = new SpriteData();
@@ -88,6 +94,15 @@ public class TextureAtlasFinalizeTask<T> implements Runnable, TextureAtlasTask {
         return done;
     }
 
+    /**
+     * Check if the texture data is decoded, so this task can run without blocking.
+     *
+     * @return {@code true} in case the task is ready to run
+     */
+    public boolean isReady() {
+        return preLoadTask.isDone();
+    }
+
     @Override
     public void run() {
         try {
@@ -95,6 +110,7 @@ public class TextureAtlasFinalizeTask<T> implements Runnable, TextureAtlasTask {
             if (preLoadData == null) {
                 LOGGER.warn("Failed to load texture data for atlas: {}", atlasName);
             } else {
+                long uploadStart = System.nanoTime();
                 Texture atlasTexture = textureManager.loadTexture(atlasName, preLoadData);
                 if (atlasTexture != null) {
                     textureManager.addTexture(atlasName, atlasTexture);
@@ -104,6 +120,9 @@ public class TextureAtlasFinalizeTask<T> implements Runnable, TextureAtlasTask {
                         textureManager.addTexture(data.spriteName, spriteTexture);
                     }
                 }
+                LOGGER.debug("Texture atlas {} with {} sprites decoded in {} ms and uploaded in {} ms", atlasName,
+                        spriteList.size(), TimeUnit.NANOSECONDS.toMillis(preLoadCallable.getDecodeTime()),
+                        TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - uploadStart));
             }
             monitor.setProgress(monitor.getProgress() + progressToAdd);
         } catch (@Nonnull InterruptedException e) {
@@ -111,6 +130,7 @@ public class TextureAtlasFinalizeTask<T> implements Runnable, TextureAtlasTask {
         } catch (@Nonnull ExecutionException e) {
             LOGGER.error("Failure while loading texture data.", e);
         } finally {
+            textureManager.releaseLoadingMemory(preLoadCallable.getBudgetedSize());
             done = true;
         }
     }
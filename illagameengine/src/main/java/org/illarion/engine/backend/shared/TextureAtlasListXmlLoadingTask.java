@@ -72,6 +72,9 @@ public class TextureAtlasListXmlLoadingTask<T> implements Runnable, TextureAtlas
     @Nullable
     private final Executor taskExecutor;
 
+    @Nullable
+    private final TextureAtlasResidency<T> residency;
+
     /**
      * Stores if the task is done.
      */
@@ -92,12 +95,14 @@ public class TextureAtlasListXmlLoadingTask<T> implements Runnable, TextureAtlas
             @Nonnull String atlasName,
             @Nonnull AbstractTextureManager<T> textureManager,
             @Nonnull ProgressMonitor progressMonitor,
-            @Nullable Executor taskExecutor) {
+            @Nullable Executor taskExecutor,
+            @Nullable TextureAtlasResidency<T> residency) {
         this.parserFactory = parserFactory;
         this.atlasName = atlasName;
         this.textureManager = textureManager;
         this.progressMonitor = progressMonitor;
         this.taskExecutor = taskExecutor;
+        this.residency = residency;
         done = false;
         progressMonitor.setProgress(0.f);
     }
@@ -120,6 +125,7 @@ public class TextureAtlasListXmlLoadingTask<T> implements Runnable, TextureAtlas
             int currentEvent = parser.nextTag();
             int expectedAtlasCount = 0;
             @Nullable TextureAtlasFinalizeTask<T> currentTextureTask = null;
+            @Nullable TextureAtlasSpriteSink currentSpriteSink = null;
             while (currentEvent != XmlPullParser.END_DOCUMENT) {
                 if (currentEvent == XmlPullParser.START_TAG) {
                     String tagName = parser.getName();
@@ -132,9 +138,13 @@ public class TextureAtlasListXmlLoadingTask<T> implements Runnable, TextureAtlas
                             break;
                         case "atlas":
                             @Nullable String currentAtlasName = getAtlasTextureName(parser);
-                            if (currentAtlasName != null) {
-                                FutureTask<T> preLoadTask = new FutureTask<>(
-                                        new TextureAtlasPreLoadTask<>(textureManager, currentAtlasName));
+                            if ((currentAtlasName != null) && (residency != null)) {
+                                // the atlas is loaded once it is used for the first time
+                                currentSpriteSink = residency.createAtlas(currentAtlasName);
+                            } else if (currentAtlasName != null) {
+                                TextureAtlasPreLoadTask<T> preLoadCallable = new TextureAtlasPreLoadTask<>(
+                                        textureManager, currentAtlasName, taskExecutor != null);
+                                FutureTask<T> preLoadTask = new FutureTask<>(preLoadCallable);
                                 if (taskExecutor == null) {
                                     preLoadTask.run();
                                 } else {
@@ -143,20 +153,23 @@ public class TextureAtlasListXmlLoadingTask<T> implements Runnable, TextureAtlas
 
                                 float progressToAdd = (expectedAtlasCount == 0) ? 0.f : (1.f /
                                         expectedAtlasCount);
-                                currentTextureTask = new TextureAtlasFinalizeTask<>(preLoadTask, currentAtlasName,
+                                currentTextureTask = new TextureAtlasFinalizeTask<>(preLoadTask, preLoadCallable,
+                                                                                    currentAtlasName,
                                                                                     textureManager, progressMonitor,
                                                                                     progressToAdd);
+                                currentSpriteSink = currentTextureTask;
                             }
                             break;
                         case "sprite":
-                            if (currentTextureTask != null) {
-                                transferSpriteData(parser, currentTextureTask);
+                            if (currentSpriteSink != null) {
+                                transferSpriteData(parser, currentSpriteSink);
                             }
                             break;
                     }
                 } else if (currentEvent == XmlPullParser.END_TAG) {
                     String tagName = parser.getName();
                     if ("atlas".equals(tagName)) {
+                        currentSpriteSink = null;
                         if (currentTextureTask != null) {
                             textureManager.addUpdateTask(currentTextureTask);
                             textureManager.addLoadingTask(currentTextureTask);
@@ -215,7 +228,7 @@ public class TextureAtlasListXmlLoadingTask<T> implements Runnable, TextureAtlas
     }
 
     private void transferSpriteData(
-            @Nonnull XmlPullParser parser, @Nonnull TextureAtlasFinalizeTask<T> task) {
+            @Nonnull XmlPullParser parser, @Nonnull TextureAtlasSpriteSink task) {
         @Nullable String name = null;
         int posX = -1;
         int posY = -1;
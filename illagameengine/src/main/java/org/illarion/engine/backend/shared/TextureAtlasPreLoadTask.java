@@ -37,21 +37,70 @@ public class TextureAtlasPreLoadTask<V> implements Callable<V> {
     @Nonnull
     private final String textureName;
 
+    /**
+     * In case this flag is {@code true}, the task waits for the memory budget of the texture manager before it
+     * starts decoding and accounts the decoded data to the budget.
+     */
+    private final boolean useMemoryBudget;
+
+    /**
+     * The time in nanoseconds that was spend decoding the texture data.
+     */
+    private volatile long decodeTime;
+
+    /**
+     * The size in bytes of the decoded texture data that was accounted to the memory budget.
+     */
+    private volatile long budgetedSize;
+
     /**
      * Create a new pre-load texture atlas task.
      *
      * @param textureManager the task manager used to load the texture data
      * @param textureName the name of the texture atlas
+     * @param useMemoryBudget {@code true} in case the task is supposed to respect the memory budget, this must not
+     * be used in case the task is executed by the thread that transfers the textures
      */
     public TextureAtlasPreLoadTask(
-            @Nonnull AbstractTextureManager<V> textureManager, @Nonnull String textureName) {
+            @Nonnull AbstractTextureManager<V> textureManager, @Nonnull String textureName,
+            boolean useMemoryBudget) {
         this.textureManager = textureManager;
         this.textureName = textureName;
+        this.useMemoryBudget = useMemoryBudget;
     }
 
     @Nullable
     @Override
     public V call() throws Exception {
-        return textureManager.loadTextureData(textureName + ".png");
+        if (useMemoryBudget) {
+            textureManager.awaitLoadingMemory();
+        }
+        long start = System.nanoTime();
+        V data = textureManager.loadTextureData(textureName + ".png");
+        decodeTime = System.nanoTime() - start;
+        if (useMemoryBudget && (data != null)) {
+            long size = textureManager.getTextureDataSize(data);
+            textureManager.acquireLoadingMemory(size);
+            budgetedSize = size;
+        }
+        return data;
+    }
+
+    /**
+     * Get the time that was spend decoding the texture data.
+     *
+     * @return the decoding time in nanoseconds
+     */
+    public long getDecodeTime() {
+        return decodeTime;
+    }
+
+    /**
+     * Get the amount of memory that was accounted to the memory budget of the texture manager.
+     *
+     * @return the size of the texture data in bytes
+     */
+    public long getBudgetedSize() {
+        return budgetedSize;
     }
 }
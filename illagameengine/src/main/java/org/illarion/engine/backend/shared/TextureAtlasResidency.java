@@ -0,0 +1,515 @@
+/*
+ * This file is part of the Illarion project.
+ *
+ * Copyright © 2016 - Illarion e.V.
+ *
+ * Illarion is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Illarion is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ */
+package org.illarion.engine.backend.shared;
+
+import illarion.common.util.PoolThreadFactory;
+import org.illarion.engine.graphic.Texture;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.GuardedBy;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This class keeps track of the texture atlases that are loaded on demand. The textures of the sprites on those
+ * atlases are handed out right away. The atlas itself is loaded once one of its sprites is rendered and it is
+ * evicted again, once the atlases exceed the memory budget and the atlas was not used for the longest time.
+ * <p/>
+ * The textures may be requested from any thread. Everything else is done by the thread that renders the textures.
+ *
+ * @author Martin Karing &lt;nitram@illarion.org&gt;
+ */
+public final class TextureAtlasResidency<T> {
+    /**
+     * The logger that provides the logging output of this class.
+     */
+    @Nonnull
+    private static final Logger log = LoggerFactory.getLogger(TextureAtlasResidency.class);
+
+    /**
+     * The states a atlas passes while it is loaded and evicted.
+     */
+    private enum AtlasState {
+        /**
+         * The atlas is not loaded.
+         */
+        Unloaded,
+
+        /**
+         * One of the sprites of the atlas was rendered, so the atlas is supposed to be loaded.
+         */
+        Requested,
+
+        /**
+         * The data of the atlas is decoded.
+         */
+        Loading,
+
+        /**
+         * The atlas is loaded to the graphics card.
+         */
+        Resident,
+
+        /**
+         * Loading the atlas failed. It is not tried again.
+         */
+        Failed
+    }
+
+    /**
+     * A texture atlas that is loaded on demand.
+     */
+    public static final class Atlas implements TextureAtlasSpriteSink {
+        /**
+         * The residency that maintains this atlas.
+         */
+        @Nonnull
+        private final TextureAtlasResidency<?> residency;
+
+        /**
+         * The name of the atlas.
+         */
+        @Nonnull
+        private final String name;
+
+        /**
+         * The sprites located on this atlas.
+         */
+        @Nonnull
+        private final List<Sprite> sprites;
+
+        /**
+         * The current state of the atlas.
+         */
+        @Nonnull
+        private volatile AtlasState state;
+
+        /**
+         * The texture data that is decoded or {@code null} in case the atlas is not loading.
+         */
+        @Nullable
+        private Future<?> pendingData;
+
+        /**
+         * The texture of the atlas or {@code null} in case the atlas is not resident.
+         */
+        @Nullable
+        private Texture texture;
+
+        /**
+         * The size of the atlas in bytes.
+         */
+        private long size;
+
+        /**
+         * The frame when a sprite of this atlas was rendered the last time.
+         */
+        private long lastUsedFrame;
+
+        /**
+         * The time stamp in nanoseconds when the loading of the atlas was requested.
+         */
+        private long requestTime;
+
+        Atlas(@Nonnull TextureAtlasResidency<?> residency, @Nonnull String name) {
+            this.residency = residency;
+            this.name = name;
+            sprites = new ArrayList<>();
+            state = AtlasState.Unloaded;
+        }
+
+        @Override
+        public void addSprite(@Nonnull String name, int posX, int posY, int width, int height) {
+            sprites.add(new Sprite(this, posX, posY, width, height));
+            residency.registerSprite(name, sprites.get(sprites.size() - 1));
+        }
+    }
+
+    /**
+     * A sprite on a texture atlas that is loaded on demand.
+     */
+    public static final class Sprite {
+        /**
+         * The atlas the sprite is located on.
+         */
+        @Nonnull
+        private final Atlas atlas;
+
+        /**
+         * The x coordinate of the sprite on the atlas.
+         */
+        private final int posX;
+
+        /**
+         * The y coordinate of the sprite on the atlas.
+         */
+        private final int posY;
+
+        /**
+         * The width of the sprite.
+         */
+        private final int width;
+
+        /**
+         * The height of the sprite.
+         */
+        private final int height;
+
+        /**
+         * The texture of this sprite or {@code null} in case it was not requested yet.
+         */
+        @Nullable
+        private ResidentTexture texture;
+
+        Sprite(@Nonnull Atlas atlas, int posX, int posY, int width, int height) {
+            this.atlas = atlas;
+            this.posX = posX;
+            this.posY = posY;
+            this.width = width;
+            this.height = height;
+        }
+
+        public int getPosX() {
+            return posX;
+        }
+
+        public int getPosY() {
+            return posY;
+        }
+
+        public int getWidth() {
+            return width;
+        }
+
+        public int getHeight() {
+            return height;
+        }
+
+        /**
+         * This has to be called every time the texture of this sprite is rendered. In case the atlas is not
+         * resident yet, this requests the atlas to be loaded.
+         */
+        public void markUsed() {
+            atlas.residency.markUsed(atlas);
+        }
+    }
+
+    /**
+     * The texture manager that loads the texture data.
+     */
+    @Nonnull
+    private final AbstractTextureManager<T> textureManager;
+
+    /**
+     * The sprites of all atlases that are loaded on demand.
+     */
+    @Nonnull
+    @GuardedBy("this")
+    private final Map<String, Sprite> sprites;
+
+    /**
+     * The atlases that were requested since the last update.
+     */
+    @Nonnull
+    private final Queue<Atlas> requestedAtlases;
+
+    /**
+     * The atlases that are currently decoded.
+     */
+    @Nonnull
+    private final List<Atlas> loadingAtlases;
+
+    /**
+     * The atlases that are currently resident.
+     */
+    @Nonnull
+    private final List<Atlas> residentAtlases;
+
+    /**
+     * The executor that decodes the atlases.
+     */
+    @Nullable
+    private ExecutorService decodeExecutor;
+
+    /**
+     * The amount of memory in bytes the resident atlases may occupy.
+     */
+    private long budget;
+
+    /**
+     * The amount of memory in bytes the resident atlases currently occupy.
+     */
+    private long residentBytes;
+
+    /**
+     * The frame counter that is increased with every update.
+     */
+    private long frame;
+
+    /**
+     * The amount of times a sprite was rendered while its atlas was resident.
+     */
+    private long hitCount;
+
+    /**
+     * The amount of times a sprite was rendered while its atlas was not resident.
+     */
+    private long missCount;
+
+    /**
+     * The amount of atlases that were loaded.
+     */
+    private long loadCount;
+
+    /**
+     * The amount of atlases that were evicted.
+     */
+    private long evictionCount;
+
+    TextureAtlasResidency(@Nonnull AbstractTextureManager<T> textureManager) {
+        this.textureManager = textureManager;
+        sprites = new HashMap<>();
+        requestedAtlases = new ArrayDeque<>();
+        loadingAtlases = new ArrayList<>();
+        residentAtlases = new ArrayList<>();
+        budget = Long.MAX_VALUE;
+    }
+
+    /**
+     * Create a new atlas that is loaded on demand.
+     *
+     * @param name the name of the atlas
+     * @return the atlas that receives the sprites
+     */
+    @Nonnull
+    Atlas createAtlas(@Nonnull String name) {
+        return new Atlas(this, name);
+    }
+
+    private synchronized void registerSprite(@Nonnull String name, @Nonnull Sprite sprite) {
+        sprites.put(name, sprite);
+    }
+
+    /**
+     * Set the amount of memory the resident atlases may occupy.
+     *
+     * @param bytes the budget in bytes
+     */
+    void setBudget(long bytes) {
+        budget = bytes;
+    }
+
+    /**
+     * Get the texture of a sprite located on a atlas that is loaded on demand.
+     *
+     * @param name the name of the sprite
+     * @return the texture or {@code null} in case no atlas contains a sprite with this name
+     */
+    @Nullable
+    synchronized Texture getTexture(@Nonnull String name) {
+        Sprite sprite = sprites.get(name);
+        if (sprite == null) {
+            return null;
+        }
+        if (sprite.texture == null) {
+            ResidentTexture texture = textureManager.createResidentTexture(sprite);
+            if (sprite.atlas.state == AtlasState.Resident) {
+                texture.setSource(sprite.atlas.texture, sprite);
+            }
+            sprite.texture = texture;
+        }
+        return sprite.texture;
+    }
+
+    private void markUsed(@Nonnull Atlas atlas) {
+        atlas.lastUsedFrame = frame;
+        if (atlas.state == AtlasState.Resident) {
+            hitCount++;
+        } else {
+            missCount++;
+            if (atlas.state == AtlasState.Unloaded) {
+                atlas.state = AtlasState.Requested;
+                atlas.requestTime = System.nanoTime();
+                requestedAtlases.add(atlas);
+            }
+        }
+    }
+
+    /**
+     * Start decoding the requested atlases, upload the decoded atlases and evict atlases in case the budget is
+     * exceeded. This has to be called once every frame.
+     *
+     * @param deadline the time stamp in nanoseconds when the uploading has to stop for this frame
+     */
+    void update(long deadline) {
+        frame++;
+
+        while (!requestedAtlases.isEmpty()) {
+            Atlas atlas = requestedAtlases.remove();
+            atlas.pendingData = getDecodeExecutor().submit(() -> textureManager.loadTextureData(atlas.name + ".png"));
+            atlas.state = AtlasState.Loading;
+            loadingAtlases.add(atlas);
+        }
+
+        Iterator<Atlas> loadingItr = loadingAtlases.iterator();
+        while (loadingItr.hasNext() && (System.nanoTime() < deadline)) {
+            Atlas atlas = loadingItr.next();
+            if ((atlas.pendingData != null) && atlas.pendingData.isDone()) {
+                loadingItr.remove();
+                upload(atlas);
+            }
+        }
+
+        evictOverBudget();
+    }
+
+    @Nonnull
+    private ExecutorService getDecodeExecutor() {
+        if (decodeExecutor == null) {
+            int threads = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+            decodeExecutor = Executors.newFixedThreadPool(threads, new PoolThreadFactory("TextureResidency", true));
+        }
+        return decodeExecutor;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void upload(@Nonnull Atlas atlas) {
+        assert atlas.pendingData != null;
+        @Nullable T data = null;
+        try {
+            data = (T) atlas.pendingData.get();
+        } catch (@Nonnull ExecutionException e) {
+            log.error("Failure while loading texture data for atlas: {}", atlas.name, e);
+        } catch (@Nonnull InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        atlas.pendingData = null;
+
+        @Nullable Texture texture = (data == null) ? null : textureManager.loadTexture(atlas.name, data);
+        if ((data == null) || (texture == null)) {
+            log.warn("Failed to load texture data for atlas: {}", atlas.name);
+            atlas.state = AtlasState.Failed;
+            return;
+        }
+
+        synchronized (this) {
+            atlas.texture = texture;
+            atlas.size = textureManager.getTextureDataSize(data);
+            atlas.state = AtlasState.Resident;
+            for (Sprite sprite : atlas.sprites) {
+                if (sprite.texture != null) {
+                    sprite.texture.setSource(texture, sprite);
+                }
+            }
+        }
+        residentAtlases.add(atlas);
+        residentBytes += atlas.size;
+        loadCount++;
+        log.debug("Texture atlas {} loaded on demand after {} ms, {} KiB resident", atlas.name,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - atlas.requestTime), residentBytes / 1024);
+    }
+
+    private void evictOverBudget() {
+        if (residentBytes <= budget) {
+            return;
+        }
+
+        residentAtlases.sort((a1, a2) -> Long.compare(a1.lastUsedFrame, a2.lastUsedFrame));
+        Iterator<Atlas> residentItr = residentAtlases.iterator();
+        while (residentItr.hasNext() && (residentBytes > budget)) {
+            Atlas atlas = residentItr.next();
+            // atlases that were rendered in the last frame are still visible
+            if (atlas.lastUsedFrame >= (frame - 1)) {
+                break;
+            }
+            residentItr.remove();
+            evict(atlas);
+        }
+    }
+
+    private void evict(@Nonnull Atlas atlas) {
+        @Nullable Texture texture;
+        synchronized (this) {
+            for (Sprite sprite : atlas.sprites) {
+                if (sprite.texture != null) {
+                    sprite.texture.setSource(null, sprite);
+                }
+            }
+            texture = atlas.texture;
+            atlas.texture = null;
+            atlas.state = AtlasState.Unloaded;
+        }
+        if (texture != null) {
+            textureManager.disposeTexture(texture);
+        }
+        residentBytes -= atlas.size;
+        evictionCount++;
+        log.debug("Evicted texture atlas {}. Hits: {} Misses: {} Loads: {} Evictions: {} Resident: {} KiB",
+                atlas.name, hitCount, missCount, loadCount, evictionCount, residentBytes / 1024);
+    }
+
+    /**
+     * Get the amount of times a sprite was rendered while its atlas was resident.
+     *
+     * @return the hit count
+     */
+    public long getHitCount() {
+        return hitCount;
+    }
+
+    /**
+     * Get the amount of times a sprite was rendered while its atlas was not resident.
+     *
+     * @return the miss count
+     */
+    public long getMissCount() {
+        return missCount;
+    }
+
+    /**
+     * Get the amount of atlases that were loaded on demand.
+     *
+     * @return the load count
+     */
+    public long getLoadCount() {
+        return loadCount;
+    }
+
+    /**
+     * Get the amount of atlases that were evicted.
+     *
+     * @return the eviction count
+     */
+    public long getEvictionCount() {
+        return evictionCount;
+    }
+
+    /**
+     * Get the amount of memory the resident atlases currently occupy.
+     *
+     * @return the size of the resident atlases in bytes
+     */
+    public long getResidentBytes() {
+        return residentBytes;
+    }
+}
@@ -0,0 +1,37 @@
+/*
+ * This file is part of the Illarion project.
+ *
+ * Copyright © 2016 - Illarion e.V.
+ *
+ * Illarion is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Illarion is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ */
+package org.illarion.engine.backend.shared;
+
+import javax.annotation.Nonnull;
+
+/**
+ * This interface is implemented by the classes that receive the sprites of a texture atlas that are read from the
+ * atlas list.
+ *
+ * @author Martin Karing &lt;nitram@illarion.org&gt;
+ */
+interface TextureAtlasSpriteSink {
+    /**
+     * Add a sprite that is located on the atlas.
+     *
+     * @param name the name of the sprite
+     * @param posX the x coordinate of the sprite on the atlas
+     * @param posY the y coordinate of the sprite on the atlas
+     * @param width the width of the sprite
+     * @param height the height of the sprite
+     */
+    void addSprite(@Nonnull String name, int posX, int posY, int width, int height);
+}
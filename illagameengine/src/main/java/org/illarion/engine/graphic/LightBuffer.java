@@ -0,0 +1,229 @@
+/*
+ * This file is part of the Illarion project.
+ *
+ * Copyright © 2016 - Illarion e.V.
+ *
+ * Illarion is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Illarion is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ */
+package org.illarion.engine.graphic;
+
+import org.jetbrains.annotations.Contract;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.NotThreadSafe;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * This buffer stores the accumulated light of all light sources. The light is stored in chunks of 16 by 16 tiles on
+ * one level. Only chunks that are touched by at least one light source are stored. Each chunk holds the red, green
+ * and blue share of the light of each tile in a flat array.
+ * <p>
+ * Updating the buffer is done by one thread at a time. The chunks are rendered in parallel during the update. Reading
+ * the light of a tile is not allowed while the buffer is updated.
+ * </p>
+ *
+ * @author Martin Karing &lt;nitram@illarion.org&gt;
+ */
+@NotThreadSafe
+public final class LightBuffer {
+    /**
+     * The amount of bits used to address a tile inside a chunk along one axis.
+     */
+    private static final int CHUNK_BITS = 4;
+
+    /**
+     * The width and the height of a chunk in tiles.
+     */
+    static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+
+    /**
+     * The amount of values stored for each tile.
+     */
+    private static final int COMPONENTS = 3;
+
+    /**
+     * One chunk of the light buffer.
+     */
+    static final class Chunk {
+        /**
+         * The x coordinate of the first tile in this chunk.
+         */
+        final int originX;
+
+        /**
+         * The y coordinate of the first tile in this chunk.
+         */
+        final int originY;
+
+        /**
+         * The level of this chunk.
+         */
+        final int level;
+
+        /**
+         * The light values of the tiles in this chunk. The values are stored as red, green and blue value for each
+         * tile in the range of the integer color components.
+         */
+        @Nonnull
+        final float[] light;
+
+        /**
+         * The lights that touch this chunk.
+         */
+        @Nonnull
+        final List<LightSource> lights;
+
+        Chunk(int originX, int originY, int level) {
+            this.originX = originX;
+            this.originY = originY;
+            this.level = level;
+            light = new float[CHUNK_SIZE * CHUNK_SIZE * COMPONENTS];
+            lights = new ArrayList<>();
+        }
+
+        /**
+         * Add light to one tile of this chunk.
+         *
+         * @param x the x coordinate of the tile on the server map
+         * @param y the y coordinate of the tile on the server map
+         * @param red the red share of the light
+         * @param green the green share of the light
+         * @param blue the blue share of the light
+         */
+        void addLight(int x, int y, float red, float green, float blue) {
+            int index = getIndex(x - originX, y - originY);
+            light[index] += red;
+            light[index + 1] += green;
+            light[index + 2] += blue;
+        }
+
+        /**
+         * Calculate the light of this chunk from scratch using all lights that touch this chunk.
+         */
+        void render() {
+            Arrays.fill(light, 0.f);
+            for (LightSource source : lights) {
+                source.apply(this);
+            }
+        }
+    }
+
+    /**
+     * The chunks that are stored in this buffer. This map is only used while updating the buffer.
+     */
+    @Nonnull
+    private final Map<Long, Chunk> chunks = new HashMap<>();
+
+    /**
+     * The sorted keys of the chunks for the lookup of the light values.
+     */
+    @Nonnull
+    private long[] chunkKeys = new long[0];
+
+    /**
+     * The chunks in the same order as the {@link #chunkKeys}.
+     */
+    @Nonnull
+    private Chunk[] chunkValues = new Chunk[0];
+
+    /**
+     * Render all lights to this buffer. Chunks that are not touched by any of the lights anymore are dropped from the
+     * buffer, the arrays of the other chunks are reused.
+     *
+     * @param lights the lights to render
+     */
+    void update(@Nonnull Collection<LightSource> lights) {
+        chunks.values().forEach(chunk -> chunk.lights.clear());
+        for (LightSource source : lights) {
+            int x = source.getLocation().getX();
+            int y = source.getLocation().getY();
+            int z = source.getLocation().getZ();
+            int size = source.getSize();
+            for (int chunkX = (x - size) >> CHUNK_BITS; chunkX <= ((x + size) >> CHUNK_BITS); chunkX++) {
+                for (int chunkY = (y - size) >> CHUNK_BITS; chunkY <= ((y + size) >> CHUNK_BITS); chunkY++) {
+                    long key = getKey(chunkX, chunkY, z);
+                    Chunk chunk = chunks.get(key);
+                    if (chunk == null) {
+                        chunk = new Chunk(chunkX << CHUNK_BITS, chunkY << CHUNK_BITS, z);
+                        chunks.put(key, chunk);
+                    }
+                    chunk.lights.add(source);
+                }
+            }
+        }
+        chunks.values().removeIf(chunk -> chunk.lights.isEmpty());
+        chunks.values().parallelStream().forEach(Chunk::render);
+
+        long[] keys = new long[chunks.size()];
+        int index = 0;
+        for (Long key : chunks.keySet()) {
+            keys[index++] = key;
+        }
+        Arrays.sort(keys);
+        Chunk[] values = new Chunk[keys.length];
+        for (int i = 0; i < keys.length; i++) {
+            values[i] = chunks.get(keys[i]);
+        }
+        chunkKeys = keys;
+        chunkValues = values;
+    }
+
+    /**
+     * Get the amount of chunks that are currently stored in this buffer.
+     *
+     * @return the amount of chunks
+     */
+    @Contract(pure = true)
+    public int getChunkCount() {
+        return chunkValues.length;
+    }
+
+    /**
+     * Get the light on a tile. In case no light is applied to the tile, the color is set to black.
+     *
+     * @param x the x coordinate of the tile
+     * @param y the y coordinate of the tile
+     * @param z the z coordinate of the tile
+     * @param target the color that receives the light
+     * @return {@code true} in case there is light on the tile
+     */
+    public boolean getLight(int x, int y, int z, @Nonnull Color target) {
+        target.setAlpha(Color.MAX_INT_VALUE);
+        int chunkIndex = Arrays.binarySearch(chunkKeys, getKey(x >> CHUNK_BITS, y >> CHUNK_BITS, z));
+        if (chunkIndex < 0) {
+            target.setRed(0);
+            target.setGreen(0);
+            target.setBlue(0);
+            return false;
+        }
+        Chunk chunk = chunkValues[chunkIndex];
+        int index = getIndex(x - chunk.originX, y - chunk.originY);
+        target.setRed((int) chunk.light[index]);
+        target.setGreen((int) chunk.light[index + 1]);
+        target.setBlue((int) chunk.light[index + 2]);
+        return true;
+    }
+
+    @Contract(pure = true)
+    private static int getIndex(int localX, int localY) {
+        return ((localY << CHUNK_BITS) + localX) * COMPONENTS;
+    }
+
+    @Contract(pure = true)
+    private static long getKey(int chunkX, int chunkY, int z) {
+        return ((chunkX & 0xFFFFFFL) << 40) | ((chunkY & 0xFFFFFFL) << 16) | (z & 0xFFFFL);
+    }
+}
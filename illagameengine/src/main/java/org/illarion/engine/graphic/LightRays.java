@@ -18,11 +18,18 @@ package org.illarion.engine.graphic;
 import illarion.common.util.Bresenham;
 
 import javax.annotation.Nonnull;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 /**
  * This class stores a set of light rays that originate from a root location.
+ * <p>
+ * The nodes of the rays are numbered in depth first order. So all nodes that follow a node on the rays have a index
+ * between the index of the node and the end index of its sub tree. This allows light sources to store the results of
+ * each node in flat arrays and to trace only the parts of the rays again that cross a changed location.
+ * </p>
  *
  * @author Nop
  * @author Martin Karing &lt;nitram@illarion.org&gt;
@@ -39,6 +46,24 @@ final class LightRays {
      */
     private final int size;
 
+    /**
+     * All nodes of the rays ordered by their index.
+     */
+    @Nonnull
+    private final RayNode[] nodes;
+
+    /**
+     * The index after the last node of the sub tree of each node.
+     */
+    @Nonnull
+    private final int[] subtreeEnd;
+
+    /**
+     * The indices of the nodes that are located on each cell of the area covered by the rays.
+     */
+    @Nonnull
+    private final int[][] cellNodes;
+
     /**
      * The caches for the rays.
      */
@@ -77,6 +102,24 @@ final class LightRays {
             createRay(targetSize, i, bresenham);
             createRay(-targetSize, i + 1, bresenham);
         }
+
+        List<RayNode> nodeList = new ArrayList<>();
+        root.collect(nodeList);
+        nodes = nodeList.toArray(new RayNode[nodeList.size()]);
+
+        subtreeEnd = new int[nodes.length];
+        List<List<Integer>> cellNodeList = new ArrayList<>();
+        for (int i = 0; i < getCellCount(); i++) {
+            cellNodeList.add(new ArrayList<>());
+        }
+        for (RayNode node : nodes) {
+            subtreeEnd[node.getIndex()] = node.getSubtreeEnd();
+            cellNodeList.get(getCell(node.getPosX(), node.getPosY())).add(node.getIndex());
+        }
+        cellNodes = new int[cellNodeList.size()][];
+        for (int i = 0; i < cellNodes.length; i++) {
+            cellNodes[i] = cellNodeList.get(i).stream().mapToInt(Integer::intValue).toArray();
+        }
     }
 
     /**
@@ -91,6 +134,79 @@ final class LightRays {
         root.apply(light, 1.0f);
     }
 
+    /**
+     * Trace the rays starting from one node again.
+     *
+     * @param light the light source that receives the results
+     * @param nodeIndex the index of the node to start at
+     * @param intensity the intensity of the light that reaches the node
+     */
+    void apply(@Nonnull LightSource light, int nodeIndex, float intensity) {
+        nodes[nodeIndex].apply(light, intensity);
+    }
+
+    /**
+     * Get the amount of nodes on the rays.
+     *
+     * @return the amount of nodes
+     */
+    int getNodeCount() {
+        return nodes.length;
+    }
+
+    /**
+     * Get a node of the rays.
+     *
+     * @param index the index of the node
+     * @return the node
+     */
+    @Nonnull
+    RayNode getNode(int index) {
+        return nodes[index];
+    }
+
+    /**
+     * Get the index after the last node of the sub tree of a node.
+     *
+     * @param index the index of the node
+     * @return the end index of the sub tree
+     */
+    int getSubtreeEnd(int index) {
+        return subtreeEnd[index];
+    }
+
+    /**
+     * Get the indices of the nodes located on a cell.
+     *
+     * @param cell the index of the cell
+     * @return the indices of the nodes, the returned array must not be changed
+     */
+    @Nonnull
+    int[] getCellNodes(int cell) {
+        return cellNodes[cell];
+    }
+
+    /**
+     * Get the amount of cells in the area covered by the rays.
+     *
+     * @return the amount of cells
+     */
+    int getCellCount() {
+        int side = (size * 2) + 1;
+        return side * side;
+    }
+
+    /**
+     * Get the index of the cell at a offset from the origin of the rays.
+     *
+     * @param dX the x offset
+     * @param dY the y offset
+     * @return the index of the cell
+     */
+    int getCell(int dX, int dY) {
+        return ((dX + size) * ((size * 2) + 1)) + dY + size;
+    }
+
     /**
      * Prepare a single light ray and add it to the root node
      *
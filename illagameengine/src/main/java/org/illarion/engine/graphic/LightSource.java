@@ -20,13 +20,20 @@ import org.jetbrains.annotations.Contract;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
+import javax.annotation.concurrent.GuardedBy;
 import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Objects;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * This class handles a light source and contains its rays, the location and the color of the light.
+ * <p>
+ * The light source stores the result of every node of its rays. In case a location within the range of the light
+ * changes, only the rays that cross this location are traced again. Locations that are reached by multiple rays
+ * receive the strongest light of those rays.
+ * </p>
  *
  * @author Nop
  * @author Martin Karing &lt;nitram@illarion.org&gt;
@@ -50,19 +57,67 @@ public final class LightSource {
     @Nonnull
     private final Color color;
 
+    /**
+     * The red share of the light.
+     */
+    private final float red;
+
+    /**
+     * The green share of the light.
+     */
+    private final float green;
+
+    /**
+     * The blue share of the light.
+     */
+    private final float blue;
+
     /**
      * The dirty flag, this is set to true in case there are further calculations needed and to false in case all
      * calculations are done.
      */
-    private boolean dirty;
+    private volatile boolean dirty;
     private boolean calculating;
 
+    /**
+     * This flag is set {@code true} in case the entire light needs to be calculated again.
+     */
+    @GuardedBy("changedCells")
+    private boolean fullRefresh;
+
+    /**
+     * The cells within the range of this light that changed since the last calculation.
+     */
+    @Nonnull
+    @GuardedBy("changedCells")
+    private final BitSet changedCells;
+
+    /**
+     * The cells that are processed by the current calculation.
+     */
+    @Nonnull
+    @GuardedBy("calculationLock")
+    private final BitSet workCells;
+
     /**
      * The intensity array stores the calculated light intensity values. These result from the pre-calculated light
      * rays along with the situation on the map such as objects that block out the light.
      */
     @Nonnull
-    private final double[][] intensity;
+    private final float[] intensity;
+
+    /**
+     * The intensity of the light that reaches each node of the rays. Nodes that are not reached store a negative
+     * value.
+     */
+    @Nonnull
+    private final float[] nodeInput;
+
+    /**
+     * The intensity of the light that each node of the rays applies to its location.
+     */
+    @Nonnull
+    private final float[] nodeIntensity;
 
     /**
      * Invert flag. If this is set to true it results in a reduce of the light share on a tile instead of a increase.
@@ -105,7 +160,11 @@ public final class LightSource {
         encodedValue = encoding;
         int newSize = (encoding / 10000) % 10;
         rays = LightRays.getRays(newSize);
-        intensity = new double[(newSize * 2) + 1][(newSize * 2) + 1];
+        intensity = new float[rays.getCellCount()];
+        nodeInput = new float[rays.getNodeCount()];
+        nodeIntensity = new float[rays.getNodeCount()];
+        changedCells = new BitSet(rays.getCellCount());
+        workCells = new BitSet(rays.getCellCount());
         color = new Color(Color.WHITE);
 
         this.location = location;
@@ -122,44 +181,46 @@ public final class LightSource {
         size = (encoding / 10000) % 10;
         invert = (encoding / 100000) == 1;
 
+        float factor = (float) bright * (invert ? -1.f : 1.f);
+        this.red = color.getRed() * factor;
+        this.green = color.getGreen() * factor;
+        this.blue = color.getBlue() * factor;
+
         dirty = true;
+        fullRefresh = true;
 
         calculationLock = new ReentrantLock();
     }
 
     /**
-     * Apply shadow map to rendering target. So all calculated intensity values
-     * are added to the map by this function.
+     * Apply shadow map to one chunk of the light buffer. So all calculated intensity values that are located inside
+     * the chunk are added to it by this function.
+     *
+     * @param chunk the chunk that receives the light
      */
-    public void apply() {
-        if (mapSource == null) {
-            throw new IllegalStateException("The light source is not properly bound to a map yet.");
-        }
-
+    void apply(@Nonnull LightBuffer.Chunk chunk) {
         ServerCoordinate loc = location;
-        for (int dX = -size; dX <= size; dX++) {
-            for (int dY = -size; dY <= size; dY++) {
-                double locIntensity = intensity[dX + size][dY + size];
+        if (loc.getZ() != chunk.level) {
+            return;
+        }
+        int minX = Math.max(loc.getX() - size, chunk.originX);
+        int maxX = Math.min(loc.getX() + size, (chunk.originX + LightBuffer.CHUNK_SIZE) - 1);
+        int minY = Math.max(loc.getY() - size, chunk.originY);
+        int maxY = Math.min(loc.getY() + size, (chunk.originY + LightBuffer.CHUNK_SIZE) - 1);
+        for (int x = minX; x <= maxX; x++) {
+            for (int y = minY; y <= maxY; y++) {
+                float locIntensity = intensity[rays.getCell(x - loc.getX(), y - loc.getY())];
                 if (locIntensity == 0) {
                     continue;
                 }
-
-                double factor = locIntensity * bright;
-
-                Color tempColor = new Color(color);
-                tempColor.multiply((float) factor);
-                if (invert) {
-                    tempColor.multiply(-1.f);
-                }
-
-                // set the light on the map
-                mapSource.setLight(new ServerCoordinate(loc, dX, dY, 0), tempColor);
+                chunk.addLight(x, y, red * locIntensity, green * locIntensity, blue * locIntensity);
             }
         }
     }
 
     /**
-     * Recalculate the shadow map of the light source in case its needed.
+     * Recalculate the shadow map of the light source in case its needed. In case only some locations within the
+     * range of the light changed, only the rays that cross those locations are traced again.
      *
      * @return true in case anything was done
      */
@@ -167,15 +228,69 @@ public final class LightSource {
         if (!dirty) {
             return false;
         }
-        dirty = false;
 
-        // reset array
-        resetShadows();
-        rays.apply(this);
+        boolean full;
+        synchronized (changedCells) {
+            dirty = false;
+            full = fullRefresh;
+            fullRefresh = false;
+            workCells.clear();
+            workCells.or(changedCells);
+            changedCells.clear();
+        }
+
+        if (full) {
+            Arrays.fill(nodeInput, -1.f);
+            Arrays.fill(nodeIntensity, 0.f);
+            rays.apply(this);
+            for (int cell = 0; cell < intensity.length; cell++) {
+                updateCell(cell);
+            }
+        } else {
+            for (int cell = workCells.nextSetBit(0); cell >= 0; cell = workCells.nextSetBit(cell + 1)) {
+                for (int node : rays.getCellNodes(cell)) {
+                    traceAgain(node);
+                }
+            }
+        }
 
         return true;
     }
 
+    /**
+     * Trace the rays starting at one node again.
+     *
+     * @param node the index of the node
+     */
+    private void traceAgain(int node) {
+        float input = nodeInput[node];
+        if (input < 0) {
+            // the light does not reach this node, so any change here has no effect
+            return;
+        }
+        int end = rays.getSubtreeEnd(node);
+        Arrays.fill(nodeInput, node, end, -1.f);
+        Arrays.fill(nodeIntensity, node, end, 0.f);
+        rays.apply(this, node, input);
+        for (int i = node; i < end; i++) {
+            RayNode rayNode = rays.getNode(i);
+            updateCell(rays.getCell(rayNode.getPosX(), rayNode.getPosY()));
+        }
+    }
+
+    /**
+     * Set the intensity of a cell to the strongest light any node on the cell applies.
+     *
+     * @param cell the index of the cell
+     */
+    private void updateCell(int cell) {
+        float value = 0.f;
+        for (int node : rays.getCellNodes(cell)) {
+            value = Math.max(value, nodeIntensity[node]);
+        }
+        intensity[cell] = value;
+    }
+
     /**
      * Get the location of this light source.
      *
@@ -221,12 +336,16 @@ public final class LightSource {
      * @param changeLoc the location the change occurred on.
      */
     public void notifyChange(@Nonnull ServerCoordinate changeLoc) {
-        if (location.getZ() != changeLoc.getZ()) {
+        ServerCoordinate loc = location;
+        if (loc.getZ() != changeLoc.getZ()) {
             return;
         }
 
-        if (location.getStepDistance(changeLoc) < size) {
-            refresh();
+        if (loc.getStepDistance(changeLoc) <= size) {
+            synchronized (changedCells) {
+                changedCells.set(rays.getCell(changeLoc.getX() - loc.getX(), changeLoc.getY() - loc.getY()));
+                dirty = true;
+            }
         }
     }
 
@@ -235,46 +354,38 @@ public final class LightSource {
      * source to recalculate all values.
      */
     public void refresh() {
-        dirty = true;
-    }
-
-    /**
-     * Reset all recalculated values. This should be done before the light
-     * source object is put into the cache for later usage.
-     */
-    private void resetShadows() {
-        for (double[] anIntensity : intensity) {
-            Arrays.fill(anIntensity, 0);
+        synchronized (changedCells) {
+            fullRefresh = true;
+            dirty = true;
         }
     }
 
     /**
-     * Set light intensity in shadow map and return opacity value.
+     * Set light intensity of a node of the rays and return opacity value.
      *
-     * @param dX the X offset of the location that's intensity shall be set to the
-     * location of the light source
-     * @param dY the Y offset of the location that's intensity shall be set to the
-     * location of the light source
-     * @param newInt the intensity that shall for this location now
-     * @return the obscurity of the location that's light intensity was just set
+     * @param node the node of the rays
+     * @param input the intensity of the light that reaches the node
+     * @return the obscurity of the location of the node
      */
-    public int setIntensity(int dX, int dY, double newInt) {
+    int traceNode(@Nonnull RayNode node, float input) {
         if (mapSource == null) {
             throw new IllegalStateException("The light source is not properly bound to a map yet.");
         }
-        if (Math.abs(dX) > size) {
-            throw new IllegalArgumentException("The X offset for the light is out of bounds: " + dX);
-        }
-        if (Math.abs(dY) > size) {
-            throw new IllegalArgumentException("The Y offset for the light is out of bounds: " + dY);
-        }
 
-        ServerCoordinate targetCoordinates = new ServerCoordinate(location, dX, dY, 0);
-
-        if (((dX == 0) && (dY == 0)) || mapSource.acceptsLight(targetCoordinates, dX, dY)) {
-            intensity[dX + size][dY + size] = newInt;
+        ServerCoordinate loc = location;
+        int dX = node.getPosX();
+        int dY = node.getPosY();
+        int x = loc.getX() + dX;
+        int y = loc.getY() + dY;
+        int z = loc.getZ();
+
+        nodeInput[node.getIndex()] = input;
+        if ((node.getLevel() == 0) || mapSource.acceptsLight(x, y, z, dX, dY)) {
+            nodeIntensity[node.getIndex()] = (float) (input * node.getIntensity());
+        } else {
+            nodeIntensity[node.getIndex()] = 0.f;
         }
-        return mapSource.blocksView(targetCoordinates);
+        return mapSource.blocksView(x, y, z);
     }
 
     /**
@@ -287,7 +398,7 @@ public final class LightSource {
     void setMapSource(@Nonnull LightingMap newMapSource) {
         if ((mapSource == null) || !Objects.equals(mapSource, newMapSource)) {
             mapSource = newMapSource;
-            dirty = true;
+            refresh();
         }
     }
 
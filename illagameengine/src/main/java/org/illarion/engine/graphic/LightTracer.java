@@ -22,11 +22,14 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.annotation.Nonnull;
+import javax.annotation.concurrent.GuardedBy;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 /**
@@ -37,6 +40,10 @@ import java.util.concurrent.locks.ReentrantReadWriteLock;
  * The whole calculations are threaded, so the light map that is the target of
  * all calculation results needs to be thread save.
  * </p>
+ * <p>
+ * The results of the light sources are accumulated in a {@link LightBuffer}. Two buffers are used. One is filled
+ * while the other one is published to the map.
+ * </p>
  *
  * @author Nop
  * @author Martin Karing &lt;nitram@illarion.org&gt;
@@ -122,6 +129,25 @@ public final class LightTracer implements Stoppable {
     @Nonnull
     private final ReadWriteLock applyingLock;
 
+    /**
+     * This lock ensures that only one thread publishes the lights at a time.
+     */
+    @Nonnull
+    private final Lock publishLock;
+
+    /**
+     * The light buffer that was published last.
+     */
+    @Nonnull
+    private volatile LightBuffer currentLights;
+
+    /**
+     * The light buffer that is filled during the next publishing of the lights.
+     */
+    @Nonnull
+    @GuardedBy("publishLock")
+    private LightBuffer nextLights;
+
     /**
      * Default constructor of the light tracer. This tracer handles all light
      * sources that are on the map source that is set with the parameter.
@@ -133,10 +159,15 @@ public final class LightTracer implements Stoppable {
         lights = new CopyOnWriteArrayList<>();
 
         int maxThreads = Runtime.getRuntime().availableProcessors();
-        lightCalculationService = new ThreadPoolExecutor(0, maxThreads, 10L, TimeUnit.SECONDS,
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(maxThreads, maxThreads, 10L, TimeUnit.SECONDS,
                 new LinkedBlockingQueue<>(), new PoolThreadFactory("LightTracer", true));
+        executor.allowCoreThreadTimeOut(true);
+        lightCalculationService = executor;
         lightsInProgress = new AtomicInteger(0);
         applyingLock = new ReentrantReadWriteLock();
+        publishLock = new ReentrantLock();
+        currentLights = new LightBuffer();
+        nextLights = new LightBuffer();
     }
 
     /**
@@ -195,7 +226,13 @@ public final class LightTracer implements Stoppable {
             light.notifyChange(loc);
             if (light.isDirty()) {
                 log.trace("Light {} requires a update now.", light);
-                refreshLight(light);
+                if (light.getCalculationLock().tryLock()) {
+                    try {
+                        addLight(light);
+                    } finally {
+                        light.getCalculationLock().unlock();
+                    }
+                }
             }
         }
     }
@@ -276,6 +313,16 @@ public final class LightTracer implements Stoppable {
         lightCalculationService.submit(publishLightsTask);
     }
 
+    /**
+     * Get the light buffer that was published last.
+     *
+     * @return the current light buffer
+     */
+    @Nonnull
+    public LightBuffer getCurrentLights() {
+        return currentLights;
+    }
+
     /**
      * Publish all tidy lights.
      */
@@ -283,27 +330,37 @@ public final class LightTracer implements Stoppable {
         if (isShutDown) {
             return;
         }
-        List<LightSource> disposedList = null;
-        applyingLock.writeLock().lock();
+        publishLock.lock();
         try {
-            log.info("Publishing lights now!");
-            for (LightSource light : lights) {
-                if (light.isDisposed()) {
-                    if (disposedList == null) {
-                        disposedList = new ArrayList<>();
+            List<LightSource> disposedList = null;
+            List<LightSource> activeList = new ArrayList<>(lights.size());
+            LightBuffer buffer = nextLights;
+            applyingLock.writeLock().lock();
+            try {
+                log.info("Publishing lights now!");
+                for (LightSource light : lights) {
+                    if (light.isDisposed()) {
+                        if (disposedList == null) {
+                            disposedList = new ArrayList<>();
+                        }
+                        disposedList.add(light);
+                    } else {
+                        activeList.add(light);
                     }
-                    disposedList.add(light);
-                } else {
-                    light.apply();
                 }
+                buffer.update(activeList);
+            } finally {
+                applyingLock.writeLock().unlock();
             }
-        } finally {
-            applyingLock.writeLock().unlock();
-        }
-        mapSource.renderLights();
+            nextLights = currentLights;
+            currentLights = buffer;
+            mapSource.renderLights(buffer);
 
-        if (disposedList != null) {
-            lights.removeAll(disposedList);
+            if (disposedList != null) {
+                lights.removeAll(disposedList);
+            }
+        } finally {
+            publishLock.unlock();
         }
     }
 
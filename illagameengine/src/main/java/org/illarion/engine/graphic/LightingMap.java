@@ -15,7 +15,7 @@
  */
 package org.illarion.engine.graphic;
 
-import illarion.common.types.ServerCoordinate;
+import javax.annotation.Nonnull;
 
 /**
  * The light map interface is used to handle the light effects on the map. It allows to set, render and reset light
@@ -26,7 +26,7 @@ import illarion.common.types.ServerCoordinate;
  */
 public interface LightingMap {
     /**
-     * This value is returned by {@link #blocksView(ServerCoordinate)} in case the view
+     * This value is returned by {@link #blocksView(int, int, int)} in case the view
      * is fully blocked.
      */
     int BLOCKED_VIEW = 1000;
@@ -35,32 +35,30 @@ public interface LightingMap {
      * Determines whether a map location accepts the light from a specific
      * direction.
      *
-     * @param coordinate the location on that is checked
+     * @param x the x coordinate of the location that is checked
+     * @param y the y coordinate of the location that is checked
+     * @param z the z coordinate of the location that is checked
      * @param dx x part of the direction of the light ray
      * @param dy y part of the direction of the light ray
      * @return true if location accepts from this direction
      */
-    boolean acceptsLight(ServerCoordinate coordinate, int dx, int dy);
+    boolean acceptsLight(int x, int y, int z, int dx, int dy);
 
     /**
      * Determines whether a map location blocks the flow of light.
      *
-     * @param coordinate the location on the map
+     * @param x the x coordinate of the location on the map
+     * @param y the y coordinate of the location on the map
+     * @param z the z coordinate of the location on the map
      * @return obscurity, 0 is for free view, {@link #BLOCKED_VIEW} for fully
      * blocked
      */
-    int blocksView(ServerCoordinate coordinate);
+    int blocksView(int x, int y, int z);
 
     /**
      * Start rendering lights after calculations are finished.
-     */
-    void renderLights();
-
-    /**
-     * Assign the cumulative light value to a map tile.
      *
-     * @param coordinate the location on the map the light is assigned to
-     * @param color the color that is assigned to the tile
+     * @param lights the buffer that contains the accumulated light of all light sources
      */
-    void setLight(ServerCoordinate coordinate, Color color);
+    void renderLights(@Nonnull LightBuffer lights);
 }
@@ -21,6 +21,7 @@ import org.slf4j.LoggerFactory;
 import javax.annotation.Nonnull;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
 
 /**
  * A ray node is one node on the path of a light to a destination. It knows all its child nodes around.
@@ -62,6 +63,16 @@ final class RayNode {
      */
     private final int posY;
 
+    /**
+     * The index of this node in depth first order within the rays this node is a part of.
+     */
+    private int index;
+
+    /**
+     * The index after the last node of the sub tree of this node.
+     */
+    private int subtreeEnd;
+
     /**
      * Create a ray node. A node created with this constructor is placed at the origin of the light as the root node.
      *
@@ -155,7 +166,7 @@ final class RayNode {
      * glowing intensity of the light in order to make the light generally weaker
      */
     public void apply(@Nonnull LightSource shadowMap, float globalIntensity) {
-        int blocked = shadowMap.setIntensity(posX, posY, globalIntensity * intensity);
+        int blocked = shadowMap.traceNode(this, globalIntensity);
         float newIntensity = globalIntensity;
         // never block light source itself, remove when blocking is variable
         if (level == 0) {
@@ -178,6 +189,44 @@ final class RayNode {
         }
     }
 
+    /**
+     * Assign the indices to this node and all its children in depth first order and add them to a list.
+     *
+     * @param nodes the list that receives the nodes, the size of the list is the index of this node
+     */
+    void collect(@Nonnull List<RayNode> nodes) {
+        index = nodes.size();
+        nodes.add(this);
+        for (RayNode node : children) {
+            node.collect(nodes);
+        }
+        subtreeEnd = nodes.size();
+    }
+
+    int getIndex() {
+        return index;
+    }
+
+    int getSubtreeEnd() {
+        return subtreeEnd;
+    }
+
+    int getPosX() {
+        return posX;
+    }
+
+    int getPosY() {
+        return posY;
+    }
+
+    int getLevel() {
+        return level;
+    }
+
+    double getIntensity() {
+        return intensity;
+    }
+
     /**
      * Create a string representation of this ray node.
      *
@@ -68,6 +68,27 @@ public interface Scene {
      */
     void render(@Nonnull Graphics graphics, int offsetX, int offsetY);
 
+    /**
+     * Set the area of the scene that is currently displayed. Elements that implement {@link SpatialSceneElement}
+     * and are located far outside of this area are not rendered and updated at a reduced rate. As long as no
+     * viewport is set, all elements are updated and rendered.
+     *
+     * @param x the x coordinate of the origin of the viewport
+     * @param y the y coordinate of the origin of the viewport
+     * @param width the width of the viewport
+     * @param height the height of the viewport
+     */
+    void setViewport(int x, int y, int width, int height);
+
+    /**
+     * Set the rate elements outside of the viewport are updated at. Each of those elements receives a update every
+     * {@code frames} updates of the scene along with the time that passed since its last update.
+     *
+     * @param frames the amount of scene updates between two updates of a element outside of the viewport, {@code 0}
+     * to not update those elements at all
+     */
+    void setOffscreenUpdateInterval(int frames);
+
     /**
      * This function publishes events to the scene. The actual publishing is done during the call of the
      * {@link #update(GameContainer, int)} function. This method is thread save.
@@ -0,0 +1,38 @@
+/*
+ * This file is part of the Illarion project.
+ *
+ * Copyright © 2016 - Illarion e.V.
+ *
+ * Illarion is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Illarion is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ */
+package org.illarion.engine.graphic;
+
+/**
+ * This is a scene element that has a location in the scene. The scene uses the location to update and render only
+ * the elements that are located in or close to the viewport.
+ *
+ * @author Martin Karing &lt;nitram@illarion.org&gt;
+ */
+public interface SpatialSceneElement extends SceneElement {
+    /**
+     * Get the x coordinate of the location of this element in the scene.
+     *
+     * @return the x coordinate
+     */
+    int getSceneX();
+
+    /**
+     * Get the y coordinate of the location of this element in the scene.
+     *
+     * @return the y coordinate
+     */
+    int getSceneY();
+}
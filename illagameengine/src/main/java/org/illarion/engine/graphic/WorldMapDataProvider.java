@@ -25,6 +25,21 @@ import javax.annotation.Nonnull;
  * @author Martin Karing &lt;nitram@illarion.org&gt;
  */
 public interface WorldMapDataProvider {
+    /**
+     * The amount of bits the map ID of the overlay is shifted in the packed tile data.
+     */
+    int PACKED_OVERLAY_SHIFT = 8;
+
+    /**
+     * The mask of the map ID of the tile and the overlay in the packed tile data.
+     */
+    int PACKED_ID_MASK = 0xFF;
+
+    /**
+     * The flag that marks a tile as blocked in the packed tile data.
+     */
+    int PACKED_BLOCKED = 1 << 16;
+
     /**
      * Request the tile data of a specific tile.
      *
@@ -32,4 +47,18 @@ public interface WorldMapDataProvider {
      * @param callback the callback class that is supposed to receive the tile data
      */
     void requestTile(@Nonnull ServerCoordinate location, @Nonnull WorldMapDataProviderCallback callback);
+
+    /**
+     * Request the tile data of a rectangular area at once. The data of each tile is packed to one integer value. The
+     * lowest byte is the map ID of the tile, the next byte the map ID of the overlay and the flag
+     * {@link #PACKED_BLOCKED} is set in case the tile is blocked. Tiles without data are set to
+     * {@link WorldMap#NO_TILE}.
+     *
+     * @param origin the location of the first tile of the area
+     * @param width the width of the area
+     * @param height the height of the area
+     * @param data the array that receives the data row by row, it needs to be able to store {@code width * height}
+     * values
+     */
+    void requestTiles(@Nonnull ServerCoordinate origin, int width, int height, @Nonnull int[] data);
 }
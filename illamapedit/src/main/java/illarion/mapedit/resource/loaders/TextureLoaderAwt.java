@@ -120,6 +120,11 @@ public final class TextureLoaderAwt extends AbstractTextureManager<BufferedImage
         }
     }
 
+    @Override
+    protected long getTextureDataSize(@Nonnull BufferedImage textureData) {
+        return (long) textureData.getWidth() * textureData.getHeight() * 4L;
+    }
+
     @Nullable
     @Override
     protected Texture loadTexture(@Nonnull String resource, @Nonnull BufferedImage preLoadData) {